@@ -37,6 +37,9 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     static final ResourceLeakDetector<ByteBuf> leakDetector = new ResourceLeakDetector<ByteBuf>(ByteBuf.class);
 
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LINEAR_WHITESPACE = { ' ', '\t' };
+
     int readerIndex;
     private int writerIndex;
     private int markedReaderIndex;
@@ -945,20 +948,7 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public String toString(int index, int length, Charset charset) {
-        if (length == 0) {
-            return "";
-        }
-
-        ByteBuffer nioBuffer;
-        if (nioBufferCount() == 1) {
-            nioBuffer = nioBuffer(index, length);
-        } else {
-            nioBuffer = ByteBuffer.allocate(length);
-            getBytes(index, nioBuffer);
-            nioBuffer.flip();
-        }
-
-        return ByteBufUtil.decodeString(nioBuffer, charset);
+        return ByteBufUtil.decodeString(this, index, length, charset);
     }
 
     @Override
@@ -1009,6 +999,23 @@ public abstract class AbstractByteBuf extends ByteBuf {
         }
 
         final int endIndex = index + length;
+        // The processors which look for specific bytes are evaluated a word at a time.
+        if (processor == ByteBufProcessor.FIND_LF) {
+            return ByteBufUtil.firstIndexOf(this, index, endIndex, (byte) '\n', null);
+        }
+        if (processor == ByteBufProcessor.FIND_CRLF) {
+            return ByteBufUtil.firstIndexOf(this, index, endIndex, (byte) '\r', CRLF);
+        }
+        if (processor == ByteBufProcessor.FIND_CR) {
+            return ByteBufUtil.firstIndexOf(this, index, endIndex, (byte) '\r', null);
+        }
+        if (processor == ByteBufProcessor.FIND_NUL) {
+            return ByteBufUtil.firstIndexOf(this, index, endIndex, (byte) 0, null);
+        }
+        if (processor == ByteBufProcessor.FIND_LINEAR_WHITESPACE) {
+            return ByteBufUtil.firstIndexOf(this, index, endIndex, (byte) ' ', LINEAR_WHITESPACE);
+        }
+
         int i = index;
         try {
             do {
@@ -16,6 +16,8 @@
 package io.netty.buffer;
 
 import io.netty.util.CharsetUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -25,6 +27,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
+import java.util.Arrays;
 
 /**
  * A collection of utility methods that is related with handling {@link ByteBuf}.
@@ -32,6 +35,7 @@ import java.nio.charset.CoderResult;
 public final class ByteBufUtil {
 
     private static final char[] HEXDUMP_TABLE = new char[256 * 4];
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
 
     static {
         final char[] DIGITS = "0123456789abcdef".toCharArray();
@@ -107,6 +111,58 @@ public final class ByteBufUtil {
         return new String(buf);
     }
 
+    /**
+     * Returns a multi-line hexadecimal dump of the specified {@link ByteBuf}'s readable bytes that is easy to read
+     * by humans, with a header, the offset of each row and the printable ASCII characters next to the hex digits.
+     */
+    public static String prettyHexDump(ByteBuf buffer) {
+        return prettyHexDump(buffer, buffer.readerIndex(), buffer.readableBytes());
+    }
+
+    /**
+     * Returns a multi-line hexadecimal dump of the specified {@link ByteBuf}'s sub-region that is easy to read by
+     * humans.
+     */
+    public static String prettyHexDump(ByteBuf buffer, int offset, int length) {
+        if (length == 0) {
+            return "";
+        }
+        StringBuilder dump = new StringBuilder(PrettyHexDump.estimateLength(length));
+        appendPrettyHexDump(dump, buffer, offset, length);
+        return dump.toString();
+    }
+
+    /**
+     * Appends the multi-line hexadecimal dump of the specified {@link ByteBuf}'s readable bytes to the specified
+     * {@link StringBuilder}.
+     */
+    public static void appendPrettyHexDump(StringBuilder dump, ByteBuf buffer) {
+        appendPrettyHexDump(dump, buffer, buffer.readerIndex(), buffer.readableBytes());
+    }
+
+    /**
+     * Appends the multi-line hexadecimal dump of the specified {@link ByteBuf}'s sub-region to the specified
+     * {@link StringBuilder}.  Every character is taken from a precomputed lookup table, so nothing but the
+     * {@link StringBuilder} itself is allocated.
+     */
+    public static void appendPrettyHexDump(StringBuilder dump, ByteBuf buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > buffer.capacity() - length) {
+            throw new IndexOutOfBoundsException(
+                    "expected: 0 <= offset(" + offset + ") <= offset + length(" + length
+                            + ") <= buf.capacity(" + buffer.capacity() + ')');
+        }
+        PrettyHexDump.append(dump, buffer, offset, length);
+    }
+
+    /**
+     * Returns the estimated length of the multi-line hexadecimal dump of the specified number of bytes, which is
+     * useful to size a {@link StringBuilder} before calling
+     * {@link #appendPrettyHexDump(StringBuilder, ByteBuf, int, int)}.
+     */
+    public static int prettyHexDumpLength(int length) {
+        return PrettyHexDump.estimateLength(length);
+    }
+
     /**
      * Calculates the hash code of the specified buffer.  This method is
      * useful when implementing a new buffer type.
@@ -307,20 +363,197 @@ public final class ByteBufUtil {
     }
 
     private static int firstIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
+        return firstIndexOf(buffer, fromIndex, toIndex, value, null);
+    }
+
+    /**
+     * Returns the index of the first byte in {@code [fromIndex, toIndex)} of the specified buffer which is equal to
+     * any of the specified values, or {@code -1} if there is no such byte.  Like
+     * {@link #indexOf(ByteBuf, int, int, byte)}, the bytes are compared 8 at a time when possible.
+     */
+    public static int indexOfAny(ByteBuf buffer, int fromIndex, int toIndex, byte... values) {
+        if (values == null) {
+            throw new NullPointerException("values");
+        }
+        switch (values.length) {
+        case 0:
+            return -1;
+        case 1:
+            return firstIndexOf(buffer, fromIndex, toIndex, values[0], null);
+        default:
+            return firstIndexOf(buffer, fromIndex, toIndex, values[0], values);
+        }
+    }
+
+    /**
+     * Returns the index of the first occurrence of the readable bytes of {@code needle} in the readable bytes of
+     * {@code haystack}, or {@code -1} if there is no such occurrence.
+     */
+    public static int indexOf(ByteBuf needle, ByteBuf haystack) {
+        final int needleIndex = needle.readerIndex();
+        final int needleLength = needle.readableBytes();
+        if (needleLength == 0) {
+            return haystack.readerIndex();
+        }
+
+        final byte first = needle.getByte(needleIndex);
+        final int end = haystack.writerIndex() - needleLength + 1;
+        int i = haystack.readerIndex();
+        while (i < end) {
+            i = firstIndexOf(haystack, i, end, first, null);
+            if (i < 0) {
+                break;
+            }
+            if (regionMatches(haystack, i + 1, needle, needleIndex + 1, needleLength - 1)) {
+                return i;
+            }
+            i ++;
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(ByteBuf a, int aIndex, ByteBuf b, int bIndex, int length) {
+        for (int i = 0; i < length; i ++) {
+            if (a.getByte(aIndex + i) != b.getByte(bIndex + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int firstIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value, byte[] values) {
         fromIndex = Math.max(fromIndex, 0);
-        if (fromIndex >= toIndex || buffer.capacity() == 0) {
+        toIndex = Math.min(toIndex, buffer.capacity());
+        if (fromIndex >= toIndex) {
             return -1;
         }
 
-        for (int i = fromIndex; i < toIndex; i ++) {
-            if (buffer.getByte(i) == value) {
+        if (buffer instanceof AbstractByteBuf) {
+            AbstractByteBuf buf = (AbstractByteBuf) buffer;
+            buf.checkIndex(fromIndex, toIndex - fromIndex);
+            return firstIndexOf(buf, fromIndex, toIndex, value, values);
+        }
+        return firstIndexOfSlow(buffer, fromIndex, toIndex, value, values);
+    }
+
+    /**
+     * Returns the index of the first byte in {@code [fromIndex, toIndex)} which is equal to {@code value} or to
+     * any of {@code values} if not {@code null}.  8 bytes are read at once, directly from the backing array or
+     * memory when available, and compared to every value with a few arithmetic operations (SWAR).  The region
+     * must have been validated by the caller.
+     */
+    static int firstIndexOf(AbstractByteBuf buf, int fromIndex, int toIndex, byte value, byte[] values) {
+        if (buf instanceof CompositeByteBuf) {
+            return firstIndexOf((CompositeByteBuf) buf, fromIndex, toIndex, value, values);
+        }
+
+        byte[] array = null;
+        int arrayOffset = 0;
+        long address = 0;
+        if (PlatformDependent.hasUnsafe()) {
+            if (buf.hasArray()) {
+                array = buf.array();
+                arrayOffset = buf.arrayOffset();
+            } else if (buf.hasMemoryAddress()) {
+                address = buf.memoryAddress();
+            }
+        }
+        // AbstractByteBuf._getLong() is always big-endian while the raw accesses use the native byte order.
+        final boolean bigEndian = array == null && address == 0 || PlatformDependent.BIG_ENDIAN_NATIVE_ORDER;
+        final long pattern = pattern(value);
+
+        final int longEnd = fromIndex + ((toIndex - fromIndex) & ~7);
+        int i = fromIndex;
+        for (; i < longEnd; i += 8) {
+            final long word;
+            if (array != null) {
+                word = PlatformDependent.getLong(array, arrayOffset + i);
+            } else if (address != 0) {
+                word = PlatformDependent.getLong(address + i);
+            } else {
+                word = buf._getLong(i);
+            }
+
+            long mask = matches(word, pattern);
+            if (values != null) {
+                for (int j = 1; j < values.length; j ++) {
+                    mask |= matches(word, pattern(values[j]));
+                }
+            }
+            if (mask != 0) {
+                return i + ((bigEndian ? Long.numberOfLeadingZeros(mask) : Long.numberOfTrailingZeros(mask)) >>> 3);
+            }
+        }
+        for (; i < toIndex; i ++) {
+            if (isAnyOf(buf._getByte(i), value, values)) {
                 return i;
             }
         }
+        return -1;
+    }
+
+    private static int firstIndexOf(CompositeByteBuf buf, int fromIndex, int toIndex, byte value, byte[] values) {
+        int i = fromIndex;
+        while (i < toIndex) {
+            final int cIndex = buf.toComponentIndex(i);
+            final int start = buf.toByteIndex(cIndex);
+            final ByteBuf c = buf.internalComponent(cIndex);
+            final int end = Math.min(toIndex, start + c.capacity());
+            final int found;
+            if (c instanceof AbstractByteBuf) {
+                found = firstIndexOf((AbstractByteBuf) c, i - start, end - start, value, values);
+            } else {
+                found = firstIndexOfSlow(c, i - start, end - start, value, values);
+            }
+            if (found >= 0) {
+                return start + found;
+            }
+            i = end;
+        }
+        return -1;
+    }
 
+    private static int firstIndexOfSlow(ByteBuf buffer, int fromIndex, int toIndex, byte value, byte[] values) {
+        for (int i = fromIndex; i < toIndex; i ++) {
+            if (isAnyOf(buffer.getByte(i), value, values)) {
+                return i;
+            }
+        }
         return -1;
     }
 
+    private static boolean isAnyOf(byte b, byte value, byte[] values) {
+        if (b == value) {
+            return true;
+        }
+        if (values != null) {
+            for (int j = 1; j < values.length; j ++) {
+                if (b == values[j]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a word whose 8 bytes are all equal to the specified value.
+     */
+    private static long pattern(byte value) {
+        return (value & 0xFFL) * 0x0101010101010101L;
+    }
+
+    /**
+     * Returns a word whose bytes have their high bit set where the byte of {@code word} is equal to the byte of
+     * {@code pattern}, and are zero elsewhere.  Unlike the classic {@code (x - 0x01..) & ~x & 0x80..} trick, the
+     * carry never crosses a byte boundary and thus there are no false positives after the first match.
+     */
+    private static long matches(long word, long pattern) {
+        final long input = word ^ pattern;
+        final long tmp = (input & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL;
+        return ~(tmp | input | 0x7F7F7F7F7F7F7F7FL);
+    }
+
     private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
         fromIndex = Math.min(fromIndex, buffer.capacity());
         if (fromIndex < 0 || buffer.capacity() == 0) {
@@ -368,6 +601,381 @@ public final class ByteBufUtil {
         }
     }
 
+    /**
+     * Returns the number of bytes the UTF-8 encoding of the specified {@link CharSequence} takes.  An unpaired
+     * surrogate takes one byte, because it is encoded as {@code '?'} just like {@link CharsetEncoder} does.
+     */
+    public static int utf8Length(CharSequence seq) {
+        final int length = seq.length();
+        int bytes = length;
+        for (int i = 0; i < length; i ++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes ++;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                bytes += 2;
+            } else if (c <= Character.MAX_HIGH_SURROGATE &&
+                       i + 1 < length && Character.isLowSurrogate(seq.charAt(i + 1))) {
+                // A surrogate pair takes 4 bytes for 2 chars.
+                bytes += 2;
+                i ++;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes the specified {@link CharSequence} in UTF-8 and writes it to the specified buffer, which is expanded
+     * by exactly the number of bytes it takes.  An unpaired surrogate is written as {@code '?'}.
+     *
+     * @return the number of bytes written
+     */
+    public static int writeUtf8(ByteBuf buf, CharSequence seq) {
+        final int bytes = utf8Length(seq);
+        buf.ensureWritable(bytes);
+        final int writerIndex = buf.writerIndex();
+        if (buf instanceof AbstractByteBuf) {
+            writeUtf8((AbstractByteBuf) buf, writerIndex, seq);
+        } else {
+            // Encode into a temporary buffer which can be accessed without bounds checks.
+            UnpooledHeapByteBuf tmp = new UnpooledHeapByteBuf(UnpooledByteBufAllocator.DEFAULT, bytes, bytes);
+            writeUtf8(tmp, 0, seq);
+            buf.setBytes(writerIndex, tmp.array(), 0, bytes);
+        }
+        buf.writerIndex(writerIndex + bytes);
+        return bytes;
+    }
+
+    /**
+     * Encodes the specified {@link CharSequence} in UTF-8 into a new {@link ByteBuf} of the exact size, which is
+     * allocated via the {@link ByteBufAllocator}.
+     */
+    public static ByteBuf writeUtf8(ByteBufAllocator alloc, CharSequence seq) {
+        ByteBuf buf = alloc.buffer(utf8Length(seq));
+        writeUtf8(buf, seq);
+        return buf;
+    }
+
+    private static void writeUtf8(AbstractByteBuf buf, int index, CharSequence seq) {
+        final int length = seq.length();
+        for (int i = 0; i < length; i ++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                buf._setByte(index ++, c);
+            } else if (c < 0x800) {
+                buf._setByte(index ++, 0xC0 | c >> 6);
+                buf._setByte(index ++, 0x80 | c & 0x3F);
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                buf._setByte(index ++, 0xE0 | c >> 12);
+                buf._setByte(index ++, 0x80 | c >> 6 & 0x3F);
+                buf._setByte(index ++, 0x80 | c & 0x3F);
+            } else if (c <= Character.MAX_HIGH_SURROGATE &&
+                       i + 1 < length && Character.isLowSurrogate(seq.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, seq.charAt(++ i));
+                buf._setByte(index ++, 0xF0 | codePoint >> 18);
+                buf._setByte(index ++, 0x80 | codePoint >> 12 & 0x3F);
+                buf._setByte(index ++, 0x80 | codePoint >> 6 & 0x3F);
+                buf._setByte(index ++, 0x80 | codePoint & 0x3F);
+            } else {
+                // An unpaired surrogate
+                buf._setByte(index ++, '?');
+            }
+        }
+    }
+
+    /**
+     * Encodes the specified {@link CharSequence} in ISO-8859-1, which is also US-ASCII if all characters are
+     * ASCII, and writes it to the specified buffer.  A character above {@code U+00FF} is written as {@code '?'}.
+     *
+     * @return the number of bytes written, which is the length of the {@link CharSequence}
+     */
+    public static int writeAscii(ByteBuf buf, CharSequence seq) {
+        final int length = seq.length();
+        buf.ensureWritable(length);
+        final int writerIndex = buf.writerIndex();
+        if (buf instanceof AbstractByteBuf) {
+            writeAscii((AbstractByteBuf) buf, writerIndex, seq);
+        } else {
+            UnpooledHeapByteBuf tmp = new UnpooledHeapByteBuf(UnpooledByteBufAllocator.DEFAULT, length, length);
+            writeAscii(tmp, 0, seq);
+            buf.setBytes(writerIndex, tmp.array(), 0, length);
+        }
+        buf.writerIndex(writerIndex + length);
+        return length;
+    }
+
+    /**
+     * Encodes the specified {@link CharSequence} in ISO-8859-1 into a new {@link ByteBuf} of the exact size, which
+     * is allocated via the {@link ByteBufAllocator}.
+     */
+    public static ByteBuf writeAscii(ByteBufAllocator alloc, CharSequence seq) {
+        ByteBuf buf = alloc.buffer(seq.length());
+        writeAscii(buf, seq);
+        return buf;
+    }
+
+    private static void writeAscii(AbstractByteBuf buf, int index, CharSequence seq) {
+        final int length = seq.length();
+        for (int i = 0; i < length; i ++) {
+            char c = seq.charAt(i);
+            buf._setByte(index ++, c > 0xFF ? '?' : c);
+        }
+    }
+
+    /**
+     * Decodes the specified region of the specified buffer as UTF-8.  A malformed sequence is replaced with
+     * {@code U+FFFD} just like {@link CharsetDecoder} does.
+     */
+    public static String decodeUtf8(ByteBuf buf, int index, int length) {
+        if (length == 0) {
+            return "";
+        }
+        AbstractByteBuf src = accessible(buf, index, length);
+        if (src != buf) {
+            index = 0;
+        }
+
+        final char[] chars = new char[length];
+        final int end = index + length;
+        int n = 0;
+        int i = index;
+        while (i < end) {
+            int b0 = src._getByte(i);
+            if (b0 >= 0) {
+                chars[n ++] = (char) b0;
+                i ++;
+                continue;
+            }
+
+            b0 &= 0xFF;
+            int b1;
+            if (b0 < 0xC2) {
+                // A continuation byte or an overlong 2-byte sequence
+                break;
+            } else if (b0 < 0xE0) {
+                if (end - i < 2 || !isContinuation(b1 = src._getByte(i + 1))) {
+                    break;
+                }
+                chars[n ++] = (char) ((b0 & 0x1F) << 6 | b1 & 0x3F);
+                i += 2;
+            } else if (b0 < 0xF0) {
+                if (end - i < 3) {
+                    break;
+                }
+                b1 = src._getByte(i + 1) & 0xFF;
+                if (b0 == 0xE0 ? b1 < 0xA0 || b1 > 0xBF :          // overlong
+                    b0 == 0xED ? b1 < 0x80 || b1 > 0x9F :          // surrogate
+                                 b1 < 0x80 || b1 > 0xBF) {
+                    break;
+                }
+                int b2 = src._getByte(i + 2);
+                if (!isContinuation(b2)) {
+                    break;
+                }
+                chars[n ++] = (char) ((b0 & 0x0F) << 12 | (b1 & 0x3F) << 6 | b2 & 0x3F);
+                i += 3;
+            } else if (b0 < 0xF5) {
+                if (end - i < 4) {
+                    break;
+                }
+                b1 = src._getByte(i + 1) & 0xFF;
+                if (b0 == 0xF0 ? b1 < 0x90 || b1 > 0xBF :          // overlong
+                    b0 == 0xF4 ? b1 < 0x80 || b1 > 0x8F :          // above U+10FFFF
+                                 b1 < 0x80 || b1 > 0xBF) {
+                    break;
+                }
+                int b2 = src._getByte(i + 2);
+                int b3 = src._getByte(i + 3);
+                if (!isContinuation(b2) || !isContinuation(b3)) {
+                    break;
+                }
+                int codePoint = (b0 & 0x07) << 18 | (b1 & 0x3F) << 12 | (b2 & 0x3F) << 6 | b3 & 0x3F;
+                Character.toChars(codePoint, chars, n);
+                n += 2;
+                i += 4;
+            } else {
+                break;
+            }
+        }
+
+        if (i < end) {
+            // Malformed - let the JDK decoder replace the malformed sequences exactly the way it always does.
+            return decodeString(src.nioBuffer(index, length), CharsetUtil.UTF_8);
+        }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * Decodes the specified region of the specified buffer as ISO-8859-1, which is also US-ASCII if all bytes are
+     * ASCII.
+     */
+    @SuppressWarnings("deprecation")
+    public static String decodeAscii(ByteBuf buf, int index, int length) {
+        if (length == 0) {
+            return "";
+        }
+        if (index < 0 || length < 0 || index > buf.capacity() - length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "index: %d, length: %d (expected: range(0, %d))", index, length, buf.capacity()));
+        }
+
+        // Every byte is a character with the same value.
+        if (buf.hasArray()) {
+            return new String(buf.array(), 0, buf.arrayOffset() + index, length);
+        }
+        byte[] array = new byte[length];
+        buf.getBytes(index, array);
+        return new String(array, 0, 0, length);
+    }
+
+    /**
+     * Returns the specified buffer if it can be read without bounds checks, or a heap copy of the specified region
+     * otherwise.
+     */
+    private static AbstractByteBuf accessible(ByteBuf buf, int index, int length) {
+        if (buf instanceof AbstractByteBuf) {
+            AbstractByteBuf src = (AbstractByteBuf) buf;
+            src.checkIndex(index, length);
+            return src;
+        }
+        UnpooledHeapByteBuf tmp = new UnpooledHeapByteBuf(UnpooledByteBufAllocator.DEFAULT, length, length);
+        buf.getBytes(index, tmp.array(), 0, length);
+        return tmp;
+    }
+
+    private static boolean isContinuation(int b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Returns the index of the first byte which is not a 7-bit ASCII character (i.e. whose high bit is set) in the
+     * specified region of the specified buffer, or {@code -1} if all the bytes are ASCII.  The bytes are checked
+     * 8 at a time.
+     */
+    public static int indexOfNonAscii(ByteBuf buffer, int index, int length) {
+        final int longEnd = index + (length & ~7);
+        final int end = index + length;
+        int i = index;
+        for (; i < longEnd; i += 8) {
+            long word = buffer.getLong(i) & NON_ASCII_MASK;
+            if (word != 0) {
+                if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+                    return i + (Long.numberOfLeadingZeros(word) >>> 3);
+                } else {
+                    return i + (Long.numberOfTrailingZeros(word) >>> 3);
+                }
+            }
+        }
+        for (; i < end; i ++) {
+            if (buffer.getByte(i) < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns {@code true} if and only if the readable bytes of the specified buffer are well-formed UTF-8.
+     */
+    public static boolean isUtf8(ByteBuf buffer) {
+        return isUtf8(buffer, buffer.readerIndex(), buffer.readableBytes());
+    }
+
+    /**
+     * Returns {@code true} if and only if the specified region of the specified buffer is well-formed UTF-8, as
+     * defined by <a href="http://tools.ietf.org/html/rfc3629#section-4">RFC 3629</a>: it does not contain overlong
+     * sequences, surrogates, code points above {@code U+10FFFF} or truncated sequences.  The ASCII runs are skipped
+     * 8 bytes at a time, and only the multi-byte sequences are checked byte by byte.
+     */
+    public static boolean isUtf8(ByteBuf buffer, int index, int length) {
+        final int end = index + length;
+        int i = index;
+        for (;;) {
+            i = indexOfNonAscii(buffer, i, end - i);
+            if (i < 0) {
+                return true;
+            }
+
+            int b0 = buffer.getByte(i) & 0xFF;
+            int b1;
+            if (b0 < 0xC2) {
+                // A continuation byte or an overlong 2-byte sequence
+                return false;
+            } else if (b0 < 0xE0) {
+                if (end - i < 2 || !isContinuation(buffer.getByte(i + 1))) {
+                    return false;
+                }
+                i += 2;
+            } else if (b0 < 0xF0) {
+                if (end - i < 3) {
+                    return false;
+                }
+                b1 = buffer.getByte(i + 1) & 0xFF;
+                if (b0 == 0xE0 ? b1 < 0xA0 || b1 > 0xBF :          // overlong
+                    b0 == 0xED ? b1 < 0x80 || b1 > 0x9F :          // surrogate
+                                 b1 < 0x80 || b1 > 0xBF) {
+                    return false;
+                }
+                if (!isContinuation(buffer.getByte(i + 2))) {
+                    return false;
+                }
+                i += 3;
+            } else if (b0 < 0xF5) {
+                if (end - i < 4) {
+                    return false;
+                }
+                b1 = buffer.getByte(i + 1) & 0xFF;
+                if (b0 == 0xF0 ? b1 < 0x90 || b1 > 0xBF :          // overlong
+                    b0 == 0xF4 ? b1 < 0x80 || b1 > 0x8F :          // above U+10FFFF
+                                 b1 < 0x80 || b1 > 0xBF) {
+                    return false;
+                }
+                if (!isContinuation(buffer.getByte(i + 2)) || !isContinuation(buffer.getByte(i + 3))) {
+                    return false;
+                }
+                i += 4;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Decodes the specified region of the specified buffer into a {@link String}.  The content which consists only
+     * of ASCII characters is copied directly if the specified {@link Charset} is a superset of ASCII that this
+     * method knows about, without going through a {@link CharsetDecoder}.
+     */
+    static String decodeString(ByteBuf src, int index, int length, Charset charset) {
+        if (length == 0) {
+            return "";
+        }
+        if (index < 0 || length < 0 || index > src.capacity() - length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "index: %d, length: %d (expected: range(0, %d))", index, length, src.capacity()));
+        }
+
+        if (charset.equals(CharsetUtil.UTF_8)) {
+            return decodeUtf8(src, index, length);
+        }
+        if (charset.equals(CharsetUtil.ISO_8859_1) ||
+            charset.equals(CharsetUtil.US_ASCII) && indexOfNonAscii(src, index, length) < 0) {
+            return decodeAscii(src, index, length);
+        }
+
+        ByteBuffer nioBuffer;
+        if (src.nioBufferCount() == 1) {
+            nioBuffer = src.nioBuffer(index, length);
+        } else {
+            nioBuffer = ByteBuffer.allocate(length);
+            src.getBytes(index, nioBuffer);
+            nioBuffer.flip();
+        }
+        return decodeString(nioBuffer, charset);
+    }
+
     static String decodeString(ByteBuffer src, Charset charset) {
         final CharsetDecoder decoder = CharsetUtil.getDecoder(charset);
         final CharBuffer dst = CharBuffer.allocate(
@@ -387,5 +995,106 @@ public final class ByteBufUtil {
         return dst.flip().toString();
     }
 
+    /**
+     * The lookup tables of the pretty hex dump, which are initialized only when a dump is requested.
+     */
+    private static final class PrettyHexDump {
+
+        private static final String NEWLINE = StringUtil.NEWLINE;
+        private static final String HEADER =
+                NEWLINE + "         +-------------------------------------------------+" +
+                NEWLINE + "         |  0  1  2  3  4  5  6  7  8  9  a  b  c  d  e  f |" +
+                NEWLINE + "+--------+-------------------------------------------------+----------------+";
+        private static final String FOOTER =
+                NEWLINE + "+--------+-------------------------------------------------+----------------+";
+
+        // The length of a row without the prefix: 16 * 3 hex characters, " |", 16 characters and '|'.
+        private static final int ROW_LENGTH = 16 * 3 + 2 + 16 + 1;
+        private static final int ROW_ASCII_OFFSET = 16 * 3 + 2;
+
+        private static final char[] BYTE2HEX = new char[256 * 3];
+        private static final char[] BYTE2CHAR = new char[256];
+        private static final String[] HEXDUMP_ROWPREFIXES = new String[65536 >>> 4];
+
+        static {
+            final char[] DIGITS = "0123456789abcdef".toCharArray();
+            for (int i = 0; i < 256; i ++) {
+                BYTE2HEX[i * 3] = ' ';
+                BYTE2HEX[i * 3 + 1] = DIGITS[i >>> 4 & 0x0F];
+                BYTE2HEX[i * 3 + 2] = DIGITS[i & 0x0F];
+                BYTE2CHAR[i] = i <= 0x1f || i >= 0x7f ? '.' : (char) i;
+            }
+
+            // The start-offset header of each row (up to 64KiB).
+            for (int i = 0; i < HEXDUMP_ROWPREFIXES.length; i ++) {
+                HEXDUMP_ROWPREFIXES[i] = rowPrefix(i << 4);
+            }
+        }
+
+        static int estimateLength(int length) {
+            int rows = (length + 15 >>> 4) + 4;
+            return rows * (NEWLINE.length() + 10 + ROW_LENGTH);
+        }
+
+        static void append(StringBuilder dump, ByteBuf buf, int offset, int length) {
+            if (length == 0) {
+                return;
+            }
+            dump.append(HEADER);
+
+            final char[] row = new char[ROW_LENGTH];
+            final int fullRows = length >>> 4;
+            final int remainder = length & 0xF;
+
+            for (int i = 0; i < fullRows; i ++) {
+                int rowStartIndex = i << 4;
+                appendRowPrefix(dump, i, rowStartIndex);
+                fillRow(row, buf, offset + rowStartIndex, 16);
+                dump.append(row);
+            }
+
+            // The last row which has less than 16 bytes is padded with spaces.
+            if (remainder != 0) {
+                int rowStartIndex = fullRows << 4;
+                appendRowPrefix(dump, fullRows, rowStartIndex);
+                Arrays.fill(row, ' ');
+                fillRow(row, buf, offset + rowStartIndex, remainder);
+                dump.append(row);
+            }
+
+            dump.append(FOOTER);
+        }
+
+        private static void fillRow(char[] row, ByteBuf buf, int index, int length) {
+            for (int i = 0; i < length; i ++) {
+                int b = buf.getUnsignedByte(index + i);
+                System.arraycopy(BYTE2HEX, b * 3, row, i * 3, 3);
+                row[ROW_ASCII_OFFSET + i] = BYTE2CHAR[b];
+            }
+            row[16 * 3] = ' ';
+            row[16 * 3 + 1] = '|';
+            row[ROW_LENGTH - 1] = '|';
+        }
+
+        private static void appendRowPrefix(StringBuilder dump, int row, int rowStartIndex) {
+            if (row < HEXDUMP_ROWPREFIXES.length) {
+                dump.append(HEXDUMP_ROWPREFIXES[row]);
+            } else {
+                dump.append(rowPrefix(rowStartIndex));
+            }
+        }
+
+        private static String rowPrefix(int rowStartIndex) {
+            StringBuilder buf = new StringBuilder(NEWLINE.length() + 10);
+            buf.append(NEWLINE);
+            buf.append(Long.toHexString(rowStartIndex & 0xFFFFFFFFL | 0x100000000L));
+            buf.setCharAt(buf.length() - 9, '|');
+            buf.append('|');
+            return buf.toString();
+        }
+
+        private PrettyHexDump() { }
+    }
+
     private ByteBufUtil() { }
 }
@@ -1536,6 +1536,33 @@ public abstract class AbstractByteBufTest {
         assertEquals("Hello, World!", buffer.toString(CharsetUtil.ISO_8859_1));
     }
 
+    @Test
+    public void testToStringUtf8() {
+        String ascii = "Hello, World! Hello, World!";
+        String mixed = "Hello, \u4e16\u754c! Gr\u00fc\u00dfe";
+        buffer.clear();
+        buffer.writeBytes(releaseLater(copiedBuffer(ascii + mixed, CharsetUtil.UTF_8)));
+        assertEquals(ascii + mixed, buffer.toString(CharsetUtil.UTF_8));
+        assertEquals(ascii, buffer.toString(0, ascii.length(), CharsetUtil.US_ASCII));
+        assertEquals(ascii.substring(3, 20), buffer.toString(3, 17, CharsetUtil.UTF_8));
+        assertEquals(mixed, buffer.toString(ascii.length(), buffer.writerIndex() - ascii.length(), CharsetUtil.UTF_8));
+    }
+
+    @Test
+    public void testIndexOfNonAscii() {
+        buffer.clear();
+        buffer.writeZero(32);
+        assertEquals(-1, ByteBufUtil.indexOfNonAscii(buffer, 0, 32));
+        for (int i = 0; i < 32; i ++) {
+            buffer.setByte(i, 0x80);
+            assertEquals(i, ByteBufUtil.indexOfNonAscii(buffer, 0, 32));
+            assertEquals(i, ByteBufUtil.indexOfNonAscii(buffer, i, 32 - i));
+            assertEquals(-1, ByteBufUtil.indexOfNonAscii(buffer, 0, i));
+            assertEquals(-1, ByteBufUtil.indexOfNonAscii(buffer, i + 1, 31 - i));
+            buffer.setByte(i, 0x7F);
+        }
+    }
+
     @Test
     public void testIndexOf() {
         buffer.clear();
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.StringUtil;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ByteBufUtilTest {
+
+    @Test
+    public void testPrettyHexDump() {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes("--".getBytes(CharsetUtil.US_ASCII));
+        buf.writeBytes("0123456789abcdef".getBytes(CharsetUtil.US_ASCII));
+        buf.writeBytes(new byte[] { 0, 'x', (byte) 0xff });
+        // The dump starts at the reader index.
+        buf.skipBytes(2);
+
+        String nl = StringUtil.NEWLINE;
+        String expected =
+                nl + "         +-------------------------------------------------+" +
+                nl + "         |  0  1  2  3  4  5  6  7  8  9  a  b  c  d  e  f |" +
+                nl + "+--------+-------------------------------------------------+----------------+" +
+                nl + "|00000000| 30 31 32 33 34 35 36 37 38 39 61 62 63 64 65 66 |0123456789abcdef|" +
+                nl + "|00000010| 00 78 ff                                        |.x.             |" +
+                nl + "+--------+-------------------------------------------------+----------------+";
+        assertEquals(expected, ByteBufUtil.prettyHexDump(buf));
+        assertEquals("", ByteBufUtil.prettyHexDump(buf, 0, 0));
+        assertTrue(ByteBufUtil.prettyHexDumpLength(buf.readableBytes()) >= expected.length());
+        buf.release();
+    }
+
+    @Test
+    public void testIsUtf8() {
+        assertUtf8(true);
+        assertUtf8(true, 'a', 'b', 'c');
+        assertUtf8(true, 0xC2, 0x80);                   // U+0080
+        assertUtf8(true, 0xDF, 0xBF);                   // U+07FF
+        assertUtf8(true, 0xE0, 0xA0, 0x80);             // U+0800
+        assertUtf8(true, 0xED, 0x9F, 0xBF);             // U+D7FF
+        assertUtf8(true, 0xEE, 0x80, 0x80);             // U+E000
+        assertUtf8(true, 0xEF, 0xBF, 0xBF);             // U+FFFF
+        assertUtf8(true, 0xF0, 0x90, 0x80, 0x80);       // U+10000
+        assertUtf8(true, 0xF4, 0x8F, 0xBF, 0xBF);       // U+10FFFF
+
+        assertUtf8(false, 0x80);                        // Continuation byte
+        assertUtf8(false, 0xC0, 0xAF);                  // Overlong
+        assertUtf8(false, 0xC1, 0xBF);                  // Overlong
+        assertUtf8(false, 0xE0, 0x9F, 0xBF);            // Overlong
+        assertUtf8(false, 0xED, 0xA0, 0x80);            // Surrogate
+        assertUtf8(false, 0xF0, 0x8F, 0xBF, 0xBF);      // Overlong
+        assertUtf8(false, 0xF4, 0x90, 0x80, 0x80);      // Above U+10FFFF
+        assertUtf8(false, 0xF5, 0x80, 0x80, 0x80);
+        assertUtf8(false, 0xFF);
+        assertUtf8(false, 'a', 0xC2);                   // Truncated
+        assertUtf8(false, 0xE2, 0x82);                  // Truncated
+        assertUtf8(false, 0xE2, 0x28, 0xA1);            // Not a continuation byte
+    }
+
+    private static void assertUtf8(boolean expected, int... bytes) {
+        ByteBuf buf = Unpooled.buffer(bytes.length + 16);
+        buf.writeBytes("abcdefgh".getBytes(CharsetUtil.US_ASCII));
+        for (int b: bytes) {
+            buf.writeByte(b);
+        }
+        buf.writeBytes("abcdefgh".getBytes(CharsetUtil.US_ASCII));
+        assertEquals(expected, ByteBufUtil.isUtf8(buf));
+        buf.release();
+    }
+
+    @Test
+    public void testIsUtf8Random() {
+        Random random = new Random(42);
+        CharsetDecoder decoder = CharsetUtil.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        for (int i = 0; i < 10000; i ++) {
+            byte[] bytes = new byte[random.nextInt(24)];
+            for (int j = 0; j < bytes.length; j ++) {
+                // Mostly ASCII with a few lead and continuation bytes
+                int r = random.nextInt(16);
+                bytes[j] = (byte) (r < 10 ? random.nextInt(128) : r < 13 ? 0x80 + random.nextInt(64)
+                                                                     : 0xC0 + random.nextInt(64));
+            }
+
+            boolean expected;
+            try {
+                decoder.reset().decode(ByteBuffer.wrap(bytes));
+                expected = true;
+            } catch (CharacterCodingException ignored) {
+                expected = false;
+            }
+            ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+            assertEquals(ByteBufUtil.hexDump(bytes), expected, ByteBufUtil.isUtf8(buf));
+            assertEquals(ByteBufUtil.hexDump(bytes), expected, ByteBufUtil.isUtf8(buf.order(ByteOrder.LITTLE_ENDIAN)));
+        }
+    }
+
+    @Test
+    public void testWriteUtf8() {
+        String[] strings = {
+            "", "netty", "caf\u00e9", "\u20ac100", "\ud83d\ude00 smile", "lone \ud800 high", "lone \udc00 low",
+            "trailing \ud83d", "\u07ff\u0800\uffff\u0080\u007f",
+        };
+        for (String s: strings) {
+            byte[] expected = s.getBytes(CharsetUtil.UTF_8);
+            assertEquals(s, expected.length, ByteBufUtil.utf8Length(s));
+            for (ByteBuf buf: new ByteBuf[] {
+                    Unpooled.buffer(1), Unpooled.directBuffer(1), Unpooled.buffer(1).order(ByteOrder.LITTLE_ENDIAN)}) {
+                buf.writeByte('x');
+                assertEquals(expected.length, ByteBufUtil.writeUtf8(buf, new StringBuilder(s)));
+                byte[] actual = new byte[buf.readableBytes() - 1];
+                buf.getBytes(1, actual);
+                assertArrayEquals(s, expected, actual);
+                buf.release();
+            }
+
+            ByteBuf buf = ByteBufUtil.writeUtf8(UnpooledByteBufAllocator.DEFAULT, s);
+            assertEquals(expected.length, buf.capacity());
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testWriteAscii() {
+        String s = "ascii \u00ff \u0100";
+        for (ByteBuf buf: new ByteBuf[] { Unpooled.buffer(1), Unpooled.directBuffer(1) }) {
+            assertEquals(s.length(), ByteBufUtil.writeAscii(buf, s));
+            assertEquals(s.length(), buf.readableBytes());
+            assertEquals(new String(s.getBytes(CharsetUtil.ISO_8859_1), CharsetUtil.ISO_8859_1),
+                         ByteBufUtil.decodeAscii(buf, buf.readerIndex(), buf.readableBytes()));
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testDecodeUtf8Random() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i ++) {
+            byte[] bytes = new byte[random.nextInt(24)];
+            for (int j = 0; j < bytes.length; j ++) {
+                // Mostly ASCII with a few lead and continuation bytes
+                int r = random.nextInt(16);
+                bytes[j] = (byte) (r < 10 ? random.nextInt(128) : r < 13 ? 0x80 + random.nextInt(64)
+                                                                     : 0xC0 + random.nextInt(64));
+            }
+
+            String expected = new String(bytes, CharsetUtil.UTF_8);
+            ByteBuf heap = Unpooled.wrappedBuffer(bytes);
+            ByteBuf direct = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+            assertEquals(ByteBufUtil.hexDump(bytes), expected, ByteBufUtil.decodeUtf8(heap, 0, bytes.length));
+            assertEquals(ByteBufUtil.hexDump(bytes), expected, ByteBufUtil.decodeUtf8(direct, 0, bytes.length));
+            assertEquals(ByteBufUtil.hexDump(bytes), expected, direct.toString(CharsetUtil.UTF_8));
+            direct.release();
+        }
+    }
+
+    @Test
+    public void testUtf8RoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i ++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(32); j > 0; j --) {
+                sb.appendCodePoint(random.nextInt(4) == 0 ? random.nextInt(Character.MAX_CODE_POINT)
+                                                          : random.nextInt(0x800));
+            }
+            String s = sb.toString();
+            ByteBuf buf = Unpooled.directBuffer();
+            ByteBufUtil.writeUtf8(buf, s);
+            assertArrayEquals(s.getBytes(CharsetUtil.UTF_8), toByteArray(buf));
+            assertEquals(new String(s.getBytes(CharsetUtil.UTF_8), CharsetUtil.UTF_8),
+                         ByteBufUtil.decodeUtf8(buf, buf.readerIndex(), buf.readableBytes()));
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testIndexOfRandom() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i ++) {
+            byte[] bytes = new byte[random.nextInt(40)];
+            for (int j = 0; j < bytes.length; j ++) {
+                // Few distinct values so that there are matches at every position of a word.
+                bytes[j] = (byte) (random.nextInt(6) * 0x3F);
+            }
+            for (ByteBuf buf: newBuffers(bytes)) {
+                for (int from = 0; from <= bytes.length; from += 3) {
+                    for (int k = 0; k < 6; k ++) {
+                        byte value = (byte) (k * 0x3F);
+                        assertEquals(naiveIndexOf(bytes, from, value, value), buf.indexOf(from, bytes.length, value));
+                        byte other = (byte) (value ^ 0x80);
+                        assertEquals(naiveIndexOf(bytes, from, value, other),
+                                ByteBufUtil.indexOfAny(buf, from, bytes.length, value, other));
+                    }
+                }
+                assertEquals(naiveIndexOf(bytes, 0, (byte) '\r', (byte) '\n'),
+                        buf.forEachByte(ByteBufProcessor.FIND_CRLF));
+                assertEquals(naiveIndexOf(bytes, 0, (byte) 0, (byte) 0), buf.forEachByte(ByteBufProcessor.FIND_NUL));
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    public void testIndexOfLimits() {
+        ByteBuf buf = Unpooled.copiedBuffer("0123456789abcdef\n", CharsetUtil.US_ASCII);
+        assertEquals(16, buf.indexOf(0, 17, (byte) '\n'));
+        assertEquals(-1, buf.indexOf(0, 16, (byte) '\n'));
+        assertEquals(-1, buf.indexOf(10, 10, (byte) 'a'));
+        assertEquals(10, buf.indexOf(-5, 100, (byte) 'a'));
+        assertEquals(-1, ByteBufUtil.indexOfAny(buf, 0, 17));
+        assertEquals(8, buf.bytesBefore(8, 9, (byte) '\n'));
+        buf.release();
+    }
+
+    @Test
+    public void testIndexOfNeedle() {
+        ByteBuf haystack = Unpooled.copiedBuffer("abcabdabcabcabe", CharsetUtil.US_ASCII);
+        assertEquals(0, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abc", CharsetUtil.US_ASCII), haystack));
+        assertEquals(12, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abe", CharsetUtil.US_ASCII), haystack));
+        assertEquals(3, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abdabc", CharsetUtil.US_ASCII), haystack));
+        assertEquals(-1, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abef", CharsetUtil.US_ASCII), haystack));
+        assertEquals(0, ByteBufUtil.indexOf(Unpooled.EMPTY_BUFFER, haystack));
+        haystack.skipBytes(1);
+        assertEquals(6, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abc", CharsetUtil.US_ASCII), haystack));
+        haystack.release();
+    }
+
+    private static ByteBuf[] newBuffers(byte[] bytes) {
+        ByteBuf direct = Unpooled.directBuffer(bytes.length + 1).writeBytes(bytes);
+        ByteBuf pooled = PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length + 3).writeZero(3).writeBytes(bytes);
+        int half = bytes.length / 2;
+        ByteBuf composite = Unpooled.wrappedBuffer(
+                Unpooled.copiedBuffer(bytes, 0, half), Unpooled.wrappedBuffer(new byte[0]),
+                Unpooled.directBuffer(bytes.length - half).writeBytes(bytes, half, bytes.length - half));
+        return new ByteBuf[] {
+                Unpooled.copiedBuffer(bytes),
+                direct,
+                pooled.slice(3, bytes.length),
+                composite,
+                Unpooled.wrappedBuffer(ByteBuffer.wrap(bytes).asReadOnlyBuffer()),
+        };
+    }
+
+    private static int naiveIndexOf(byte[] bytes, int from, byte a, byte b) {
+        for (int i = from; i < bytes.length; i ++) {
+            if (bytes[i] == a || bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] toByteArray(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorLagMonitor;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which responses {@link HttpContentCompressor} compresses and how hard.  An instance is immutable and thus
+ * can be shared by all channels.
+ * <p>
+ * The {@code "Content-Type"} of a response is matched against the allowed and the denied media types.  An entry is
+ * either a full media type such as {@code application/json} or a type wildcard such as {@code text/*}, and the
+ * parameters of the content type are ignored.  A response is compressed if it is not denied and either the list of
+ * the allowed media types is empty or it is allowed.  A response without a {@code "Content-Type"} is compressed
+ * only if the list of the allowed media types is empty.
+ * <p>
+ * If a maximum lag is specified, the compression level is lowered to the reduced compression level while the
+ * scheduling lag of the event loop, as measured by {@link EventExecutorLagMonitor}, exceeds the maximum lag, so that
+ * compression does not add to the latency of an overloaded event loop.  A reduced compression level of {@code 0}
+ * disables compression until the event loop catches up.
+ */
+public class HttpCompressionPolicy {
+
+    private static final String[] EMPTY_STRINGS = new String[0];
+
+    /**
+     * The media types denied by the default policy.  They are already compressed and thus do not shrink further.
+     */
+    private static final String[] DEFAULT_DENIED_CONTENT_TYPES = {
+        "image/png", "image/jpeg", "image/gif", "image/webp", "video/*", "audio/*",
+        "application/zip", "application/gzip", "application/x-gzip", "application/x-bzip2",
+        "application/x-xz", "application/x-7z-compressed", "application/x-rar-compressed",
+        "font/woff", "font/woff2", "application/font-woff",
+    };
+
+    /**
+     * Denies the media types which are usually compressed already and never lowers the compression level.
+     */
+    public static final HttpCompressionPolicy DEFAULT = new HttpCompressionPolicy();
+
+    private final String[] allowedContentTypes;
+    private final String[] deniedContentTypes;
+    private final long maxLagNanos;
+    private final int reducedCompressionLevel;
+
+    /**
+     * Creates a new policy which denies the media types which are usually compressed already.
+     */
+    public HttpCompressionPolicy() {
+        this(EMPTY_STRINGS, DEFAULT_DENIED_CONTENT_TYPES);
+    }
+
+    /**
+     * Creates a new policy which never lowers the compression level.
+     *
+     * @param allowedContentTypes the media types to compress, or an empty array to compress any media type
+     * @param deniedContentTypes  the media types not to compress
+     */
+    public HttpCompressionPolicy(String[] allowedContentTypes, String[] deniedContentTypes) {
+        this(allowedContentTypes, deniedContentTypes, 0, TimeUnit.MILLISECONDS, 0);
+    }
+
+    /**
+     * Creates a new policy.
+     *
+     * @param allowedContentTypes     the media types to compress, or an empty array to compress any media type
+     * @param deniedContentTypes      the media types not to compress
+     * @param maxLag                  the scheduling lag of the event loop above which the compression level is
+     *                                lowered, or {@code 0} to never lower it
+     * @param unit                    the {@link TimeUnit} of {@code maxLag}
+     * @param reducedCompressionLevel the compression level to use while the event loop lags behind, or {@code 0} not
+     *                                to compress at all
+     */
+    public HttpCompressionPolicy(
+            String[] allowedContentTypes, String[] deniedContentTypes,
+            long maxLag, TimeUnit unit, int reducedCompressionLevel) {
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (maxLag < 0) {
+            throw new IllegalArgumentException("maxLag: " + maxLag + " (expected: >= 0)");
+        }
+        if (reducedCompressionLevel < 0 || reducedCompressionLevel > 9) {
+            throw new IllegalArgumentException(
+                    "reducedCompressionLevel: " + reducedCompressionLevel + " (expected: 0-9)");
+        }
+        this.allowedContentTypes = normalize(allowedContentTypes, "allowedContentTypes");
+        this.deniedContentTypes = normalize(deniedContentTypes, "deniedContentTypes");
+        maxLagNanos = unit.toNanos(maxLag);
+        this.reducedCompressionLevel = reducedCompressionLevel;
+    }
+
+    private static String[] normalize(String[] contentTypes, String name) {
+        if (contentTypes == null) {
+            throw new NullPointerException(name);
+        }
+        String[] normalized = new String[contentTypes.length];
+        for (int i = 0; i < contentTypes.length; i ++) {
+            String contentType = contentTypes[i];
+            if (contentType == null) {
+                throw new NullPointerException(name + '[' + i + ']');
+            }
+            normalized[i] = mediaType(contentType);
+        }
+        return normalized;
+    }
+
+    private static String mediaType(CharSequence contentType) {
+        String mediaType = contentType.toString();
+        int semicolon = mediaType.indexOf(';');
+        if (semicolon >= 0) {
+            mediaType = mediaType.substring(0, semicolon);
+        }
+        return mediaType.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Returns {@code true} if and only if a response with the specified {@code "Content-Type"} should be compressed.
+     *
+     * @param contentType the value of the {@code "Content-Type"} header, or {@code null} if absent
+     */
+    public boolean isCompressible(CharSequence contentType) {
+        if (contentType == null) {
+            return allowedContentTypes.length == 0;
+        }
+
+        String mediaType = mediaType(contentType);
+        if (matches(deniedContentTypes, mediaType)) {
+            return false;
+        }
+        return allowedContentTypes.length == 0 || matches(allowedContentTypes, mediaType);
+    }
+
+    private static boolean matches(String[] patterns, String mediaType) {
+        for (String p: patterns) {
+            if (p.endsWith("/*")) {
+                if (mediaType.length() > p.length() - 1 && mediaType.startsWith(p.substring(0, p.length() - 1))) {
+                    return true;
+                }
+            } else if (p.equals(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the compression level to use for a response written from the specified event loop.
+     *
+     * @param compressionLevel the configured compression level
+     *
+     * @return the compression level to use, or {@code 0} not to compress the response
+     */
+    public int compressionLevel(EventExecutor executor, int compressionLevel) {
+        if (maxLagNanos == 0 || compressionLevel <= reducedCompressionLevel) {
+            return compressionLevel;
+        }
+        return lagNanos(executor) > maxLagNanos ? reducedCompressionLevel : compressionLevel;
+    }
+
+    /**
+     * Returns the current scheduling lag of the specified event loop in nanoseconds.
+     */
+    protected long lagNanos(EventExecutor executor) {
+        return EventExecutorLagMonitor.get(executor).lagNanos();
+    }
+}
@@ -15,6 +15,8 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
@@ -26,12 +28,22 @@ import io.netty.util.internal.StringUtil;
  * If there is no matching encoding, no compression is done.  For more
  * information on how this handler modifies the message, please refer to
  * {@link HttpContentEncoder}.
+ * <p>
+ * A compressor created with a {@link HttpCompressionPolicy} skips the responses smaller than the content size
+ * threshold and the responses whose {@code "Content-Type"} the policy denies, and lowers the compression level while
+ * the event loop is overloaded.  Additional content codings can be registered with
+ * {@link HttpContentEncodingFactory}s.  They are preferred over {@code gzip} and {@code deflate} when the client
+ * accepts them explicitly; among themselves, the one with the highest quality value wins, and the one registered
+ * first wins a tie.
  */
 public class HttpContentCompressor extends HttpContentEncoder {
 
     private final int compressionLevel;
     private final int windowBits;
     private final int memLevel;
+    private final HttpCompressionPolicy policy;
+    private final HttpContentEncodingFactory[] encodingFactories;
+    private ChannelHandlerContext ctx;
 
     /**
      * Creates a new handler with the default compression level (<tt>6</tt>),
@@ -74,6 +86,43 @@ public class HttpContentCompressor extends HttpContentEncoder {
      *        at the expense of memory usage.  The default value is {@code 8}
      */
     public HttpContentCompressor(int compressionLevel, int windowBits, int memLevel) {
+        this(compressionLevel, windowBits, memLevel, 0, null);
+    }
+
+    /**
+     * Creates a new handler with the specified compression level, window size, memory level, content size threshold,
+     * compression policy and additional content codings.
+     *
+     * @param compressionLevel
+     *        {@code 1} yields the fastest compression and {@code 9} yields the
+     *        best compression.  {@code 0} means no compression.  The default
+     *        compression level is {@code 6}.
+     * @param windowBits
+     *        The base two logarithm of the size of the history buffer.  The
+     *        value should be in the range {@code 9} to {@code 15} inclusive.
+     *        Larger values result in better compression at the expense of
+     *        memory usage.  The default value is {@code 15}.
+     * @param memLevel
+     *        How much memory should be allocated for the internal compression
+     *        state.  {@code 1} uses minimum memory and {@code 9} uses maximum
+     *        memory.  Larger values result in better and faster compression
+     *        at the expense of memory usage.  The default value is {@code 8}
+     * @param contentSizeThreshold
+     *        The minimum size of the content to compress in bytes.  {@code 0}
+     *        compresses the content of any size.
+     * @param policy
+     *        The {@link HttpCompressionPolicy} which decides which content types
+     *        are compressed and adapts the compression level to the load of the
+     *        event loop, or {@code null} to compress any content type at the
+     *        specified compression level.
+     * @param encodingFactories
+     *        The content codings to choose in addition to {@code gzip} and
+     *        {@code deflate}.
+     */
+    public HttpContentCompressor(
+            int compressionLevel, int windowBits, int memLevel, int contentSizeThreshold,
+            HttpCompressionPolicy policy, HttpContentEncodingFactory... encodingFactories) {
+        super(contentSizeThreshold);
         if (compressionLevel < 0 || compressionLevel > 9) {
             throw new IllegalArgumentException(
                     "compressionLevel: " + compressionLevel +
@@ -90,6 +139,22 @@ public class HttpContentCompressor extends HttpContentEncoder {
         this.compressionLevel = compressionLevel;
         this.windowBits = windowBits;
         this.memLevel = memLevel;
+        this.policy = policy;
+        if (encodingFactories == null) {
+            throw new NullPointerException("encodingFactories");
+        }
+        this.encodingFactories = encodingFactories.clone();
+        for (int i = 0; i < this.encodingFactories.length; i ++) {
+            if (this.encodingFactories[i] == null) {
+                throw new NullPointerException("encodingFactories[" + i + ']');
+            }
+        }
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
     }
 
     @Override
@@ -100,6 +165,26 @@ public class HttpContentCompressor extends HttpContentEncoder {
             return null;
         }
 
+        int compressionLevel = this.compressionLevel;
+        if (policy != null) {
+            if (!policy.isCompressible(headers.headers().get(HttpHeaders.Names.CONTENT_TYPE))) {
+                return null;
+            }
+            if (ctx != null) {
+                compressionLevel = policy.compressionLevel(ctx.executor(), compressionLevel);
+                if (compressionLevel == 0 && this.compressionLevel != 0) {
+                    // The event loop is too busy to compress.
+                    return null;
+                }
+            }
+        }
+
+        HttpContentEncodingFactory factory = determineEncoding(acceptEncoding);
+        if (factory != null) {
+            ChannelHandler encoder = factory.newEncoder(compressionLevel);
+            return new Result(factory.contentEncoding(), new EmbeddedChannel(encoder));
+        }
+
         ZlibWrapper wrapper = determineWrapper(acceptEncoding);
         if (wrapper == null) {
             return null;
@@ -123,6 +208,56 @@ public class HttpContentCompressor extends HttpContentEncoder {
                         wrapper, compressionLevel, windowBits, memLevel)));
     }
 
+    /**
+     * Returns the registered {@link HttpContentEncodingFactory} which the client accepts explicitly with the highest
+     * quality value, or {@code null} if there is none, in which case {@link #determineWrapper(CharSequence)} is used.
+     */
+    protected HttpContentEncodingFactory determineEncoding(CharSequence acceptEncoding) {
+        if (encodingFactories.length == 0) {
+            return null;
+        }
+
+        HttpContentEncodingFactory match = null;
+        float matchQ = 0.0f;
+        for (String encoding: StringUtil.split(acceptEncoding.toString(), ',')) {
+            float q = 1.0f;
+            String name = encoding;
+            int semicolonPos = encoding.indexOf(';');
+            if (semicolonPos != -1) {
+                name = encoding.substring(0, semicolonPos);
+                int equalsPos = encoding.indexOf('=', semicolonPos);
+                if (equalsPos != -1) {
+                    try {
+                        q = Float.valueOf(encoding.substring(equalsPos + 1));
+                    } catch (NumberFormatException e) {
+                        // Ignore encoding
+                        q = 0.0f;
+                    }
+                }
+            }
+            name = name.trim();
+            for (HttpContentEncodingFactory f: encodingFactories) {
+                if (f.contentEncoding().equalsIgnoreCase(name)) {
+                    if (q > matchQ || q == matchQ && match != null && indexOf(f) < indexOf(match)) {
+                        match = f;
+                        matchQ = q;
+                    }
+                    break;
+                }
+            }
+        }
+        return match;
+    }
+
+    private int indexOf(HttpContentEncodingFactory factory) {
+        for (int i = 0; i < encodingFactories.length; i ++) {
+            if (encodingFactories[i] == factory) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     protected ZlibWrapper determineWrapper(CharSequence acceptEncoding) {
         float starQ = -1.0f;
         float gzipQ = -1.0f;
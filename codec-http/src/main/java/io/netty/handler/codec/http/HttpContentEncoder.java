@@ -18,13 +18,17 @@ package io.netty.handler.codec.http;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.MessageToMessageCodec;
 import io.netty.handler.codec.http.HttpHeaders.Names;
 import io.netty.handler.codec.http.HttpHeaders.Values;
 import io.netty.util.ReferenceCountUtil;
 
+import java.nio.channels.ClosedChannelException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 
@@ -46,6 +50,15 @@ import java.util.Queue;
  * this class functional.  For example, refer to the source code of
  * {@link HttpContentCompressor}.
  * <p>
+ * If a content size threshold is specified, a response whose content is known to be smaller than the threshold is
+ * passed through without calling {@link #beginEncode(HttpResponse, CharSequence)}.  The size of the content is
+ * determined from the content of a {@link FullHttpResponse} or the {@code "Content-Length"} header.  If neither is
+ * available, the response is held back until its first chunk is written, and the content is encoded unless the first
+ * chunk is also the last one and is smaller than the threshold.  The future of the held back response is notified
+ * when the first chunk is written.  If the channel is flushed before the first chunk is written, as a streaming
+ * response may be, the held back response is written right away and its content is encoded regardless of its
+ * size.
+ * <p>
  * This handler must be placed after {@link HttpObjectEncoder} in the pipeline
  * so that this handler can intercept HTTP responses before {@link HttpObjectEncoder}
  * converts them into {@link ByteBuf}s.
@@ -55,14 +68,46 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
     private enum State {
         PASS_THROUGH,
         AWAIT_HEADERS,
+        AWAIT_FIRST_CONTENT,
         AWAIT_CONTENT
     }
 
+    private final int contentSizeThreshold;
     private final Queue<CharSequence> acceptEncodingQueue = new ArrayDeque<CharSequence>();
     private CharSequence acceptEncoding;
     private EmbeddedChannel encoder;
+    private HttpResponse pendingResponse;
+    private ChannelPromise pendingPromise;
     private State state = State.AWAIT_HEADERS;
 
+    /**
+     * Creates a new instance which encodes the content of any size.
+     */
+    protected HttpContentEncoder() {
+        this(0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param contentSizeThreshold
+     *        the minimum size of the content to encode in bytes.  {@code 0} encodes the content of any size.
+     */
+    protected HttpContentEncoder(int contentSizeThreshold) {
+        if (contentSizeThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "contentSizeThreshold: " + contentSizeThreshold + " (expected: >= 0)");
+        }
+        this.contentSizeThreshold = contentSizeThreshold;
+    }
+
+    /**
+     * Returns the minimum size of the content to encode in bytes.
+     */
+    public int contentSizeThreshold() {
+        return contentSizeThreshold;
+    }
+
     @Override
     public boolean acceptOutboundMessage(Object msg) throws Exception {
         return msg instanceof HttpContent || msg instanceof HttpResponse;
@@ -79,6 +124,78 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
         out.add(ReferenceCountUtil.retain(msg));
     }
 
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        switch (state) {
+            case AWAIT_HEADERS:
+                if (isLengthUnknown(msg)) {
+                    // Hold back the response until its first chunk tells if the content is worth encoding.
+                    acceptEncoding = pollAcceptEncoding();
+                    pendingResponse = (HttpResponse) msg;
+                    pendingPromise = promise;
+                    state = State.AWAIT_FIRST_CONTENT;
+                    return;
+                }
+                break;
+            case AWAIT_FIRST_CONTENT:
+                if (msg instanceof HttpContent) {
+                    // The held back response is written along with its first chunk.
+                    if (promise == ctx.voidPromise()) {
+                        promise = ctx.newPromise();
+                    }
+                    promise.addListener(new ChannelPromiseNotifier(pendingPromise));
+                    pendingPromise = null;
+                } else {
+                    // Something other than the content follows, such as a FileRegion.  Write the held back response
+                    // as it is and pass through the rest of the response.
+                    HttpResponse res = pendingResponse;
+                    ChannelPromise resPromise = pendingPromise;
+                    pendingResponse = null;
+                    pendingPromise = null;
+                    state = State.PASS_THROUGH;
+                    ctx.write(res, resPromise);
+                }
+                break;
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (state == State.AWAIT_FIRST_CONTENT) {
+            // The response has to reach the peer before its content is known, so decide from the headers only.
+            HttpResponse res = pendingResponse;
+            ChannelPromise promise = pendingPromise;
+            pendingResponse = null;
+            pendingPromise = null;
+            List<Object> out = new ArrayList<Object>(1);
+            if (startEncode(res, false, out)) {
+                state = State.AWAIT_CONTENT;
+            } else {
+                passThrough(res, false, out);
+            }
+            ctx.write(out.get(0), promise);
+        }
+        ctx.flush();
+    }
+
+    private boolean isLengthUnknown(Object msg) {
+        if (contentSizeThreshold == 0 || !(msg instanceof HttpResponse) || msg instanceof HttpContent) {
+            return false;
+        }
+        HttpResponse res = (HttpResponse) msg;
+        return res.getStatus().code() != 100 && HttpHeaders.getContentLength(res, -1) < 0;
+    }
+
+    private CharSequence pollAcceptEncoding() {
+        // Get the list of encodings accepted by the peer.
+        CharSequence acceptEncoding = acceptEncodingQueue.poll();
+        if (acceptEncoding == null) {
+            throw new IllegalStateException("cannot send more responses than requests");
+        }
+        return acceptEncoding;
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
         final boolean isFull = msg instanceof HttpResponse && msg instanceof LastHttpContent;
@@ -100,11 +217,7 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
                     break;
                 }
 
-                // Get the list of encodings accepted by the peer.
-                acceptEncoding = acceptEncodingQueue.poll();
-                if (acceptEncoding == null) {
-                    throw new IllegalStateException("cannot send more responses than requests");
-                }
+                acceptEncoding = pollAcceptEncoding();
 
                 if (isFull) {
                     // Pass through the full response with empty content and continue waiting for the the next resp.
@@ -114,40 +227,29 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
                     }
                 }
 
-                // Prepare to encode the content.
-                final Result result = beginEncode(res, acceptEncoding);
-
-                // If unable to encode, pass through.
-                if (result == null) {
+                if (contentSizeThreshold > 0) {
+                    long contentLength;
                     if (isFull) {
-                        out.add(ReferenceCountUtil.retain(res));
+                        contentLength = ((ByteBufHolder) res).content().readableBytes();
                     } else {
-                        out.add(res);
-                        // Pass through all following contents.
-                        state = State.PASS_THROUGH;
+                        contentLength = HttpHeaders.getContentLength(res, -1);
                     }
-                    break;
-                }
 
-                encoder = result.contentEncoder();
-
-                // Encode the content and remove or replace the existing headers
-                // so that the message looks like a decoded message.
-                res.headers().set(Names.CONTENT_ENCODING, result.targetContentEncoding());
+                    if (contentLength >= 0 && contentLength < contentSizeThreshold) {
+                        // Too small to be worth encoding.
+                        passThrough(res, isFull, out);
+                        break;
+                    }
+                }
 
-                // Make the response chunked to simplify content transformation.
-                res.headers().remove(Names.CONTENT_LENGTH);
-                res.headers().set(Names.TRANSFER_ENCODING, Values.CHUNKED);
+                // Prepare to encode the content.  If unable to encode, pass through.
+                if (!startEncode(res, isFull, out)) {
+                    passThrough(res, isFull, out);
+                    break;
+                }
 
-                // Output the rewritten response.
-                if (isFull) {
-                    // Convert full message into unfull one.
-                    HttpResponse newRes = new DefaultHttpResponse(res.getProtocolVersion(), res.getStatus());
-                    newRes.headers().set(res.headers());
-                    out.add(newRes);
-                    // Fall through to encode the content of the full response.
-                } else {
-                    out.add(res);
+                // Fall through to encode the content of the full response.
+                if (!isFull) {
                     state = State.AWAIT_CONTENT;
                     if (!(msg instanceof HttpContent)) {
                         // only break out the switch statement if we have not content to process
@@ -173,6 +275,70 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
                 }
                 break;
             }
+            case AWAIT_FIRST_CONTENT: {
+                ensureContent(msg);
+                final HttpResponse res = pendingResponse;
+                pendingResponse = null;
+
+                final boolean tooSmall = msg instanceof LastHttpContent &&
+                        ((HttpContent) msg).content().readableBytes() < contentSizeThreshold;
+                if (tooSmall || !startEncode(res, false, out)) {
+                    out.add(res);
+                    out.add(ReferenceCountUtil.retain(msg));
+                    state = msg instanceof LastHttpContent ? State.AWAIT_HEADERS : State.PASS_THROUGH;
+                    break;
+                }
+
+                state = State.AWAIT_CONTENT;
+                if (encodeContent((HttpContent) msg, out)) {
+                    state = State.AWAIT_HEADERS;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Calls {@link #beginEncode(HttpResponse, CharSequence)} and outputs the rewritten response if the content is
+     * going to be encoded.
+     *
+     * @return {@code false} if the content should be passed through, in which case nothing is written to {@code out}
+     */
+    private boolean startEncode(HttpResponse res, boolean isFull, List<Object> out) throws Exception {
+        final Result result = beginEncode(res, acceptEncoding);
+        if (result == null) {
+            return false;
+        }
+
+        encoder = result.contentEncoder();
+
+        // Encode the content and remove or replace the existing headers
+        // so that the message looks like a decoded message.
+        res.headers().set(Names.CONTENT_ENCODING, result.targetContentEncoding());
+
+        // Make the response chunked to simplify content transformation.
+        res.headers().remove(Names.CONTENT_LENGTH);
+        res.headers().set(Names.TRANSFER_ENCODING, Values.CHUNKED);
+
+        // Output the rewritten response.
+        if (isFull) {
+            // Convert full message into unfull one.
+            HttpResponse newRes = new DefaultHttpResponse(res.getProtocolVersion(), res.getStatus());
+            newRes.headers().set(res.headers());
+            out.add(newRes);
+        } else {
+            out.add(res);
+        }
+        return true;
+    }
+
+    private void passThrough(HttpResponse res, boolean isFull, List<Object> out) {
+        if (isFull) {
+            out.add(ReferenceCountUtil.retain(res));
+        } else {
+            out.add(res);
+            // Pass through all following contents.
+            state = State.PASS_THROUGH;
         }
     }
 
@@ -232,17 +398,23 @@ public abstract class HttpContentEncoder extends MessageToMessageCodec<HttpReque
 
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
-        cleanup();
+        cleanup(new IllegalStateException("handler removed before the response content was written"));
         super.handlerRemoved(ctx);
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        cleanup();
+        cleanup(new ClosedChannelException());
         super.channelInactive(ctx);
     }
 
-    private void cleanup() {
+    private void cleanup(Throwable cause) {
+        if (pendingPromise != null) {
+            // The held back response will never be written.
+            pendingPromise.tryFailure(cause);
+            pendingPromise = null;
+        }
+        pendingResponse = null;
         if (encoder != null) {
             // Clean-up the previous encoder if not cleaned up correctly.
             if (encoder.finish()) {
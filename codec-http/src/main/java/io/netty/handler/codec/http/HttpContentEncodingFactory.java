@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+
+/**
+ * Creates the encoders of a content coding which {@link HttpContentCompressor} can choose in addition to
+ * {@code gzip} and {@code deflate}, such as {@code br}.
+ */
+public interface HttpContentEncodingFactory {
+
+    /**
+     * Returns the name of the content coding, as it appears in the {@code "Accept-Encoding"} and
+     * {@code "Content-Encoding"} headers.
+     */
+    String contentEncoding();
+
+    /**
+     * Creates a new handler which encodes the {@link ByteBuf}s of a single response.  The handler is placed in an
+     * {@link io.netty.channel.embedded.EmbeddedChannel} which is finished at the end of the response.
+     *
+     * @param compressionLevel
+     *        {@code 1} yields the fastest compression and {@code 9} yields the best compression.  A coding with
+     *        fewer levels should map this value to its own levels.
+     */
+    ChannelHandler newEncoder(int compressionLevel);
+}
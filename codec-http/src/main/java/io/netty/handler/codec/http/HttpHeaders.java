@@ -16,6 +16,7 @@
 package io.netty.handler.codec.http;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 import java.text.ParseException;
 import java.util.Calendar;
@@ -349,6 +350,10 @@ public abstract class HttpHeaders implements Iterable<Map.Entry<String, String>>
          * {@code "Sec-WebSocket-Accept"}
          */
         public static final CharSequence SEC_WEBSOCKET_ACCEPT = newEntity("Sec-WebSocket-Accept");
+        /**
+         * {@code "Sec-WebSocket-Extensions"}
+         */
+        public static final CharSequence SEC_WEBSOCKET_EXTENSIONS = newEntity("Sec-WebSocket-Extensions");
         /**
          * {@code "Server"}
          */
@@ -1250,10 +1255,7 @@ public abstract class HttpHeaders implements Iterable<Map.Entry<String, String>>
     }
 
     static void encodeAscii0(CharSequence seq, ByteBuf buf) {
-        int length = seq.length();
-        for (int i = 0 ; i < length; i++) {
-            buf.writeByte((byte) seq.charAt(i));
-        }
+        ByteBufUtil.writeAscii(buf, seq);
     }
 
     /**
@@ -16,6 +16,7 @@
 package io.netty.handler.codec.http;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufProcessor;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
@@ -610,30 +611,34 @@ public abstract class HttpObjectDecoder extends ReplayingDecoder<HttpObjectDecod
     private AppendableCharSequence readLine(ByteBuf buffer, int maxLineLength) {
         AppendableCharSequence sb = this.sb;
         sb.reset();
-        int lineLength = 0;
-        while (true) {
-            byte nextByte = buffer.readByte();
-            if (nextByte == HttpConstants.CR) {
-                nextByte = buffer.readByte();
-                if (nextByte == HttpConstants.LF) {
-                    return sb;
-                }
-            } else if (nextByte == HttpConstants.LF) {
-                return sb;
-            } else {
-                if (lineLength >= maxLineLength) {
-                    // TODO: Respond with Bad Request and discard the traffic
-                    //    or close the connection.
-                    //       No need to notify the upstream handlers - just log.
-                    //       If decoding a response, just throw an exception.
+
+        // Look for the LF a word at a time, but not further than the longest acceptable line and its CRLF.
+        final int readerIndex = buffer.readerIndex();
+        final int maxLength = (int) Math.min(maxLineLength + 2L, (long) Integer.MAX_VALUE - readerIndex);
+        final int lfIndex = buffer.forEachByte(readerIndex, maxLength, ByteBufProcessor.FIND_LF);
+        if (lfIndex < 0) {
+            // TODO: Respond with Bad Request and discard the traffic
+            //    or close the connection.
+            //       No need to notify the upstream handlers - just log.
+            //       If decoding a response, just throw an exception.
+            throw new TooLongFrameException(
+                    "An HTTP line is larger than " + maxLineLength +
+                    " bytes.");
+        }
+
+        for (int i = readerIndex; i < lfIndex; i ++) {
+            byte nextByte = buffer.getByte(i);
+            if (nextByte != HttpConstants.CR) {
+                if (sb.length() >= maxLineLength) {
                     throw new TooLongFrameException(
                             "An HTTP line is larger than " + maxLineLength +
                             " bytes.");
                 }
-                lineLength ++;
                 sb.append((char) nextByte);
             }
         }
+        buffer.readerIndex(lfIndex + 1);
+        return sb;
     }
 
     private static String[] splitInitialLine(AppendableCharSequence sb) {
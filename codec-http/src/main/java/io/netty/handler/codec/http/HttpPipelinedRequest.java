@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * An {@link HttpRequest} which was received by a {@link HttpPipeliningHandler}, tagged with the sequence number
+ * of the request on its connection.  The responses to this request must be written as the
+ * {@link HttpPipelinedResponse}s created by {@link #response(HttpObject)}, so that they can be sent in the order
+ * the requests were received.
+ */
+public final class HttpPipelinedRequest implements ReferenceCounted {
+
+    private final HttpRequest request;
+    private final int sequence;
+
+    HttpPipelinedRequest(HttpRequest request, int sequence) {
+        this.request = request;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the received {@link HttpRequest}.
+     */
+    public HttpRequest request() {
+        return request;
+    }
+
+    /**
+     * Returns the sequence number of this request on its connection.
+     */
+    public int sequence() {
+        return sequence;
+    }
+
+    /**
+     * Creates a new {@link HttpPipelinedResponse} that carries the specified part of the response to this request.
+     * A response may consist of several parts, the last of which must be a {@link LastHttpContent}.
+     */
+    public HttpPipelinedResponse response(HttpObject response) {
+        return new HttpPipelinedResponse(response, sequence);
+    }
+
+    @Override
+    public int refCnt() {
+        if (request instanceof ReferenceCounted) {
+            return ((ReferenceCounted) request).refCnt();
+        }
+        return 1;
+    }
+
+    @Override
+    public HttpPipelinedRequest retain() {
+        ReferenceCountUtil.retain(request);
+        return this;
+    }
+
+    @Override
+    public HttpPipelinedRequest retain(int increment) {
+        ReferenceCountUtil.retain(request, increment);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return ReferenceCountUtil.release(request);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return ReferenceCountUtil.release(request, decrement);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(sequence: " + sequence + ", request: " + request + ')';
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * A part of the response to a {@link HttpPipelinedRequest}.  Create it with
+ * {@link HttpPipelinedRequest#response(HttpObject)} and write it to the {@link HttpPipeliningHandler}, which
+ * unwraps it and writes the {@link #message()} once all responses to the previous requests have been written.
+ */
+public final class HttpPipelinedResponse implements ReferenceCounted {
+
+    private final HttpObject message;
+    private final int sequence;
+
+    HttpPipelinedResponse(HttpObject message, int sequence) {
+        if (message == null) {
+            throw new NullPointerException("message");
+        }
+        this.message = message;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the wrapped part of the response.
+     */
+    public HttpObject message() {
+        return message;
+    }
+
+    /**
+     * Returns the sequence number of the request this response belongs to.
+     */
+    public int sequence() {
+        return sequence;
+    }
+
+    @Override
+    public int refCnt() {
+        if (message instanceof ReferenceCounted) {
+            return ((ReferenceCounted) message).refCnt();
+        }
+        return 1;
+    }
+
+    @Override
+    public HttpPipelinedResponse retain() {
+        ReferenceCountUtil.retain(message);
+        return this;
+    }
+
+    @Override
+    public HttpPipelinedResponse retain(int increment) {
+        ReferenceCountUtil.retain(message, increment);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return ReferenceCountUtil.release(message);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return ReferenceCountUtil.release(message, decrement);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(sequence: " + sequence + ", message: " + message + ')';
+    }
+}
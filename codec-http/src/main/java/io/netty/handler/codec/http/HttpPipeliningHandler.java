@@ -0,0 +1,245 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.EncoderException;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+/**
+ * Enables HTTP/1.1 request pipelining on the server side by making sure the responses are written in the order
+ * the requests were received, no matter in which order the application completes them.
+ * <p>
+ * Every received {@link HttpRequest} is tagged with a sequence number and passed to the next handler as a
+ * {@link HttpPipelinedRequest}.  The application responds by writing the {@link HttpPipelinedResponse}s created
+ * by {@link HttpPipelinedRequest#response(HttpObject)}, possibly from another thread and in any order.  A response
+ * whose predecessors are not complete yet is held back until they are, and is then written in order.  A response
+ * is complete once its {@link LastHttpContent} has been written.  Any other outbound message passes through as-is.
+ * <p>
+ * Insert this handler after the {@link HttpServerCodec} (and the {@link HttpObjectAggregator} if any):
+ * <pre>
+ * {@link ChannelPipeline} p = ...;
+ * ...
+ * p.addLast("codec", new {@link HttpServerCodec}());
+ * p.addLast("aggregator", new {@link HttpObjectAggregator}(1048576));
+ * p.addLast("pipelining", <b>new {@link HttpPipeliningHandler}(16, 1048576)</b>);
+ * p.addLast("handler", new MyPipelinedRequestHandler());
+ * </pre>
+ * <p>
+ * Two limits keep the resource usage of a connection bounded:
+ * <ul>
+ * <li>{@code maxInFlightRequests} - once this many requests are awaiting their responses,
+ *     {@link ChannelOption#AUTO_READ} is turned off until a response completes.</li>
+ * <li>{@code maxBufferedBytes} - the maximum number of content bytes held back waiting for the previous
+ *     responses.  A write exceeding it fails with an {@link EncoderException} and the connection is closed,
+ *     because the responses cannot be sent in order anymore.</li>
+ * </ul>
+ */
+public class HttpPipeliningHandler extends ChannelHandlerAdapter {
+
+    private final int maxInFlightRequests;
+    private final int maxBufferedBytes;
+    private final Queue<PendingResponse> pendingResponses = new PriorityQueue<PendingResponse>();
+
+    /** The sequence number of the next request to read */
+    private int readSequence;
+    /** The sequence number of the request whose response is written now */
+    private int writeSequence;
+    private long nextPendingOrder;
+    private int bufferedBytes;
+    private boolean suspendedRead;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxInFlightRequests
+     *        the maximum number of requests which await their responses before
+     *        {@link ChannelOption#AUTO_READ} is turned off
+     * @param maxBufferedBytes
+     *        the maximum number of content bytes of the responses that are held
+     *        back until the responses to the previous requests are written
+     */
+    public HttpPipeliningHandler(int maxInFlightRequests, int maxBufferedBytes) {
+        if (maxInFlightRequests <= 0) {
+            throw new IllegalArgumentException(
+                    "maxInFlightRequests: " + maxInFlightRequests + " (expected: > 0)");
+        }
+        if (maxBufferedBytes < 0) {
+            throw new IllegalArgumentException(
+                    "maxBufferedBytes: " + maxBufferedBytes + " (expected: >= 0)");
+        }
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Returns the number of requests which were received but whose responses were not completely written yet.
+     */
+    public int inFlightRequests() {
+        return readSequence - writeSequence;
+    }
+
+    /**
+     * Returns the number of content bytes held back until the responses to the previous requests are written.
+     */
+    public int bufferedBytes() {
+        return bufferedBytes;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof HttpRequest)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        HttpPipelinedRequest req = new HttpPipelinedRequest((HttpRequest) msg, readSequence ++);
+        if (inFlightRequests() >= maxInFlightRequests) {
+            ChannelConfig config = ctx.channel().config();
+            if (config.isAutoRead()) {
+                config.setAutoRead(false);
+                suspendedRead = true;
+            }
+        }
+        ctx.fireChannelRead(req);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof HttpPipelinedResponse)) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        HttpPipelinedResponse res = (HttpPipelinedResponse) msg;
+        int sequence = res.sequence();
+        HttpObject message = res.message();
+        if (sequence == writeSequence) {
+            ctx.write(message, promise);
+            if (message instanceof LastHttpContent) {
+                responseComplete(ctx);
+            }
+            return;
+        }
+
+        if (sequence - writeSequence < 0 || sequence - readSequence >= 0) {
+            ReferenceCountUtil.release(message);
+            promise.setFailure(new IllegalStateException(
+                    "response to an unknown or already completed request: " + sequence +
+                    " (expected: " + writeSequence + " <= sequence < " + readSequence + ')'));
+            return;
+        }
+
+        int size = message instanceof HttpContent ? ((HttpContent) message).content().readableBytes() : 0;
+        if (size > maxBufferedBytes - bufferedBytes) {
+            ReferenceCountUtil.release(message);
+            promise.setFailure(new EncoderException(
+                    "pipelined responses exceeded " + maxBufferedBytes + " buffered bytes"));
+            ctx.close();
+            return;
+        }
+
+        bufferedBytes += size;
+        pendingResponses.add(new PendingResponse(message, sequence, nextPendingOrder ++, size, promise));
+    }
+
+    private void responseComplete(ChannelHandlerContext ctx) {
+        writeSequence ++;
+
+        Queue<PendingResponse> pendingResponses = this.pendingResponses;
+        for (;;) {
+            PendingResponse pending = pendingResponses.peek();
+            if (pending == null || pending.sequence != writeSequence) {
+                break;
+            }
+            pendingResponses.remove();
+            bufferedBytes -= pending.size;
+            ctx.write(pending.message, pending.promise);
+            if (pending.message instanceof LastHttpContent) {
+                writeSequence ++;
+            }
+        }
+
+        if (suspendedRead && inFlightRequests() < maxInFlightRequests) {
+            suspendedRead = false;
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePendingResponses();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releasePendingResponses();
+        super.handlerRemoved(ctx);
+    }
+
+    private void releasePendingResponses() {
+        if (pendingResponses.isEmpty()) {
+            return;
+        }
+
+        ClosedChannelException cause = new ClosedChannelException();
+        for (;;) {
+            PendingResponse pending = pendingResponses.poll();
+            if (pending == null) {
+                break;
+            }
+            ReferenceCountUtil.release(pending.message);
+            pending.promise.tryFailure(cause);
+        }
+        bufferedBytes = 0;
+    }
+
+    private static final class PendingResponse implements Comparable<PendingResponse> {
+        final HttpObject message;
+        final int sequence;
+        final long order;
+        final int size;
+        final ChannelPromise promise;
+
+        PendingResponse(HttpObject message, int sequence, long order, int size, ChannelPromise promise) {
+            this.message = message;
+            this.sequence = sequence;
+            this.order = order;
+            this.size = size;
+            this.promise = promise;
+        }
+
+        @Override
+        public int compareTo(PendingResponse o) {
+            // Compare the difference so that the order is kept when the sequence number wraps around.
+            int diff = sequence - o.sequence;
+            if (diff != 0) {
+                return diff;
+            }
+            return order < o.order ? -1 : order == o.order ? 0 : 1;
+        }
+    }
+}
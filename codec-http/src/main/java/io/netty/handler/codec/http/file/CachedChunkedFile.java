@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link ChunkedInput} over the shared {@link FileChannel} of a {@link CachedFile}.  Unlike
+ * {@link ChunkedNioFile}, it reads with positional reads so that it never moves the position of the shared channel,
+ * and it releases the {@link CachedFile} instead of closing the channel once it is closed.
+ */
+final class CachedChunkedFile implements ChunkedInput<ByteBuf> {
+
+    private final CachedFile file;
+    private final FileChannel channel;
+    private final long endOffset;
+    private final int chunkSize;
+    private long offset;
+    private boolean closed;
+
+    CachedChunkedFile(CachedFile file, FileChannel channel, long offset, long length, int chunkSize) {
+        this.file = file;
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        this.offset = offset;
+        endOffset = offset + length;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return offset >= endOffset;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (!closed) {
+            closed = true;
+            file.release();
+        }
+    }
+
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+        long offset = this.offset;
+        if (offset >= endOffset) {
+            return null;
+        }
+
+        int chunkSize = (int) Math.min(this.chunkSize, endOffset - offset);
+        // Read straight into a (pooled, usually direct) buffer without an intermediate byte array.
+        ByteBuf buffer = ctx.alloc().buffer(chunkSize);
+        boolean release = true;
+        try {
+            ByteBuffer nioBuffer = buffer.nioBuffer(buffer.writerIndex(), chunkSize);
+            int readBytes = 0;
+            while (readBytes < chunkSize) {
+                int localReadBytes = channel.read(nioBuffer, offset + readBytes);
+                if (localReadBytes < 0) {
+                    throw new EOFException(
+                            "file truncated: " + file.file() + " (expected length: " + file.length() + ')');
+                }
+                readBytes += localReadBytes;
+            }
+            buffer.writerIndex(buffer.writerIndex() + chunkSize);
+            this.offset = offset + chunkSize;
+            release = false;
+            return buffer;
+        } finally {
+            if (release) {
+                buffer.release();
+            }
+        }
+    }
+}
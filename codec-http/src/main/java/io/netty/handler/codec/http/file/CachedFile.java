@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A file opened by an {@link OpenFileCache}.  A small file is memory-mapped and its descriptor is closed right
+ * away.  A larger file keeps its {@link FileChannel} open until the cache evicts it and all the transfers that
+ * were started from it are complete, which is tracked by its reference count.
+ */
+public final class CachedFile extends AbstractReferenceCounted {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(CachedFile.class);
+
+    private final File file;
+    private final long length;
+    private final long lastModified;
+    private final String etag;
+    private final FileChannel channel;
+    private final ByteBuffer mapped;
+
+    CachedFile(File file, int maxMappedFileSize) throws IOException {
+        this.file = file;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        boolean success = false;
+        try {
+            FileChannel channel = raf.getChannel();
+            // Get the modification time first so that a concurrent update leads to a new entry on the next lookup.
+            lastModified = file.lastModified();
+            length = channel.size();
+            if (maxMappedFileSize > 0 && length <= maxMappedFileSize) {
+                mapped = channel.map(MapMode.READ_ONLY, 0, length).asReadOnlyBuffer();
+                this.channel = null;
+                // The mapping stays valid after the channel is closed.
+                raf.close();
+            } else {
+                mapped = null;
+                this.channel = channel;
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                raf.close();
+            }
+        }
+
+        etag = new StringBuilder(32).append('"')
+                .append(Long.toHexString(lastModified)).append('-').append(Long.toHexString(length))
+                .append('"').toString();
+    }
+
+    /**
+     * Returns the file this entry was opened from.
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Returns the length of the file at the time it was opened.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the modification time of the file at the time it was opened.
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the strong entity tag derived from the length and the modification time of the file.
+     */
+    public String etag() {
+        return etag;
+    }
+
+    /**
+     * Returns {@code true} if and only if the content of the file is memory-mapped and thus does not hold
+     * a file descriptor.
+     */
+    public boolean isMapped() {
+        return mapped != null;
+    }
+
+    /**
+     * Returns {@code true} if the file was modified since it was opened.
+     */
+    boolean isStale() {
+        return file.lastModified() != lastModified || file.length() != length;
+    }
+
+    /**
+     * Returns a new read-only buffer of the memory-mapped content.  It does not retain this entry because the
+     * mapping is released only once it becomes unreachable.
+     */
+    ByteBuf newContent(long offset, long length) {
+        ByteBuffer mapped = this.mapped.duplicate();
+        mapped.position((int) offset);
+        mapped.limit((int) (offset + length));
+        return Unpooled.wrappedBuffer(mapped.slice());
+    }
+
+    /**
+     * Returns a new {@link FileRegion} that transfers the specified range of the file.  It retains this entry
+     * until the region is released.
+     */
+    FileRegion newFileRegion(long offset, long length) {
+        retain();
+        return new CachedFileRegion(this, channel, offset, length);
+    }
+
+    /**
+     * Returns a new {@link ChunkedInput} that reads the specified range of the file.  It retains this entry until
+     * the input is closed.
+     */
+    ChunkedInput<ByteBuf> newChunkedInput(long offset, long length, int chunkSize) {
+        retain();
+        return new CachedChunkedFile(this, channel, offset, length, chunkSize);
+    }
+
+    @Override
+    protected void deallocate() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Failed to close a file.", e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '(' + file + ", length: " + length + ", mapped: " + isMapped() + ')';
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link FileRegion} over the shared {@link FileChannel} of a {@link CachedFile}.  Unlike
+ * {@link DefaultFileRegion}, it releases the {@link CachedFile} instead of closing the channel once it is released.
+ */
+final class CachedFileRegion extends AbstractReferenceCounted implements FileRegion {
+
+    private final CachedFile file;
+    private final FileChannel channel;
+    private final long position;
+    private final long count;
+    private long transfered;
+
+    CachedFileRegion(CachedFile file, FileChannel channel, long position, long count) {
+        this.file = file;
+        this.channel = channel;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public long transfered() {
+        return transfered;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        long count = this.count - position;
+        if (count < 0 || position < 0) {
+            throw new IllegalArgumentException(
+                    "position out of range: " + position +
+                    " (expected: 0 - " + (this.count - 1) + ')');
+        }
+        if (count == 0) {
+            return 0L;
+        }
+
+        // Use the positional transfer so that the regions sharing the channel do not interfere.
+        long written = channel.transferTo(this.position + position, count, target);
+        if (written > 0) {
+            transfered += written;
+        }
+        return written;
+    }
+
+    @Override
+    protected void deallocate() {
+        file.release();
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.FileRegion;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders.Names;
+import io.netty.handler.codec.http.HttpHeaders.Values;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.CharsetUtil;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+
+/**
+ * Serves the static files under a root directory in response to {@code GET} and {@code HEAD} requests.
+ * <p>
+ * The files are opened through an {@link OpenFileCache}, which can be shared by all the channels.  The content is
+ * transferred with a zero-copy {@link FileRegion} unless the channel is secured by an {@link SslHandler}, in which
+ * case it is read chunk by chunk into pooled buffers as a {@link ChunkedInput}.  The content of a memory-mapped file
+ * is written straight from the mapped memory.
+ * <p>
+ * The {@code ETag}, {@code If-None-Match}, {@code If-Modified-Since}, single {@code Range} and {@code If-Range}
+ * headers are supported.  If enabled, the {@code .gz} sibling of a file is sent with
+ * {@code Content-Encoding: gzip} to the clients which accept it.
+ * <pre>
+ * {@link ChannelPipeline} p = ...;
+ * {@link OpenFileCache} cache = new {@link OpenFileCache}();
+ * ...
+ * p.addLast("codec", new {@link HttpServerCodec}());
+ * p.addLast("aggregator", new {@link HttpObjectAggregator}(65536));
+ * // Only required if SslHandler is in the pipeline.
+ * p.addLast("chunkedWriter", new {@link ChunkedWriteHandler}());
+ * p.addLast("files", <b>new {@link HttpStaticFileHandler}(new File("/var/www"), cache, true)</b>);
+ * </pre>
+ */
+@Sharable
+public class HttpStaticFileHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<String, String>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=UTF-8");
+        CONTENT_TYPES.put("htm", "text/html; charset=UTF-8");
+        CONTENT_TYPES.put("css", "text/css; charset=UTF-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=UTF-8");
+        CONTENT_TYPES.put("json", "application/json; charset=UTF-8");
+        CONTENT_TYPES.put("txt", "text/plain; charset=UTF-8");
+        CONTENT_TYPES.put("xml", "application/xml; charset=UTF-8");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("pdf", "application/pdf");
+        CONTENT_TYPES.put("zip", "application/zip");
+        CONTENT_TYPES.put("gz", "application/gzip");
+        CONTENT_TYPES.put("woff", "application/font-woff");
+        CONTENT_TYPES.put("mp4", "video/mp4");
+    }
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final String GZIP_SUFFIX = ".gz";
+    static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+    private final File root;
+    private final OpenFileCache cache;
+    private final boolean servePrecompressed;
+    private final int chunkSize;
+
+    /**
+     * Creates a new instance with a new {@link OpenFileCache} and without serving precompressed files.
+     */
+    public HttpStaticFileHandler(File root) {
+        this(root, new OpenFileCache(), false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param root               the directory to serve the files from
+     * @param cache              the cache to open the files through
+     * @param servePrecompressed {@code true} to send the {@code .gz} sibling of a file if the client accepts it
+     */
+    public HttpStaticFileHandler(File root, OpenFileCache cache, boolean servePrecompressed) {
+        this(root, cache, servePrecompressed, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param root               the directory to serve the files from
+     * @param cache              the cache to open the files through
+     * @param servePrecompressed {@code true} to send the {@code .gz} sibling of a file if the client accepts it
+     * @param chunkSize          the number of bytes to read at once when a {@link FileRegion} cannot be used
+     */
+    public HttpStaticFileHandler(File root, OpenFileCache cache, boolean servePrecompressed, int chunkSize) {
+        if (root == null) {
+            throw new NullPointerException("root");
+        }
+        if (cache == null) {
+            throw new NullPointerException("cache");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize + " (expected: a positive integer)");
+        }
+        this.root = root;
+        this.cache = cache;
+        this.servePrecompressed = servePrecompressed;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected void messageReceived(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+        if (!request.getDecoderResult().isSuccess()) {
+            sendError(ctx, request, BAD_REQUEST);
+            return;
+        }
+
+        HttpMethod method = request.getMethod();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            FullHttpResponse response = newErrorResponse(request, METHOD_NOT_ALLOWED);
+            response.headers().set(Names.ALLOW, "GET, HEAD");
+            send(ctx, request, response);
+            return;
+        }
+
+        String path = sanitizePath(request.getUri());
+        if (path == null) {
+            sendError(ctx, request, FORBIDDEN);
+            return;
+        }
+
+        File file = new File(root, path);
+        String contentType = contentType(file);
+        boolean gzip = false;
+        if (servePrecompressed && acceptsGzip(request)) {
+            File gzFile = new File(root, path + GZIP_SUFFIX);
+            if (gzFile.isFile()) {
+                file = gzFile;
+                gzip = true;
+            }
+        }
+        if (!file.isFile()) {
+            sendError(ctx, request, NOT_FOUND);
+            return;
+        }
+
+        CachedFile cached;
+        try {
+            cached = cache.acquire(file);
+        } catch (FileNotFoundException e) {
+            sendError(ctx, request, NOT_FOUND);
+            return;
+        }
+
+        try {
+            sendFile(ctx, request, cached, contentType, gzip);
+        } finally {
+            cached.release();
+        }
+    }
+
+    private void sendFile(
+            ChannelHandlerContext ctx, FullHttpRequest request, CachedFile file, String contentType, boolean gzip) {
+        if (isNotModified(request, file)) {
+            FullHttpResponse response = new DefaultFullHttpResponse(request.getProtocolVersion(), NOT_MODIFIED);
+            setValidatorHeaders(response, file, gzip);
+            send(ctx, request, response);
+            return;
+        }
+
+        long fileLength = file.length();
+        long offset = 0;
+        long length = fileLength;
+        HttpResponseStatus status = OK;
+
+        String range = request.headers().get(Names.RANGE);
+        if (range != null && request.getMethod() == HttpMethod.GET && isRangeApplicable(request, file)) {
+            long[] byteRange = parseRange(range, fileLength);
+            if (byteRange == UNSATISFIABLE_RANGE) {
+                FullHttpResponse response = newErrorResponse(request, REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.headers().set(Names.CONTENT_RANGE, "bytes */" + fileLength);
+                send(ctx, request, response);
+                return;
+            }
+            if (byteRange != null) {
+                offset = byteRange[0];
+                length = byteRange[1] - byteRange[0] + 1;
+                status = PARTIAL_CONTENT;
+            }
+        }
+
+        HttpResponse response = new DefaultHttpResponse(request.getProtocolVersion(), status);
+        HttpHeaders headers = response.headers();
+        HttpHeaders.setContentLength(response, length);
+        headers.set(Names.CONTENT_TYPE, contentType);
+        headers.set(Names.ACCEPT_RANGES, Values.BYTES);
+        if (status == PARTIAL_CONTENT) {
+            headers.set(Names.CONTENT_RANGE,
+                    "bytes " + offset + '-' + (offset + length - 1) + '/' + fileLength);
+        }
+        setValidatorHeaders(response, file, gzip);
+        boolean keepAlive = HttpHeaders.isKeepAlive(request);
+        HttpHeaders.setKeepAlive(response, keepAlive);
+
+        ChannelFuture lastContentFuture;
+        if (request.getMethod() == HttpMethod.HEAD || length == 0) {
+            ctx.write(response);
+            lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else if (file.isMapped()) {
+            ctx.write(response);
+            lastContentFuture = ctx.writeAndFlush(new DefaultLastHttpContent(file.newContent(offset, length)));
+        } else if (ctx.pipeline().get(SslHandler.class) == null) {
+            ctx.write(response);
+            ctx.write(file.newFileRegion(offset, length));
+            lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else {
+            ctx.write(response);
+            ctx.write(file.newChunkedInput(offset, length, chunkSize));
+            lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        }
+
+        if (!keepAlive) {
+            lastContentFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    /**
+     * Returns the {@code Content-Type} of the specified file.  The default implementation determines it from the
+     * file name extension.  Override this method to support more types.
+     */
+    protected String contentType(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            String type = CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.US));
+            if (type != null) {
+                return type;
+            }
+        }
+        return DEFAULT_CONTENT_TYPE;
+    }
+
+    private void setValidatorHeaders(HttpResponse response, CachedFile file, boolean gzip) {
+        HttpHeaders headers = response.headers();
+        headers.set(Names.ETAG, file.etag());
+        HttpHeaders.setDateHeader(response, Names.LAST_MODIFIED, new Date(file.lastModified()));
+        if (gzip) {
+            headers.set(Names.CONTENT_ENCODING, Values.GZIP);
+        }
+        if (servePrecompressed) {
+            headers.set(Names.VARY, Names.ACCEPT_ENCODING);
+        }
+    }
+
+    private static boolean isNotModified(FullHttpRequest request, CachedFile file) {
+        String ifNoneMatch = request.headers().get(Names.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesEtag(ifNoneMatch, file.etag());
+        }
+
+        Date ifModifiedSince = HttpHeaders.getDateHeader(request, Names.IF_MODIFIED_SINCE, null);
+        // Only compare up to the second because the date format does not have milliseconds.
+        return ifModifiedSince != null && file.lastModified() / 1000 <= ifModifiedSince.getTime() / 1000;
+    }
+
+    private static boolean isRangeApplicable(FullHttpRequest request, CachedFile file) {
+        String ifRange = request.headers().get(Names.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"")) {
+            // If-Range requires the strong comparison.
+            return ifRange.equals(file.etag());
+        }
+        Date date = HttpHeaders.getDateHeader(request, Names.IF_RANGE, null);
+        return date != null && date.getTime() / 1000 == file.lastModified() / 1000;
+    }
+
+    /**
+     * Returns {@code true} if the specified {@code If-None-Match} header matches the specified entity tag using
+     * the weak comparison.
+     */
+    static boolean matchesEtag(String ifNoneMatch, String etag) {
+        for (String tag: ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the specified {@code Range} header.
+     *
+     * @return the first and the last byte position of the range, {@code null} if the header is malformed or
+     *         specifies multiple ranges and thus should be ignored, or {@link #UNSATISFIABLE_RANGE}
+     */
+    static long[] parseRange(String range, long length) {
+        range = range.trim();
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        int dash = range.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        String first = range.substring(6, dash).trim();
+        String last = range.substring(dash + 1).trim();
+        long start;
+        long end;
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                // Suffix range - the last N bytes.
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength < 0) {
+                    return null;
+                }
+                if (suffixLength == 0 || length == 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                start = Math.max(0, length - suffixLength);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                if (start < 0 || !last.isEmpty() && Long.parseLong(last) < start) {
+                    return null;
+                }
+                if (start >= length) {
+                    return UNSATISFIABLE_RANGE;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new long[] { start, end };
+    }
+
+    private static boolean acceptsGzip(FullHttpRequest request) {
+        String acceptEncoding = request.headers().get(Names.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String encoding: acceptEncoding.split(",")) {
+            String name = encoding;
+            float q = 1.0f;
+            int semicolon = encoding.indexOf(';');
+            if (semicolon >= 0) {
+                name = encoding.substring(0, semicolon);
+                int equals = encoding.indexOf('=', semicolon);
+                if (equals >= 0) {
+                    try {
+                        q = Float.parseFloat(encoding.substring(equals + 1).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0.0f;
+                    }
+                }
+            }
+            if (q > 0.0f && name.trim().equalsIgnoreCase(Values.GZIP.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the decoded path of the specified URI relative to the root directory, or {@code null} if it points
+     * outside of the root directory or to a hidden file.
+     */
+    static String sanitizePath(String uri) {
+        String path;
+        try {
+            path = QueryStringDecoder.decodeComponent(new QueryStringDecoder(uri).path(), CharsetUtil.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!path.startsWith("/") || path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0) {
+            return null;
+        }
+        for (String segment: path.split("/")) {
+            // Reject '.', '..' and hidden files.
+            if (segment.startsWith(".")) {
+                return null;
+            }
+        }
+        return path.replace('/', File.separatorChar);
+    }
+
+    private static FullHttpResponse newErrorResponse(FullHttpRequest request, HttpResponseStatus status) {
+        FullHttpResponse response = new DefaultFullHttpResponse(
+                request.getProtocolVersion(), status,
+                Unpooled.copiedBuffer("Failure: " + status + "\r\n", CharsetUtil.UTF_8));
+        response.headers().set(Names.CONTENT_TYPE, "text/plain; charset=UTF-8");
+        return response;
+    }
+
+    private static void sendError(ChannelHandlerContext ctx, FullHttpRequest request, HttpResponseStatus status) {
+        send(ctx, request, newErrorResponse(request, status));
+    }
+
+    private static void send(ChannelHandlerContext ctx, FullHttpRequest request, FullHttpResponse response) {
+        if (response.getStatus() != NOT_MODIFIED) {
+            HttpHeaders.setContentLength(response, response.content().readableBytes());
+        }
+        boolean keepAlive = HttpHeaders.isKeepAlive(request);
+        HttpHeaders.setKeepAlive(response, keepAlive);
+        ChannelFuture future = ctx.writeAndFlush(response);
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of {@link CachedFile}s, which is shared by all the channels serving static content.
+ * <p>
+ * Files not larger than {@code maxMappedFileSize} are memory-mapped, as long as the total size of the mapped files
+ * does not exceed {@code maxMappedBytes}.  The other files keep their descriptors open while they are cached, and
+ * at most {@code maxOpenFiles} of them are cached at the same time.  An evicted file is closed once all the
+ * transfers that were started from it are complete.  A cached file is reopened when its length or modification
+ * time has changed.
+ */
+public final class OpenFileCache {
+
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+    public static final int DEFAULT_MAX_MAPPED_FILE_SIZE = 64 * 1024;
+    public static final long DEFAULT_MAX_MAPPED_BYTES = 64 * 1024 * 1024;
+
+    private final int maxOpenFiles;
+    private final int maxMappedFileSize;
+    private final long maxMappedBytes;
+
+    // Guarded by 'this'
+    private final Map<String, CachedFile> files = new LinkedHashMap<String, CachedFile>(16, 0.75f, true);
+    private int openFiles;
+    private long mappedBytes;
+
+    /**
+     * Creates a new instance with the default limits.
+     */
+    public OpenFileCache() {
+        this(DEFAULT_MAX_OPEN_FILES, DEFAULT_MAX_MAPPED_FILE_SIZE, DEFAULT_MAX_MAPPED_BYTES);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxOpenFiles      the maximum number of cached files which hold an open descriptor
+     * @param maxMappedFileSize the maximum length of a file to be memory-mapped, {@code 0} to disable mapping
+     * @param maxMappedBytes    the maximum total length of the memory-mapped files
+     */
+    public OpenFileCache(int maxOpenFiles, int maxMappedFileSize, long maxMappedBytes) {
+        if (maxOpenFiles < 0) {
+            throw new IllegalArgumentException("maxOpenFiles: " + maxOpenFiles + " (expected: >= 0)");
+        }
+        if (maxMappedFileSize < 0) {
+            throw new IllegalArgumentException("maxMappedFileSize: " + maxMappedFileSize + " (expected: >= 0)");
+        }
+        if (maxMappedBytes < maxMappedFileSize) {
+            throw new IllegalArgumentException(
+                    "maxMappedBytes: " + maxMappedBytes + " (expected: >= maxMappedFileSize)");
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        this.maxMappedFileSize = maxMappedFileSize;
+        this.maxMappedBytes = maxMappedBytes;
+    }
+
+    /**
+     * Returns the cached entry of the specified file, opening it if necessary.  The returned entry is retained and
+     * thus must be released by the caller once it is not used anymore.
+     */
+    public CachedFile acquire(File file) throws IOException {
+        String key = file.getPath();
+        synchronized (this) {
+            CachedFile cached = files.get(key);
+            if (cached != null) {
+                if (!cached.isStale()) {
+                    cached.retain();
+                    return cached;
+                }
+                remove(key, cached);
+            }
+        }
+
+        // Open the file outside the lock so that a slow disk does not block the other lookups.
+        CachedFile opened = new CachedFile(file, maxMappedFileSize);
+        synchronized (this) {
+            CachedFile cached = files.get(key);
+            if (cached != null && cached.lastModified() == opened.lastModified() &&
+                cached.length() == opened.length()) {
+                // Opened by another thread in the meantime.
+                opened.release();
+                cached.retain();
+                return cached;
+            }
+            if (cached != null) {
+                remove(key, cached);
+            }
+
+            add(key, opened);
+            // Retain before evicting so that the caller keeps the file open even if it does not fit into the cache.
+            opened.retain();
+            evict();
+            return opened;
+        }
+    }
+
+    /**
+     * Returns the number of the cached files.
+     */
+    public synchronized int size() {
+        return files.size();
+    }
+
+    /**
+     * Returns the number of the cached files which hold an open descriptor.
+     */
+    public synchronized int openFiles() {
+        return openFiles;
+    }
+
+    /**
+     * Returns the total length of the cached memory-mapped files.
+     */
+    public synchronized long mappedBytes() {
+        return mappedBytes;
+    }
+
+    /**
+     * Removes all the entries from this cache.  The files being transferred are closed once the transfers are
+     * complete.
+     */
+    public synchronized void clear() {
+        for (CachedFile cached: files.values()) {
+            cached.release();
+        }
+        files.clear();
+        openFiles = 0;
+        mappedBytes = 0;
+    }
+
+    private void add(String key, CachedFile cached) {
+        files.put(key, cached);
+        if (cached.isMapped()) {
+            mappedBytes += cached.length();
+        } else {
+            openFiles ++;
+        }
+    }
+
+    private void remove(String key, CachedFile cached) {
+        files.remove(key);
+        removed(cached);
+    }
+
+    private void removed(CachedFile cached) {
+        if (cached.isMapped()) {
+            mappedBytes -= cached.length();
+        } else {
+            openFiles --;
+        }
+        cached.release();
+    }
+
+    private void evict() {
+        Iterator<CachedFile> i = files.values().iterator();
+        while ((openFiles > maxOpenFiles || mappedBytes > maxMappedBytes) && i.hasNext()) {
+            CachedFile cached = i.next();
+            if (cached.isMapped() ? mappedBytes > maxMappedBytes : openFiles > maxOpenFiles) {
+                i.remove();
+                removed(cached);
+            }
+        }
+    }
+}
@@ -36,6 +36,7 @@
 package io.netty.handler.codec.http.websocketx;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * Checks UTF8 bytes for validity before converting it into a string
@@ -74,8 +75,21 @@ final class UTF8Output {
     }
 
     public void write(ByteBuf buffer) {
-        for (int i = buffer.readerIndex(); i < buffer.writerIndex(); i++) {
-            write(buffer.getByte(i));
+        final int end = buffer.writerIndex();
+        int i = buffer.readerIndex();
+        while (i < end) {
+            if (state == UTF8_ACCEPT) {
+                // Skip the ASCII run 8 bytes at a time and use the state machine only for the multi-byte sequences.
+                int nonAscii = ByteBufUtil.indexOfNonAscii(buffer, i, end - i);
+                int asciiEnd = nonAscii < 0 ? end : nonAscii;
+                for (; i < asciiEnd; i ++) {
+                    stringBuilder.append((char) buffer.getByte(i));
+                }
+                if (nonAscii < 0) {
+                    break;
+                }
+            }
+            write(buffer.getByte(i ++));
         }
     }
 
@@ -54,6 +54,7 @@
 package io.netty.handler.codec.http.websocketx;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -94,6 +95,7 @@ public class WebSocket08FrameDecoder extends ByteToMessageDecoder
 
     private UTF8Output fragmentedFramesText;
     private int fragmentedFramesCount;
+    private int fragmentedFramesRsv;
     private boolean frameFinalFlag;
     private int frameRsv;
     private int frameOpcode;
@@ -312,6 +314,11 @@ public class WebSocket08FrameDecoder extends ByteToMessageDecoder
                         // Processing for possible fragmented messages for text and binary
                         // frames
                         String aggregatedText = null;
+                        if (fragmentedFramesCount == 0) {
+                            // The payload of a message whose first frame has a reserved bit set was transformed
+                            // by an extension, so its UTF-8 correctness can only be checked after decoding.
+                            fragmentedFramesRsv = frameRsv;
+                        }
                         if (frameFinalFlag) {
                             // Final frame of the sequence. Apparently ping frames are
                             // allowed in the middle of a fragmented message
@@ -319,7 +326,12 @@ public class WebSocket08FrameDecoder extends ByteToMessageDecoder
                                 fragmentedFramesCount = 0;
 
                                 // Check text for UTF8 correctness
-                                if (frameOpcode == OPCODE_TEXT || fragmentedFramesText != null) {
+                                if (fragmentedFramesRsv == 0 && frameOpcode == OPCODE_TEXT) {
+                                    // An unfragmented message does not need to be aggregated.
+                                    if (!ByteBufUtil.isUtf8(payloadBuffer)) {
+                                        protocolViolation(ctx, "invalid UTF-8 bytes");
+                                    }
+                                } else if (fragmentedFramesRsv == 0 && fragmentedFramesText != null) {
                                     // Check UTF-8 correctness for this payload
                                     checkUTF8String(ctx, payloadBuffer);
 
@@ -336,7 +348,7 @@ public class WebSocket08FrameDecoder extends ByteToMessageDecoder
                             if (fragmentedFramesCount == 0) {
                                 // First text or binary frame for a fragmented set
                                 fragmentedFramesText = null;
-                                if (frameOpcode == OPCODE_TEXT) {
+                                if (frameOpcode == OPCODE_TEXT && fragmentedFramesRsv == 0) {
                                     checkUTF8String(ctx, payloadBuffer);
                                 }
                             } else {
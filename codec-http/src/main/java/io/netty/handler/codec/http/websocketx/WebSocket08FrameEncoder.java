@@ -54,6 +54,7 @@
 package io.netty.handler.codec.http.websocketx;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageEncoder;
@@ -94,6 +95,29 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
         this.maskPayload = maskPayload;
     }
 
+    /**
+     * Encodes the specified frame into a new unmasked buffer, which can be written as is to many server channels
+     * instead of encoding the same frame for each of them, e.g. by {@code ChannelGroup.writeAndFlush(Object)},
+     * which writes a duplicate of the buffer to each channel.  The buffer bypasses the encoders of the channels,
+     * so it must not be written to a client channel or to a channel whose extensions (if any) would transform
+     * the frame.  The specified frame is not released.
+     */
+    public static ByteBuf encodeUnmasked(ByteBufAllocator alloc, WebSocketFrame frame) {
+        ByteBuf data = frame.content();
+        if (data == null) {
+            data = Unpooled.EMPTY_BUFFER;
+        }
+
+        byte opcode = opcode(frame);
+        int length = data.readableBytes();
+        checkPayloadLength(opcode, length);
+
+        ByteBuf buf = alloc.buffer(headerLength(length) + length);
+        writeHeader(buf, firstByte(frame, opcode), length, false);
+        buf.writeBytes(data, data.readerIndex(), length);
+        return buf;
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
 
@@ -104,74 +128,25 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
             data = Unpooled.EMPTY_BUFFER;
         }
 
-        byte opcode;
-        if (msg instanceof TextWebSocketFrame) {
-            opcode = OPCODE_TEXT;
-        } else if (msg instanceof PingWebSocketFrame) {
-            opcode = OPCODE_PING;
-        } else if (msg instanceof PongWebSocketFrame) {
-            opcode = OPCODE_PONG;
-        } else if (msg instanceof CloseWebSocketFrame) {
-            opcode = OPCODE_CLOSE;
-        } else if (msg instanceof BinaryWebSocketFrame) {
-            opcode = OPCODE_BINARY;
-        } else if (msg instanceof ContinuationWebSocketFrame) {
-            opcode = OPCODE_CONT;
-        } else {
-            throw new UnsupportedOperationException("Cannot encode frame of type: " + msg.getClass().getName());
-        }
-
+        byte opcode = opcode(msg);
         int length = data.readableBytes();
 
         if (logger.isDebugEnabled()) {
             logger.debug("Encoding WebSocket Frame opCode=" + opcode + " length=" + length);
         }
 
-        int b0 = 0;
-        if (msg.isFinalFragment()) {
-            b0 |= 1 << 7;
-        }
-        b0 |= msg.rsv() % 8 << 4;
-        b0 |= opcode % 128;
-
-        if (opcode == OPCODE_PING && length > 125) {
-            throw new TooLongFrameException("invalid payload for PING (payload length must be <= 125, was "
-                    + length);
-        }
+        int b0 = firstByte(msg, opcode);
+        checkPayloadLength(opcode, length);
 
         boolean release = true;
         ByteBuf buf = null;
         try {
-            int maskLength = maskPayload ? 4 : 0;
-            if (length <= 125) {
-                int size = 2 + maskLength;
-                if (maskPayload) {
-                    size += length;
-                }
-                buf = ctx.alloc().buffer(size);
-                buf.writeByte(b0);
-                byte b = (byte) (maskPayload ? 0x80 | (byte) length : (byte) length);
-                buf.writeByte(b);
-            } else if (length <= 0xFFFF) {
-                int size = 4 + maskLength;
-                if (maskPayload) {
-                    size += length;
-                }
-                buf = ctx.alloc().buffer(size);
-                buf.writeByte(b0);
-                buf.writeByte(maskPayload ? 0xFE : 126);
-                buf.writeByte(length >>> 8 & 0xFF);
-                buf.writeByte(length & 0xFF);
-            } else {
-                int size = 10 + maskLength;
-                if (maskPayload) {
-                    size += length;
-                }
-                buf = ctx.alloc().buffer(size);
-                buf.writeByte(b0);
-                buf.writeByte(maskPayload ? 0xFF : 127);
-                buf.writeLong(length);
+            int size = headerLength(length);
+            if (maskPayload) {
+                size += 4 + length;
             }
+            buf = ctx.alloc().buffer(size);
+            writeHeader(buf, b0, length, maskPayload);
 
             // Write payload
             if (maskPayload) {
@@ -202,4 +177,66 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
             }
         }
     }
+
+    private static byte opcode(WebSocketFrame msg) {
+        if (msg instanceof TextWebSocketFrame) {
+            return OPCODE_TEXT;
+        } else if (msg instanceof PingWebSocketFrame) {
+            return OPCODE_PING;
+        } else if (msg instanceof PongWebSocketFrame) {
+            return OPCODE_PONG;
+        } else if (msg instanceof CloseWebSocketFrame) {
+            return OPCODE_CLOSE;
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            return OPCODE_BINARY;
+        } else if (msg instanceof ContinuationWebSocketFrame) {
+            return OPCODE_CONT;
+        } else {
+            throw new UnsupportedOperationException("Cannot encode frame of type: " + msg.getClass().getName());
+        }
+    }
+
+    private static int firstByte(WebSocketFrame msg, byte opcode) {
+        int b0 = 0;
+        if (msg.isFinalFragment()) {
+            b0 |= 1 << 7;
+        }
+        b0 |= msg.rsv() % 8 << 4;
+        b0 |= opcode % 128;
+        return b0;
+    }
+
+    private static void checkPayloadLength(byte opcode, int length) {
+        if (opcode == OPCODE_PING && length > 125) {
+            throw new TooLongFrameException("invalid payload for PING (payload length must be <= 125, was "
+                    + length);
+        }
+    }
+
+    /**
+     * Returns the length of the header of an unmasked frame.
+     */
+    private static int headerLength(int length) {
+        if (length <= 125) {
+            return 2;
+        } else if (length <= 0xFFFF) {
+            return 4;
+        } else {
+            return 10;
+        }
+    }
+
+    private static void writeHeader(ByteBuf buf, int b0, int length, boolean maskPayload) {
+        buf.writeByte(b0);
+        if (length <= 125) {
+            buf.writeByte(maskPayload ? 0x80 | (byte) length : (byte) length);
+        } else if (length <= 0xFFFF) {
+            buf.writeByte(maskPayload ? 0xFE : 126);
+            buf.writeByte(length >>> 8 & 0xFF);
+            buf.writeByte(length & 0xFF);
+        } else {
+            buf.writeByte(maskPayload ? 0xFF : 127);
+            buf.writeLong(length);
+        }
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions;
+
+/**
+ * A negotiated Web Socket extension, which transforms the frames of a connection by means of an encoder and
+ * a decoder.
+ */
+public interface WebSocketExtension {
+
+    /**
+     * The first reserved bit of a frame, as found in the value of {@code WebSocketFrame.rsv()}.
+     */
+    int RSV1 = 0x04;
+    /**
+     * The second reserved bit of a frame.
+     */
+    int RSV2 = 0x02;
+    /**
+     * The third reserved bit of a frame.
+     */
+    int RSV3 = 0x01;
+
+    /**
+     * Returns the reserved bits used by this extension.  Two extensions that use the same bit cannot be
+     * negotiated for the same connection.
+     */
+    int rsv();
+
+    /**
+     * Returns a new encoder of the outbound frames of a connection.
+     */
+    WebSocketExtensionEncoder newExtensionEncoder();
+
+    /**
+     * Returns a new decoder of the inbound frames of a connection.
+     */
+    WebSocketExtensionDecoder newExtensionDecoder();
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An extension offer or response, as found in a {@code "Sec-WebSocket-Extensions"} header: the name of an
+ * extension and its parameters.  A parameter without a value is mapped to {@code null}.
+ */
+public final class WebSocketExtensionData {
+
+    private final String name;
+    private final Map<String, String> parameters;
+
+    public WebSocketExtensionData(String name, Map<String, String> parameters) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        if (parameters == null) {
+            throw new NullPointerException("parameters");
+        }
+        this.name = name;
+        this.parameters = Collections.unmodifiableMap(parameters);
+    }
+
+    /**
+     * Returns the name of the extension.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the unmodifiable parameters of the extension.
+     */
+    public Map<String, String> parameters() {
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(name: " + name + ", parameters: " + parameters + ')';
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions;
+
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders.Names;
+import io.netty.handler.codec.http.HttpHeaders.Values;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.util.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Parses and formats the value of a {@code "Sec-WebSocket-Extensions"} header.
+ */
+public final class WebSocketExtensionUtil {
+
+    /**
+     * Returns {@code true} if the specified message asks for or confirms an upgrade to the Web Socket protocol.
+     */
+    public static boolean isWebsocketUpgrade(HttpMessage message) {
+        String upgrade = message.headers().get(Names.UPGRADE);
+        return upgrade != null && HttpHeaders.equalsIgnoreCase(Values.WEBSOCKET, upgrade);
+    }
+
+    /**
+     * Parses the specified header value into the list of the extension offers, in the order of preference.
+     */
+    public static List<WebSocketExtensionData> extractExtensions(String extensionHeader) {
+        String[] rawExtensions = StringUtil.split(extensionHeader, ',');
+        if (rawExtensions.length == 0) {
+            return Collections.emptyList();
+        }
+
+        List<WebSocketExtensionData> extensions = new ArrayList<WebSocketExtensionData>(rawExtensions.length);
+        for (String rawExtension: rawExtensions) {
+            String[] tokens = StringUtil.split(rawExtension, ';');
+            String name = tokens[0].trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            Map<String, String> parameters;
+            if (tokens.length > 1) {
+                parameters = new LinkedHashMap<String, String>(tokens.length - 1);
+                for (int i = 1; i < tokens.length; i ++) {
+                    String token = tokens[i].trim();
+                    int eq = token.indexOf('=');
+                    if (eq < 0) {
+                        parameters.put(token, null);
+                    } else {
+                        parameters.put(token.substring(0, eq).trim(), unquote(token.substring(eq + 1).trim()));
+                    }
+                }
+            } else {
+                parameters = Collections.emptyMap();
+            }
+            extensions.add(new WebSocketExtensionData(name, parameters));
+        }
+        return extensions;
+    }
+
+    /**
+     * Appends the specified extension to the specified header value, which may be {@code null}.
+     */
+    public static String appendExtension(String currentHeaderValue, WebSocketExtensionData extension) {
+        StringBuilder buf = new StringBuilder(currentHeaderValue != null ? currentHeaderValue.length() + 32 : 32);
+        if (currentHeaderValue != null && !currentHeaderValue.trim().isEmpty()) {
+            buf.append(currentHeaderValue).append(", ");
+        }
+        buf.append(extension.name());
+        for (Entry<String, String> parameter: extension.parameters().entrySet()) {
+            buf.append("; ").append(parameter.getKey());
+            if (parameter.getValue() != null) {
+                buf.append('=').append(parameter.getValue());
+            }
+        }
+        return buf.toString();
+    }
+
+    private static String unquote(String value) {
+        int length = value.length();
+        if (length >= 2 && value.charAt(0) == '"' && value.charAt(length - 1) == '"') {
+            return value.substring(1, length - 1);
+        }
+        return value;
+    }
+
+    private WebSocketExtensionUtil() {
+        // Unused
+    }
+}
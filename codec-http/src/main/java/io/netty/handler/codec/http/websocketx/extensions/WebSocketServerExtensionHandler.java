@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpHeaders.Names;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Negotiates the Web Socket extensions of a server connection.  It picks, in the order of the client's
+ * preference, the first offer of each extension that one of the specified {@link WebSocketServerExtensionHandshaker}s
+ * accepts and whose reserved bits do not conflict with an extension picked earlier, adds the responses to the
+ * handshake response, and replaces itself with the encoders and decoders of the negotiated extensions once the
+ * handshake response has been written.
+ * <p>
+ * It must be placed right after the HTTP codec (or the {@link io.netty.handler.codec.http.HttpObjectAggregator})
+ * and before the handler which performs the Web Socket handshake.  The handshaker must allow extensions, e.g.
+ * {@code new WebSocketServerProtocolHandler(path, subprotocols, true)}, so that frames with reserved bits set are
+ * accepted.
+ */
+public class WebSocketServerExtensionHandler extends ChannelHandlerAdapter {
+
+    private final List<WebSocketServerExtensionHandshaker> extensionHandshakers;
+
+    private List<WebSocketServerExtension> validExtensions;
+
+    public WebSocketServerExtensionHandler(WebSocketServerExtensionHandshaker... extensionHandshakers) {
+        if (extensionHandshakers == null) {
+            throw new NullPointerException("extensionHandshakers");
+        }
+        if (extensionHandshakers.length == 0) {
+            throw new IllegalArgumentException("extensionHandshakers must contain at least one handshaker");
+        }
+        List<WebSocketServerExtensionHandshaker> list =
+                new ArrayList<WebSocketServerExtensionHandshaker>(extensionHandshakers.length);
+        Collections.addAll(list, extensionHandshakers);
+        this.extensionHandshakers = list;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) msg;
+            validExtensions = null;
+            if (WebSocketExtensionUtil.isWebsocketUpgrade(request)) {
+                String extensionsHeader = request.headers().get(Names.SEC_WEBSOCKET_EXTENSIONS);
+                if (extensionsHeader != null) {
+                    validExtensions = negotiate(extensionsHeader);
+                }
+            }
+        }
+
+        ctx.fireChannelRead(msg);
+    }
+
+    private List<WebSocketServerExtension> negotiate(String extensionsHeader) {
+        List<WebSocketServerExtension> extensions = null;
+        int rsv = 0;
+        for (WebSocketExtensionData extensionData: WebSocketExtensionUtil.extractExtensions(extensionsHeader)) {
+            WebSocketServerExtension extension = null;
+            for (WebSocketServerExtensionHandshaker handshaker: extensionHandshakers) {
+                extension = handshaker.handshakeExtension(extensionData);
+                if (extension != null) {
+                    break;
+                }
+            }
+
+            if (extension != null && (extension.rsv() & rsv) == 0) {
+                if (extensions == null) {
+                    extensions = new ArrayList<WebSocketServerExtension>(1);
+                }
+                rsv |= extension.rsv();
+                extensions.add(extension);
+            }
+        }
+        return extensions;
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        final List<WebSocketServerExtension> extensions = validExtensions;
+        if (extensions != null && msg instanceof HttpResponse &&
+            ((HttpResponse) msg).getStatus().code() == HttpResponseStatus.SWITCHING_PROTOCOLS.code()) {
+            validExtensions = null;
+
+            HttpResponse response = (HttpResponse) msg;
+            String headerValue = response.headers().get(Names.SEC_WEBSOCKET_EXTENSIONS);
+            for (WebSocketServerExtension extension: extensions) {
+                headerValue = WebSocketExtensionUtil.appendExtension(headerValue, extension.newResponseData());
+            }
+            response.headers().set(Names.SEC_WEBSOCKET_EXTENSIONS, headerValue);
+
+            promise.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (future.isSuccess()) {
+                        addExtensionHandlers(ctx, extensions);
+                    }
+                }
+            });
+        }
+
+        ctx.write(msg, promise);
+    }
+
+    private void addExtensionHandlers(ChannelHandlerContext ctx, List<WebSocketServerExtension> extensions) {
+        ChannelPipeline pipeline = ctx.pipeline();
+        String name = ctx.name();
+        // The first extension in the list is the closest to the wire.
+        for (int i = extensions.size() - 1; i >= 0; i --) {
+            WebSocketServerExtension extension = extensions.get(i);
+            WebSocketExtensionDecoder decoder = extension.newExtensionDecoder();
+            WebSocketExtensionEncoder encoder = extension.newExtensionEncoder();
+            pipeline.addAfter(name, name + '-' + StringUtil.simpleClassName(decoder), decoder);
+            pipeline.addAfter(name, name + '-' + StringUtil.simpleClassName(encoder), encoder);
+        }
+        pipeline.remove(ctx.handler());
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.util.Recycler;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses the inbound messages of a connection which negotiated the permessage-deflate extension.
+ * <p>
+ * When the client does not take over its compression context, every message is decompressed by an
+ * {@link Inflater} borrowed from a per-thread pool for the duration of the message.  Otherwise, the connection
+ * keeps its own {@link Inflater} until it is closed.
+ * <p>
+ * A message which decompresses to more than the maximum message size is rejected with a
+ * {@link TooLongFrameException}.  Because {@link io.netty.handler.codec.http.websocketx.WebSocket08FrameDecoder} can
+ * not check the UTF-8 correctness of a compressed text message, the decompressed payload of a text message is
+ * checked here and a {@link CorruptedFrameException} is raised if it is not well-formed UTF-8.
+ */
+class PerMessageDeflateDecoder extends WebSocketExtensionDecoder {
+
+    private static final byte[] FRAME_TAIL = { 0x00, 0x00, (byte) 0xff, (byte) 0xff };
+
+    private static final Recycler<PooledInflater> RECYCLER = new Recycler<PooledInflater>() {
+        @Override
+        protected PooledInflater newObject(Handle<PooledInflater> handle) {
+            return new PooledInflater(handle);
+        }
+    };
+
+    static final int DEFAULT_MAX_MESSAGE_SIZE = 65536;
+
+    private final boolean noContext;
+    private final int maxMessageSize;
+
+    private Inflater inflater;
+    private PooledInflater pooledInflater;
+    private boolean decompressing;
+    private long messageSize;
+    private Utf8Validator utf8Validator;
+
+    PerMessageDeflateDecoder(boolean noContext) {
+        this(noContext, DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    PerMessageDeflateDecoder(boolean noContext, int maxMessageSize) {
+        if (maxMessageSize <= 0) {
+            throw new IllegalArgumentException("maxMessageSize: " + maxMessageSize + " (expected: > 0)");
+        }
+        this.noContext = noContext;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+            return (((WebSocketFrame) msg).rsv() & WebSocketExtension.RSV1) != 0;
+        }
+        return msg instanceof ContinuationWebSocketFrame && decompressing;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        boolean last = msg.isFinalFragment();
+        if (!decompressing) {
+            messageSize = 0;
+            utf8Validator = msg instanceof TextWebSocketFrame ? new Utf8Validator() : null;
+        }
+        ByteBuf decompressed = inflate(ctx, msg.content(), last);
+        decompressing = !last;
+
+        if (utf8Validator != null) {
+            try {
+                utf8Validator.check(decompressed, last);
+            } catch (CorruptedFrameException e) {
+                decompressed.release();
+                throw e;
+            }
+            if (last) {
+                utf8Validator = null;
+            }
+        }
+
+        WebSocketFrame frame;
+        if (msg instanceof TextWebSocketFrame) {
+            frame = new TextWebSocketFrame(last, msg.rsv() & ~WebSocketExtension.RSV1, decompressed);
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            frame = new BinaryWebSocketFrame(last, msg.rsv() & ~WebSocketExtension.RSV1, decompressed);
+        } else {
+            frame = new ContinuationWebSocketFrame(last, msg.rsv(), decompressed);
+        }
+        out.add(frame);
+    }
+
+    private ByteBuf inflate(ChannelHandlerContext ctx, ByteBuf content, boolean last) {
+        Inflater inflater = inflater();
+        int length = content.readableBytes();
+        if (last) {
+            // Restore the end of the sync-flushed message.
+            byte[] array = new byte[length + FRAME_TAIL.length];
+            content.getBytes(content.readerIndex(), array, 0, length);
+            System.arraycopy(FRAME_TAIL, 0, array, length, FRAME_TAIL.length);
+            inflater.setInput(array);
+        } else if (content.hasArray()) {
+            inflater.setInput(content.array(), content.arrayOffset() + content.readerIndex(), length);
+        } else {
+            byte[] array = new byte[length];
+            content.getBytes(content.readerIndex(), array);
+            inflater.setInput(array);
+        }
+
+        ByteBuf out = ctx.alloc().heapBuffer(Math.max(length << 1, 64));
+        boolean success = false;
+        try {
+            for (;;) {
+                if (!out.isWritable()) {
+                    long remaining = maxMessageSize - messageSize - out.readableBytes();
+                    if (remaining <= 0) {
+                        // The output buffer is full and the message may not grow any further.
+                        throw new TooLongFrameException(
+                                "decompressed message is larger than " + maxMessageSize + " bytes");
+                    }
+                    out.ensureWritable((int) Math.min(out.capacity(), remaining));
+                }
+                int numBytes = inflater.inflate(
+                        out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+                out.writerIndex(out.writerIndex() + numBytes);
+                if (messageSize + out.readableBytes() > maxMessageSize) {
+                    throw new TooLongFrameException(
+                            "decompressed message is larger than " + maxMessageSize + " bytes");
+                }
+                if (inflater.finished()) {
+                    // The client finished the stream (BFINAL); the rest of the input is the padding.
+                    inflater.reset();
+                    break;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new DecompressionException("decompression failure: preset dictionary not supported");
+                }
+                if (inflater.needsInput() && out.isWritable()) {
+                    break;
+                }
+            }
+
+            if (last && noContext) {
+                releaseInflater();
+            }
+            messageSize += out.readableBytes();
+            success = true;
+            return out;
+        } catch (DataFormatException e) {
+            throw new DecompressionException("decompression failure", e);
+        } finally {
+            if (!success) {
+                out.release();
+            }
+        }
+    }
+
+    private Inflater inflater() {
+        if (inflater == null) {
+            if (noContext) {
+                pooledInflater = RECYCLER.get();
+                inflater = pooledInflater.inflater;
+            } else {
+                inflater = new Inflater(true);
+            }
+        }
+        return inflater;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releaseInflater();
+        super.handlerRemoved(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseInflater();
+        super.channelInactive(ctx);
+    }
+
+    private void releaseInflater() {
+        if (pooledInflater != null) {
+            pooledInflater.recycle();
+            pooledInflater = null;
+        } else if (inflater != null) {
+            inflater.end();
+        }
+        inflater = null;
+    }
+
+    /**
+     * Checks the UTF-8 correctness of a text message whose payload is split into multiple buffers.  A multi-byte
+     * sequence may span more than one buffer.
+     */
+    static final class Utf8Validator {
+
+        // The number of the continuation bytes expected by the current sequence.
+        private int remaining;
+        private int codePoint;
+        private int minCodePoint;
+
+        void check(ByteBuf buffer, boolean last) {
+            final int end = buffer.writerIndex();
+            int i = buffer.readerIndex();
+            while (i < end) {
+                if (remaining == 0) {
+                    int nonAscii = ByteBufUtil.indexOfNonAscii(buffer, i, end - i);
+                    if (nonAscii < 0) {
+                        break;
+                    }
+                    i = nonAscii;
+                }
+                update(buffer.getByte(i ++));
+            }
+            if (last && remaining != 0) {
+                throw new CorruptedFrameException("invalid UTF-8 bytes");
+            }
+        }
+
+        private void update(byte b) {
+            if (remaining == 0) {
+                int lead = b & 0xff;
+                if (lead >= 0xc2 && lead <= 0xdf) {
+                    remaining = 1;
+                    codePoint = lead & 0x1f;
+                    minCodePoint = 0x80;
+                } else if (lead >= 0xe0 && lead <= 0xef) {
+                    remaining = 2;
+                    codePoint = lead & 0x0f;
+                    minCodePoint = 0x800;
+                } else if (lead >= 0xf0 && lead <= 0xf4) {
+                    remaining = 3;
+                    codePoint = lead & 0x07;
+                    minCodePoint = 0x10000;
+                } else {
+                    throw new CorruptedFrameException("invalid UTF-8 bytes");
+                }
+                return;
+            }
+
+            if ((b & 0xc0) != 0x80) {
+                throw new CorruptedFrameException("invalid UTF-8 bytes");
+            }
+            codePoint = codePoint << 6 | b & 0x3f;
+            if (-- remaining == 0 &&
+                (codePoint < minCodePoint || codePoint > 0x10ffff ||
+                 codePoint >= 0xd800 && codePoint <= 0xdfff)) {
+                // Overlong encoding, out of range or a surrogate
+                throw new CorruptedFrameException("invalid UTF-8 bytes");
+            }
+        }
+    }
+
+    private static final class PooledInflater {
+
+        final Inflater inflater = new Inflater(true);
+        private final Recycler.Handle<PooledInflater> handle;
+
+        PooledInflater(Recycler.Handle<PooledInflater> handle) {
+            this.handle = handle;
+        }
+
+        void recycle() {
+            inflater.reset();
+            handle.recycle(this);
+        }
+    }
+}
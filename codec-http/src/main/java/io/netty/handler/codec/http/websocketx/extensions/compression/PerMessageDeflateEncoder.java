@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.util.Recycler;
+
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the outbound text and binary messages of a connection which negotiated the permessage-deflate
+ * extension.
+ * <p>
+ * Without context takeover, every message is compressed by a {@link Deflater} borrowed from a per-thread pool,
+ * which is finished (i.e. its last block has {@code BFINAL} set) and returned to the pool at the end of the message.
+ * With context takeover, the connection keeps its own zlib encoder and every message is sync-flushed.
+ */
+class PerMessageDeflateEncoder extends WebSocketExtensionEncoder {
+
+    private static final DeflaterRecycler[] RECYCLERS = new DeflaterRecycler[10];
+
+    static {
+        for (int i = 0; i < RECYCLERS.length; i ++) {
+            RECYCLERS[i] = new DeflaterRecycler(i);
+        }
+    }
+
+    private final int compressionLevel;
+    private final boolean noContext;
+
+    private EmbeddedChannel encoder;
+    private PooledDeflater deflater;
+    private boolean compressing;
+
+    PerMessageDeflateEncoder(int compressionLevel, boolean noContext) {
+        this.compressionLevel = compressionLevel;
+        this.noContext = noContext;
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+            // Let the messages which are compressed already pass through.
+            return (((WebSocketFrame) msg).rsv() & WebSocketExtension.RSV1) == 0;
+        }
+        return msg instanceof ContinuationWebSocketFrame && compressing;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        boolean last = msg.isFinalFragment();
+        ByteBuf compressed;
+        if (noContext) {
+            compressed = deflate(ctx, msg.content(), last);
+        } else {
+            compressed = encodeWithContext(ctx, msg.content(), last);
+        }
+        compressing = !last;
+
+        WebSocketFrame frame;
+        if (msg instanceof TextWebSocketFrame) {
+            frame = new TextWebSocketFrame(last, msg.rsv() | WebSocketExtension.RSV1, compressed);
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            frame = new BinaryWebSocketFrame(last, msg.rsv() | WebSocketExtension.RSV1, compressed);
+        } else {
+            frame = new ContinuationWebSocketFrame(last, msg.rsv(), compressed);
+        }
+        out.add(frame);
+    }
+
+    private ByteBuf deflate(ChannelHandlerContext ctx, ByteBuf content, boolean last) {
+        if (deflater == null) {
+            deflater = RECYCLERS[compressionLevel].get();
+        }
+
+        Deflater deflater = this.deflater.deflater;
+        int length = content.readableBytes();
+        if (content.hasArray()) {
+            deflater.setInput(content.array(), content.arrayOffset() + content.readerIndex(), length);
+        } else {
+            byte[] array = new byte[length];
+            content.getBytes(content.readerIndex(), array);
+            deflater.setInput(array);
+        }
+        if (last) {
+            deflater.finish();
+        }
+
+        ByteBuf out = ctx.alloc().heapBuffer(length + (length >>> 3) + 16);
+        boolean success = false;
+        try {
+            for (;;) {
+                if (!out.isWritable()) {
+                    out.ensureWritable(out.capacity());
+                }
+                int numBytes = deflater.deflate(
+                        out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+                out.writerIndex(out.writerIndex() + numBytes);
+                if (last ? deflater.finished() : deflater.needsInput()) {
+                    break;
+                }
+            }
+
+            if (last) {
+                // The message ends with a block which has BFINAL set.  Append the first octet of an empty stored
+                // block so that the receiver can append the remaining 4 octets, as if it were sync-flushed.
+                out.writeByte(0);
+                releaseDeflater();
+            }
+            success = true;
+            return out;
+        } finally {
+            if (!success) {
+                out.release();
+            }
+        }
+    }
+
+    private ByteBuf encodeWithContext(ChannelHandlerContext ctx, ByteBuf content, boolean last) {
+        if (encoder == null) {
+            encoder = new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(ZlibWrapper.NONE, compressionLevel));
+        }
+
+        encoder.writeOutbound(content.retain());
+        ByteBuf out = ctx.alloc().heapBuffer(content.readableBytes() + 16);
+        for (;;) {
+            ByteBuf buf = encoder.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            out.writeBytes(buf);
+            buf.release();
+        }
+
+        if (last) {
+            // Remove the empty stored block produced by the sync flush: 0x00 0x00 0xff 0xff.
+            int end = out.writerIndex();
+            if (end - out.readerIndex() >= 4 && out.getInt(end - 4) == 0x0000ffff) {
+                out.writerIndex(end - 4);
+            }
+            if (!out.isReadable()) {
+                // An empty message is a single empty stored block without its last 4 octets.
+                out.writeByte(0);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cleanup();
+        super.handlerRemoved(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cleanup();
+        super.channelInactive(ctx);
+    }
+
+    private void cleanup() {
+        if (encoder != null) {
+            // Clean-up the previous encoder if not cleaned up correctly.
+            if (encoder.finish()) {
+                for (;;) {
+                    ByteBuf buf = encoder.readOutbound();
+                    if (buf == null) {
+                        break;
+                    }
+                    buf.release();
+                }
+            }
+            encoder = null;
+        }
+        releaseDeflater();
+    }
+
+    private void releaseDeflater() {
+        if (deflater != null) {
+            deflater.recycle();
+            deflater = null;
+        }
+    }
+
+    private static final class PooledDeflater {
+
+        final Deflater deflater;
+        private final Recycler.Handle<PooledDeflater> handle;
+
+        PooledDeflater(int compressionLevel, Recycler.Handle<PooledDeflater> handle) {
+            deflater = new Deflater(compressionLevel, true);
+            this.handle = handle;
+        }
+
+        void recycle() {
+            deflater.reset();
+            handle.recycle(this);
+        }
+    }
+
+    private static final class DeflaterRecycler extends Recycler<PooledDeflater> {
+
+        private final int compressionLevel;
+
+        DeflaterRecycler(int compressionLevel) {
+            this.compressionLevel = compressionLevel;
+        }
+
+        @Override
+        protected PooledDeflater newObject(Handle<PooledDeflater> handle) {
+            return new PooledDeflater(compressionLevel, handle);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions.compression;
+
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandshaker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Accepts the <a href="http://tools.ietf.org/html/rfc7692">permessage-deflate</a> offers of a client.
+ * <p>
+ * By default, the server does not take over the compression context from one message to the next, and says so
+ * in its response even if the client did not ask for it.  It lets a connection borrow a {@link java.util.zip.Deflater}
+ * from a pool only while it compresses a message, instead of holding one (and its window) for its whole lifetime,
+ * which keeps the memory footprint of a server with many idle connections small.  The same applies to the
+ * {@link java.util.zip.Inflater}s when the server asks the client not to take over its context.
+ * <p>
+ * The offers which limit the window of the server ({@code server_max_window_bits} less than 15) are declined
+ * because the deflaters always use a 32 KiB window.  The server decodes any {@code client_max_window_bits}.
+ * <p>
+ * A compressed message can decompress to a lot more than the maximum frame payload length, so the size of a
+ * decompressed message is limited separately, to 64 KiB by default.
+ */
+public final class PerMessageDeflateServerExtensionHandshaker implements WebSocketServerExtensionHandshaker {
+
+    public static final String PERMESSAGE_DEFLATE_EXTENSION = "permessage-deflate";
+
+    static final String CLIENT_MAX_WINDOW = "client_max_window_bits";
+    static final String SERVER_MAX_WINDOW = "server_max_window_bits";
+    static final String CLIENT_NO_CONTEXT = "client_no_context_takeover";
+    static final String SERVER_NO_CONTEXT = "server_no_context_takeover";
+
+    static final int MIN_WINDOW_SIZE = 8;
+    static final int MAX_WINDOW_SIZE = 15;
+
+    private final int compressionLevel;
+    private final boolean serverNoContext;
+    private final boolean preferredClientNoContext;
+    private final int preferredClientWindowSize;
+    private final int maxMessageSize;
+
+    /**
+     * Creates a new instance with the default compression level ({@code 6}), without server context takeover.
+     */
+    public PerMessageDeflateServerExtensionHandshaker() {
+        this(6, true, false, MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param compressionLevel          the compression level, from {@code 0} (no compression) to {@code 9}
+     *                                  (best compression)
+     * @param serverNoContext           {@code true} to compress each message independently, even if the client did
+     *                                  not ask for it
+     * @param preferredClientNoContext  {@code true} to ask the client to compress each message independently
+     * @param preferredClientWindowSize the window size ({@code 8} to {@code 15} bits) the client is asked to use if
+     *                                  it supports a smaller window
+     */
+    public PerMessageDeflateServerExtensionHandshaker(
+            int compressionLevel, boolean serverNoContext,
+            boolean preferredClientNoContext, int preferredClientWindowSize) {
+        this(compressionLevel, serverNoContext, preferredClientNoContext, preferredClientWindowSize,
+             PerMessageDeflateDecoder.DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param compressionLevel          the compression level, from {@code 0} (no compression) to {@code 9}
+     *                                  (best compression)
+     * @param serverNoContext           {@code true} to compress each message independently, even if the client did
+     *                                  not ask for it
+     * @param preferredClientNoContext  {@code true} to ask the client to compress each message independently
+     * @param preferredClientWindowSize the window size ({@code 8} to {@code 15} bits) the client is asked to use if
+     *                                  it supports a smaller window
+     * @param maxMessageSize            the maximum size of a decompressed message, including all its fragments
+     */
+    public PerMessageDeflateServerExtensionHandshaker(
+            int compressionLevel, boolean serverNoContext,
+            boolean preferredClientNoContext, int preferredClientWindowSize, int maxMessageSize) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException(
+                    "compressionLevel: " + compressionLevel + " (expected: 0-9)");
+        }
+        if (preferredClientWindowSize < MIN_WINDOW_SIZE || preferredClientWindowSize > MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException(
+                    "preferredClientWindowSize: " + preferredClientWindowSize +
+                    " (expected: " + MIN_WINDOW_SIZE + '-' + MAX_WINDOW_SIZE + ')');
+        }
+        if (maxMessageSize <= 0) {
+            throw new IllegalArgumentException("maxMessageSize: " + maxMessageSize + " (expected: > 0)");
+        }
+        this.compressionLevel = compressionLevel;
+        this.serverNoContext = serverNoContext;
+        this.preferredClientNoContext = preferredClientNoContext;
+        this.preferredClientWindowSize = preferredClientWindowSize;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public WebSocketServerExtension handshakeExtension(WebSocketExtensionData extensionData) {
+        if (!PERMESSAGE_DEFLATE_EXTENSION.equals(extensionData.name())) {
+            return null;
+        }
+
+        boolean serverNoContext = this.serverNoContext;
+        boolean clientNoContext = preferredClientNoContext;
+        int clientWindowSize = -1;
+
+        for (Entry<String, String> parameter: extensionData.parameters().entrySet()) {
+            String name = parameter.getKey();
+            String value = parameter.getValue();
+            if (CLIENT_MAX_WINDOW.equalsIgnoreCase(name)) {
+                // The client supports a smaller window and tells its limit if any.
+                int limit = value != null ? parseWindowSize(value) : MAX_WINDOW_SIZE;
+                if (limit < 0) {
+                    return null;
+                }
+                clientWindowSize = Math.min(preferredClientWindowSize, limit);
+            } else if (SERVER_MAX_WINDOW.equalsIgnoreCase(name)) {
+                if (value == null || parseWindowSize(value) != MAX_WINDOW_SIZE) {
+                    return null;
+                }
+            } else if (CLIENT_NO_CONTEXT.equalsIgnoreCase(name)) {
+                if (value != null) {
+                    return null;
+                }
+                clientNoContext = true;
+            } else if (SERVER_NO_CONTEXT.equalsIgnoreCase(name)) {
+                if (value != null) {
+                    return null;
+                }
+                serverNoContext = true;
+            } else {
+                // Unknown parameter
+                return null;
+            }
+        }
+
+        return new PerMessageDeflateServerExtension(
+                compressionLevel, serverNoContext, clientNoContext, clientWindowSize, maxMessageSize);
+    }
+
+    private static int parseWindowSize(String value) {
+        int windowSize;
+        try {
+            windowSize = Integer.parseInt(value);
+        } catch (NumberFormatException ignored) {
+            return -1;
+        }
+        if (windowSize < MIN_WINDOW_SIZE || windowSize > MAX_WINDOW_SIZE) {
+            return -1;
+        }
+        return windowSize;
+    }
+
+    private static final class PerMessageDeflateServerExtension implements WebSocketServerExtension {
+
+        private final int compressionLevel;
+        private final boolean serverNoContext;
+        private final boolean clientNoContext;
+        private final int clientWindowSize;
+        private final int maxMessageSize;
+
+        PerMessageDeflateServerExtension(
+                int compressionLevel, boolean serverNoContext, boolean clientNoContext, int clientWindowSize,
+                int maxMessageSize) {
+            this.compressionLevel = compressionLevel;
+            this.serverNoContext = serverNoContext;
+            this.clientNoContext = clientNoContext;
+            this.clientWindowSize = clientWindowSize;
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        @Override
+        public int rsv() {
+            return RSV1;
+        }
+
+        @Override
+        public WebSocketExtensionEncoder newExtensionEncoder() {
+            return new PerMessageDeflateEncoder(compressionLevel, serverNoContext);
+        }
+
+        @Override
+        public WebSocketExtensionDecoder newExtensionDecoder() {
+            return new PerMessageDeflateDecoder(clientNoContext, maxMessageSize);
+        }
+
+        @Override
+        public WebSocketExtensionData newResponseData() {
+            Map<String, String> parameters = new LinkedHashMap<String, String>(4);
+            if (serverNoContext) {
+                parameters.put(SERVER_NO_CONTEXT, null);
+            }
+            if (clientNoContext) {
+                parameters.put(CLIENT_NO_CONTEXT, null);
+            }
+            if (clientWindowSize >= 0 && clientWindowSize < MAX_WINDOW_SIZE) {
+                parameters.put(CLIENT_MAX_WINDOW, String.valueOf(clientWindowSize));
+            }
+            return new WebSocketExtensionData(PERMESSAGE_DEFLATE_EXTENSION, parameters);
+        }
+    }
+}
@@ -15,11 +15,20 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.HttpHeaders.Names;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.EventExecutor;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
@@ -91,4 +100,223 @@ public class HttpContentCompressorTest {
 
         assertThat(ch.readOutbound(), is(nullValue()));
     }
+
+    @Test
+    public void testContentSizeThreshold() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new HttpContentCompressor(6, 15, 8, 16, HttpCompressionPolicy.DEFAULT));
+
+        // A full response smaller than the threshold.
+        request(ch, "gzip");
+        FullHttpResponse small = fullResponse("tiny", "text/plain");
+        ch.writeOutbound(small);
+        assertSame(small, ch.readOutbound());
+        small.release();
+
+        // A full response not smaller than the threshold.
+        request(ch, "gzip");
+        ch.writeOutbound(fullResponse("large enough to compress", "text/plain"));
+        assertCompressed(ch, "gzip");
+
+        // A response whose Content-Length is smaller than the threshold.
+        request(ch, "gzip");
+        HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        HttpHeaders.setContentLength(res, 4);
+        ch.writeOutbound(res);
+        assertSame(res, ch.readOutbound());
+        ch.writeOutbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("tiny", CharsetUtil.US_ASCII)));
+        assertUncompressedContent(ch, "tiny");
+        assertThat(ch.readOutbound(), is(nullValue()));
+    }
+
+    @Test
+    public void testFirstChunkDecides() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new HttpContentCompressor(6, 15, 8, 16, HttpCompressionPolicy.DEFAULT));
+
+        // The only chunk is smaller than the threshold.
+        request(ch, "gzip");
+        HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        ChannelFuture future = ch.write(res);
+        assertThat(ch.readOutbound(), is(nullValue()));
+        assertFalse(future.isDone());
+        ch.writeOutbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("tiny", CharsetUtil.US_ASCII)));
+        assertTrue(future.isSuccess());
+        assertSame(res, ch.readOutbound());
+        assertThat(res.headers().get(Names.CONTENT_ENCODING), is(nullValue()));
+        assertUncompressedContent(ch, "tiny");
+        assertThat(ch.readOutbound(), is(nullValue()));
+
+        // More chunks follow a small first chunk.
+        request(ch, "gzip");
+        future = ch.write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        ch.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer("tiny", CharsetUtil.US_ASCII)));
+        ch.writeOutbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("tiny", CharsetUtil.US_ASCII)));
+        assertCompressed(ch, "gzip");
+
+        // Something other than an HttpContent follows the response.
+        request(ch, "gzip");
+        res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        future = ch.write(res);
+        ByteBuf raw = Unpooled.copiedBuffer("raw", CharsetUtil.US_ASCII);
+        ch.writeOutbound(raw);
+        assertTrue(future.isSuccess());
+        assertSame(res, ch.readOutbound());
+        assertThat(res.headers().get(Names.CONTENT_ENCODING), is(nullValue()));
+        assertSame(raw, ch.readOutbound());
+        raw.release();
+        ch.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT);
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, ch.readOutbound());
+        assertThat(ch.readOutbound(), is(nullValue()));
+    }
+
+    @Test
+    public void testFlushWritesHeldBackResponse() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new HttpContentCompressor(6, 15, 8, 16, HttpCompressionPolicy.DEFAULT));
+
+        // A streaming response is flushed before its content is known.
+        request(ch, "gzip");
+        ChannelFuture future = ch.write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        ch.flush();
+        assertTrue(future.isSuccess());
+        ch.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer("tiny", CharsetUtil.US_ASCII)));
+        ch.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT);
+        assertCompressed(ch, "gzip");
+
+        // A response whose content is not to be compressed.
+        request(ch, "identity");
+        HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        future = ch.write(res);
+        ch.flush();
+        assertTrue(future.isSuccess());
+        assertSame(res, ch.readOutbound());
+        assertThat(res.headers().get(Names.CONTENT_ENCODING), is(nullValue()));
+        ch.writeOutbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("tiny", CharsetUtil.US_ASCII)));
+        assertUncompressedContent(ch, "tiny");
+        assertThat(ch.readOutbound(), is(nullValue()));
+    }
+
+    @Test
+    public void testContentTypePolicy() throws Exception {
+        HttpCompressionPolicy policy = new HttpCompressionPolicy(
+                new String[] { "text/*", "application/json" }, new String[] { "text/event-stream" });
+        assertTrue(policy.isCompressible("text/html; charset=UTF-8"));
+        assertTrue(policy.isCompressible("Application/JSON"));
+        assertFalse(policy.isCompressible("text/event-stream"));
+        assertFalse(policy.isCompressible("image/svg+xml"));
+        assertFalse(policy.isCompressible(null));
+        assertFalse(HttpCompressionPolicy.DEFAULT.isCompressible("image/png"));
+        assertTrue(HttpCompressionPolicy.DEFAULT.isCompressible("image/svg+xml"));
+        assertTrue(HttpCompressionPolicy.DEFAULT.isCompressible(null));
+
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor(6, 15, 8, 0, policy));
+        request(ch, "gzip");
+        FullHttpResponse png = fullResponse("not really an image", "image/png");
+        ch.writeOutbound(png);
+        assertSame(png, ch.readOutbound());
+        png.release();
+
+        request(ch, "gzip");
+        ch.writeOutbound(fullResponse("{\"compress\": \"me\"}", "application/json"));
+        assertCompressed(ch, "gzip");
+    }
+
+    @Test
+    public void testCompressionLevelLoweredUnderLag() throws Exception {
+        final long[] lagNanos = new long[1];
+        HttpCompressionPolicy policy = new HttpCompressionPolicy(
+                new String[0], new String[0], 50, TimeUnit.MILLISECONDS, 0) {
+            @Override
+            protected long lagNanos(EventExecutor executor) {
+                return lagNanos[0];
+            }
+        };
+        assertEquals(6, policy.compressionLevel(null, 6));
+        lagNanos[0] = TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(0, policy.compressionLevel(null, 6));
+
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor(6, 15, 8, 0, policy));
+        request(ch, "gzip");
+        FullHttpResponse res = fullResponse("would be compressed otherwise", "text/plain");
+        ch.writeOutbound(res);
+        assertSame(res, ch.readOutbound());
+        res.release();
+
+        lagNanos[0] = 0;
+        request(ch, "gzip");
+        ch.writeOutbound(fullResponse("compressed again", "text/plain"));
+        assertCompressed(ch, "gzip");
+    }
+
+    @Test
+    public void testRegisteredEncoding() throws Exception {
+        HttpContentEncodingFactory identity = new HttpContentEncodingFactory() {
+            @Override
+            public String contentEncoding() {
+                return "x-test";
+            }
+
+            @Override
+            public ChannelHandler newEncoder(int compressionLevel) {
+                return new ChannelHandlerAdapter();
+            }
+        };
+        HttpContentCompressor compressor = new HttpContentCompressor(6, 15, 8, 0, null, identity);
+        assertSame(identity, compressor.determineEncoding("gzip, x-test;q=0.5"));
+        assertSame(identity, compressor.determineEncoding("X-Test"));
+        assertThat(compressor.determineEncoding("gzip, x-test;q=0"), is(nullValue()));
+        assertThat(compressor.determineEncoding("*"), is(nullValue()));
+
+        EmbeddedChannel ch = new EmbeddedChannel(compressor);
+        request(ch, "gzip, x-test");
+        ch.writeOutbound(fullResponse("passed as is", "text/plain"));
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.headers().get(Names.CONTENT_ENCODING), is("x-test"));
+        assertUncompressedContent(ch, "passed as is");
+        HttpContent last = ch.readOutbound();
+        assertThat(last, is(instanceOf(LastHttpContent.class)));
+        last.release();
+        assertThat(ch.readOutbound(), is(nullValue()));
+    }
+
+    private static void request(EmbeddedChannel ch, String acceptEncoding) {
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        req.headers().set(Names.ACCEPT_ENCODING, acceptEncoding);
+        ch.writeInbound(req);
+        FullHttpRequest read = ch.readInbound();
+        read.release();
+    }
+
+    private static FullHttpResponse fullResponse(String content, String contentType) {
+        FullHttpResponse res = new DefaultFullHttpResponse(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII));
+        res.headers().set(Names.CONTENT_TYPE, contentType);
+        HttpHeaders.setContentLength(res, content.length());
+        return res;
+    }
+
+    private static void assertUncompressedContent(EmbeddedChannel ch, String expected) {
+        HttpContent chunk = ch.readOutbound();
+        assertThat(chunk.content().toString(CharsetUtil.US_ASCII), is(expected));
+        chunk.release();
+    }
+
+    private static void assertCompressed(EmbeddedChannel ch, String contentEncoding) {
+        HttpResponse res = ch.readOutbound();
+        assertThat(res, is(not(instanceOf(FullHttpResponse.class))));
+        assertThat(res.headers().get(Names.CONTENT_ENCODING), is(contentEncoding));
+        assertThat(res.headers().get(Names.CONTENT_LENGTH), is(nullValue()));
+        for (;;) {
+            HttpContent chunk = ch.readOutbound();
+            assertThat(chunk, is(notNullValue()));
+            ByteBuf content = chunk.content();
+            chunk.release();
+            if (chunk instanceof LastHttpContent) {
+                break;
+            }
+            assertThat(content.isReadable(), is(true));
+        }
+        assertThat(ch.readOutbound(), is(nullValue()));
+    }
 }
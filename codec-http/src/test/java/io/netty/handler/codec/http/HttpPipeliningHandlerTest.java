@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.EncoderException;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class HttpPipeliningHandlerTest {
+
+    @Test
+    public void testResponsesAreWrittenInRequestOrder() {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpPipeliningHandler(16, 1024));
+        HttpPipelinedRequest req1 = readRequest(ch, "/1");
+        HttpPipelinedRequest req2 = readRequest(ch, "/2");
+        HttpPipelinedRequest req3 = readRequest(ch, "/3");
+        assertThat(req1.sequence(), is(0));
+        assertThat(req2.sequence(), is(1));
+        assertThat(req3.sequence(), is(2));
+
+        ChannelFuture f3 = ch.writeAndFlush(req3.response(response("3")));
+        ChannelFuture f2 = ch.writeAndFlush(req2.response(response("2")));
+        assertThat(ch.readOutbound(), is(nullValue()));
+        assertFalse(f2.isDone());
+        assertFalse(f3.isDone());
+
+        ch.writeAndFlush(req1.response(response("1")));
+        assertResponse(ch, "1");
+        assertResponse(ch, "2");
+        assertResponse(ch, "3");
+        assertTrue(f2.isSuccess());
+        assertTrue(f3.isSuccess());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testChunkedResponsesAreNotInterleaved() {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpPipeliningHandler(16, 1024));
+        HttpPipelinedRequest req1 = readRequest(ch, "/1");
+        HttpPipelinedRequest req2 = readRequest(ch, "/2");
+
+        ch.writeAndFlush(req2.response(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK)));
+        ch.writeAndFlush(req2.response(content("b")));
+        ch.writeAndFlush(req1.response(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK)));
+        ch.writeAndFlush(req2.response(LastHttpContent.EMPTY_LAST_CONTENT));
+        ch.writeAndFlush(req1.response(content("a")));
+
+        assertThat(ch.readOutbound(), is(instanceOf(HttpResponse.class)));
+        assertContent(ch, "a");
+        assertThat(ch.readOutbound(), is(nullValue()));
+        assertThat(((HttpPipeliningHandler) ch.pipeline().first()).bufferedBytes(), is(1));
+
+        ch.writeAndFlush(req1.response(LastHttpContent.EMPTY_LAST_CONTENT));
+        assertThat(ch.readOutbound(), is((Object) LastHttpContent.EMPTY_LAST_CONTENT));
+        assertThat(ch.readOutbound(), is(instanceOf(HttpResponse.class)));
+        assertContent(ch, "b");
+        assertThat(ch.readOutbound(), is((Object) LastHttpContent.EMPTY_LAST_CONTENT));
+        assertThat(((HttpPipeliningHandler) ch.pipeline().first()).bufferedBytes(), is(0));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testAutoReadIsTurnedOffWhenTooManyRequestsInFlight() {
+        HttpPipeliningHandler handler = new HttpPipeliningHandler(2, 1024);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        HttpPipelinedRequest req1 = readRequest(ch, "/1");
+        assertTrue(ch.config().isAutoRead());
+        HttpPipelinedRequest req2 = readRequest(ch, "/2");
+        assertFalse(ch.config().isAutoRead());
+        assertThat(handler.inFlightRequests(), is(2));
+
+        ch.writeAndFlush(req2.response(response("2")));
+        assertFalse(ch.config().isAutoRead());
+        ch.writeAndFlush(req1.response(response("1")));
+        assertTrue(ch.config().isAutoRead());
+        assertThat(handler.inFlightRequests(), is(0));
+
+        assertResponse(ch, "1");
+        assertResponse(ch, "2");
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testBufferLimitExceeded() {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpPipeliningHandler(16, 4));
+        HttpPipelinedRequest req1 = readRequest(ch, "/1");
+        HttpPipelinedRequest req2 = readRequest(ch, "/2");
+        HttpPipelinedRequest req3 = readRequest(ch, "/3");
+
+        ChannelFuture f2 = ch.writeAndFlush(req2.response(response("22")));
+        ChannelFuture f3 = ch.writeAndFlush(req3.response(response("333")));
+        assertThat(f3.cause(), is(instanceOf(EncoderException.class)));
+        assertFalse(ch.isOpen());
+        assertFalse(f2.isSuccess());
+
+        ChannelFuture f1 = ch.writeAndFlush(req1.response(response("1")));
+        assertFalse(f1.isSuccess());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testUnwrappedMessagesPassThrough() {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpPipeliningHandler(16, 1024));
+        readRequest(ch, "/1");
+
+        FullHttpResponse res = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE);
+        ch.writeAndFlush(res);
+        assertThat(ch.readOutbound(), is((Object) res));
+
+        HttpContent content = content("a");
+        assertTrue(ch.writeInbound(content));
+        assertThat(ch.readInbound(), is((Object) content));
+        content.release();
+        assertFalse(ch.finish());
+    }
+
+    private static HttpPipelinedRequest readRequest(EmbeddedChannel ch, String uri) {
+        assertTrue(ch.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri)));
+        HttpPipelinedRequest req = ch.readInbound();
+        assertThat(req.request().getUri(), is(uri));
+        req.release();
+        return req;
+    }
+
+    private static FullHttpResponse response(String content) {
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII));
+    }
+
+    private static HttpContent content(String content) {
+        return new DefaultHttpContent(Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII));
+    }
+
+    private static void assertResponse(EmbeddedChannel ch, String content) {
+        FullHttpResponse res = ch.readOutbound();
+        assertThat(res.content().toString(CharsetUtil.US_ASCII), is(content));
+        res.release();
+    }
+
+    private static void assertContent(EmbeddedChannel ch, String content) {
+        HttpContent c = ch.readOutbound();
+        assertThat(c.content().toString(CharsetUtil.US_ASCII), is(content));
+        c.release();
+    }
+}
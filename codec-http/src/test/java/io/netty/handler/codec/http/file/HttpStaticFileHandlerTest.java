@@ -0,0 +1,267 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders.Names;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class HttpStaticFileHandlerTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    private File root;
+    private OpenFileCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("netty-static-", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdir());
+        write(new File(root, "test.txt"), CONTENT);
+        write(new File(root, "test.txt.gz"), "gzipped");
+        write(new File(root, ".hidden"), "hidden");
+        cache = new OpenFileCache(4, 0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        for (File f: root.listFiles()) {
+            f.delete();
+        }
+        root.delete();
+    }
+
+    @Test
+    public void testFileRegion() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, false));
+        ch.writeInbound(request("/test.txt"));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.getStatus(), is(HttpResponseStatus.OK));
+        assertThat(res.headers().get(Names.CONTENT_LENGTH), is(String.valueOf(CONTENT.length())));
+        assertThat(res.headers().get(Names.CONTENT_TYPE), is("text/plain; charset=UTF-8"));
+        assertThat(res.headers().get(Names.ACCEPT_RANGES), is("bytes"));
+        assertThat(res.headers().get(Names.ETAG), is(notNullValue()));
+        assertThat(readRegion(ch), is(CONTENT));
+        assertThat(ch.readOutbound(), is((Object) LastHttpContent.EMPTY_LAST_CONTENT));
+        assertThat(cache.openFiles(), is(1));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        OpenFileCache cache = new OpenFileCache(4, 1024, 1024);
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, false));
+        ch.writeInbound(request("/test.txt"));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.getStatus(), is(HttpResponseStatus.OK));
+        LastHttpContent content = ch.readOutbound();
+        assertThat(content.content().toString(CharsetUtil.US_ASCII), is(CONTENT));
+        content.release();
+        assertThat(cache.openFiles(), is(0));
+        assertThat(cache.mappedBytes(), is((long) CONTENT.length()));
+        assertFalse(ch.finish());
+        cache.clear();
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, false));
+        FullHttpRequest req = request("/test.txt");
+        req.headers().set(Names.RANGE, "bytes=10-15");
+        ch.writeInbound(req);
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.getStatus(), is(HttpResponseStatus.PARTIAL_CONTENT));
+        assertThat(res.headers().get(Names.CONTENT_RANGE), is("bytes 10-15/" + CONTENT.length()));
+        assertThat(res.headers().get(Names.CONTENT_LENGTH), is("6"));
+        assertThat(readRegion(ch), is("abcdef"));
+        assertThat(ch.readOutbound(), is((Object) LastHttpContent.EMPTY_LAST_CONTENT));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testRangeIgnoredWhenIfRangeDoesNotMatch() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, false));
+        FullHttpRequest req = request("/test.txt");
+        req.headers().set(Names.RANGE, "bytes=10-15");
+        req.headers().set(Names.IF_RANGE, "\"outdated\"");
+        ch.writeInbound(req);
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.getStatus(), is(HttpResponseStatus.OK));
+        assertThat(readRegion(ch), is(CONTENT));
+        assertThat(ch.readOutbound(), is((Object) LastHttpContent.EMPTY_LAST_CONTENT));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testUnsatisfiableRange() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, false));
+        FullHttpRequest req = request("/test.txt");
+        req.headers().set(Names.RANGE, "bytes=100-");
+        ch.writeInbound(req);
+
+        FullHttpResponse res = ch.readOutbound();
+        assertThat(res.getStatus(), is(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE));
+        assertThat(res.headers().get(Names.CONTENT_RANGE), is("bytes */" + CONTENT.length()));
+        res.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testIfNoneMatch() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, false));
+        ch.writeInbound(request("/test.txt"));
+        HttpResponse res = ch.readOutbound();
+        String etag = res.headers().get(Names.ETAG);
+        readRegion(ch);
+        ch.readOutbound();
+
+        FullHttpRequest req = request("/test.txt");
+        req.headers().set(Names.IF_NONE_MATCH, "\"other\", W/" + etag);
+        ch.writeInbound(req);
+        FullHttpResponse notModified = ch.readOutbound();
+        assertThat(notModified.getStatus(), is(HttpResponseStatus.NOT_MODIFIED));
+        assertThat(notModified.headers().get(Names.ETAG), is(etag));
+        notModified.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testPrecompressed() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, true));
+        FullHttpRequest req = request("/test.txt");
+        req.headers().set(Names.ACCEPT_ENCODING, "deflate, gzip;q=0.5");
+        ch.writeInbound(req);
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.headers().get(Names.CONTENT_ENCODING), is("gzip"));
+        assertThat(res.headers().get(Names.CONTENT_TYPE), is("text/plain; charset=UTF-8"));
+        assertThat(res.headers().get(Names.VARY), is("Accept-Encoding"));
+        assertThat(readRegion(ch), is("gzipped"));
+        assertThat(ch.readOutbound(), is((Object) LastHttpContent.EMPTY_LAST_CONTENT));
+
+        req = request("/test.txt");
+        req.headers().set(Names.ACCEPT_ENCODING, "gzip;q=0");
+        ch.writeInbound(req);
+        res = ch.readOutbound();
+        assertThat(res.headers().get(Names.CONTENT_ENCODING), is(nullValue()));
+        assertThat(readRegion(ch), is(CONTENT));
+        assertThat(ch.readOutbound(), is((Object) LastHttpContent.EMPTY_LAST_CONTENT));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testHead() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, false));
+        ch.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, "/test.txt"));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.headers().get(Names.CONTENT_LENGTH), is(String.valueOf(CONTENT.length())));
+        assertThat(ch.readOutbound(), is((Object) LastHttpContent.EMPTY_LAST_CONTENT));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testForbiddenAndNotFound() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpStaticFileHandler(root, cache, false));
+        assertStatus(ch, "/../etc/passwd", HttpResponseStatus.FORBIDDEN);
+        assertStatus(ch, "/%2e%2e/etc/passwd", HttpResponseStatus.FORBIDDEN);
+        assertStatus(ch, "/.hidden", HttpResponseStatus.FORBIDDEN);
+        assertStatus(ch, "/missing.txt", HttpResponseStatus.NOT_FOUND);
+        assertStatus(ch, "/", HttpResponseStatus.NOT_FOUND);
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testParseRange() {
+        assertArrayEquals(new long[] { 0, 9 }, HttpStaticFileHandler.parseRange("bytes=0-9", 100));
+        assertArrayEquals(new long[] { 90, 99 }, HttpStaticFileHandler.parseRange("bytes=90-", 100));
+        assertArrayEquals(new long[] { 90, 99 }, HttpStaticFileHandler.parseRange("bytes=-10", 100));
+        assertArrayEquals(new long[] { 0, 99 }, HttpStaticFileHandler.parseRange("bytes=-1000", 100));
+        assertArrayEquals(new long[] { 50, 99 }, HttpStaticFileHandler.parseRange("bytes=50-1000", 100));
+        assertSame(HttpStaticFileHandler.UNSATISFIABLE_RANGE, HttpStaticFileHandler.parseRange("bytes=100-", 100));
+        assertSame(HttpStaticFileHandler.UNSATISFIABLE_RANGE, HttpStaticFileHandler.parseRange("bytes=-0", 100));
+        assertNull(HttpStaticFileHandler.parseRange("bytes=0-1,5-6", 100));
+        assertNull(HttpStaticFileHandler.parseRange("bytes=9-0", 100));
+        assertNull(HttpStaticFileHandler.parseRange("bytes=a-b", 100));
+        assertNull(HttpStaticFileHandler.parseRange("items=0-1", 100));
+    }
+
+    private static void assertStatus(EmbeddedChannel ch, String uri, HttpResponseStatus status) {
+        ch.writeInbound(request(uri));
+        FullHttpResponse res = ch.readOutbound();
+        assertThat(res.getStatus(), is(status));
+        res.release();
+    }
+
+    private static FullHttpRequest request(String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+
+    private static String readRegion(EmbeddedChannel ch) throws IOException {
+        Object msg = ch.readOutbound();
+        if (msg instanceof HttpContent) {
+            HttpContent content = (HttpContent) msg;
+            String s = content.content().toString(CharsetUtil.US_ASCII);
+            content.release();
+            return s;
+        }
+
+        FileRegion region = (FileRegion) msg;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (region.transfered() < region.count()) {
+            region.transferTo(Channels.newChannel(out), region.transfered());
+        }
+        region.release();
+        return new String(out.toByteArray(), CharsetUtil.US_ASCII);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(CharsetUtil.US_ASCII));
+        } finally {
+            out.close();
+        }
+    }
+}
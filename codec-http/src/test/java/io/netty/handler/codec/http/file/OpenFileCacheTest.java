@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class OpenFileCacheTest {
+
+    private final File[] files = new File[3];
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < files.length; i ++) {
+            files[i] = File.createTempFile("netty-cache-", ".tmp");
+            FileOutputStream out = new FileOutputStream(files[i]);
+            try {
+                out.write(new byte[16 * (i + 1)]);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (File f: files) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testHitAndEviction() throws Exception {
+        OpenFileCache cache = new OpenFileCache(2, 0, 0);
+        CachedFile a = cache.acquire(files[0]);
+        assertSame(a, cache.acquire(files[0]));
+        assertEquals(3, a.refCnt());
+        a.release(2);
+
+        CachedFile b = cache.acquire(files[1]);
+        CachedFile c = cache.acquire(files[2]);
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.openFiles());
+        // The least recently used entry was evicted - only the caller holds it now.
+        assertEquals(0, a.refCnt());
+        assertEquals(2, b.refCnt());
+        assertEquals(2, c.refCnt());
+
+        b.release();
+        c.release();
+        cache.clear();
+        assertEquals(0, cache.openFiles());
+        assertEquals(0, b.refCnt());
+        assertEquals(0, c.refCnt());
+    }
+
+    @Test
+    public void testEvictedFileStaysOpenWhileInUse() throws Exception {
+        OpenFileCache cache = new OpenFileCache(1, 0, 0);
+        CachedFile a = cache.acquire(files[0]);
+        CachedFile b = cache.acquire(files[1]);
+        assertEquals(1, a.refCnt());
+        assertEquals(1, cache.size());
+        a.release();
+        b.release();
+        cache.clear();
+    }
+
+    @Test
+    public void testMappedFiles() throws Exception {
+        OpenFileCache cache = new OpenFileCache(2, 32, 48);
+        CachedFile a = cache.acquire(files[0]);
+        CachedFile b = cache.acquire(files[1]);
+        CachedFile c = cache.acquire(files[2]);
+        assertTrue(a.isMapped());
+        assertTrue(b.isMapped());
+        assertFalse(c.isMapped());
+        assertEquals(48, cache.mappedBytes());
+        assertEquals(1, cache.openFiles());
+
+        a.release();
+        b.release();
+        c.release();
+        cache.clear();
+        assertEquals(0, cache.mappedBytes());
+    }
+
+    @Test
+    public void testStaleFileIsReopened() throws Exception {
+        OpenFileCache cache = new OpenFileCache(2, 0, 0);
+        CachedFile a = cache.acquire(files[0]);
+        a.release();
+
+        FileOutputStream out = new FileOutputStream(files[0], true);
+        try {
+            out.write(1);
+        } finally {
+            out.close();
+        }
+
+        CachedFile b = cache.acquire(files[0]);
+        assertNotSame(a, b);
+        assertEquals(0, a.refCnt());
+        assertEquals(17, b.length());
+        b.release();
+        cache.clear();
+    }
+}
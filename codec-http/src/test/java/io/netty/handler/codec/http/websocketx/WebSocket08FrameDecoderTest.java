@@ -12,11 +12,14 @@
  */
 package io.netty.handler.codec.http.websocketx;
 
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
+import static org.junit.Assert.*;
+
 public class WebSocket08FrameDecoderTest {
 
     @Test
@@ -26,4 +29,16 @@ public class WebSocket08FrameDecoderTest {
         decoder.channelInactive(ctx);
     }
 
+    @Test
+    public void testTextWithExtensionIsNotValidated() {
+        EmbeddedChannel ch = new EmbeddedChannel(new WebSocket08FrameDecoder(false, true, 65535));
+        // FIN, RSV1 and text opcode followed by a payload which is not valid UTF-8
+        ch.writeInbound(Unpooled.wrappedBuffer(new byte[] { (byte) 0xc1, 3, (byte) 0xff, (byte) 0xfe, (byte) 0xfd }));
+        TextWebSocketFrame frame = ch.readInbound();
+        assertEquals(4, frame.rsv());
+        assertEquals(3, frame.content().readableBytes());
+        frame.release();
+        assertFalse(ch.finish());
+    }
+
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WebSocket08FrameEncoderTest {
+
+    @Test
+    public void testEncodeUnmasked() {
+        for (int length: new int[] { 0, 125, 126, 0xFFFF, 0x10000 }) {
+            ByteBuf payload = Unpooled.buffer(length).writeZero(length);
+            for (int i = 0; i < length; i ++) {
+                payload.setByte(i, i);
+            }
+
+            testEncodeUnmasked(new BinaryWebSocketFrame(payload.copy()));
+            testEncodeUnmasked(new TextWebSocketFrame(false, 4, payload.copy()));
+            testEncodeUnmasked(new ContinuationWebSocketFrame(true, 0, payload));
+        }
+    }
+
+    private static void testEncodeUnmasked(WebSocketFrame frame) {
+        ByteBuf encoded = WebSocket08FrameEncoder.encodeUnmasked(UnpooledByteBufAllocator.DEFAULT, frame);
+
+        EmbeddedChannel ch = new EmbeddedChannel(new WebSocket13FrameEncoder(false));
+        ch.writeOutbound(frame);
+        ByteBuf expected = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = ch.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            expected.writeBytes(buf);
+            buf.release();
+        }
+        assertFalse(ch.finish());
+
+        assertEquals(expected, encoded);
+        expected.release();
+        encoded.release();
+    }
+}
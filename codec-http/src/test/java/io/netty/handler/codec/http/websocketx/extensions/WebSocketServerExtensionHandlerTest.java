@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders.Names;
+import io.netty.handler.codec.http.HttpHeaders.Values;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WebSocketServerExtensionHandlerTest {
+
+    @Test
+    public void testExtractExtensions() {
+        List<WebSocketExtensionData> extensions = WebSocketExtensionUtil.extractExtensions(
+                "permessage-deflate; client_max_window_bits; server_max_window_bits=\"10\", x-webkit-deflate-frame");
+        assertEquals(2, extensions.size());
+        assertEquals("permessage-deflate", extensions.get(0).name());
+        assertTrue(extensions.get(0).parameters().containsKey("client_max_window_bits"));
+        assertNull(extensions.get(0).parameters().get("client_max_window_bits"));
+        assertEquals("10", extensions.get(0).parameters().get("server_max_window_bits"));
+        assertEquals("x-webkit-deflate-frame", extensions.get(1).name());
+        assertTrue(extensions.get(1).parameters().isEmpty());
+
+        assertEquals("a, permessage-deflate; client_max_window_bits; server_max_window_bits=10",
+                WebSocketExtensionUtil.appendExtension("a", extensions.get(0)));
+    }
+
+    @Test
+    public void testNegotiation() {
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new WebSocketServerExtensionHandler(new PerMessageDeflateServerExtensionHandshaker()));
+
+        ch.writeInbound(newUpgradeRequest("x-unknown, permessage-deflate; server_max_window_bits=10, " +
+                                          "permessage-deflate; client_max_window_bits"));
+        HttpRequest request = ch.readInbound();
+        assertNotNull(request);
+
+        HttpResponse response = newUpgradeResponse();
+        ch.writeOutbound(response);
+        assertSame(response, ch.readOutbound());
+        // The offer which limits the window of the server is declined.
+        assertEquals("permessage-deflate; server_no_context_takeover",
+                response.headers().get(Names.SEC_WEBSOCKET_EXTENSIONS));
+
+        assertNull(ch.pipeline().get(WebSocketServerExtensionHandler.class));
+        assertNotNull(ch.pipeline().get(WebSocketExtensionEncoder.class));
+        assertNotNull(ch.pipeline().get(WebSocketExtensionDecoder.class));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testNoAcceptableOffer() {
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new WebSocketServerExtensionHandler(new PerMessageDeflateServerExtensionHandshaker()));
+
+        ch.writeInbound(newUpgradeRequest("permessage-deflate; unknown_parameter"));
+        assertNotNull(ch.readInbound());
+
+        HttpResponse response = newUpgradeResponse();
+        ch.writeOutbound(response);
+        assertSame(response, ch.readOutbound());
+        assertFalse(response.headers().contains(Names.SEC_WEBSOCKET_EXTENSIONS));
+        assertNull(ch.pipeline().get(WebSocketExtensionEncoder.class));
+        assertFalse(ch.finish());
+    }
+
+    private static HttpRequest newUpgradeRequest(String extensions) {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ws");
+        request.headers().set(Names.UPGRADE, "websocket");
+        request.headers().set(Names.CONNECTION, Values.UPGRADE);
+        request.headers().set(Names.SEC_WEBSOCKET_EXTENSIONS, extensions);
+        return request;
+    }
+
+    private static HttpResponse newUpgradeResponse() {
+        HttpResponse response = new DefaultFullHttpResponse(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.SWITCHING_PROTOCOLS);
+        response.headers().set(Names.UPGRADE, Values.WEBSOCKET);
+        response.headers().set(Names.CONNECTION, Values.UPGRADE);
+        return response;
+    }
+}
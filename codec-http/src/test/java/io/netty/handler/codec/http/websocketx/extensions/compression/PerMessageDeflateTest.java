@@ -0,0 +1,309 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PerMessageDeflateTest {
+
+    private static final String TEXT =
+            "Lorem ipsum dolor sit amet, consectetur adipiscing elit. Lorem ipsum dolor sit amet, consectetur.";
+
+    @Test
+    public void testDecodeSyncFlushedMessage() {
+        // The example of RFC 7692, section 7.2.3.1
+        EmbeddedChannel ch = new EmbeddedChannel(new PerMessageDeflateDecoder(false));
+        assertEquals("Hello", decode(ch, 0xf2, 0x48, 0xcd, 0xc9, 0xc9, 0x07, 0x00));
+        // The same message again, using the context of the previous one (section 7.2.3.2)
+        assertEquals("Hello", decode(ch, 0xf2, 0x00, 0x11, 0x00, 0x00));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testDecodeFinishedMessage() {
+        // The example of RFC 7692, section 7.2.3.4
+        EmbeddedChannel ch = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+        assertEquals("Hello", decode(ch, 0xf3, 0x48, 0xcd, 0xc9, 0xc9, 0x07, 0x00, 0x00));
+        assertEquals("Hello", decode(ch, 0xf3, 0x48, 0xcd, 0xc9, 0xc9, 0x07, 0x00, 0x00));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testRoundTripWithoutContextTakeover() {
+        testRoundTrip(true);
+    }
+
+    @Test
+    public void testRoundTripWithContextTakeover() {
+        testRoundTrip(false);
+    }
+
+    private static void testRoundTrip(boolean noContext) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new PerMessageDeflateEncoder(6, noContext));
+        EmbeddedChannel decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(noContext));
+
+        int firstLength = 0;
+        for (int i = 0; i < 3; i ++) {
+            encoder.writeOutbound(new TextWebSocketFrame(TEXT));
+            WebSocketFrame compressed = encoder.readOutbound();
+            assertTrue(compressed instanceof TextWebSocketFrame);
+            assertEquals(WebSocketExtension.RSV1, compressed.rsv());
+            assertTrue(compressed.content().readableBytes() < TEXT.length());
+            if (i == 0) {
+                firstLength = compressed.content().readableBytes();
+            } else if (noContext) {
+                assertEquals(firstLength, compressed.content().readableBytes());
+            } else {
+                // The previous messages are in the window.
+                assertTrue(compressed.content().readableBytes() < firstLength);
+            }
+
+            decoder.writeInbound(compressed);
+            TextWebSocketFrame decompressed = decoder.readInbound();
+            assertEquals(0, decompressed.rsv());
+            assertEquals(TEXT, decompressed.text());
+            decompressed.release();
+        }
+
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testFragmentedMessage() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new PerMessageDeflateEncoder(9, true));
+        EmbeddedChannel decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+
+        encoder.writeOutbound(new BinaryWebSocketFrame(false, 0, Unpooled.copiedBuffer(TEXT, CharsetUtil.US_ASCII)));
+        encoder.writeOutbound(new ContinuationWebSocketFrame(
+                true, 0, Unpooled.copiedBuffer(TEXT, CharsetUtil.US_ASCII)));
+        WebSocketFrame first = encoder.readOutbound();
+        WebSocketFrame second = encoder.readOutbound();
+        assertEquals(WebSocketExtension.RSV1, first.rsv());
+        assertFalse(first.isFinalFragment());
+        assertEquals(0, second.rsv());
+        assertTrue(second.isFinalFragment());
+
+        decoder.writeInbound(first);
+        decoder.writeInbound(second);
+        WebSocketFrame firstDecompressed = decoder.readInbound();
+        WebSocketFrame secondDecompressed = decoder.readInbound();
+        assertTrue(firstDecompressed instanceof BinaryWebSocketFrame);
+        assertTrue(secondDecompressed instanceof ContinuationWebSocketFrame);
+        assertEquals(TEXT + TEXT, firstDecompressed.content().toString(CharsetUtil.US_ASCII) +
+                secondDecompressed.content().toString(CharsetUtil.US_ASCII));
+        firstDecompressed.release();
+        secondDecompressed.release();
+
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testEmptyMessage() {
+        for (boolean noContext: new boolean[] { true, false }) {
+            EmbeddedChannel encoder = new EmbeddedChannel(new PerMessageDeflateEncoder(6, noContext));
+            EmbeddedChannel decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(noContext));
+
+            encoder.writeOutbound(new TextWebSocketFrame(""));
+            decoder.writeInbound(encoder.readOutbound());
+            TextWebSocketFrame decompressed = decoder.readInbound();
+            assertEquals("", decompressed.text());
+            decompressed.release();
+
+            assertFalse(encoder.finish());
+            assertFalse(decoder.finish());
+        }
+    }
+
+    @Test
+    public void testUncompressedFramesPassThrough() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new PerMessageDeflateEncoder(6, true));
+        EmbeddedChannel decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+
+        WebSocketFrame compressed = new BinaryWebSocketFrame(true, WebSocketExtension.RSV1, Unpooled.buffer(1));
+        encoder.writeOutbound(compressed);
+        assertSame(compressed, encoder.readOutbound());
+        compressed.release();
+
+        WebSocketFrame uncompressed = new TextWebSocketFrame(TEXT);
+        decoder.writeInbound(uncompressed);
+        assertSame(uncompressed, decoder.readInbound());
+        uncompressed.release();
+
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testMessageSizeLimit() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new PerMessageDeflateEncoder(9, true));
+        EmbeddedChannel decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(true, 4096));
+
+        // 1 MiB of zeros compresses to about a kilobyte.
+        encoder.writeOutbound(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(new byte[1024 * 1024])));
+        WebSocketFrame compressed = encoder.readOutbound();
+        assertTrue(compressed.content().readableBytes() < 4096);
+        try {
+            decoder.writeInbound(compressed);
+            fail();
+        } catch (TooLongFrameException expected) {
+            // Expected
+        }
+        assertNull(decoder.readInbound());
+
+        // The limit applies to all the fragments of a message.
+        decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(true, 4096));
+        encoder.writeOutbound(new BinaryWebSocketFrame(false, 0, Unpooled.wrappedBuffer(new byte[3072])));
+        encoder.writeOutbound(new ContinuationWebSocketFrame(true, 0, Unpooled.wrappedBuffer(new byte[3072])));
+        decoder.writeInbound(encoder.readOutbound());
+        WebSocketFrame first = decoder.readInbound();
+        assertTrue(first.content().readableBytes() <= 3072);
+        first.release();
+        try {
+            decoder.writeInbound(encoder.readOutbound());
+            fail();
+        } catch (TooLongFrameException expected) {
+            // Expected
+        }
+        assertFalse(encoder.finish());
+    }
+
+    @Test
+    public void testInvalidUtf8() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new PerMessageDeflateEncoder(6, true));
+        EmbeddedChannel decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+
+        // An overlong encoding of NUL
+        encoder.writeOutbound(new TextWebSocketFrame(
+                Unpooled.wrappedBuffer(new byte[] { 'a', (byte) 0xc0, (byte) 0x80 })));
+        try {
+            decoder.writeInbound(encoder.readOutbound());
+            fail();
+        } catch (CorruptedFrameException expected) {
+            // Expected
+        }
+        assertNull(decoder.readInbound());
+
+        // A sequence which is not complete at the end of the message
+        decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+        encoder.writeOutbound(new TextWebSocketFrame(false, 0, Unpooled.wrappedBuffer(new byte[] { 'a' })));
+        encoder.writeOutbound(new ContinuationWebSocketFrame(
+                true, 0, Unpooled.wrappedBuffer(new byte[] { (byte) 0xe2, (byte) 0x82 })));
+        decoder.writeInbound(encoder.readOutbound());
+        ((WebSocketFrame) decoder.readInbound()).release();
+        try {
+            decoder.writeInbound(encoder.readOutbound());
+            fail();
+        } catch (CorruptedFrameException expected) {
+            // Expected
+        }
+
+        // Binary messages are not checked.
+        decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+        encoder.writeOutbound(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(new byte[] { (byte) 0xff })));
+        decoder.writeInbound(encoder.readOutbound());
+        ((WebSocketFrame) decoder.readInbound()).release();
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testUtf8SequenceSplitAcrossFragments() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new PerMessageDeflateEncoder(6, false));
+        EmbeddedChannel decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(false));
+
+        // U+20AC (EURO SIGN) is E2 82 AC.
+        encoder.writeOutbound(new TextWebSocketFrame(
+                false, 0, Unpooled.wrappedBuffer(new byte[] { 'a', (byte) 0xe2, (byte) 0x82 })));
+        encoder.writeOutbound(new ContinuationWebSocketFrame(
+                true, 0, Unpooled.wrappedBuffer(new byte[] { (byte) 0xac })));
+        decoder.writeInbound(encoder.readOutbound());
+        decoder.writeInbound(encoder.readOutbound());
+        WebSocketFrame first = decoder.readInbound();
+        WebSocketFrame second = decoder.readInbound();
+        ByteBuf text = Unpooled.wrappedBuffer(first.content(), second.content());
+        assertEquals("a\u20ac", text.toString(CharsetUtil.UTF_8));
+        text.release();
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testHandshake() {
+        PerMessageDeflateServerExtensionHandshaker handshaker =
+                new PerMessageDeflateServerExtensionHandshaker(6, false, true, 10);
+
+        assertNull(handshaker.handshakeExtension(newOffer("x-webkit-deflate-frame", null, null)));
+        assertNull(handshaker.handshakeExtension(newOffer("permessage-deflate", "server_max_window_bits", "10")));
+        assertNull(handshaker.handshakeExtension(newOffer("permessage-deflate", "client_max_window_bits", "16")));
+        assertNull(handshaker.handshakeExtension(newOffer("permessage-deflate", "unknown", null)));
+
+        WebSocketServerExtension extension = handshaker.handshakeExtension(
+                newOffer("permessage-deflate", "server_max_window_bits", "15"));
+        WebSocketExtensionData response = extension.newResponseData();
+        assertEquals(WebSocketExtension.RSV1, extension.rsv());
+        assertEquals("permessage-deflate", response.name());
+        assertEquals(Collections.singleton("client_no_context_takeover"), response.parameters().keySet());
+
+        extension = handshaker.handshakeExtension(newOffer("permessage-deflate", "client_max_window_bits", null));
+        assertEquals("10", extension.newResponseData().parameters().get("client_max_window_bits"));
+        extension = handshaker.handshakeExtension(newOffer("permessage-deflate", "client_max_window_bits", "9"));
+        assertEquals("9", extension.newResponseData().parameters().get("client_max_window_bits"));
+
+        extension = handshaker.handshakeExtension(newOffer("permessage-deflate", "server_no_context_takeover", null));
+        assertTrue(extension.newResponseData().parameters().containsKey("server_no_context_takeover"));
+    }
+
+    private static WebSocketExtensionData newOffer(String name, String parameter, String value) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (parameter != null) {
+            parameters.put(parameter, value);
+        }
+        return new WebSocketExtensionData(name, parameters);
+    }
+
+    private static String decode(EmbeddedChannel ch, int... payload) {
+        ByteBuf buf = Unpooled.buffer(payload.length);
+        for (int b: payload) {
+            buf.writeByte(b);
+        }
+        ch.writeInbound(new TextWebSocketFrame(true, WebSocketExtension.RSV1, buf));
+        TextWebSocketFrame frame = ch.readInbound();
+        String text = frame.text();
+        frame.release();
+        return text;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link MessageToByteEncoder} which encodes consecutive messages into the same {@link ByteBuf}, and writes that
+ * buffer to the next handler once it holds {@code maxBatchSize} bytes or once the channel is flushed.  This avoids
+ * a buffer allocation and an entry in the outbound buffer for every message, which matters when many small messages
+ * are written per flush.
+ * <p>
+ * The {@link ChannelPromise}s of the batched messages are notified when the write of the whole batch completes.
+ * A message which is not accepted by {@link #acceptOutboundMessage(Object)} or whose
+ * {@linkplain #estimateSize(Object) estimated size} is at least {@code maxBatchSize} is written on its own, after the
+ * pending batch so that the order of the messages is preserved.
+ * <p>
+ * An instance holds the pending batch and thus must not be shared between channels.
+ */
+public abstract class BatchingMessageToByteEncoder<I> extends MessageToByteEncoder<I> {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 8192;
+
+    private final int maxBatchSize;
+    private final List<ChannelPromise> promises = new ArrayList<ChannelPromise>();
+    private ByteBuf batch;
+
+    /**
+     * Creates a new instance with a batch size of {@code 8192} bytes which detects the type of
+     * the messages to match out of the type parameter of the class.
+     */
+    protected BatchingMessageToByteEncoder() {
+        this(DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new instance which detects the type of the messages to match out of the type parameter of the
+     * class.
+     *
+     * @param maxBatchSize  the number of bytes in a batch which trigger its write
+     */
+    protected BatchingMessageToByteEncoder(int maxBatchSize) {
+        this(maxBatchSize, true);
+    }
+
+    /**
+     * Creates a new instance which detects the type of the messages to match out of the type parameter of the
+     * class.
+     *
+     * @param maxBatchSize  the number of bytes in a batch which trigger its write
+     * @param preferDirect  {@code true} if a direct {@link ByteBuf} should be tried to be used as target for the
+     *                      encoded messages
+     */
+    protected BatchingMessageToByteEncoder(int maxBatchSize, boolean preferDirect) {
+        super(preferDirect);
+        this.maxBatchSize = checkMaxBatchSize(maxBatchSize);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param outboundMessageType   the type of messages to match
+     * @param maxBatchSize          the number of bytes in a batch which trigger its write
+     * @param preferDirect          {@code true} if a direct {@link ByteBuf} should be tried to be used as target for
+     *                              the encoded messages
+     */
+    protected BatchingMessageToByteEncoder(
+            Class<? extends I> outboundMessageType, int maxBatchSize, boolean preferDirect) {
+        super(outboundMessageType, preferDirect);
+        this.maxBatchSize = checkMaxBatchSize(maxBatchSize);
+    }
+
+    private static int checkMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize: " + maxBatchSize + " (expected: > 0)");
+        }
+        return maxBatchSize;
+    }
+
+    /**
+     * Returns the number of bytes in a batch which trigger its write.
+     */
+    public final int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        final I cast;
+        try {
+            if (!acceptOutboundMessage(msg)) {
+                writeBatch(ctx);
+                ctx.write(msg, promise);
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            I m = (I) msg;
+            cast = m;
+            if (estimateSize(cast) >= maxBatchSize) {
+                // Too large to be worth copying into the batch.
+                writeBatch(ctx);
+                super.write(ctx, msg, promise);
+                return;
+            }
+        } catch (EncoderException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new EncoderException(e);
+        }
+
+        ByteBuf batch = this.batch;
+        if (batch == null) {
+            batch = this.batch = allocateBatch(ctx);
+        }
+        final int writerIndex = batch.writerIndex();
+        try {
+            encode(ctx, cast, batch);
+        } catch (Throwable e) {
+            // Discard what was partially written so that the other messages of the batch are not affected.
+            batch.writerIndex(writerIndex);
+            if (e instanceof EncoderException) {
+                throw (EncoderException) e;
+            }
+            throw new EncoderException(e);
+        } finally {
+            ReferenceCountUtil.release(cast);
+        }
+
+        if (promise != ctx.voidPromise()) {
+            promises.add(promise);
+        }
+        if (batch.readableBytes() >= maxBatchSize) {
+            writeBatch(ctx);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        writeBatch(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        writeBatch(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        writeBatch(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        writeBatch(ctx);
+    }
+
+    /**
+     * Returns the estimated number of bytes the specified message will be encoded into, or {@code -1} if unknown.
+     * A message whose estimate is at least {@link #maxBatchSize()} is encoded into its own buffer.  The default
+     * implementation returns the number of readable bytes of a {@link ByteBuf} or of the content of a
+     * {@link ByteBufHolder}, and {@code -1} for any other message, which is then always batched.
+     */
+    protected int estimateSize(I msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * Allocate the {@link ByteBuf} into which the messages of a batch are encoded.
+     */
+    protected ByteBuf allocateBatch(ChannelHandlerContext ctx) throws Exception {
+        if (isPreferDirect()) {
+            return ctx.alloc().ioBuffer(maxBatchSize);
+        } else {
+            return ctx.alloc().heapBuffer(maxBatchSize);
+        }
+    }
+
+    /**
+     * Writes the pending batch, if any, to the next handler.
+     */
+    private void writeBatch(ChannelHandlerContext ctx) {
+        final ByteBuf batch = this.batch;
+        if (batch == null) {
+            return;
+        }
+        this.batch = null;
+
+        final List<ChannelPromise> promises = this.promises;
+        final ChannelPromise promise;
+        switch (promises.size()) {
+        case 0:
+            promise = ctx.voidPromise();
+            break;
+        case 1:
+            promise = promises.get(0);
+            break;
+        default:
+            promise = ctx.newPromise();
+            promise.addListener(
+                    new ChannelPromiseNotifier(true, promises.toArray(new ChannelPromise[promises.size()])));
+        }
+        promises.clear();
+
+        if (batch.isReadable()) {
+            ctx.write(batch, promise);
+        } else {
+            batch.release();
+            ctx.write(Unpooled.EMPTY_BUFFER, promise);
+        }
+    }
+}
@@ -16,8 +16,10 @@
 package io.netty.handler.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -58,6 +60,7 @@ import java.util.List;
 public class DelimiterBasedFrameDecoder extends ByteToMessageDecoder {
 
     private final ByteBuf[] delimiters;
+    private final byte[] firstBytes;
     private final int maxFrameLength;
     private final boolean stripDelimiter;
     private final boolean failFast;
@@ -174,6 +177,7 @@ public class DelimiterBasedFrameDecoder extends ByteToMessageDecoder {
         if (isLineBased(delimiters) && !isSubclass()) {
             lineBasedDecoder = new LineBasedFrameDecoder(maxFrameLength, stripDelimiter, failFast);
             this.delimiters = null;
+            firstBytes = null;
         } else {
             this.delimiters = new ByteBuf[delimiters.length];
             for (int i = 0; i < delimiters.length; i ++) {
@@ -181,6 +185,7 @@ public class DelimiterBasedFrameDecoder extends ByteToMessageDecoder {
                 validateDelimiter(d);
                 this.delimiters[i] = d.slice(d.readerIndex(), d.readableBytes());
             }
+            firstBytes = firstBytes(this.delimiters);
             lineBasedDecoder = null;
         }
         this.maxFrameLength = maxFrameLength;
@@ -204,6 +209,24 @@ public class DelimiterBasedFrameDecoder extends ByteToMessageDecoder {
                 && b.getByte(0) == '\n';
     }
 
+    /**
+     * Returns the distinct first bytes of the specified delimiters.
+     */
+    private static byte[] firstBytes(ByteBuf[] delimiters) {
+        byte[] firstBytes = new byte[delimiters.length];
+        int n = 0;
+        outer: for (ByteBuf d: delimiters) {
+            byte b = d.getByte(0);
+            for (int i = 0; i < n; i ++) {
+                if (firstBytes[i] == b) {
+                    continue outer;
+                }
+            }
+            firstBytes[n ++] = b;
+        }
+        return Arrays.copyOf(firstBytes, n);
+    }
+
     /**
      * Return {@code true} if the current instance is a subclass of DelimiterBasedFrameDecoder
      */
@@ -231,15 +254,26 @@ public class DelimiterBasedFrameDecoder extends ByteToMessageDecoder {
         if (lineBasedDecoder != null) {
             return lineBasedDecoder.decode(ctx, buffer);
         }
-        // Try all delimiters and choose the delimiter which yields the shortest frame.
+        // Find the delimiter which yields the shortest frame.
         int minFrameLength = Integer.MAX_VALUE;
         ByteBuf minDelim = null;
-        for (ByteBuf delim: delimiters) {
-            int frameLength = indexOf(buffer, delim);
-            if (frameLength >= 0 && frameLength < minFrameLength) {
-                minFrameLength = frameLength;
-                minDelim = delim;
+        final int readerIndex = buffer.readerIndex();
+        final int writerIndex = buffer.writerIndex();
+        int i = readerIndex;
+        search: while (i < writerIndex) {
+            // Look for the first byte of all delimiters at once.
+            i = ByteBufUtil.indexOfAny(buffer, i, writerIndex, firstBytes);
+            if (i < 0) {
+                break;
             }
+            for (ByteBuf delim: delimiters) {
+                if (startsWith(buffer, i, writerIndex, delim)) {
+                    minFrameLength = i - readerIndex;
+                    minDelim = delim;
+                    break search;
+                }
+            }
+            i ++;
         }
 
         if (minDelim != null) {
@@ -310,32 +344,20 @@ public class DelimiterBasedFrameDecoder extends ByteToMessageDecoder {
     }
 
     /**
-     * Returns the number of bytes between the readerIndex of the haystack and
-     * the first needle found in the haystack.  -1 is returned if no needle is
-     * found in the haystack.
+     * Returns {@code true} if and only if the bytes of the haystack from the specified index, up to the specified
+     * writerIndex, begin with the whole delimiter.
      */
-    private static int indexOf(ByteBuf haystack, ByteBuf needle) {
-        for (int i = haystack.readerIndex(); i < haystack.writerIndex(); i ++) {
-            int haystackIndex = i;
-            int needleIndex;
-            for (needleIndex = 0; needleIndex < needle.capacity(); needleIndex ++) {
-                if (haystack.getByte(haystackIndex) != needle.getByte(needleIndex)) {
-                    break;
-                } else {
-                    haystackIndex ++;
-                    if (haystackIndex == haystack.writerIndex() &&
-                        needleIndex != needle.capacity() - 1) {
-                        return -1;
-                    }
-                }
-            }
-
-            if (needleIndex == needle.capacity()) {
-                // Found the needle from the haystack!
-                return i - haystack.readerIndex();
+    private static boolean startsWith(ByteBuf haystack, int index, int writerIndex, ByteBuf delim) {
+        final int length = delim.capacity();
+        if (writerIndex - index < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i ++) {
+            if (haystack.getByte(index + i) != delim.getByte(i)) {
+                return false;
             }
         }
-        return -1;
+        return true;
     }
 
     private static void validateDelimiter(ByteBuf delimiter) {
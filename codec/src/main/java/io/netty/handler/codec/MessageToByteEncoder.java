@@ -102,11 +102,7 @@ public abstract class MessageToByteEncoder<I> extends ChannelHandlerAdapter {
             if (acceptOutboundMessage(msg)) {
                 @SuppressWarnings("unchecked")
                 I cast = (I) msg;
-                if (preferDirect) {
-                    buf = ctx.alloc().ioBuffer();
-                } else {
-                    buf = ctx.alloc().heapBuffer();
-                }
+                buf = allocateBuffer(ctx, cast, preferDirect);
                 try {
                     encode(ctx, cast, buf);
                 } finally {
@@ -134,6 +130,26 @@ public abstract class MessageToByteEncoder<I> extends ChannelHandlerAdapter {
         }
     }
 
+    /**
+     * Returns {@code true} if a direct {@link ByteBuf} should be tried to be used as target for the encoded messages.
+     */
+    protected boolean isPreferDirect() {
+        return preferDirect;
+    }
+
+    /**
+     * Allocate a {@link ByteBuf} which will be used as argument of {@link #encode(ChannelHandlerContext, I, ByteBuf)}.
+     * Sub-classes may override this method to return a {@link ByteBuf} with a better matching initial capacity.
+     */
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, @SuppressWarnings("unused") I msg,
+                                     boolean preferDirect) throws Exception {
+        if (preferDirect) {
+            return ctx.alloc().ioBuffer();
+        } else {
+            return ctx.alloc().heapBuffer();
+        }
+    }
+
     /**
      * Encode a message into a {@link ByteBuf}. This method will be called for each written message that can be handled
      * by this encoder.
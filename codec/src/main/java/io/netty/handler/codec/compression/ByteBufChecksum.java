@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufProcessor;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * A {@link Checksum} which can be updated with the content of a {@link ByteBuf} without copying it, whether the
+ * buffer is backed by an array or by direct memory.  It can be shared by the framing codecs which checksum their
+ * frames.
+ */
+public abstract class ByteBufChecksum implements Checksum {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ByteBufChecksum.class);
+
+    /**
+     * {@code java.util.zip.CRC32C}, which is available since Java 9 and is an intrinsic of the JVM.
+     */
+    private static final Constructor<?> JDK_CRC32C_CONSTRUCTOR;
+    private static final Method JDK_UPDATE_BYTE_BUFFER;
+
+    static {
+        Constructor<?> constructor = null;
+        Method update = null;
+        try {
+            Class<?> crc32c = Class.forName("java.util.zip.CRC32C", false, Checksum.class.getClassLoader());
+            constructor = crc32c.getConstructor();
+            update = crc32c.getMethod("update", ByteBuffer.class);
+            // Make sure that it works before using it.
+            Checksum checksum = (Checksum) constructor.newInstance();
+            update.invoke(checksum, ByteBuffer.allocateDirect(1));
+        } catch (Throwable t) {
+            constructor = null;
+            update = null;
+        }
+        JDK_CRC32C_CONSTRUCTOR = constructor;
+        JDK_UPDATE_BYTE_BUFFER = update;
+        logger.debug("java.util.zip.CRC32C: {}", constructor != null ? "available" : "unavailable");
+    }
+
+    /**
+     * Creates a new CRC32-C checksum, which is calculated by {@code java.util.zip.CRC32C} when running on Java 9
+     * or above and by a slicing-by-8 implementation otherwise.
+     */
+    public static ByteBufChecksum newCrc32c() {
+        if (JDK_CRC32C_CONSTRUCTOR != null) {
+            try {
+                return new JdkByteBufferChecksum((Checksum) JDK_CRC32C_CONSTRUCTOR.newInstance());
+            } catch (Exception e) {
+                // Should never happen as it was instantiated successfully before.
+            }
+        }
+        return new Crc32c();
+    }
+
+    /**
+     * Returns the specified {@link Checksum} as a {@link ByteBufChecksum}, wrapping it if necessary.
+     */
+    public static ByteBufChecksum wrap(Checksum checksum) {
+        if (checksum == null) {
+            throw new NullPointerException("checksum");
+        }
+        if (checksum instanceof ByteBufChecksum) {
+            return (ByteBufChecksum) checksum;
+        }
+        return new ChecksumWrapper(checksum);
+    }
+
+    /**
+     * Updates this checksum with the specified region of the specified buffer.  The indexes of the buffer are
+     * not modified.
+     */
+    public void update(ByteBuf buf, int index, int length) {
+        if (buf.hasArray()) {
+            update(buf.array(), buf.arrayOffset() + index, length);
+        } else {
+            buf.forEachByte(index, length, new ByteBufProcessor() {
+                @Override
+                public boolean process(byte value) throws Exception {
+                    update(value);
+                    return true;
+                }
+            });
+        }
+    }
+
+    private static final class ChecksumWrapper extends ByteBufChecksum {
+        private final Checksum checksum;
+
+        ChecksumWrapper(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(int b) {
+            checksum.update(b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            checksum.update(b, off, len);
+        }
+
+        @Override
+        public long getValue() {
+            return checksum.getValue();
+        }
+
+        @Override
+        public void reset() {
+            checksum.reset();
+        }
+    }
+
+    /**
+     * Wraps a {@link Checksum} of Java 9 or above, which can be updated with a direct {@link ByteBuffer}.
+     */
+    private static final class JdkByteBufferChecksum extends ByteBufChecksum {
+        private final Checksum checksum;
+
+        JdkByteBufferChecksum(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(ByteBuf buf, int index, int length) {
+            if (buf.hasArray()) {
+                checksum.update(buf.array(), buf.arrayOffset() + index, length);
+                return;
+            }
+
+            ByteBuffer nioBuf = buf.nioBufferCount() == 1 ? buf.internalNioBuffer(index, length) : null;
+            if (nioBuf == null) {
+                super.update(buf, index, length);
+                return;
+            }
+            try {
+                JDK_UPDATE_BYTE_BUFFER.invoke(checksum, nioBuf);
+            } catch (Exception e) {
+                throw new IllegalStateException("failed to update the checksum", e);
+            }
+        }
+
+        @Override
+        public void update(int b) {
+            checksum.update(b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            checksum.update(b, off, len);
+        }
+
+        @Override
+        public long getValue() {
+            return checksum.getValue();
+        }
+
+        @Override
+        public void reset() {
+            checksum.reset();
+        }
+    }
+}
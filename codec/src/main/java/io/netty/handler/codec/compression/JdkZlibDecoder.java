@@ -18,6 +18,7 @@ package io.netty.handler.codec.compression;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.zip.CRC32;
 import java.util.zip.DataFormatException;
@@ -27,6 +28,11 @@ import java.util.zip.Inflater;
 
 /**
  * Decompress a {@link ByteBuf} using the inflate algorithm.
+ * <p>
+ * The input is passed to the {@link Inflater} without copying it if it is backed by an array, or if it is
+ * direct and the {@link Inflater} accepts a {@link ByteBuffer}, which is the case since Java 11.  The
+ * {@link Inflater} can be borrowed from a {@link JdkZlibPool}, and it is returned to the pool or ended when this
+ * decoder is removed from the pipeline.
  */
 public class JdkZlibDecoder extends ZlibDecoder {
     private static final int FHCRC = 0x02;
@@ -36,6 +42,8 @@ public class JdkZlibDecoder extends ZlibDecoder {
     private static final int FRESERVED = 0xE0;
 
     private final Inflater inflater;
+    private final boolean nowrap;
+    private final JdkZlibPool pool;
     private final byte[] dictionary;
 
     // GZIP related
@@ -62,7 +70,7 @@ public class JdkZlibDecoder extends ZlibDecoder {
      * Creates a new instance with the default wrapper ({@link ZlibWrapper#ZLIB}).
      */
     public JdkZlibDecoder() {
-        this(ZlibWrapper.ZLIB, null);
+        this(ZlibWrapper.ZLIB, null, null);
     }
 
     /**
@@ -71,7 +79,7 @@ public class JdkZlibDecoder extends ZlibDecoder {
      * supports the preset dictionary.
      */
     public JdkZlibDecoder(byte[] dictionary) {
-        this(ZlibWrapper.ZLIB, dictionary);
+        this(ZlibWrapper.ZLIB, dictionary, null);
     }
 
     /**
@@ -80,29 +88,43 @@ public class JdkZlibDecoder extends ZlibDecoder {
      * supported atm.
      */
     public JdkZlibDecoder(ZlibWrapper wrapper) {
-        this(wrapper, null);
+        this(wrapper, null, null);
     }
 
-    private JdkZlibDecoder(ZlibWrapper wrapper, byte[] dictionary) {
+    /**
+     * Creates a new instance with the specified wrapper, which borrows its {@link Inflater} from the specified
+     * pool.
+     * Be aware that only {@link ZlibWrapper#GZIP}, {@link ZlibWrapper#ZLIB} and {@link ZlibWrapper#NONE} are
+     * supported atm.
+     *
+     * @param pool the pool of {@link Inflater}s, or {@code null} to create a new one
+     */
+    public JdkZlibDecoder(ZlibWrapper wrapper, JdkZlibPool pool) {
+        this(wrapper, null, pool);
+    }
+
+    private JdkZlibDecoder(ZlibWrapper wrapper, byte[] dictionary, JdkZlibPool pool) {
         if (wrapper == null) {
             throw new NullPointerException("wrapper");
         }
         switch (wrapper) {
             case GZIP:
-                inflater = new Inflater(true);
+                nowrap = true;
                 crc = new CRC32();
                 break;
             case NONE:
-                inflater = new Inflater(true);
+                nowrap = true;
                 crc = null;
                 break;
             case ZLIB:
-                inflater = new Inflater();
+                nowrap = false;
                 crc = null;
                 break;
             default:
                 throw new IllegalArgumentException("Only GZIP or ZLIB is supported, but you used " + wrapper);
         }
+        this.pool = pool;
+        inflater = pool != null ? pool.acquireInflater(nowrap) : new Inflater(nowrap);
         this.dictionary = dictionary;
     }
 
@@ -142,6 +164,9 @@ public class JdkZlibDecoder extends ZlibDecoder {
         int readableBytes = in.readableBytes();
         if (in.hasArray()) {
             inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+        } else if (JdkZlibUtil.hasByteBufferSupport() && in.nioBufferCount() == 1) {
+            // The Inflater keeps the buffer until the next call, so it must not be the internal one.
+            JdkZlibUtil.setInput(inflater, in.nioBuffer());
         } else {
             byte[] array = new byte[in.readableBytes()];
             in.getBytes(in.readerIndex(), array);
@@ -214,7 +239,11 @@ public class JdkZlibDecoder extends ZlibDecoder {
     @Override
     protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
         super.handlerRemoved0(ctx);
-        inflater.end();
+        if (pool != null) {
+            pool.releaseInflater(inflater, nowrap);
+        } else {
+            inflater.end();
+        }
     }
 
     private boolean readGZIPHeader(ByteBuf in) {
@@ -23,6 +23,7 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.ChannelPromiseNotifier;
 import io.netty.util.concurrent.EventExecutor;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
@@ -30,12 +31,25 @@ import java.util.zip.Deflater;
 
 /**
  * Compresses a {@link ByteBuf} using the deflate algorithm.
+ * <p>
+ * The input is passed to the {@link Deflater} without copying it if it is backed by an array, or if it is
+ * direct and the {@link Deflater} accepts a {@link ByteBuffer}, which is the case since Java 11.  The output is
+ * written directly into the outbound buffer in the same way.  The {@link Deflater} can be borrowed from a
+ * {@link JdkZlibPool}, and it is returned to the pool or ended when the stream is finished or when this encoder
+ * is removed from the pipeline.
  */
 public class JdkZlibEncoder extends ZlibEncoder {
 
+    private static final int ENCODE_BUF_SIZE = 8192;
+
     private final ZlibWrapper wrapper;
-    private final byte[] encodeBuf = new byte[8192];
-    private final Deflater deflater;
+    private final int compressionLevel;
+    private final JdkZlibPool pool;
+    /**
+     * Used only when the output can be written neither into an array nor into a {@link ByteBuffer}.
+     */
+    private byte[] encodeBuf;
+    private Deflater deflater;
     private volatile boolean finished;
     private volatile ChannelHandlerContext ctx;
 
@@ -93,6 +107,24 @@ public class JdkZlibEncoder extends ZlibEncoder {
      * @throws CompressionException if failed to initialize zlib
      */
     public JdkZlibEncoder(ZlibWrapper wrapper, int compressionLevel) {
+        this(wrapper, compressionLevel, null);
+    }
+
+    /**
+     * Creates a new zlib encoder with the specified {@code compressionLevel}
+     * and the specified wrapper, which borrows its {@link Deflater} from the
+     * specified pool.
+     *
+     * @param compressionLevel
+     *        {@code 1} yields the fastest compression and {@code 9} yields the
+     *        best compression.  {@code 0} means no compression.  The default
+     *        compression level is {@code 6}.
+     * @param pool
+     *        the pool of {@link Deflater}s, or {@code null} to create a new one
+     *
+     * @throws CompressionException if failed to initialize zlib
+     */
+    public JdkZlibEncoder(ZlibWrapper wrapper, int compressionLevel, JdkZlibPool pool) {
         if (compressionLevel < 0 || compressionLevel > 9) {
             throw new IllegalArgumentException(
                     "compressionLevel: " + compressionLevel + " (expected: 0-9)");
@@ -107,7 +139,13 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         this.wrapper = wrapper;
-        deflater = new Deflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        this.compressionLevel = compressionLevel;
+        this.pool = pool;
+        if (pool != null) {
+            deflater = pool.acquireDeflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        } else {
+            deflater = new Deflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        }
     }
 
     /**
@@ -148,6 +186,8 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         wrapper = ZlibWrapper.ZLIB;
+        this.compressionLevel = compressionLevel;
+        pool = null;
         deflater = new Deflater(compressionLevel);
         deflater.setDictionary(dictionary);
     }
@@ -196,10 +236,8 @@ public class JdkZlibEncoder extends ZlibEncoder {
             return;
         }
 
-        byte[] inAry = new byte[uncompressed.readableBytes()];
-        uncompressed.readBytes(inAry);
-
-        int sizeEstimate = (int) Math.ceil(inAry.length * 1.001) + 12;
+        final int len = uncompressed.readableBytes();
+        int sizeEstimate = (int) Math.ceil(len * 1.001) + 12;
 
         if (writeHeader) {
             writeHeader = false;
@@ -218,11 +256,30 @@ public class JdkZlibEncoder extends ZlibEncoder {
             out.ensureWritable(sizeEstimate);
         }
 
-        if (wrapper == ZlibWrapper.GZIP) {
-            crc.update(inAry);
+        // The input is consumed completely before returning, so the Deflater does not access it afterwards.
+        if (uncompressed.hasArray()) {
+            byte[] inAry = uncompressed.array();
+            int offset = uncompressed.arrayOffset() + uncompressed.readerIndex();
+            if (wrapper == ZlibWrapper.GZIP) {
+                crc.update(inAry, offset, len);
+            }
+            deflater.setInput(inAry, offset, len);
+        } else if (JdkZlibUtil.hasByteBufferSupport() && uncompressed.nioBufferCount() == 1) {
+            ByteBuffer input = uncompressed.nioBuffer();
+            if (wrapper == ZlibWrapper.GZIP) {
+                JdkZlibUtil.update(crc, input.duplicate());
+            }
+            JdkZlibUtil.setInput(deflater, input);
+        } else {
+            byte[] inAry = new byte[len];
+            uncompressed.getBytes(uncompressed.readerIndex(), inAry);
+            if (wrapper == ZlibWrapper.GZIP) {
+                crc.update(inAry);
+            }
+            deflater.setInput(inAry);
         }
+        uncompressed.skipBytes(len);
 
-        deflater.setInput(inAry);
         while (!deflater.needsInput()) {
             deflate(out);
         }
@@ -250,7 +307,7 @@ public class JdkZlibEncoder extends ZlibEncoder {
     }
 
     private ChannelFuture finishEncode(final ChannelHandlerContext ctx, ChannelPromise promise) {
-        if (finished) {
+        if (finished || deflater == null) {
             promise.setSuccess();
             return promise;
         }
@@ -280,20 +337,66 @@ public class JdkZlibEncoder extends ZlibEncoder {
             footer.writeByte(uncBytes >>> 16);
             footer.writeByte(uncBytes >>> 24);
         }
-        deflater.end();
+        releaseDeflater();
         return ctx.writeAndFlush(footer, promise);
     }
 
     private void deflate(ByteBuf out) {
-        int numBytes;
-        do {
-            numBytes = deflater.deflate(encodeBuf, 0, encodeBuf.length, Deflater.SYNC_FLUSH);
-            out.writeBytes(encodeBuf, 0, numBytes);
-        } while (numBytes > 0);
+        if (out.hasArray()) {
+            int numBytes;
+            do {
+                out.ensureWritable(1);
+                int writerIndex = out.writerIndex();
+                numBytes = deflater.deflate(
+                        out.array(), out.arrayOffset() + writerIndex, out.writableBytes(), Deflater.SYNC_FLUSH);
+                out.writerIndex(writerIndex + numBytes);
+            } while (numBytes > 0);
+        } else if (JdkZlibUtil.hasByteBufferSupport() && out.nioBufferCount() == 1) {
+            int numBytes;
+            do {
+                out.ensureWritable(1);
+                int writerIndex = out.writerIndex();
+                ByteBuffer output = out.internalNioBuffer(writerIndex, out.writableBytes());
+                numBytes = JdkZlibUtil.deflate(deflater, output, Deflater.SYNC_FLUSH);
+                out.writerIndex(writerIndex + numBytes);
+            } while (numBytes > 0);
+        } else {
+            byte[] encodeBuf = this.encodeBuf;
+            if (encodeBuf == null) {
+                this.encodeBuf = encodeBuf = new byte[ENCODE_BUF_SIZE];
+            }
+            int numBytes;
+            do {
+                numBytes = deflater.deflate(encodeBuf, 0, encodeBuf.length, Deflater.SYNC_FLUSH);
+                out.writeBytes(encodeBuf, 0, numBytes);
+            } while (numBytes > 0);
+        }
+    }
+
+    /**
+     * Returns the {@link Deflater} to the pool or ends it, so that its native memory is freed right away.
+     */
+    private void releaseDeflater() {
+        Deflater deflater = this.deflater;
+        if (deflater == null) {
+            return;
+        }
+        this.deflater = null;
+        if (pool != null) {
+            pool.releaseDeflater(deflater, compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        } else {
+            deflater.end();
+        }
     }
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
     }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        releaseDeflater();
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A pool of {@link Deflater}s and {@link Inflater}s which can be shared by the {@link JdkZlibEncoder}s and
+ * {@link JdkZlibDecoder}s of many connections.
+ * <p>
+ * Each {@link Deflater} and {@link Inflater} holds a few hundred kilobytes of native memory, which is freed only
+ * by its finalizer unless {@code end()} is called.  The codecs using a pool return their instance when they are
+ * removed from the pipeline, which happens when the channel is closed, so that the next connection can reuse it.
+ * The instances which do not fit into the pool are ended right away.
+ */
+public final class JdkZlibPool {
+
+    private static final int LEVELS = 10;
+
+    private final int maxDeflaters;
+    private final int maxInflaters;
+    private final Queue<Deflater>[] deflaters;
+    private final Queue<Inflater>[] inflaters;
+    private final AtomicInteger pooledDeflaters = new AtomicInteger();
+    private final AtomicInteger pooledInflaters = new AtomicInteger();
+
+    /**
+     * Creates a new pool.
+     *
+     * @param maxDeflaters the maximum number of idle {@link Deflater}s to keep
+     * @param maxInflaters the maximum number of idle {@link Inflater}s to keep
+     */
+    @SuppressWarnings("unchecked")
+    public JdkZlibPool(int maxDeflaters, int maxInflaters) {
+        if (maxDeflaters < 0) {
+            throw new IllegalArgumentException("maxDeflaters: " + maxDeflaters + " (expected: >= 0)");
+        }
+        if (maxInflaters < 0) {
+            throw new IllegalArgumentException("maxInflaters: " + maxInflaters + " (expected: >= 0)");
+        }
+        this.maxDeflaters = maxDeflaters;
+        this.maxInflaters = maxInflaters;
+
+        // One queue per compression level and per nowrap flag, as they cannot be changed after creation.
+        deflaters = new Queue[LEVELS * 2];
+        for (int i = 0; i < deflaters.length; i ++) {
+            deflaters[i] = new ConcurrentLinkedQueue<Deflater>();
+        }
+        inflaters = new Queue[2];
+        for (int i = 0; i < inflaters.length; i ++) {
+            inflaters[i] = new ConcurrentLinkedQueue<Inflater>();
+        }
+    }
+
+    /**
+     * Returns an idle {@link Deflater} with the specified settings, or a new one if there is none.
+     */
+    public Deflater acquireDeflater(int compressionLevel, boolean nowrap) {
+        Deflater deflater = deflaters[deflaterIndex(compressionLevel, nowrap)].poll();
+        if (deflater == null) {
+            return new Deflater(compressionLevel, nowrap);
+        }
+        pooledDeflaters.decrementAndGet();
+        return deflater;
+    }
+
+    /**
+     * Resets the specified {@link Deflater} and returns it to this pool, or ends it if this pool is full.
+     * The settings must be the ones it was acquired with.
+     */
+    public void releaseDeflater(Deflater deflater, int compressionLevel, boolean nowrap) {
+        if (pooledDeflaters.incrementAndGet() > maxDeflaters) {
+            pooledDeflaters.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        deflaters[deflaterIndex(compressionLevel, nowrap)].add(deflater);
+    }
+
+    /**
+     * Returns an idle {@link Inflater} with the specified setting, or a new one if there is none.
+     */
+    public Inflater acquireInflater(boolean nowrap) {
+        Inflater inflater = inflaters[nowrap ? 1 : 0].poll();
+        if (inflater == null) {
+            return new Inflater(nowrap);
+        }
+        pooledInflaters.decrementAndGet();
+        return inflater;
+    }
+
+    /**
+     * Resets the specified {@link Inflater} and returns it to this pool, or ends it if this pool is full.
+     * The setting must be the one it was acquired with.
+     */
+    public void releaseInflater(Inflater inflater, boolean nowrap) {
+        if (pooledInflaters.incrementAndGet() > maxInflaters) {
+            pooledInflaters.decrementAndGet();
+            inflater.end();
+            return;
+        }
+        inflater.reset();
+        inflaters[nowrap ? 1 : 0].add(inflater);
+    }
+
+    /**
+     * Returns the number of idle {@link Deflater}s in this pool.
+     */
+    public int pooledDeflaters() {
+        return pooledDeflaters.get();
+    }
+
+    /**
+     * Returns the number of idle {@link Inflater}s in this pool.
+     */
+    public int pooledInflaters() {
+        return pooledInflaters.get();
+    }
+
+    /**
+     * Ends all the idle {@link Deflater}s and {@link Inflater}s in this pool.
+     */
+    public void clear() {
+        for (Queue<Deflater> q: deflaters) {
+            for (;;) {
+                Deflater deflater = q.poll();
+                if (deflater == null) {
+                    break;
+                }
+                pooledDeflaters.decrementAndGet();
+                deflater.end();
+            }
+        }
+        for (Queue<Inflater> q: inflaters) {
+            for (;;) {
+                Inflater inflater = q.poll();
+                if (inflater == null) {
+                    break;
+                }
+                pooledInflaters.decrementAndGet();
+                inflater.end();
+            }
+        }
+    }
+
+    private static int deflaterIndex(int compressionLevel, boolean nowrap) {
+        if (compressionLevel < 0 || compressionLevel >= LEVELS) {
+            throw new IllegalArgumentException("compressionLevel: " + compressionLevel + " (expected: 0-9)");
+        }
+        return compressionLevel << 1 | (nowrap ? 1 : 0);
+    }
+}
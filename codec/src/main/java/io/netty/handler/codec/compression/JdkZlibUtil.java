@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Utility methods used by {@link JdkZlibEncoder} and {@link JdkZlibDecoder} to pass direct memory to
+ * {@link Deflater}, {@link Inflater} and {@link CRC32} without copying it.  The {@link ByteBuffer} methods of
+ * {@link Deflater} and {@link Inflater} are available since Java 11 and the one of {@link CRC32} since Java 8,
+ * so they are looked up reflectively.
+ */
+final class JdkZlibUtil {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JdkZlibUtil.class);
+
+    private static final Method DEFLATER_SET_INPUT;
+    private static final Method DEFLATER_DEFLATE;
+    private static final Method INFLATER_SET_INPUT;
+    private static final Method CRC32_UPDATE;
+
+    static {
+        Method deflaterSetInput = null;
+        Method deflaterDeflate = null;
+        Method inflaterSetInput = null;
+        try {
+            deflaterSetInput = Deflater.class.getMethod("setInput", ByteBuffer.class);
+            deflaterDeflate = Deflater.class.getMethod("deflate", ByteBuffer.class, int.class);
+            inflaterSetInput = Inflater.class.getMethod("setInput", ByteBuffer.class);
+        } catch (Throwable t) {
+            deflaterSetInput = null;
+            deflaterDeflate = null;
+            inflaterSetInput = null;
+        }
+        DEFLATER_SET_INPUT = deflaterSetInput;
+        DEFLATER_DEFLATE = deflaterDeflate;
+        INFLATER_SET_INPUT = inflaterSetInput;
+
+        Method crc32Update;
+        try {
+            crc32Update = CRC32.class.getMethod("update", ByteBuffer.class);
+        } catch (Throwable t) {
+            crc32Update = null;
+        }
+        CRC32_UPDATE = crc32Update;
+
+        logger.debug("java.util.zip.Deflater/Inflater with ByteBuffer: {}",
+                DEFLATER_SET_INPUT != null ? "available" : "unavailable");
+    }
+
+    /**
+     * Returns {@code true} if and only if {@link Deflater} and {@link Inflater} accept a {@link ByteBuffer}.
+     */
+    static boolean hasByteBufferSupport() {
+        return DEFLATER_SET_INPUT != null;
+    }
+
+    static void setInput(Deflater deflater, ByteBuffer input) {
+        invoke(DEFLATER_SET_INPUT, deflater, input);
+    }
+
+    static int deflate(Deflater deflater, ByteBuffer output, int flush) {
+        return (Integer) invoke(DEFLATER_DEFLATE, deflater, output, flush);
+    }
+
+    static void setInput(Inflater inflater, ByteBuffer input) {
+        invoke(INFLATER_SET_INPUT, inflater, input);
+    }
+
+    static void update(CRC32 crc, ByteBuffer data) {
+        invoke(CRC32_UPDATE, crc, data);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException rethrow(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new CompressionException(cause);
+    }
+
+    private JdkZlibUtil() {
+    }
+}
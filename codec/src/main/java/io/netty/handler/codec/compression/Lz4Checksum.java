@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import static io.netty.handler.codec.compression.Lz4Constants.*;
+
+/**
+ * Calculates the checksum of an LZ4 block.  By default, it is the XXHash32 of the block, which is calculated
+ * directly from the memory of a heap or direct {@link ByteBuf}.
+ */
+final class Lz4Checksum {
+
+    private final XXHash32 hash;
+    private final ByteBufChecksum checksum;
+
+    /**
+     * @param checksum the checksum to use instead of XXHash32, or {@code null}
+     */
+    Lz4Checksum(Checksum checksum) {
+        if (checksum == null) {
+            hash = XXHashFactory.fastestInstance().hash32();
+            this.checksum = null;
+        } else {
+            hash = null;
+            this.checksum = ByteBufChecksum.wrap(checksum);
+        }
+    }
+
+    /**
+     * Returns the checksum of the specified region of the specified buffer, as stored in a block header.
+     */
+    int checksum(ByteBuf buf, int index, int length) {
+        if (checksum != null) {
+            checksum.reset();
+            checksum.update(buf, index, length);
+            return (int) checksum.getValue() & CHECKSUM_MASK;
+        }
+
+        int value;
+        if (buf.hasArray()) {
+            value = hash.hash(buf.array(), buf.arrayOffset() + index, length, DEFAULT_SEED);
+        } else if (buf.nioBufferCount() == 1) {
+            ByteBuffer nioBuf = buf.internalNioBuffer(index, length);
+            value = hash.hash(nioBuf, nioBuf.position(), length, DEFAULT_SEED);
+        } else {
+            ByteBuffer nioBuf = buf.nioBuffer(index, length);
+            value = hash.hash(nioBuf, nioBuf.position(), length, DEFAULT_SEED);
+        }
+        return value & CHECKSUM_MASK;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Creates a new {@link Lz4FrameEncoder} and a new {@link Lz4FrameDecoder}.
+ * <p>
+ * The codecs use the native LZ4 library bundled with lz4-java when it can be loaded, and its pure Java
+ * implementation otherwise.  Set the {@code io.netty.noNativeLz4} system property to {@code true} to always use
+ * the pure Java implementation.
+ */
+public final class Lz4CodecFactory {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Lz4CodecFactory.class);
+
+    private static final boolean noNativeLz4;
+
+    static {
+        noNativeLz4 = SystemPropertyUtil.getBoolean("io.netty.noNativeLz4", false);
+        logger.debug("-Dio.netty.noNativeLz4: {}", noNativeLz4);
+    }
+
+    public static Lz4FrameEncoder newLz4Encoder() {
+        return newLz4Encoder(false);
+    }
+
+    public static Lz4FrameEncoder newLz4Encoder(boolean highCompressor) {
+        return newLz4Encoder(highCompressor, Lz4Constants.DEFAULT_BLOCK_SIZE);
+    }
+
+    public static Lz4FrameEncoder newLz4Encoder(boolean highCompressor, int blockSize) {
+        return new Lz4FrameEncoder(factory(), highCompressor, blockSize, null);
+    }
+
+    public static Lz4FrameDecoder newLz4Decoder() {
+        return newLz4Decoder(false);
+    }
+
+    public static Lz4FrameDecoder newLz4Decoder(boolean validateChecksums) {
+        return new Lz4FrameDecoder(factory(), validateChecksums);
+    }
+
+    private static LZ4Factory factory() {
+        return noNativeLz4 ? LZ4Factory.fastestJavaInstance() : LZ4Factory.fastestInstance();
+    }
+
+    private Lz4CodecFactory() {
+        // Unused
+    }
+}
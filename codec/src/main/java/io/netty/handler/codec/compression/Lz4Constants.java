@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+/**
+ * The constants of the block format written by {@code LZ4BlockOutputStream} of
+ * <a href="https://github.com/jpountz/lz4-java">lz4-java</a>, which {@link Lz4FrameEncoder} and
+ * {@link Lz4FrameDecoder} use.
+ */
+final class Lz4Constants {
+
+    /**
+     * The magic number of a block: {@code "LZ4Block"} in ASCII.
+     */
+    static final long MAGIC_NUMBER = (long) 'L' << 56 |
+                                     (long) 'Z' << 48 |
+                                     (long) '4' << 40 |
+                                     (long) 'B' << 32 |
+                                                'l' << 24 |
+                                                'o' << 16 |
+                                                'c' << 8  |
+                                                'k';
+
+    /**
+     * The length of a block header: magic number, token, compressed length, decompressed length and checksum.
+     */
+    static final int HEADER_LENGTH = 8 + 1 + 4 + 4 + 4;
+
+    static final int TOKEN_OFFSET = 8;
+    static final int COMPRESSED_LENGTH_OFFSET = TOKEN_OFFSET + 1;
+    static final int DECOMPRESSED_LENGTH_OFFSET = COMPRESSED_LENGTH_OFFSET + 4;
+    static final int CHECKSUM_OFFSET = DECOMPRESSED_LENGTH_OFFSET + 4;
+
+    /**
+     * The base of the compression level encoded in the token, which is the logarithm of the block size.
+     */
+    static final int COMPRESSION_LEVEL_BASE = 10;
+
+    static final int MIN_BLOCK_SIZE = 64;
+    static final int MAX_BLOCK_SIZE = 1 << COMPRESSION_LEVEL_BASE + 0x0F;   // 32 MiB
+    static final int DEFAULT_BLOCK_SIZE = 1 << 16;                          // 64 KiB
+
+    static final int BLOCK_TYPE_NON_COMPRESSED = 0x10;
+    static final int BLOCK_TYPE_COMPRESSED = 0x20;
+
+    /**
+     * The seed of the XXHash32 checksum of a block, of which only the lower 28 bits are stored.
+     */
+    static final int DEFAULT_SEED = 0x9747b28c;
+    static final int CHECKSUM_MASK = 0xFFFFFFF;
+
+    private Lz4Constants() { }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.Checksum;
+
+import static io.netty.handler.codec.compression.Lz4Constants.*;
+
+/**
+ * Uncompresses a {@link ByteBuf} encoded by {@link Lz4FrameEncoder} or by the {@code LZ4BlockOutputStream} of
+ * <a href="https://github.com/jpountz/lz4-java">lz4-java</a>.
+ * <p>
+ * A compressed block is uncompressed from the memory of the inbound buffer directly into a newly allocated buffer.
+ * Note that by default, validation of the checksum of each block is DISABLED for performance improvements.  Use
+ * the {@link #Lz4FrameDecoder(boolean)} constructor to turn it on.
+ */
+public class Lz4FrameDecoder extends ByteToMessageDecoder {
+
+    private enum State {
+        INIT_BLOCK,
+        DECOMPRESS_DATA,
+        FINISHED,
+        CORRUPTED
+    }
+
+    private final LZ4SafeDecompressor decompressor;
+    private final Lz4Checksum checksum;
+
+    private State currentState = State.INIT_BLOCK;
+    private int blockType;
+    private int compressedLength;
+    private int decompressedLength;
+    private int currentChecksum;
+
+    /**
+     * Creates a new decoder with validation of checksums turned OFF.
+     */
+    public Lz4FrameDecoder() {
+        this(false);
+    }
+
+    /**
+     * Creates a new decoder.
+     *
+     * @param validateChecksums if {@code true}, the checksum of each block is validated against the uncompressed
+     *                          data, and a {@link DecompressionException} is raised if they do not match
+     */
+    public Lz4FrameDecoder(boolean validateChecksums) {
+        this(LZ4Factory.fastestInstance(), validateChecksums);
+    }
+
+    /**
+     * Creates a new decoder which validates the XXHash32 checksums of the blocks if requested.
+     *
+     * @param factory           the {@link LZ4Factory} which provides the decompressor
+     * @param validateChecksums if {@code true}, the checksum of each block is validated against the uncompressed
+     *                          data, and a {@link DecompressionException} is raised if they do not match
+     */
+    public Lz4FrameDecoder(LZ4Factory factory, boolean validateChecksums) {
+        this(factory, validateChecksums, null);
+    }
+
+    /**
+     * Creates a new decoder which validates the checksums of the blocks with the specified {@link Checksum}.
+     *
+     * @param factory  the {@link LZ4Factory} which provides the decompressor
+     * @param checksum the checksum the encoder used, or {@code null} to skip the validation
+     */
+    public Lz4FrameDecoder(LZ4Factory factory, Checksum checksum) {
+        this(factory, checksum != null, checksum);
+    }
+
+    private Lz4FrameDecoder(LZ4Factory factory, boolean validateChecksums, Checksum checksum) {
+        if (factory == null) {
+            throw new NullPointerException("factory");
+        }
+        // The fast decompressor trusts the lengths in the stream, which must not be assumed for network input.
+        decompressor = factory.safeDecompressor();
+        this.checksum = validateChecksums ? new Lz4Checksum(checksum) : null;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        try {
+            switch (currentState) {
+            case INIT_BLOCK:
+                if (in.readableBytes() < HEADER_LENGTH) {
+                    break;
+                }
+                final long magic = in.readLong();
+                if (magic != MAGIC_NUMBER) {
+                    throw new DecompressionException("unexpected block identifier");
+                }
+
+                final int token = in.readByte();
+                final int compressionLevel = (token & 0x0F) + COMPRESSION_LEVEL_BASE;
+                int blockType = token & 0xF0;
+
+                int compressedLength = ByteBufUtil.swapInt(in.readInt());
+                if (compressedLength < 0 || compressedLength > MAX_BLOCK_SIZE) {
+                    throw new DecompressionException(String.format(
+                            "invalid compressedLength: %d (expected: 0-%d)", compressedLength, MAX_BLOCK_SIZE));
+                }
+
+                int decompressedLength = ByteBufUtil.swapInt(in.readInt());
+                final int maxDecompressedLength = 1 << compressionLevel;
+                if (decompressedLength < 0 || decompressedLength > maxDecompressedLength) {
+                    throw new DecompressionException(String.format(
+                            "invalid decompressedLength: %d (expected: 0-%d)",
+                            decompressedLength, maxDecompressedLength));
+                }
+                if (decompressedLength == 0 && compressedLength != 0 ||
+                    decompressedLength != 0 && compressedLength == 0 ||
+                    blockType == BLOCK_TYPE_NON_COMPRESSED && decompressedLength != compressedLength) {
+                    throw new DecompressionException(String.format(
+                            "stream corrupted: compressedLength(%d) and decompressedLength(%d) mismatch",
+                            compressedLength, decompressedLength));
+                }
+
+                int currentChecksum = ByteBufUtil.swapInt(in.readInt());
+                if (decompressedLength == 0 && compressedLength == 0) {
+                    if (currentChecksum != 0) {
+                        throw new DecompressionException("stream corrupted: checksum error");
+                    }
+                    currentState = State.FINISHED;
+                    break;
+                }
+
+                this.blockType = blockType;
+                this.compressedLength = compressedLength;
+                this.decompressedLength = decompressedLength;
+                this.currentChecksum = currentChecksum;
+
+                currentState = State.DECOMPRESS_DATA;
+                // fall through
+            case DECOMPRESS_DATA:
+                blockType = this.blockType;
+                compressedLength = this.compressedLength;
+                decompressedLength = this.decompressedLength;
+                currentChecksum = this.currentChecksum;
+
+                if (in.readableBytes() < compressedLength) {
+                    break;
+                }
+
+                final ByteBuf uncompressed;
+                switch (blockType) {
+                case BLOCK_TYPE_NON_COMPRESSED:
+                    uncompressed = in.readBytes(decompressedLength);
+                    break;
+                case BLOCK_TYPE_COMPRESSED:
+                    uncompressed = ctx.alloc().buffer(decompressedLength, decompressedLength);
+                    try {
+                        decompress(in, compressedLength, uncompressed, decompressedLength);
+                    } catch (Exception e) {
+                        uncompressed.release();
+                        throw e;
+                    }
+                    break;
+                default:
+                    throw new DecompressionException(String.format(
+                            "unexpected blockType: %d (expected: %d or %d)",
+                            blockType, BLOCK_TYPE_NON_COMPRESSED, BLOCK_TYPE_COMPRESSED));
+                }
+
+                if (checksum != null &&
+                    checksum.checksum(uncompressed, uncompressed.readerIndex(), decompressedLength) !=
+                    currentChecksum) {
+                    uncompressed.release();
+                    throw new DecompressionException("stream corrupted: mismatching checksum");
+                }
+
+                out.add(uncompressed);
+                currentState = State.INIT_BLOCK;
+                break;
+            case FINISHED:
+            case CORRUPTED:
+                in.skipBytes(in.readableBytes());
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+        } catch (Exception e) {
+            currentState = State.CORRUPTED;
+            throw e;
+        }
+    }
+
+    private void decompress(ByteBuf in, int compressedLength, ByteBuf out, int decompressedLength) {
+        final int idx = in.readerIndex();
+        final ByteBuffer src = in.nioBufferCount() == 1 ? in.internalNioBuffer(idx, compressedLength)
+                                                        : in.nioBuffer(idx, compressedLength);
+        final ByteBuffer dst = out.internalNioBuffer(0, decompressedLength);
+        final int read;
+        try {
+            read = decompressor.decompress(
+                    src, src.position(), compressedLength, dst, dst.position(), decompressedLength);
+        } catch (LZ4Exception e) {
+            throw new DecompressionException(e);
+        }
+        if (read != decompressedLength) {
+            throw new DecompressionException(String.format(
+                    "stream corrupted: decompressedLength(%d) and actual length(%d) mismatch",
+                    decompressedLength, read));
+        }
+        in.skipBytes(compressedLength);
+        out.writerIndex(decompressedLength);
+    }
+
+    /**
+     * Returns {@code true} if and only if the end of the compressed stream has been reached.
+     */
+    public boolean isClosed() {
+        return currentState == State.FINISHED;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.concurrent.EventExecutor;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Checksum;
+
+import static io.netty.handler.codec.compression.Lz4Constants.*;
+
+/**
+ * Compresses a {@link ByteBuf} using the LZ4 format of
+ * <a href="https://github.com/jpountz/lz4-java">lz4-java</a>, which is the same as the one written by its
+ * {@code LZ4BlockOutputStream}.
+ * <p>
+ * The written data is buffered until a block is full or the channel is flushed.  Each block has a header with
+ * the following layout (the integers are little-endian):
+ * <pre>
+ *  +--------------+-------+-------------------+---------------------+----------+-----------------+
+ *  | magic number | token | compressed length | decompressed length | checksum | compressed data |
+ *  |  "LZ4Block"  |       |                   |                     |          |                 |
+ *  +--------------+-------+-------------------+---------------------+----------+-----------------+
+ * </pre>
+ * The blocks are compressed from the memory of the heap or direct buffers directly into the memory of the
+ * outbound buffers.  A block that does not shrink is written uncompressed.  The stream ends with an empty block,
+ * which is written when the encoder is closed.
+ */
+public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
+
+    /**
+     * The number of seconds to wait for the end of the stream to be written before the channel is closed anyway.
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final LZ4Compressor compressor;
+    private final Lz4Checksum checksum;
+    private final int blockSize;
+    private final int compressionLevel;
+
+    /**
+     * The uncompressed data of the current block.
+     */
+    private ByteBuf buffer;
+    private volatile boolean finished;
+    private volatile ChannelHandlerContext ctx;
+
+    /**
+     * Creates a new encoder with the fast compressor, the default block size (64 KiB) and the XXHash32 checksum.
+     */
+    public Lz4FrameEncoder() {
+        this(false);
+    }
+
+    /**
+     * Creates a new encoder with the default block size (64 KiB) and the XXHash32 checksum.
+     *
+     * @param highCompressor {@code true} to use the high compression mode, which is slower but compresses better
+     */
+    public Lz4FrameEncoder(boolean highCompressor) {
+        this(LZ4Factory.fastestInstance(), highCompressor, DEFAULT_BLOCK_SIZE, null);
+    }
+
+    /**
+     * Creates a new encoder.
+     *
+     * @param factory        the {@link LZ4Factory} which provides the compressor
+     * @param highCompressor {@code true} to use the high compression mode, which is slower but compresses better
+     * @param blockSize      the maximum length of the uncompressed data of a block, from {@code 64} bytes to
+     *                       {@code 32} MiB
+     * @param checksum       the checksum of the uncompressed data of a block, or {@code null} to use XXHash32, which
+     *                       is calculated without copying the data and which the decoders expect by default
+     */
+    public Lz4FrameEncoder(LZ4Factory factory, boolean highCompressor, int blockSize, Checksum checksum) {
+        if (factory == null) {
+            throw new NullPointerException("factory");
+        }
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "blockSize: %d (expected: %d-%d)", blockSize, MIN_BLOCK_SIZE, MAX_BLOCK_SIZE));
+        }
+        compressor = highCompressor ? factory.highCompressor() : factory.fastCompressor();
+        this.checksum = new Lz4Checksum(checksum);
+        this.blockSize = blockSize;
+        compressionLevel = compressionLevel(blockSize);
+    }
+
+    /**
+     * Returns the compression level encoded in the token of a block, which is the logarithm of the block size.
+     */
+    private static int compressionLevel(int blockSize) {
+        int compressionLevel = 32 - Integer.numberOfLeadingZeros(blockSize - 1);   // ceil of log2
+        return Math.max(0, compressionLevel - COMPRESSION_LEVEL_BASE);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
+        if (finished) {
+            out.writeBytes(in);
+            return;
+        }
+
+        final ByteBuf buffer = this.buffer;
+        while (in.isReadable()) {
+            int length = in.readableBytes();
+            if (!buffer.isReadable() && length >= blockSize) {
+                // Compress a full block directly from the input.
+                writeBlock(in, in.readerIndex(), blockSize, out);
+                in.skipBytes(blockSize);
+                continue;
+            }
+
+            length = Math.min(length, buffer.writableBytes());
+            in.readBytes(buffer, length);
+            if (!buffer.isWritable()) {
+                flushBufferedData(out);
+            }
+        }
+    }
+
+    private void flushBufferedData(ByteBuf out) {
+        int length = buffer.readableBytes();
+        if (length == 0) {
+            return;
+        }
+        writeBlock(buffer, buffer.readerIndex(), length, out);
+        buffer.clear();
+    }
+
+    private void writeBlock(ByteBuf src, int index, int length, ByteBuf out) {
+        final int check = checksum.checksum(src, index, length);
+        final int maxCompressedLength = compressor.maxCompressedLength(length);
+        out.ensureWritable(HEADER_LENGTH + maxCompressedLength);
+        final int headerIdx = out.writerIndex();
+        final int dataIdx = headerIdx + HEADER_LENGTH;
+
+        int compressedLength;
+        try {
+            ByteBuffer srcBuf = src.nioBufferCount() == 1 ? src.internalNioBuffer(index, length)
+                                                          : src.nioBuffer(index, length);
+            ByteBuffer outBuf = out.internalNioBuffer(dataIdx, maxCompressedLength);
+            compressedLength = compressor.compress(
+                    srcBuf, srcBuf.position(), length, outBuf, outBuf.position(), maxCompressedLength);
+        } catch (Exception e) {
+            throw new CompressionException(e);
+        }
+
+        final int blockType;
+        if (compressedLength >= length) {
+            blockType = BLOCK_TYPE_NON_COMPRESSED;
+            compressedLength = length;
+            out.setBytes(dataIdx, src, index, length);
+        } else {
+            blockType = BLOCK_TYPE_COMPRESSED;
+        }
+
+        out.setLong(headerIdx, MAGIC_NUMBER);
+        out.setByte(headerIdx + TOKEN_OFFSET, (byte) (blockType | compressionLevel));
+        out.setInt(headerIdx + COMPRESSED_LENGTH_OFFSET, ByteBufUtil.swapInt(compressedLength));
+        out.setInt(headerIdx + DECOMPRESSED_LENGTH_OFFSET, ByteBufUtil.swapInt(length));
+        out.setInt(headerIdx + CHECKSUM_OFFSET, ByteBufUtil.swapInt(check));
+        out.writerIndex(dataIdx + compressedLength);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (buffer != null && buffer.isReadable()) {
+            ByteBuf out = ctx.alloc().buffer(HEADER_LENGTH + compressor.maxCompressedLength(buffer.readableBytes()));
+            flushBufferedData(out);
+            ctx.write(out);
+        }
+        ctx.flush();
+    }
+
+    /**
+     * Returns {@code true} if and only if the end of the compressed stream has been written.
+     */
+    public boolean isClosed() {
+        return finished;
+    }
+
+    /**
+     * Writes the pending data and the end of the compressed stream, and closes the underlying channel.
+     *
+     * @return future which is notified once the operation completes
+     */
+    public ChannelFuture close() {
+        return close(ctx().newPromise());
+    }
+
+    /**
+     * Writes the pending data and the end of the compressed stream, and closes the underlying channel.
+     * The given promise will be notified once the operation completes and will also be returned.
+     */
+    public ChannelFuture close(final ChannelPromise promise) {
+        ChannelHandlerContext ctx = ctx();
+        EventExecutor executor = ctx.executor();
+        if (executor.inEventLoop()) {
+            return finishEncode(ctx, promise);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ChannelFuture f = finishEncode(ctx(), promise);
+                    f.addListener(new ChannelPromiseNotifier(promise));
+                }
+            });
+            return promise;
+        }
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+        ChannelFuture f = finishEncode(ctx, ctx.newPromise());
+        f.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                ctx.close(promise);
+            }
+        });
+
+        if (!f.isDone()) {
+            // Ensure the channel is closed even if the write operation completes in time.
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.close(promise);
+                }
+            }, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private ChannelFuture finishEncode(final ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (finished) {
+            promise.setSuccess();
+            return promise;
+        }
+        finished = true;
+
+        final ByteBuf footer = ctx.alloc().buffer(
+                HEADER_LENGTH + compressor.maxCompressedLength(buffer.readableBytes()) + HEADER_LENGTH);
+        flushBufferedData(footer);
+
+        final int idx = footer.writerIndex();
+        footer.ensureWritable(HEADER_LENGTH);
+        footer.setLong(idx, MAGIC_NUMBER);
+        footer.setByte(idx + TOKEN_OFFSET, (byte) (BLOCK_TYPE_NON_COMPRESSED | compressionLevel));
+        footer.setInt(idx + COMPRESSED_LENGTH_OFFSET, 0);
+        footer.setInt(idx + DECOMPRESSED_LENGTH_OFFSET, 0);
+        footer.setInt(idx + CHECKSUM_OFFSET, 0);
+        footer.writerIndex(idx + HEADER_LENGTH);
+
+        return ctx.writeAndFlush(footer, promise);
+    }
+
+    private ChannelHandlerContext ctx() {
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx == null) {
+            throw new IllegalStateException("not added to a pipeline");
+        }
+        return ctx;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        buffer = ctx.alloc().heapBuffer(blockSize, blockSize);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+}
@@ -17,6 +17,9 @@ package io.netty.handler.codec.compression;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.Arrays;
 
 /**
  * Uncompresses an input {@link ByteBuf} encoded with Snappy compression into an
@@ -42,6 +45,7 @@ public class Snappy {
     private State state = State.READY;
     private byte tag;
     private int written;
+    private short[] hashTable;
 
     private enum State {
         READY,
@@ -69,17 +73,32 @@ public class Snappy {
             }
         }
 
-        int inIndex = in.readerIndex();
         final int baseIndex = in.readerIndex();
-        final int maxIndex = length;
-
-        final short[] table = getHashTable(maxIndex);
-        final int shift = 32 - (int) Math.floor(Math.log(table.length) / Math.log(2));
+        final int maxIndex = baseIndex + length;
+        int inIndex = baseIndex;
+
+        final int tableSize = hashTableSize(length);
+        final short[] table = hashTable(tableSize);
+        final int shift = Integer.numberOfLeadingZeros(tableSize) + 1;
+
+        // Read the input without bounds checks if possible.  The indexes read below never exceed maxIndex.
+        final byte[] array;
+        final long address;
+        if (PlatformDependent.hasUnsafe() && in.hasArray()) {
+            array = in.array();
+            address = in.arrayOffset();
+        } else if (PlatformDependent.hasUnsafe() && in.hasMemoryAddress()) {
+            array = null;
+            address = in.memoryAddress();
+        } else {
+            array = null;
+            address = 0;
+        }
 
         int nextEmit = inIndex;
 
         if (maxIndex - inIndex >= MIN_COMPRESSIBLE_BYTES) {
-            int nextHash = hash(in, ++inIndex, shift);
+            int nextHash = hash(getInt(in, array, address, ++inIndex), shift);
             outer: while (true) {
                 int skip = 32;
 
@@ -96,20 +115,20 @@ public class Snappy {
                         break outer;
                     }
 
-                    nextHash = hash(in, nextIndex, shift);
+                    nextHash = hash(getInt(in, array, address, nextIndex), shift);
 
                     candidate = baseIndex + table[hash];
 
                     table[hash] = (short) (inIndex - baseIndex);
                 }
-                while (in.getInt(inIndex) != in.getInt(candidate));
+                while (getInt(in, array, address, inIndex) != getInt(in, array, address, candidate));
 
                 encodeLiteral(in, out, inIndex - nextEmit);
 
                 int insertTail;
                 do {
                     int base = inIndex;
-                    int matched = 4 + findMatchingLength(in, candidate + 4, inIndex + 4, maxIndex);
+                    int matched = 4 + findMatchingLength(in, array, address, candidate + 4, inIndex + 4, maxIndex);
                     inIndex += matched;
                     int offset = base - candidate;
                     encodeCopy(out, offset, matched);
@@ -120,15 +139,15 @@ public class Snappy {
                         break outer;
                     }
 
-                    int prevHash = hash(in, insertTail, shift);
+                    int prevHash = hash(getInt(in, array, address, insertTail), shift);
                     table[prevHash] = (short) (inIndex - baseIndex - 1);
-                    int currentHash = hash(in, insertTail + 1, shift);
+                    int currentHash = hash(getInt(in, array, address, insertTail + 1), shift);
                     candidate = baseIndex + table[currentHash];
                     table[currentHash] = (short) (inIndex - baseIndex);
                 }
-                while (in.getInt(insertTail + 1) == in.getInt(candidate));
+                while (getInt(in, array, address, insertTail + 1) == getInt(in, array, address, candidate));
 
-                nextHash = hash(in, insertTail + 2, shift);
+                nextHash = hash(getInt(in, array, address, insertTail + 2), shift);
                 ++inIndex;
             }
         }
@@ -140,38 +159,47 @@ public class Snappy {
     }
 
     /**
-     * Hashes the 4 bytes located at index, shifting the resulting hash into
-     * the appropriate range for our hash table.
+     * Hashes 4 bytes, shifting the resulting hash into the appropriate range
+     * for our hash table.
      *
-     * @param in The input buffer to read 4 bytes from
-     * @param index The index to read at
+     * @param value The 4 bytes to hash, as a big-endian integer
      * @param shift The shift value, for ensuring that the resulting value is
      *     withing the range of our hash table size
-     * @return A 32-bit hash of 4 bytes located at index
+     * @return A 32-bit hash of the 4 bytes
      */
-    private static int hash(ByteBuf in, int index, int shift) {
-        return in.getInt(index) + 0x1e35a7bd >>> shift;
+    private static int hash(int value, int shift) {
+        return value + 0x1e35a7bd >>> shift;
     }
 
     /**
-     * Creates an appropriately sized hashtable for the given input size
+     * Returns the size of the hashtable for the given input size
      *
      * @param inputSize The size of our input, ie. the number of bytes we need to encode
-     * @return An appropriately sized empty hashtable
+     * @return The power of two between 256 and {@link #MAX_HT_SIZE} that is closest to the input size
      */
-    private static short[] getHashTable(int inputSize) {
+    private static int hashTableSize(int inputSize) {
         int htSize = 256;
         while (htSize < MAX_HT_SIZE && htSize < inputSize) {
             htSize <<= 1;
         }
+        return htSize;
+    }
 
-        short[] table;
-        if (htSize <= 256) {
-            table = new short[256];
+    /**
+     * Returns the hashtable of this instance, cleared up to the given size.  The hashtable is reused across
+     * calls so that encoding does not allocate.
+     *
+     * @param size The number of entries to use
+     * @return A hashtable of which the first {@code size} entries are empty
+     */
+    private short[] hashTable(int size) {
+        short[] table = hashTable;
+        if (table == null || table.length < size) {
+            table = new short[size];
+            hashTable = table;
         } else {
-            table = new short[MAX_HT_SIZE];
+            Arrays.fill(table, 0, size, (short) 0);
         }
-
         return table;
     }
 
@@ -181,21 +209,29 @@ public class Snappy {
      * literal value.
      *
      * @param in The input buffer to scan over
+     * @param array The backing array of the input buffer, if it is read directly
+     * @param address The memory address or the array offset of the input buffer, if it is read directly
      * @param minIndex The index in the input buffer to start scanning from
      * @param inIndex The index of the start of our copy
      * @param maxIndex The length of our input buffer
      * @return The number of bytes for which our candidate copy is a repeat of
      */
-    private static int findMatchingLength(ByteBuf in, int minIndex, int inIndex, int maxIndex) {
+    private static int findMatchingLength(
+            ByteBuf in, byte[] array, long address, int minIndex, int inIndex, int maxIndex) {
         int matched = 0;
 
-        while (inIndex <= maxIndex - 4 &&
-                in.getInt(inIndex) == in.getInt(minIndex + matched)) {
-            inIndex += 4;
-            matched += 4;
+        while (inIndex <= maxIndex - 8) {
+            long diff = getLong(in, array, address, inIndex) ^ getLong(in, array, address, minIndex + matched);
+            if (diff != 0) {
+                // The values are big-endian, so the leading zeros are the matching bytes.
+                return matched + (Long.numberOfLeadingZeros(diff) >>> 3);
+            }
+            inIndex += 8;
+            matched += 8;
         }
 
-        while (inIndex < maxIndex && in.getByte(minIndex + matched) == in.getByte(inIndex)) {
+        while (inIndex < maxIndex &&
+                getByte(in, array, address, minIndex + matched) == getByte(in, array, address, inIndex)) {
             ++inIndex;
             ++matched;
         }
@@ -203,6 +239,46 @@ public class Snappy {
         return matched;
     }
 
+    private static byte getByte(ByteBuf in, byte[] array, long address, int index) {
+        if (array != null) {
+            return PlatformDependent.getByte(array, (int) address + index);
+        }
+        if (address != 0) {
+            return PlatformDependent.getByte(address + index);
+        }
+        return in.getByte(index);
+    }
+
+    /**
+     * Reads 4 bytes as a big-endian integer, like {@link ByteBuf#getInt(int)} does.
+     */
+    private static int getInt(ByteBuf in, byte[] array, long address, int index) {
+        final int value;
+        if (array != null) {
+            value = PlatformDependent.getInt(array, (int) address + index);
+        } else if (address != 0) {
+            value = PlatformDependent.getInt(address + index);
+        } else {
+            return in.getInt(index);
+        }
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? value : Integer.reverseBytes(value);
+    }
+
+    /**
+     * Reads 8 bytes as a big-endian long, like {@link ByteBuf#getLong(int)} does.
+     */
+    private static long getLong(ByteBuf in, byte[] array, long address, int index) {
+        final long value;
+        if (array != null) {
+            value = PlatformDependent.getLong(array, (int) address + index);
+        } else if (address != 0) {
+            value = PlatformDependent.getLong(address + index);
+        } else {
+            return in.getLong(index);
+        }
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? value : Long.reverseBytes(value);
+    }
+
     /**
      * Calculates the minimum number of bits required to encode a value.  This can
      * then in turn be used to calculate the number of septets or octets (as
@@ -457,28 +533,12 @@ public class Snappy {
             return NOT_ENOUGH_INPUT;
         }
 
-        int initialIndex = out.writerIndex();
         int length = 4 + ((tag & 0x01c) >> 2);
         int offset = (tag & 0x0e0) << 8 >> 5 | in.readUnsignedByte();
 
         validateOffset(offset, writtenSoFar);
 
-        out.markReaderIndex();
-        if (offset < length) {
-            int copies = length / offset;
-            for (; copies > 0; copies--) {
-                out.readerIndex(initialIndex - offset);
-                out.readBytes(out, offset);
-            }
-            if (length % offset != 0) {
-                out.readerIndex(initialIndex - offset);
-                out.readBytes(out, length % offset);
-            }
-        } else {
-            out.readerIndex(initialIndex - offset);
-            out.readBytes(out, length);
-        }
-        out.resetReaderIndex();
+        copy(out, offset, length);
 
         return length;
     }
@@ -501,28 +561,12 @@ public class Snappy {
             return NOT_ENOUGH_INPUT;
         }
 
-        int initialIndex = out.writerIndex();
         int length = 1 + (tag >> 2 & 0x03f);
         int offset = ByteBufUtil.swapShort(in.readShort());
 
         validateOffset(offset, writtenSoFar);
 
-        out.markReaderIndex();
-        if (offset < length) {
-            int copies = length / offset;
-            for (; copies > 0; copies--) {
-                out.readerIndex(initialIndex - offset);
-                out.readBytes(out, offset);
-            }
-            if (length % offset != 0) {
-                out.readerIndex(initialIndex - offset);
-                out.readBytes(out, length % offset);
-            }
-        } else {
-            out.readerIndex(initialIndex - offset);
-            out.readBytes(out, length);
-        }
-        out.resetReaderIndex();
+        copy(out, offset, length);
 
         return length;
     }
@@ -545,30 +589,61 @@ public class Snappy {
             return NOT_ENOUGH_INPUT;
         }
 
-        int initialIndex = out.writerIndex();
         int length = 1 + (tag >> 2 & 0x03F);
         int offset = ByteBufUtil.swapInt(in.readInt());
 
         validateOffset(offset, writtenSoFar);
 
-        out.markReaderIndex();
-        if (offset < length) {
-            int copies = length / offset;
-            for (; copies > 0; copies--) {
-                out.readerIndex(initialIndex - offset);
-                out.readBytes(out, offset);
+        copy(out, offset, length);
+
+        return length;
+    }
+
+    /**
+     * Appends a copy of the data written {@code offset} bytes before the end of the output buffer.  The source
+     * and the destination overlap if {@code offset} is less than {@code length}, in which case the data written
+     * by the copy is repeated.
+     *
+     * @param out The output buffer to copy from and to
+     * @param offset The distance between the end of the output buffer and the start of the data to copy
+     * @param length The number of bytes to copy
+     */
+    private static void copy(ByteBuf out, int offset, int length) {
+        out.ensureWritable(length);
+        final int dstIndex = out.writerIndex();
+        if (PlatformDependent.hasUnsafe() && out.hasArray()) {
+            final byte[] array = out.array();
+            int dst = out.arrayOffset() + dstIndex;
+            int src = dst - offset;
+            final int end = dst + length;
+            if (offset >= 8) {
+                // Every 8 bytes are read before they are overwritten, so they can be copied at once.
+                for (; dst <= end - 8; dst += 8, src += 8) {
+                    PlatformDependent.putLong(array, dst, PlatformDependent.getLong(array, src));
+                }
+            }
+            for (; dst < end; dst ++, src ++) {
+                PlatformDependent.putByte(array, dst, PlatformDependent.getByte(array, src));
+            }
+        } else if (PlatformDependent.hasUnsafe() && out.hasMemoryAddress()) {
+            long dst = out.memoryAddress() + dstIndex;
+            long src = dst - offset;
+            final long end = dst + length;
+            if (offset >= 8) {
+                for (; dst <= end - 8; dst += 8, src += 8) {
+                    PlatformDependent.putLong(dst, PlatformDependent.getLong(src));
+                }
             }
-            if (length % offset != 0) {
-                out.readerIndex(initialIndex - offset);
-                out.readBytes(out, length % offset);
+            for (; dst < end; dst ++, src ++) {
+                PlatformDependent.putByte(dst, PlatformDependent.getByte(src));
             }
         } else {
-            out.readerIndex(initialIndex - offset);
-            out.readBytes(out, length);
+            for (int i = 0; i < length; i += offset) {
+                int copyLength = Math.min(offset, length - i);
+                out.setBytes(dstIndex + i, out, dstIndex - offset + i, copyLength);
+            }
         }
-        out.resetReaderIndex();
-
-        return length;
+        out.writerIndex(dstIndex + length);
     }
 
     /**
@@ -611,20 +686,20 @@ public class Snappy {
      * @param data The input data to calculate the CRC32C checksum of
      */
     public static int calculateChecksum(ByteBuf data, int offset, int length) {
-        Crc32c crc32 = new Crc32c();
-        try {
-            if (data.hasArray()) {
-                crc32.update(data.array(), data.arrayOffset() + offset, length);
-            } else {
-                byte[] array = new byte[length];
-                data.getBytes(offset, array);
-                crc32.update(array, 0, length);
-            }
+        return calculateChecksum(ByteBufChecksum.newCrc32c(), data, offset, length);
+    }
 
-            return maskChecksum((int) crc32.getValue());
-        } finally {
-            crc32.reset();
-        }
+    /**
+     * Computes the CRC32C checksum of the supplied data with the supplied checksum, which
+     * is reset first, and performs the "mask" operation on the computed checksum
+     *
+     * @param crc32c The CRC32C checksum to reuse
+     * @param data The input data to calculate the CRC32C checksum of
+     */
+    static int calculateChecksum(ByteBufChecksum crc32c, ByteBuf data, int offset, int length) {
+        crc32c.reset();
+        crc32c.update(data, offset, length);
+        return maskChecksum((int) crc32c.getValue());
     }
 
     /**
@@ -650,7 +725,22 @@ public class Snappy {
      * @throws DecompressionException If the calculated and supplied checksums do not match
      */
     static void validateChecksum(int expectedChecksum, ByteBuf data, int offset, int length) {
-        final int actualChecksum = calculateChecksum(data, offset, length);
+        validateChecksum(ByteBufChecksum.newCrc32c(), expectedChecksum, data, offset, length);
+    }
+
+    /**
+     * Computes the CRC32C checksum of the supplied data with the supplied checksum, performs
+     * the "mask" operation on the computed checksum, and then compares the resulting masked
+     * checksum to the supplied checksum.
+     *
+     * @param crc32c The CRC32C checksum to reuse
+     * @param expectedChecksum The checksum decoded from the stream to compare against
+     * @param data The input data to calculate the CRC32C checksum of
+     * @throws DecompressionException If the calculated and supplied checksums do not match
+     */
+    static void validateChecksum(
+            ByteBufChecksum crc32c, int expectedChecksum, ByteBuf data, int offset, int length) {
+        final int actualChecksum = calculateChecksum(crc32c, data, offset, length);
         if (actualChecksum != expectedChecksum) {
             throw new DecompressionException(
                     "mismatching checksum: " + Integer.toHexString(actualChecksum) +
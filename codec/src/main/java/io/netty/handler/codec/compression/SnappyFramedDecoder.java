@@ -47,6 +47,7 @@ public class SnappyFramedDecoder extends ByteToMessageDecoder {
     private static final byte[] SNAPPY = { 's', 'N', 'a', 'P', 'p', 'Y' };
 
     private final Snappy snappy = new Snappy();
+    private final ByteBufChecksum crc32c = ByteBufChecksum.newCrc32c();
     private final boolean validateChecksums;
 
     private boolean started;
@@ -147,7 +148,7 @@ public class SnappyFramedDecoder extends ByteToMessageDecoder {
                     in.skipBytes(4);
                     if (validateChecksums) {
                         int checksum = ByteBufUtil.swapInt(in.readInt());
-                        validateChecksum(checksum, in, in.readerIndex(), chunkLength - 4);
+                        validateChecksum(crc32c, checksum, in, in.readerIndex(), chunkLength - 4);
                     } else {
                         in.skipBytes(4);
                     }
@@ -173,7 +174,7 @@ public class SnappyFramedDecoder extends ByteToMessageDecoder {
                         } finally {
                             in.writerIndex(oldWriterIndex);
                         }
-                        validateChecksum(checksum, uncompressed, 0, uncompressed.writerIndex());
+                        validateChecksum(crc32c, checksum, uncompressed, 0, uncompressed.writerIndex());
                     } else {
                         snappy.decode(in.readSlice(chunkLength - 4), uncompressed);
                     }
@@ -44,6 +44,7 @@ public class SnappyFramedEncoder extends MessageToByteEncoder<ByteBuf> {
     };
 
     private final Snappy snappy = new Snappy();
+    private final ByteBufChecksum crc32c = ByteBufChecksum.newCrc32c();
     private boolean started;
 
     @Override
@@ -87,7 +88,7 @@ public class SnappyFramedEncoder extends MessageToByteEncoder<ByteBuf> {
         }
     }
 
-    private static void writeUnencodedChunk(ByteBuf in, ByteBuf out, int dataLength) {
+    private void writeUnencodedChunk(ByteBuf in, ByteBuf out, int dataLength) {
         out.writeByte(1);
         writeChunkLength(out, dataLength + 4);
         calculateAndWriteChecksum(in, out);
@@ -118,7 +119,8 @@ public class SnappyFramedEncoder extends MessageToByteEncoder<ByteBuf> {
      * @param slice The data to calculate the checksum for
      * @param out The output buffer to write the checksum to
      */
-    private static void calculateAndWriteChecksum(ByteBuf slice, ByteBuf out) {
-        out.writeInt(ByteBufUtil.swapInt(calculateChecksum(slice)));
+    private void calculateAndWriteChecksum(ByteBuf slice, ByteBuf out) {
+        int checksum = calculateChecksum(crc32c, slice, slice.readerIndex(), slice.readableBytes());
+        out.writeInt(ByteBufUtil.swapInt(checksum));
     }
 }
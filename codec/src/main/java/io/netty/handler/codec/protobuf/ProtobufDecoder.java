@@ -15,6 +15,7 @@
  */
 package io.netty.handler.codec.protobuf;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.ExtensionRegistry;
 import com.google.protobuf.Message;
 import com.google.protobuf.MessageLite;
@@ -77,6 +78,13 @@ public class ProtobufDecoder extends MessageToMessageDecoder<ByteBuf> {
         HAS_PARSER = hasParser;
     }
 
+    /**
+     * Direct buffers are copied into a per-thread scratch array of up to this size when protobuf cannot read a
+     * {@link java.nio.ByteBuffer}.
+     */
+    private static final int MAX_SCRATCH_SIZE = 65536;
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>();
+
     private final MessageLite prototype;
     private final ExtensionRegistry extensionRegistry;
 
@@ -97,29 +105,59 @@ public class ProtobufDecoder extends MessageToMessageDecoder<ByteBuf> {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
-        final byte[] array;
-        final int offset;
         final int length = msg.readableBytes();
         if (msg.hasArray()) {
-            array = msg.array();
-            offset = msg.arrayOffset() + msg.readerIndex();
+            out.add(decode(msg.array(), msg.arrayOffset() + msg.readerIndex(), length));
+        } else if (ProtobufUtil.hasByteBufferInput() && msg.nioBufferCount() == 1) {
+            out.add(decode(ProtobufUtil.newCodedInputStream(msg.nioBuffer())));
         } else {
-            array = new byte[length];
+            // Parsing from an array copies the bytes it keeps, so the scratch array can be reused right away.
+            byte[] array = scratch(length);
             msg.getBytes(msg.readerIndex(), array, 0, length);
-            offset = 0;
+            out.add(decode(array, 0, length));
+        }
+    }
+
+    private static byte[] scratch(int length) {
+        if (length > MAX_SCRATCH_SIZE) {
+            return new byte[length];
+        }
+        byte[] scratch = SCRATCH.get();
+        if (scratch == null || scratch.length < length) {
+            scratch = new byte[Math.max(256, Integer.highestOneBit(length - 1) << 1)];
+            SCRATCH.set(scratch);
         }
+        return scratch;
+    }
+
+    private MessageLite decode(CodedInputStream in) throws Exception {
+        if (extensionRegistry == null) {
+            if (HAS_PARSER) {
+                return prototype.getParserForType().parseFrom(in);
+            } else {
+                return prototype.newBuilderForType().mergeFrom(in).build();
+            }
+        } else {
+            if (HAS_PARSER) {
+                return prototype.getParserForType().parseFrom(in, extensionRegistry);
+            } else {
+                return prototype.newBuilderForType().mergeFrom(in, extensionRegistry).build();
+            }
+        }
+    }
 
+    private MessageLite decode(byte[] array, int offset, int length) throws Exception {
         if (extensionRegistry == null) {
             if (HAS_PARSER) {
-                out.add(prototype.getParserForType().parseFrom(array, offset, length));
+                return prototype.getParserForType().parseFrom(array, offset, length);
             } else {
-                out.add(prototype.newBuilderForType().mergeFrom(array, offset, length).build());
+                return prototype.newBuilderForType().mergeFrom(array, offset, length).build();
             }
         } else {
             if (HAS_PARSER) {
-                out.add(prototype.getParserForType().parseFrom(array, offset, length, extensionRegistry));
+                return prototype.getParserForType().parseFrom(array, offset, length, extensionRegistry);
             } else {
-                out.add(prototype.newBuilderForType().mergeFrom(array, offset, length, extensionRegistry).build());
+                return prototype.newBuilderForType().mergeFrom(array, offset, length, extensionRegistry).build();
             }
         }
     }
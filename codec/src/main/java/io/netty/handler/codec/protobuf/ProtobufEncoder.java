@@ -15,6 +15,7 @@
  */
 package io.netty.handler.codec.protobuf;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Message;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.MessageLiteOrBuilder;
@@ -63,11 +64,49 @@ public class ProtobufEncoder extends MessageToMessageEncoder<MessageLiteOrBuilde
     protected void encode(
             ChannelHandlerContext ctx, MessageLiteOrBuilder msg, List<Object> out) throws Exception {
         if (msg instanceof MessageLite) {
-            out.add(wrappedBuffer(((MessageLite) msg).toByteArray()));
+            out.add(encode(ctx, (MessageLite) msg));
             return;
         }
         if (msg instanceof MessageLite.Builder) {
-            out.add(wrappedBuffer(((MessageLite.Builder) msg).build().toByteArray()));
+            out.add(encode(ctx, ((MessageLite.Builder) msg).build()));
+        }
+    }
+
+    /**
+     * Serializes the message straight into a buffer of its exact size.  The buffer is direct if protobuf can write
+     * into a {@link java.nio.ByteBuffer}, or heap otherwise so that the message is written into its backing array.
+     */
+    private static ByteBuf encode(ChannelHandlerContext ctx, MessageLite msg) throws Exception {
+        final int size = msg.getSerializedSize();
+        if (size == 0) {
+            return EMPTY_BUFFER;
+        }
+
+        final ByteBuf buf;
+        final CodedOutputStream out;
+        if (ProtobufUtil.hasByteBufferOutput()) {
+            buf = ctx.alloc().buffer(size);
+        } else {
+            buf = ctx.alloc().heapBuffer(size);
+        }
+
+        boolean success = false;
+        try {
+            final int writerIndex = buf.writerIndex();
+            if (buf.hasArray()) {
+                out = CodedOutputStream.newInstance(buf.array(), buf.arrayOffset() + writerIndex, size);
+            } else {
+                out = ProtobufUtil.newCodedOutputStream(buf.nioBuffer(writerIndex, size));
+            }
+            msg.writeTo(out);
+            out.checkNoSpaceLeft();
+            buf.writerIndex(writerIndex + size);
+            success = true;
+            return buf;
+        } finally {
+            if (!success) {
+                buf.release();
+            }
         }
     }
 }
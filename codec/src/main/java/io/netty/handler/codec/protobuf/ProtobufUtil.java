@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.protobuf;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import io.netty.handler.codec.CodecException;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Utility methods used by {@link ProtobufDecoder} and {@link ProtobufEncoder} to read and write direct memory
+ * without copying it.  {@link CodedInputStream} and {@link CodedOutputStream} accept a {@link ByteBuffer} only since
+ * protobuf 3, so the factory methods are looked up reflectively.
+ */
+final class ProtobufUtil {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ProtobufUtil.class);
+
+    private static final Method NEW_CODED_INPUT_STREAM;
+    private static final Method NEW_CODED_OUTPUT_STREAM;
+
+    static {
+        Method newCodedInputStream;
+        try {
+            newCodedInputStream = CodedInputStream.class.getMethod("newInstance", ByteBuffer.class);
+        } catch (Throwable t) {
+            newCodedInputStream = null;
+        }
+        NEW_CODED_INPUT_STREAM = newCodedInputStream;
+
+        Method newCodedOutputStream;
+        try {
+            newCodedOutputStream = CodedOutputStream.class.getMethod("newInstance", ByteBuffer.class);
+        } catch (Throwable t) {
+            newCodedOutputStream = null;
+        }
+        NEW_CODED_OUTPUT_STREAM = newCodedOutputStream;
+
+        logger.debug("com.google.protobuf.CodedInputStream with ByteBuffer: {}",
+                NEW_CODED_INPUT_STREAM != null ? "available" : "unavailable");
+        logger.debug("com.google.protobuf.CodedOutputStream with ByteBuffer: {}",
+                NEW_CODED_OUTPUT_STREAM != null ? "available" : "unavailable");
+    }
+
+    /**
+     * Returns {@code true} if and only if {@link CodedInputStream} reads from a {@link ByteBuffer}.
+     */
+    static boolean hasByteBufferInput() {
+        return NEW_CODED_INPUT_STREAM != null;
+    }
+
+    /**
+     * Returns {@code true} if and only if {@link CodedOutputStream} writes into a {@link ByteBuffer}.
+     */
+    static boolean hasByteBufferOutput() {
+        return NEW_CODED_OUTPUT_STREAM != null;
+    }
+
+    static CodedInputStream newCodedInputStream(ByteBuffer buffer) {
+        return (CodedInputStream) invoke(NEW_CODED_INPUT_STREAM, buffer);
+    }
+
+    static CodedOutputStream newCodedOutputStream(ByteBuffer buffer) {
+        return (CodedOutputStream) invoke(NEW_CODED_OUTPUT_STREAM, buffer);
+    }
+
+    private static Object invoke(Method method, Object arg) {
+        try {
+            return method.invoke(null, arg);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CodecException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ProtobufUtil() { }
+}
@@ -46,32 +46,38 @@ public class ProtobufVarint32FrameDecoder extends ByteToMessageDecoder {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        in.markReaderIndex();
-        final byte[] buf = new byte[5];
-        for (int i = 0; i < buf.length; i ++) {
-            if (!in.isReadable()) {
-                in.resetReaderIndex();
+        final int readerIndex = in.readerIndex();
+        final int writerIndex = in.writerIndex();
+
+        // Read the length field in place rather than through a CodedInputStream.
+        int length = 0;
+        int shift = 0;
+        int i = readerIndex;
+        for (;;) {
+            if (i == writerIndex) {
                 return;
             }
 
-            buf[i] = in.readByte();
-            if (buf[i] >= 0) {
-                int length = CodedInputStream.newInstance(buf, 0, i + 1).readRawVarint32();
-                if (length < 0) {
-                    throw new CorruptedFrameException("negative length: " + length);
-                }
+            byte b = in.getByte(i ++);
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
 
-                if (in.readableBytes() < length) {
-                    in.resetReaderIndex();
-                    return;
-                } else {
-                    out.add(in.readBytes(length));
-                    return;
-                }
+            shift += 7;
+            if (shift == 35) {
+                // Couldn't find the byte whose MSB is off.
+                throw new CorruptedFrameException("length wider than 32-bit");
             }
         }
 
-        // Couldn't find the byte whose MSB is off.
-        throw new CorruptedFrameException("length wider than 32-bit");
+        if (length < 0) {
+            throw new CorruptedFrameException("negative length: " + length);
+        }
+
+        if (writerIndex - i >= length) {
+            in.readerIndex(i);
+            out.add(in.readBytes(length));
+        }
     }
 }
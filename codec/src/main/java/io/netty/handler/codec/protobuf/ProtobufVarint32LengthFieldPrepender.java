@@ -17,7 +17,6 @@ package io.netty.handler.codec.protobuf;
 
 import com.google.protobuf.CodedOutputStream;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
@@ -46,11 +45,18 @@ public class ProtobufVarint32LengthFieldPrepender extends MessageToByteEncoder<B
         int headerLen = CodedOutputStream.computeRawVarint32Size(bodyLen);
         out.ensureWritable(headerLen + bodyLen);
 
-        CodedOutputStream headerOut =
-                CodedOutputStream.newInstance(new ByteBufOutputStream(out));
-        headerOut.writeRawVarint32(bodyLen);
-        headerOut.flush();
-
+        writeRawVarint32(out, bodyLen);
         out.writeBytes(msg, msg.readerIndex(), bodyLen);
     }
+
+    /**
+     * Writes the length field in place rather than through a {@link CodedOutputStream}.
+     */
+    private static void writeRawVarint32(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
 }
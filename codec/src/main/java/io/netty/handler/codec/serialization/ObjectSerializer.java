@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.serialization;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Writes the objects of a certain type into a {@link ByteBuf} and reads them back.  A serializer is registered
+ * with an {@link ObjectSerializerRegistry} under an ID, which {@link ObjectSerializerEncoder} writes in place of
+ * the class name.  A serializer is shared by all the channels and thus must be thread-safe.
+ *
+ * <pre>
+ * public final class PointSerializer implements {@link ObjectSerializer}&lt;Point&gt; {
+ *     public void writeObject({@link ByteBuf} out, Point point) {
+ *         out.writeInt(point.x);
+ *         out.writeInt(point.y);
+ *     }
+ *
+ *     public Point readObject({@link ByteBuf} in) {
+ *         return new Point(in.readInt(), in.readInt());
+ *     }
+ * }
+ * </pre>
+ */
+public interface ObjectSerializer<T> {
+
+    /**
+     * Writes the specified object at the writer index of the specified buffer.
+     */
+    void writeObject(ByteBuf out, T obj) throws Exception;
+
+    /**
+     * Reads an object from the readable bytes of the specified buffer, which contains exactly what
+     * {@link #writeObject(ByteBuf, Object)} has written.
+     */
+    T readObject(ByteBuf in) throws Exception;
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.serialization.ObjectSerializerRegistry.Registration;
+
+/**
+ * A decoder which reads the objects written by {@link ObjectSerializerEncoder} with the {@link ObjectSerializer}
+ * registered for their ID in an {@link ObjectSerializerRegistry}.  The buffer passed to
+ * {@link ObjectSerializer#readObject(ByteBuf)} is valid only during the call, so a serializer must copy the bytes
+ * it wants to keep.
+ */
+public class ObjectSerializerDecoder extends LengthFieldBasedFrameDecoder {
+
+    private final ObjectSerializerRegistry registry;
+
+    /**
+     * Creates a new decoder whose maximum object size is {@code 1048576} bytes.
+     */
+    public ObjectSerializerDecoder(ObjectSerializerRegistry registry) {
+        this(1048576, registry);
+    }
+
+    /**
+     * Creates a new decoder with the specified maximum object size.
+     *
+     * @param maxObjectSize the maximum byte length of the serialized object including its ID.  If the length of
+     *                      the received object is greater than this value, {@link TooLongFrameException} will be
+     *                      raised.
+     * @param registry      the serializers to use
+     */
+    public ObjectSerializerDecoder(int maxObjectSize, ObjectSerializerRegistry registry) {
+        // The maximum frame length of LengthFieldBasedFrameDecoder includes the length field.
+        super(maxFrameLength(maxObjectSize), 0, 4, 0, 4);
+        if (registry == null) {
+            throw new NullPointerException("registry");
+        }
+        this.registry = registry;
+    }
+
+    private static int maxFrameLength(int maxObjectSize) {
+        if (maxObjectSize <= 0) {
+            throw new IllegalArgumentException("maxObjectSize: " + maxObjectSize + " (expected: > 0)");
+        }
+        return maxObjectSize > Integer.MAX_VALUE - 4 ? Integer.MAX_VALUE : maxObjectSize + 4;
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+
+        final int id = frame.readUnsignedShort();
+        if (id == ObjectSerializerRegistry.JAVA_SERIALIZATION_ID) {
+            ClassResolver classResolver = registry.classResolver();
+            if (classResolver == null) {
+                throw new CorruptedFrameException("received an object written with Java serialization");
+            }
+            return new CompactObjectInputStream(new ByteBufInputStream(frame), classResolver).readObject();
+        }
+
+        Registration registration = registry.registration(id);
+        if (registration == null) {
+            throw new CorruptedFrameException("unknown serializer ID: " + id);
+        }
+        Object obj = registration.serializer.readObject(frame);
+        if (frame.isReadable()) {
+            throw new CorruptedFrameException(
+                    frame.readableBytes() + " byte(s) left after reading " + registration.type.getName());
+        }
+        return obj;
+    }
+
+    @Override
+    protected ByteBuf extractFrame(ChannelHandlerContext ctx, ByteBuf buffer, int index, int length) {
+        return buffer.slice(index, length);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.serialization.ObjectSerializerRegistry.Registration;
+
+import java.io.ObjectOutputStream;
+
+/**
+ * An encoder which writes an object with the {@link ObjectSerializer} registered for its class in an
+ * {@link ObjectSerializerRegistry}.  Each object is written as a 4-byte length, followed by the 2-byte ID of its
+ * serializer and by what the serializer has written, directly into the buffer allocated from the
+ * {@link io.netty.buffer.ByteBufAllocator} of the channel.  The objects which are not
+ * {@linkplain ObjectSerializerRegistry#isSerializable(Object) serializable} by the registry are passed through.
+ * <p>
+ * Unlike {@link ObjectEncoder}, an instance keeps the state of the last encoded type and its encoded size, so
+ * that a stream of similar objects needs neither a lookup nor a buffer expansion.  Therefore, it must not be
+ * shared between channels.  Use {@link ObjectSerializerDecoder} on the other side.
+ * <p>
+ * An object written with Java serialization still gets a new object stream, so that every frame can be decoded on
+ * its own and a frame dropped by the decoder does not corrupt the following ones.
+ */
+public class ObjectSerializerEncoder extends MessageToByteEncoder<Object> {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 256;
+    // The size of the last frame is not used as the initial capacity beyond this, so that a single large object does
+    // not make all the following buffers as large.
+    private static final int MAX_INITIAL_CAPACITY = 65536;
+
+    private final ObjectSerializerRegistry registry;
+
+    private Class<?> lastType;
+    private Registration lastRegistration;
+    private int lastFrameSize = DEFAULT_INITIAL_CAPACITY;
+
+    /**
+     * Creates a new encoder which writes into direct buffers if possible.
+     */
+    public ObjectSerializerEncoder(ObjectSerializerRegistry registry) {
+        this(registry, true);
+    }
+
+    /**
+     * Creates a new encoder.
+     *
+     * @param registry      the serializers to use
+     * @param preferDirect  {@code true} if the objects should be written into direct buffers if possible
+     */
+    public ObjectSerializerEncoder(ObjectSerializerRegistry registry, boolean preferDirect) {
+        super(Object.class, preferDirect);
+        if (registry == null) {
+            throw new NullPointerException("registry");
+        }
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        return msg != null && msg.getClass() == lastType || registry.isSerializable(msg);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Object msg, boolean preferDirect) throws Exception {
+        int initialCapacity = msg.getClass() == lastType ? lastFrameSize : DEFAULT_INITIAL_CAPACITY;
+        if (preferDirect) {
+            return ctx.alloc().ioBuffer(initialCapacity);
+        } else {
+            return ctx.alloc().heapBuffer(initialCapacity);
+        }
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+        final Class<?> type = msg.getClass();
+        final Registration registration;
+        if (type == lastType) {
+            registration = lastRegistration;
+        } else {
+            registration = registry.registration(type);
+            lastType = type;
+            lastRegistration = registration;
+        }
+
+        final int startIdx = out.writerIndex();
+        out.writeInt(0);
+        if (registration != null) {
+            out.writeShort(registration.id);
+            registration.serializer.writeObject(out, msg);
+        } else {
+            out.writeShort(ObjectSerializerRegistry.JAVA_SERIALIZATION_ID);
+            ObjectOutputStream oout = new CompactObjectOutputStream(new ByteBufOutputStream(out));
+            try {
+                oout.writeObject(msg);
+                oout.flush();
+            } finally {
+                oout.close();
+            }
+        }
+
+        final int frameSize = out.writerIndex() - startIdx;
+        out.setInt(startIdx, frameSize - 4);
+        lastFrameSize = Math.min(frameSize, MAX_INITIAL_CAPACITY);
+    }
+}
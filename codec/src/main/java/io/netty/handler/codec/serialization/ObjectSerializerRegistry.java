@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.serialization;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link ObjectSerializer}s which {@link ObjectSerializerEncoder} and {@link ObjectSerializerDecoder} use,
+ * each registered with the class of the objects it serializes and with an ID which identifies the class on the
+ * wire.  Both peers must register the same serializers with the same IDs.
+ * <p>
+ * A serializer is looked up by the exact class of an object, so a subclass must be registered separately.  If a
+ * {@link ClassResolver} is specified, a {@link Serializable} object which has no registered serializer is written
+ * with Java serialization, which eases the migration from {@link ObjectEncoder} and {@link ObjectDecoder}.
+ */
+public final class ObjectSerializerRegistry {
+
+    /**
+     * The greatest ID a serializer can be registered with.
+     */
+    public static final int MAX_ID = 0xFFFE;
+
+    /**
+     * The ID written in front of the objects which are written with Java serialization.
+     */
+    static final int JAVA_SERIALIZATION_ID = 0xFFFF;
+
+    private final ClassResolver classResolver;
+    private final ConcurrentMap<Class<?>, Registration> byClass = PlatformDependent.newConcurrentHashMap();
+    private volatile Registration[] byId = new Registration[16];
+
+    /**
+     * Creates a new registry without the Java serialization fallback.
+     */
+    public ObjectSerializerRegistry() {
+        this(null);
+    }
+
+    /**
+     * Creates a new registry.
+     *
+     * @param classResolver the {@link ClassResolver} which loads the classes of the objects written with Java
+     *                      serialization, or {@code null} to accept only the objects with a registered serializer
+     */
+    public ObjectSerializerRegistry(ClassResolver classResolver) {
+        this.classResolver = classResolver;
+    }
+
+    /**
+     * Registers the specified serializer for the objects of the specified class.
+     *
+     * @throws IllegalArgumentException if {@code id} is out of range, or if the ID or the class are already
+     *                                  registered
+     */
+    public synchronized <T> ObjectSerializerRegistry register(int id, Class<T> type, ObjectSerializer<T> serializer) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("id: " + id + " (expected: 0-" + MAX_ID + ')');
+        }
+        if (type == null) {
+            throw new NullPointerException("type");
+        }
+        if (serializer == null) {
+            throw new NullPointerException("serializer");
+        }
+
+        Registration[] byId = this.byId;
+        if (id < byId.length && byId[id] != null) {
+            throw new IllegalArgumentException("id " + id + " is already registered for " + byId[id].type.getName());
+        }
+        if (byClass.containsKey(type)) {
+            throw new IllegalArgumentException(type.getName() + " is already registered");
+        }
+
+        @SuppressWarnings("unchecked")
+        Registration registration = new Registration(id, type, (ObjectSerializer<Object>) serializer);
+        // Copy on write because the lookups by ID are much more frequent than the registrations.
+        Registration[] newById = new Registration[Math.max(byId.length, id + 1)];
+        System.arraycopy(byId, 0, newById, 0, byId.length);
+        newById[id] = registration;
+        byClass.put(type, registration);
+        this.byId = newById;
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if and only if the specified object can be written, either by a registered serializer
+     * or with Java serialization.
+     */
+    public boolean isSerializable(Object obj) {
+        return obj != null &&
+               (byClass.containsKey(obj.getClass()) || classResolver != null && obj instanceof Serializable);
+    }
+
+    Registration registration(Class<?> type) {
+        return byClass.get(type);
+    }
+
+    Registration registration(int id) {
+        Registration[] byId = this.byId;
+        return id < byId.length ? byId[id] : null;
+    }
+
+    ClassResolver classResolver() {
+        return classResolver;
+    }
+
+    static final class Registration {
+        final int id;
+        final Class<?> type;
+        final ObjectSerializer<Object> serializer;
+
+        Registration(int id, Class<?> type, ObjectSerializer<Object> serializer) {
+            this.id = id;
+            this.type = type;
+            this.serializer = serializer;
+        }
+    }
+}
@@ -17,6 +17,8 @@
 /**
  * Encoder, decoder and their compatibility stream implementations which
  * transform a {@link java.io.Serializable} object into a byte buffer and
- * vice versa.
+ * vice versa, and a faster codec which writes objects with the
+ * {@link io.netty.handler.codec.serialization.ObjectSerializer}s registered
+ * for their classes.
  */
 package io.netty.handler.codec.serialization;
@@ -16,6 +16,7 @@
 package io.netty.handler.codec.string;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
@@ -23,6 +24,7 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import io.netty.handler.codec.LineBasedFrameDecoder;
 import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.util.CharsetUtil;
 
 import java.nio.charset.Charset;
 import java.util.List;
@@ -54,8 +56,9 @@ import java.util.List;
 @Sharable
 public class StringDecoder extends MessageToMessageDecoder<ByteBuf> {
 
-    // TODO Use CharsetDecoder instead.
     private final Charset charset;
+    private final boolean utf8;
+    private final boolean latin1;
 
     /**
      * Creates a new instance with the current system character set.
@@ -72,10 +75,18 @@ public class StringDecoder extends MessageToMessageDecoder<ByteBuf> {
             throw new NullPointerException("charset");
         }
         this.charset = charset;
+        utf8 = charset.equals(CharsetUtil.UTF_8);
+        latin1 = charset.equals(CharsetUtil.ISO_8859_1);
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
-        out.add(msg.toString(charset));
+        if (utf8) {
+            out.add(ByteBufUtil.decodeUtf8(msg, msg.readerIndex(), msg.readableBytes()));
+        } else if (latin1) {
+            out.add(ByteBufUtil.decodeAscii(msg, msg.readerIndex(), msg.readableBytes()));
+        } else {
+            out.add(msg.toString(charset));
+        }
     }
 }
@@ -22,6 +22,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.LineBasedFrameDecoder;
 import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.util.CharsetUtil;
 
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
@@ -51,8 +52,10 @@ import java.util.List;
 @Sharable
 public class StringEncoder extends MessageToMessageEncoder<CharSequence> {
 
-    // TODO Use CharsetEncoder instead.
     private final Charset charset;
+    private final boolean utf8;
+    private final boolean latin1;
+    private final boolean ascii;
 
     /**
      * Creates a new instance with the current system character set.
@@ -69,6 +72,9 @@ public class StringEncoder extends MessageToMessageEncoder<CharSequence> {
             throw new NullPointerException("charset");
         }
         this.charset = charset;
+        utf8 = charset.equals(CharsetUtil.UTF_8);
+        latin1 = charset.equals(CharsetUtil.ISO_8859_1);
+        ascii = charset.equals(CharsetUtil.US_ASCII);
     }
 
     @Override
@@ -77,6 +83,22 @@ public class StringEncoder extends MessageToMessageEncoder<CharSequence> {
             return;
         }
 
-        out.add(ByteBufUtil.encodeString(ctx.alloc(), CharBuffer.wrap(msg), charset));
+        if (utf8) {
+            out.add(ByteBufUtil.writeUtf8(ctx.alloc(), msg));
+        } else if (latin1 || ascii && isAscii(msg)) {
+            out.add(ByteBufUtil.writeAscii(ctx.alloc(), msg));
+        } else {
+            out.add(ByteBufUtil.encodeString(ctx.alloc(), CharBuffer.wrap(msg), charset));
+        }
+    }
+
+    private static boolean isAscii(CharSequence msg) {
+        final int length = msg.length();
+        for (int i = 0; i < length; i ++) {
+            if (msg.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BatchingMessageToByteEncoderTest {
+
+    @Test
+    public void testBatchUntilFlush() {
+        EmbeddedChannel ch = new EmbeddedChannel(new IntegerEncoder(16));
+        ChannelFuture f1 = ch.write(1);
+        ChannelFuture f2 = ch.write(2);
+        ChannelFuture f3 = ch.write(3);
+        assertNull(ch.readOutbound());
+        assertFalse(f1.isDone());
+
+        ch.flush();
+        ByteBuf buf = (ByteBuf) ch.readOutbound();
+        assertEquals(12, buf.readableBytes());
+        assertEquals(1, buf.readInt());
+        assertEquals(2, buf.readInt());
+        assertEquals(3, buf.readInt());
+        buf.release();
+        assertTrue(f1.isSuccess());
+        assertTrue(f2.isSuccess());
+        assertTrue(f3.isSuccess());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testMaxBatchSize() {
+        EmbeddedChannel ch = new EmbeddedChannel(new IntegerEncoder(8));
+        ChannelFuture f1 = ch.write(1);
+        ChannelFuture f2 = ch.write(2);
+        ChannelFuture f3 = ch.write(3);
+
+        ch.flush();
+        assertTrue(f1.isSuccess());
+        assertTrue(f2.isSuccess());
+        assertTrue(f3.isSuccess());
+        // The batch is handed over to the next handler once it is full.
+        assertBuffer(ch.readOutbound(), 1, 2);
+        assertBuffer(ch.readOutbound(), 3);
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testOrderIsPreserved() {
+        EmbeddedChannel ch = new EmbeddedChannel(new IntegerEncoder(16));
+        // Large values are encoded on their own, other types are passed through.
+        assertTrue(ch.writeOutbound(1, 2, "a", 3, 1000, 4));
+        assertBuffer(ch.readOutbound(), 1, 2);
+        assertEquals("a", ch.readOutbound());
+        assertBuffer(ch.readOutbound(), 3);
+        assertBuffer(ch.readOutbound(), 1000);
+        assertBuffer(ch.readOutbound(), 4);
+        assertNull(ch.readOutbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testEncodeFailure() {
+        EmbeddedChannel ch = new EmbeddedChannel(new IntegerEncoder(16));
+        ChannelFuture f1 = ch.write(1);
+        ChannelFuture f2 = ch.write(-1);
+        ChannelFuture f3 = ch.write(3);
+        assertTrue(f2.cause() instanceof EncoderException);
+
+        ch.flush();
+        assertTrue(f1.isSuccess());
+        assertTrue(f3.isSuccess());
+        assertBuffer(ch.readOutbound(), 1, 3);
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testCancelledPromiseDoesNotBreakNotification() {
+        EmbeddedChannel ch = new EmbeddedChannel(new IntegerEncoder(16));
+        ChannelFuture f1 = ch.write(1);
+        ChannelPromise p2 = ch.newPromise();
+        ch.write(2, p2);
+        ChannelFuture f3 = ch.write(3);
+        assertTrue(p2.cancel(false));
+
+        ch.flush();
+        assertTrue(f1.isSuccess());
+        assertTrue(p2.isCancelled());
+        assertTrue(f3.isSuccess());
+        assertBuffer(ch.readOutbound(), 1, 2, 3);
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testLargeByteBufIsWrittenOnItsOwn() {
+        EmbeddedChannel ch = new EmbeddedChannel(new BatchingMessageToByteEncoder<ByteBuf>(8) {
+            @Override
+            protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) {
+                out.writeBytes(msg);
+            }
+        });
+        assertTrue(ch.writeOutbound(Unpooled.wrappedBuffer(new byte[] { 1, 2 }), Unpooled.wrappedBuffer(new byte[16])));
+        ByteBuf small = (ByteBuf) ch.readOutbound();
+        assertEquals(2, small.readableBytes());
+        small.release();
+        ByteBuf large = (ByteBuf) ch.readOutbound();
+        assertEquals(16, large.readableBytes());
+        large.release();
+        assertNull(ch.readOutbound());
+        assertFalse(ch.finish());
+    }
+
+    private static void assertBuffer(Object msg, int... values) {
+        ByteBuf buf = (ByteBuf) msg;
+        assertEquals(values.length * 4, buf.readableBytes());
+        for (int v: values) {
+            assertEquals(v, buf.readInt());
+        }
+        buf.release();
+    }
+
+    private static final class IntegerEncoder extends BatchingMessageToByteEncoder<Integer> {
+
+        IntegerEncoder(int maxBatchSize) {
+            super(maxBatchSize);
+        }
+
+        @Override
+        protected int estimateSize(Integer msg) {
+            // Pretend that large values are large messages.
+            return msg >= 1000 ? Integer.MAX_VALUE : 4;
+        }
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, Integer msg, ByteBuf out) {
+            out.writeShort(0);
+            if (msg < 0) {
+                throw new IllegalArgumentException("negative: " + msg);
+            }
+            out.setShort(out.writerIndex() - 2, msg >>> 16);
+            out.writeShort(msg);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.Checksum;
+
+import static org.junit.Assert.*;
+
+public class ByteBufChecksumTest {
+
+    private static final byte[] CHECK = "123456789".getBytes(CharsetUtil.US_ASCII);
+
+    @Test
+    public void testCheckValue() {
+        Checksum crc32c = new Crc32c();
+        crc32c.update(CHECK, 0, CHECK.length);
+        assertEquals(0xE3069283L, crc32c.getValue());
+
+        ByteBufChecksum checksum = ByteBufChecksum.newCrc32c();
+        checksum.update(Unpooled.wrappedBuffer(CHECK), 0, CHECK.length);
+        assertEquals(0xE3069283L, checksum.getValue());
+    }
+
+    @Test
+    public void testCrc32cMatchesByteAtATime() {
+        Random random = new Random(42);
+        byte[] data = new byte[1024];
+        random.nextBytes(data);
+
+        ByteBuf heap = Unpooled.wrappedBuffer(data);
+        ByteBuf direct = Unpooled.directBuffer(data.length).writeBytes(data);
+        ByteBuf composite = Unpooled.wrappedBuffer(
+                Unpooled.wrappedBuffer(data, 0, 100), Unpooled.wrappedBuffer(data, 100, data.length - 100));
+        ByteBufChecksum[] checksums = { new Crc32c(), ByteBufChecksum.newCrc32c() };
+
+        for (int i = 0; i < 200; i ++) {
+            int index = random.nextInt(data.length);
+            int length = random.nextInt(data.length - index + 1);
+
+            Crc32c expected = new Crc32c();
+            for (int j = index; j < index + length; j ++) {
+                expected.update(data[j]);
+            }
+
+            for (ByteBufChecksum checksum: checksums) {
+                checksum.reset();
+                checksum.update(data, index, length);
+                assertEquals(expected.getValue(), checksum.getValue());
+
+                for (ByteBuf buf: new ByteBuf[] { heap, direct, composite }) {
+                    checksum.reset();
+                    checksum.update(buf, index, length);
+                    assertEquals(expected.getValue(), checksum.getValue());
+                }
+            }
+        }
+        direct.release();
+    }
+
+    @Test
+    public void testWrap() {
+        ByteBuf direct = Unpooled.directBuffer().writeBytes(CHECK);
+        Adler32 expected = new Adler32();
+        expected.update(CHECK, 0, CHECK.length);
+
+        ByteBufChecksum checksum = ByteBufChecksum.wrap(new Adler32());
+        checksum.update(direct, 0, CHECK.length);
+        assertEquals(expected.getValue(), checksum.getValue());
+        assertSame(checksum, ByteBufChecksum.wrap(checksum));
+        direct.release();
+    }
+}
@@ -15,8 +15,13 @@
  */
 package io.netty.handler.codec.compression;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
 import org.junit.Test;
 
+import static org.junit.Assert.*;
 
 public class JdkZlibTest extends ZlibTest {
 
@@ -47,4 +52,85 @@ public class JdkZlibTest extends ZlibTest {
     public void testZLIB_OR_NONE3() throws Exception {
         new JdkZlibDecoder(ZlibWrapper.ZLIB_OR_NONE);
     }
+
+    @Test
+    public void testDirectBuffers() throws Exception {
+        testDirectBuffers(ZlibWrapper.ZLIB);
+        testDirectBuffers(ZlibWrapper.GZIP);
+        testDirectBuffers(ZlibWrapper.NONE);
+    }
+
+    private static void testDirectBuffers(ZlibWrapper wrapper) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i ++) {
+            text.append("netty ").append(i).append('\n');
+        }
+        byte[] bytes = text.toString().getBytes(CharsetUtil.US_ASCII);
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new JdkZlibEncoder(wrapper));
+        encoder.writeOutbound(Unpooled.directBuffer(bytes.length).writeBytes(bytes));
+        assertTrue(encoder.finish());
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new JdkZlibDecoder(wrapper));
+        for (;;) {
+            ByteBuf compressed = encoder.readOutbound();
+            if (compressed == null) {
+                break;
+            }
+            ByteBuf direct = Unpooled.directBuffer(compressed.readableBytes()).writeBytes(compressed);
+            compressed.release();
+            decoder.writeInbound(direct);
+        }
+
+        ByteBuf decompressed = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = decoder.readInbound();
+            if (buf == null) {
+                break;
+            }
+            decompressed.writeBytes(buf);
+            buf.release();
+        }
+        assertEquals(Unpooled.wrappedBuffer(bytes), decompressed);
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testPool() throws Exception {
+        JdkZlibPool pool = new JdkZlibPool(1, 1);
+        byte[] bytes = "message".getBytes(CharsetUtil.UTF_8);
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new JdkZlibEncoder(ZlibWrapper.GZIP, 6, pool));
+        encoder.writeOutbound(Unpooled.wrappedBuffer(bytes));
+        // Finishing the stream returns the deflater.
+        assertTrue(encoder.finish());
+        assertEquals(1, pool.pooledDeflaters());
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new JdkZlibDecoder(ZlibWrapper.GZIP, pool));
+        for (;;) {
+            ByteBuf compressed = encoder.readOutbound();
+            if (compressed == null) {
+                break;
+            }
+            decoder.writeInbound(compressed);
+        }
+        ByteBuf buf = decoder.readInbound();
+        assertEquals(Unpooled.wrappedBuffer(bytes), buf);
+        buf.release();
+        // Closing the channel removes the decoder, which returns the inflater.
+        assertFalse(decoder.finish());
+        assertEquals(1, pool.pooledInflaters());
+
+        // The pooled deflater is reused, and one beyond the capacity of the pool is ended.
+        EmbeddedChannel encoder2 = new EmbeddedChannel(new JdkZlibEncoder(ZlibWrapper.GZIP, 6, pool));
+        assertEquals(0, pool.pooledDeflaters());
+        EmbeddedChannel encoder3 = new EmbeddedChannel(new JdkZlibEncoder(ZlibWrapper.GZIP, 6, pool));
+        encoder2.close();
+        encoder3.close();
+        assertEquals(1, pool.pooledDeflaters());
+
+        pool.clear();
+        assertEquals(0, pool.pooledDeflaters());
+        assertEquals(0, pool.pooledInflaters());
+    }
 }
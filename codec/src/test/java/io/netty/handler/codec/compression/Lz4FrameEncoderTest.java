@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import static org.junit.Assert.*;
+
+public class Lz4FrameEncoderTest {
+
+    private static final Random rand = new Random(42);
+    private static final byte[] BYTES_SMALL = new byte[256];
+    private static final byte[] BYTES_LARGE = new byte[256 * 1024];
+
+    static {
+        fillArrayWithCompressibleData(BYTES_SMALL);
+        fillArrayWithCompressibleData(BYTES_LARGE);
+    }
+
+    private static void fillArrayWithCompressibleData(byte[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = i % 4 != 0 ? 0 : (byte) rand.nextInt();
+        }
+    }
+
+    @Test
+    public void testStreamInterop() throws Exception {
+        testStreamInterop(BYTES_SMALL, false);
+        testStreamInterop(BYTES_LARGE, false);
+        testStreamInterop(BYTES_LARGE, true);
+    }
+
+    private static void testStreamInterop(byte[] data, boolean direct) throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new Lz4FrameEncoder());
+        assertTrue(channel.writeOutbound(wrap(data, direct)));
+        assertTrue(channel.finish());
+
+        ByteBuf compressed = readCompressed(channel);
+        byte[] bytes = new byte[compressed.readableBytes()];
+        compressed.readBytes(bytes);
+
+        InputStream is = new LZ4BlockInputStream(new ByteArrayInputStream(bytes));
+        byte[] uncompressed = new byte[data.length];
+        int off = 0;
+        int n;
+        while (off < uncompressed.length && (n = is.read(uncompressed, off, uncompressed.length - off)) > 0) {
+            off += n;
+        }
+        assertEquals(-1, is.read());
+        is.close();
+        assertArrayEquals(data, uncompressed);
+    }
+
+    @Test
+    public void testDecodeStreamOutput() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        LZ4BlockOutputStream os = new LZ4BlockOutputStream(compressed, 1 << 12);
+        os.write(BYTES_LARGE);
+        os.close();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new Lz4FrameDecoder(true));
+        byte[] bytes = compressed.toByteArray();
+        // Feed the stream in small pieces to exercise the partial header and block handling.
+        for (int i = 0; i < bytes.length; i += 1000) {
+            channel.writeInbound(Unpooled.wrappedBuffer(bytes, i, Math.min(1000, bytes.length - i)));
+        }
+        assertUncompressed(channel, BYTES_LARGE);
+        assertTrue(channel.pipeline().get(Lz4FrameDecoder.class).isClosed());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        testRoundTrip(new Lz4FrameEncoder(), new Lz4FrameDecoder(true), false);
+        testRoundTrip(new Lz4FrameEncoder(true), new Lz4FrameDecoder(true), true);
+        testRoundTrip(Lz4CodecFactory.newLz4Encoder(false, 1 << 10), Lz4CodecFactory.newLz4Decoder(true), true);
+    }
+
+    @Test
+    public void testCustomChecksum() throws Exception {
+        testRoundTrip(new Lz4FrameEncoder(LZ4Factory.fastestInstance(), false, 1 << 12,
+                                          new Adler32()),
+                      new Lz4FrameDecoder(LZ4Factory.fastestInstance(), new Adler32()), true);
+    }
+
+    private static void testRoundTrip(Lz4FrameEncoder encoder, Lz4FrameDecoder decoder, boolean direct) {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(encoder);
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(decoder);
+
+        // Write in uneven chunks, flushing in between so that partial blocks are written as well.
+        int off = 0;
+        int chunk = 1;
+        while (off < BYTES_LARGE.length) {
+            int length = Math.min(chunk, BYTES_LARGE.length - off);
+            ByteBuf buf = direct ? Unpooled.directBuffer(length) : Unpooled.buffer(length);
+            buf.writeBytes(BYTES_LARGE, off, length);
+            encoderChannel.writeOutbound(buf);
+            off += length;
+            chunk = chunk * 3 + 7;
+        }
+        assertTrue(encoderChannel.finish());
+        assertTrue(encoder.isClosed());
+
+        for (;;) {
+            ByteBuf buf = encoderChannel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            decoderChannel.writeInbound(buf);
+        }
+        assertUncompressed(decoderChannel, BYTES_LARGE);
+        assertTrue(decoder.isClosed());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    public void testIncompressibleData() throws Exception {
+        byte[] data = new byte[4096];
+        rand.nextBytes(data);
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new Lz4FrameEncoder());
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new Lz4FrameDecoder(true));
+        encoderChannel.writeOutbound(Unpooled.wrappedBuffer(data));
+        assertTrue(encoderChannel.finish());
+
+        ByteBuf compressed = readCompressed(encoderChannel);
+        // Stored as is, with the header of the block and the end mark.
+        assertEquals(data.length + 2 * Lz4Constants.HEADER_LENGTH, compressed.readableBytes());
+        decoderChannel.writeInbound(compressed);
+        assertUncompressed(decoderChannel, data);
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testInvalidMagicNumber() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new Lz4FrameDecoder());
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[Lz4Constants.HEADER_LENGTH]));
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testChecksumMismatch() throws Exception {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new Lz4FrameEncoder());
+        encoderChannel.writeOutbound(Unpooled.wrappedBuffer(BYTES_SMALL));
+        encoderChannel.finish();
+        ByteBuf compressed = readCompressed(encoderChannel);
+
+        int idx = compressed.readerIndex() + Lz4Constants.CHECKSUM_OFFSET;
+        compressed.setByte(idx, compressed.getByte(idx) ^ 1);
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new Lz4FrameDecoder(true));
+        decoderChannel.writeInbound(compressed);
+    }
+
+    private static ByteBuf readCompressed(EmbeddedChannel channel) {
+        ByteBuf compressed = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            compressed.writeBytes(buf);
+            buf.release();
+        }
+        return compressed;
+    }
+
+    private static ByteBuf wrap(byte[] data, boolean direct) {
+        if (!direct) {
+            return Unpooled.wrappedBuffer(data);
+        }
+        return Unpooled.directBuffer(data.length).writeBytes(data);
+    }
+
+    private static void assertUncompressed(EmbeddedChannel channel, byte[] expected) {
+        ByteBuf uncompressed = Unpooled.buffer(expected.length);
+        for (;;) {
+            ByteBuf buf = channel.readInbound();
+            if (buf == null) {
+                break;
+            }
+            uncompressed.writeBytes(buf);
+            buf.release();
+        }
+        byte[] actual = new byte[uncompressed.readableBytes()];
+        uncompressed.readBytes(actual);
+        assertArrayEquals(expected, actual);
+    }
+}
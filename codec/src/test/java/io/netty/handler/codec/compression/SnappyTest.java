@@ -170,6 +170,64 @@ public class SnappyTest {
         assertEquals("Encoded result was incorrect", expected, out);
     }
 
+    @Test
+    public void testDecodeOverlappingCopies() throws Exception {
+        // A run of 60 repeated bytes of a 3-byte pattern and of a 9-byte pattern.
+        testDecodeOverlappingCopy(3, false);
+        testDecodeOverlappingCopy(3, true);
+        testDecodeOverlappingCopy(9, false);
+        testDecodeOverlappingCopy(9, true);
+    }
+
+    private void testDecodeOverlappingCopy(int period, boolean direct) {
+        ByteBuf in = Unpooled.buffer();
+        in.writeByte(period + 60); // preamble length
+        in.writeByte(period - 1 << 2); // literal tag + length
+        for (int i = 0; i < period; i ++) {
+            in.writeByte('a' + i);
+        }
+        in.writeByte(0x02 | 59 << 2); // copy with 2-byte offset + length
+        in.writeShort(Short.reverseBytes((short) period)); // offset
+
+        ByteBuf out = direct ? Unpooled.directBuffer(period + 60) : Unpooled.buffer(period + 60);
+        snappy.decode(in, out);
+        snappy.reset();
+
+        assertEquals(period + 60, out.readableBytes());
+        for (int i = 0; i < out.readableBytes(); i ++) {
+            assertEquals('a' + i % period, out.getByte(i));
+        }
+        out.release();
+    }
+
+    @Test
+    public void testEncodeIsIndependentOfBufferType() throws Exception {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i ++) {
+            data[i] = (byte) ("netty".charAt(i % 5) ^ i / 997);
+        }
+        // Encode twice with the same instance to make sure that the hashtable is cleared.
+        ByteBuf expected = encode(Unpooled.wrappedBuffer(data));
+        assertEquals(expected, encode(Unpooled.wrappedBuffer(data)));
+
+        ByteBuf direct = Unpooled.directBuffer(data.length).writeBytes(data);
+        assertEquals(expected, encode(direct));
+        // Encode a buffer with a non-zero reader index.
+        ByteBuf offset = Unpooled.buffer().writeZero(3).writeBytes(data).skipBytes(3);
+        assertEquals(expected, encode(offset));
+        direct.release();
+
+        ByteBuf decoded = Unpooled.buffer(data.length);
+        snappy.decode(expected, decoded);
+        assertEquals(Unpooled.wrappedBuffer(data), decoded);
+    }
+
+    private ByteBuf encode(ByteBuf in) {
+        ByteBuf out = Unpooled.buffer();
+        snappy.encode(in, out, in.readableBytes());
+        return out;
+    }
+
     @Test
     public void testCalculateChecksum() {
         ByteBuf input = Unpooled.wrappedBuffer(new byte[] {
@@ -68,4 +68,23 @@ public class DelimiterBasedFrameDecoderTest {
             assertEquals("A", buf.toString(CharsetUtil.ISO_8859_1));
         }
     }
+
+    @Test
+    public void testMultipleDelimitersSharingFirstByte() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new DelimiterBasedFrameDecoder(64,
+                Unpooled.copiedBuffer("|#", CharsetUtil.US_ASCII),
+                Unpooled.copiedBuffer("||", CharsetUtil.US_ASCII),
+                Unpooled.copiedBuffer("#", CharsetUtil.US_ASCII)));
+
+        ch.writeInbound(Unpooled.copiedBuffer("a|b||c|#d#e|", CharsetUtil.US_ASCII));
+        assertEquals("a|b", releaseLater((ByteBuf) ch.readInbound()).toString(CharsetUtil.US_ASCII));
+        assertEquals("c", releaseLater((ByteBuf) ch.readInbound()).toString(CharsetUtil.US_ASCII));
+        assertEquals("d", releaseLater((ByteBuf) ch.readInbound()).toString(CharsetUtil.US_ASCII));
+        assertNull(ch.readInbound());
+
+        // The delimiter is completed by the next read.
+        ch.writeInbound(Unpooled.copiedBuffer("|", CharsetUtil.US_ASCII));
+        assertEquals("e", releaseLater((ByteBuf) ch.readInbound()).toString(CharsetUtil.US_ASCII));
+        assertFalse(ch.finish());
+    }
 }
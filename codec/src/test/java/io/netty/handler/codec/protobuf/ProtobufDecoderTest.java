@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.protobuf;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProtobufDecoderTest {
+
+    private static final FileDescriptorProto MESSAGE = FileDescriptorProto.newBuilder()
+            .setName("netty.proto").setPackage("io.netty").addDependency("a.proto").addDependency("b.proto")
+            .build();
+
+    @Test
+    public void testEncode() {
+        EmbeddedChannel ch = new EmbeddedChannel(new ProtobufEncoder());
+        assertTrue(ch.writeOutbound(MESSAGE));
+        ByteBuf buf = ch.readOutbound();
+        assertArrayEquals(MESSAGE.toByteArray(), toByteArray(buf));
+        buf.release();
+
+        assertTrue(ch.writeOutbound(MESSAGE.toBuilder()));
+        buf = ch.readOutbound();
+        assertArrayEquals(MESSAGE.toByteArray(), toByteArray(buf));
+        buf.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testDecodeHeapBuffer() {
+        testDecode(Unpooled.wrappedBuffer(MESSAGE.toByteArray()));
+    }
+
+    @Test
+    public void testDecodeDirectBuffer() {
+        byte[] bytes = MESSAGE.toByteArray();
+        testDecode(Unpooled.directBuffer(bytes.length).writeBytes(bytes));
+    }
+
+    @Test
+    public void testDecodeCompositeBuffer() {
+        byte[] bytes = MESSAGE.toByteArray();
+        testDecode(Unpooled.wrappedBuffer(
+                Unpooled.directBuffer().writeBytes(bytes, 0, 5),
+                Unpooled.directBuffer().writeBytes(bytes, 5, bytes.length - 5)));
+    }
+
+    private static void testDecode(ByteBuf buf) {
+        EmbeddedChannel ch = new EmbeddedChannel(new ProtobufDecoder(FileDescriptorProto.getDefaultInstance()));
+        assertTrue(ch.writeInbound(buf));
+        assertEquals(MESSAGE, ch.readInbound());
+        assertEquals(0, buf.refCnt());
+        assertFalse(ch.finish());
+    }
+
+    private static byte[] toByteArray(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+}
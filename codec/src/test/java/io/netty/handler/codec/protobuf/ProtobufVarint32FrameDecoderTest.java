@@ -17,6 +17,7 @@ package io.netty.handler.codec.protobuf;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -63,4 +64,14 @@ public class ProtobufVarint32FrameDecoderTest {
         ch.writeInbound(wrappedBuffer(b, 727, b.length - 727));
         assertThat(releaseLater((ByteBuf) ch.readInbound()), is(releaseLater(wrappedBuffer(b, 2, b.length - 2))));
     }
+
+    @Test
+    public void testLengthWiderThan32Bit() {
+        try {
+            ch.writeInbound(wrappedBuffer(new byte[] { -1, -1, -1, -1, -1, 1 }));
+            fail();
+        } catch (CorruptedFrameException e) {
+            // Expected
+        }
+    }
 }
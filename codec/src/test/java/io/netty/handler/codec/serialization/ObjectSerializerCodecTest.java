@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class ObjectSerializerCodecTest {
+
+    private static final ObjectSerializer<Point> POINT_SERIALIZER = new ObjectSerializer<Point>() {
+        @Override
+        public void writeObject(ByteBuf out, Point point) {
+            out.writeInt(point.x);
+            out.writeInt(point.y);
+        }
+
+        @Override
+        public Point readObject(ByteBuf in) {
+            return new Point(in.readInt(), in.readInt());
+        }
+    };
+
+    private static final ObjectSerializer<String> STRING_SERIALIZER = new ObjectSerializer<String>() {
+        @Override
+        public void writeObject(ByteBuf out, String s) {
+            out.writeBytes(s.getBytes(CharsetUtil.UTF_8));
+        }
+
+        @Override
+        public String readObject(ByteBuf in) {
+            String s = in.toString(CharsetUtil.UTF_8);
+            in.skipBytes(in.readableBytes());
+            return s;
+        }
+    };
+
+    @Test
+    public void testRoundTrip() {
+        ObjectSerializerRegistry registry = new ObjectSerializerRegistry()
+                .register(1, Point.class, POINT_SERIALIZER)
+                .register(ObjectSerializerRegistry.MAX_ID, String.class, STRING_SERIALIZER);
+        EmbeddedChannel encoder = new EmbeddedChannel(new ObjectSerializerEncoder(registry));
+        EmbeddedChannel decoder = new EmbeddedChannel(new ObjectSerializerDecoder(registry));
+
+        assertTrue(encoder.writeOutbound(new Point(3, -4), "netty", new Point(5, 6), 42));
+        ByteBuf point = (ByteBuf) encoder.readOutbound();
+        // Length, ID and the two coordinates.
+        assertEquals(4 + 2 + 8, point.readableBytes());
+        assertEquals(10, point.getInt(0));
+        assertEquals(1, point.getUnsignedShort(4));
+
+        // Feed the encoded objects byte by byte.
+        ByteBuf all = Unpooled.wrappedBuffer(
+                point, (ByteBuf) encoder.readOutbound(), (ByteBuf) encoder.readOutbound());
+        while (all.isReadable()) {
+            decoder.writeInbound(all.readBytes(1));
+        }
+        all.release();
+        assertEquals(new Point(3, -4), decoder.readInbound());
+        assertEquals("netty", decoder.readInbound());
+        assertEquals(new Point(5, 6), decoder.readInbound());
+        assertNull(decoder.readInbound());
+
+        // Not serializable by the registry, thus passed through.
+        assertEquals(42, encoder.readOutbound());
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testJavaSerializationFallback() {
+        ObjectSerializerRegistry registry = new ObjectSerializerRegistry(ClassResolvers.cacheDisabled(null))
+                .register(1, Point.class, POINT_SERIALIZER);
+        EmbeddedChannel encoder = new EmbeddedChannel(new ObjectSerializerEncoder(registry, false));
+        EmbeddedChannel decoder = new EmbeddedChannel(new ObjectSerializerDecoder(registry));
+
+        Date date = new Date(1234567890L);
+        assertTrue(encoder.writeOutbound(date, new Point(1, 2)));
+        assertTrue(decoder.writeInbound(encoder.readOutbound(), encoder.readOutbound()));
+        assertEquals(date, decoder.readInbound());
+        assertEquals(new Point(1, 2), decoder.readInbound());
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testMaxObjectSize() {
+        ObjectSerializerRegistry registry = new ObjectSerializerRegistry().register(1, Point.class, POINT_SERIALIZER);
+        // The ID and the two coordinates, excluding the length field.
+        EmbeddedChannel decoder = new EmbeddedChannel(new ObjectSerializerDecoder(2 + 8, registry));
+        EmbeddedChannel encoder = new EmbeddedChannel(new ObjectSerializerEncoder(registry));
+        assertTrue(encoder.writeOutbound(new Point(7, 8)));
+        assertTrue(decoder.writeInbound(encoder.readOutbound()));
+        assertEquals(new Point(7, 8), decoder.readInbound());
+
+        decoder = new EmbeddedChannel(new ObjectSerializerDecoder(2 + 7, registry));
+        assertTrue(encoder.writeOutbound(new Point(7, 8)));
+        try {
+            decoder.writeInbound(encoder.readOutbound());
+            fail();
+        } catch (TooLongFrameException e) {
+            // Expected
+        }
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testUnknownId() {
+        EmbeddedChannel decoder = new EmbeddedChannel(new ObjectSerializerDecoder(new ObjectSerializerRegistry()));
+        try {
+            decoder.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0, 0, 0, 2, 0, 7 }));
+            fail();
+        } catch (CorruptedFrameException e) {
+            // Expected
+        }
+        try {
+            decoder.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0, 0, 0, 2, (byte) 0xFF, (byte) 0xFF }));
+            fail();
+        } catch (CorruptedFrameException e) {
+            // Expected
+        }
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testDuplicateRegistration() {
+        ObjectSerializerRegistry registry = new ObjectSerializerRegistry().register(1, Point.class, POINT_SERIALIZER);
+        try {
+            registry.register(1, String.class, STRING_SERIALIZER);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            registry.register(2, Point.class, POINT_SERIALIZER);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            registry.register(ObjectSerializerRegistry.MAX_ID + 1, String.class, STRING_SERIALIZER);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertTrue(registry.isSerializable(new Point(0, 0)));
+        assertFalse(registry.isSerializable("netty"));
+    }
+
+    private static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Point && ((Point) o).x == x && ((Point) o).y == y;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+    }
+}
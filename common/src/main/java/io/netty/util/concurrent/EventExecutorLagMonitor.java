@@ -0,0 +1,190 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how late the tasks scheduled to an {@link EventExecutor} are run, which is a good indicator of how
+ * saturated the executor is.  A probe task is scheduled at a fixed interval and the difference between its deadline
+ * and the time it actually ran is recorded.  The reported lag rises immediately and decays by a quarter on every
+ * sample, so that a short spike is not forgotten right away.  The probe also samples the number of pending tasks of
+ * a {@link SingleThreadEventExecutor}, whose queue may be as expensive to count as to traverse.
+ * <p>
+ * A monitor is shared by all the users of the same executor and stops once the executor is shut down.
+ */
+public final class EventExecutorLagMonitor {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EventExecutorLagMonitor.class);
+
+    private static final long DEFAULT_INTERVAL_NANOS;
+    private static final ConcurrentMap<EventExecutor, EventExecutorLagMonitor> monitors =
+            PlatformDependent.newConcurrentHashMap();
+
+    static {
+        long interval = SystemPropertyUtil.getLong("io.netty.lagMonitorIntervalMillis", 100);
+        if (interval <= 0) {
+            interval = 100;
+        }
+        DEFAULT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(interval);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.lagMonitorIntervalMillis: {}", interval);
+        }
+    }
+
+    /**
+     * Returns the monitor of the specified executor, starting it if necessary.
+     */
+    public static EventExecutorLagMonitor get(EventExecutor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        EventExecutorLagMonitor monitor = monitors.get(executor);
+        if (monitor != null) {
+            if (!executor.isShuttingDown()) {
+                return monitor;
+            }
+            monitor.stop();
+        }
+
+        monitor = new EventExecutorLagMonitor(executor, DEFAULT_INTERVAL_NANOS);
+        if (executor.isShuttingDown()) {
+            // Do not keep a reference to an executor which is going away.
+            monitor.stopped = true;
+            return monitor;
+        }
+        EventExecutorLagMonitor old = monitors.putIfAbsent(executor, monitor);
+        if (old != null) {
+            return old;
+        }
+        monitor.schedule();
+        return monitor;
+    }
+
+    /**
+     * Returns the current scheduling lag of the specified executor in nanoseconds if it is monitored already, or
+     * {@code 0} otherwise.  Unlike {@link #get(EventExecutor)}, this method never starts a monitor, so that it is
+     * cheap enough to be called whenever an executor has to be chosen.
+     */
+    public static long currentLagNanos(EventExecutor executor) {
+        EventExecutorLagMonitor monitor = monitors.get(executor);
+        return monitor == null ? 0 : monitor.lagNanos();
+    }
+
+    private final EventExecutor executor;
+    private final long intervalNanos;
+    private final Runnable probe = new Runnable() {
+        @Override
+        public void run() {
+            sample();
+        }
+    };
+
+    private volatile long deadlineNanos;
+    private volatile long lagNanos;
+    private volatile int pendingTasks;
+    private volatile boolean stopped;
+
+    EventExecutorLagMonitor(EventExecutor executor, long intervalNanos) {
+        this.executor = executor;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * Returns the executor this monitor measures.
+     */
+    public EventExecutor executor() {
+        return executor;
+    }
+
+    /**
+     * Returns the current scheduling lag in nanoseconds.  If the probe is overdue, the time it has been waiting for
+     * is returned so that an executor which is stuck right now is reported even before the probe gets to run.
+     */
+    public long lagNanos() {
+        if (stopped) {
+            return 0;
+        }
+        if (executor.isShuttingDown()) {
+            // The probe is cancelled when the executor shuts down.
+            stop();
+            return 0;
+        }
+        long overdue = System.nanoTime() - deadlineNanos;
+        long lagNanos = this.lagNanos;
+        return overdue > lagNanos ? overdue : lagNanos;
+    }
+
+    /**
+     * Returns the number of the tasks which were waiting in the queue of the executor when the probe last ran, or
+     * {@code 0} if the executor is not a {@link SingleThreadEventExecutor}.
+     */
+    public int pendingTasks() {
+        return stopped ? 0 : pendingTasks;
+    }
+
+    /**
+     * Returns the current scheduling lag in the specified {@link TimeUnit}.
+     */
+    public long lag(TimeUnit unit) {
+        return unit.convert(lagNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    void schedule() {
+        deadlineNanos = System.nanoTime() + intervalNanos;
+        try {
+            executor.schedule(probe, intervalNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            stop();
+        }
+    }
+
+    private void sample() {
+        long lag = System.nanoTime() - deadlineNanos;
+        if (lag < 0) {
+            lag = 0;
+        }
+        long last = lagNanos;
+        lagNanos = lag >= last ? lag : last - (last - lag >>> 2);
+        if (executor instanceof SingleThreadEventExecutor) {
+            pendingTasks = ((SingleThreadEventExecutor) executor).pendingTasks();
+        }
+
+        if (executor.isShuttingDown()) {
+            stop();
+        } else {
+            schedule();
+        }
+    }
+
+    private void stop() {
+        stopped = true;
+        monitors.remove(executor, this);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(executor: " + executor + ", lag: " + lag(TimeUnit.MILLISECONDS) + "ms)";
+    }
+}
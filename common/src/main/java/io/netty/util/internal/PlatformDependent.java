@@ -28,6 +28,7 @@ import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -69,6 +70,11 @@ public final class PlatformDependent {
 
     private static final long ARRAY_BASE_OFFSET = arrayBaseOffset0();
 
+    /**
+     * {@code true} if and only if the native byte order of the platform is big-endian.
+     */
+    public static final boolean BIG_ENDIAN_NATIVE_ORDER = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
     private static final boolean HAS_JAVASSIST = hasJavassist0();
 
     static {
@@ -284,6 +290,26 @@ public final class PlatformDependent {
         PlatformDependent0.putLong(address, value);
     }
 
+    public static byte getByte(byte[] data, int index) {
+        return PlatformDependent0.getByte(data, ARRAY_BASE_OFFSET + index);
+    }
+
+    public static int getInt(byte[] data, int index) {
+        return PlatformDependent0.getInt(data, ARRAY_BASE_OFFSET + index);
+    }
+
+    public static long getLong(byte[] data, int index) {
+        return PlatformDependent0.getLong(data, ARRAY_BASE_OFFSET + index);
+    }
+
+    public static void putByte(byte[] data, int index, byte value) {
+        PlatformDependent0.putByte(data, ARRAY_BASE_OFFSET + index, value);
+    }
+
+    public static void putLong(byte[] data, int index, long value) {
+        PlatformDependent0.putLong(data, ARRAY_BASE_OFFSET + index, value);
+    }
+
     public static void copyMemory(long srcAddr, long dstAddr, long length) {
         PlatformDependent0.copyMemory(srcAddr, dstAddr, length);
     }
@@ -311,6 +311,51 @@ final class PlatformDependent0 {
         }
     }
 
+    static byte getByte(byte[] data, long offset) {
+        return UNSAFE.getByte(data, offset);
+    }
+
+    static int getInt(byte[] data, long offset) {
+        if (UNALIGNED) {
+            return UNSAFE.getInt(data, offset);
+        } else if (BIG_ENDIAN) {
+            return getByte(data, offset) << 24 |
+                  (getByte(data, offset + 1) & 0xff) << 16 |
+                  (getByte(data, offset + 2) & 0xff) <<  8 |
+                   getByte(data, offset + 3) & 0xff;
+        } else {
+            return getByte(data, offset + 3) << 24 |
+                  (getByte(data, offset + 2) & 0xff) << 16 |
+                  (getByte(data, offset + 1) & 0xff) <<  8 |
+                   getByte(data, offset) & 0xff;
+        }
+    }
+
+    static long getLong(byte[] data, long offset) {
+        if (UNALIGNED) {
+            return UNSAFE.getLong(data, offset);
+        } else if (BIG_ENDIAN) {
+            return (long) getInt(data, offset) << 32 | getInt(data, offset + 4) & 0xFFFFFFFFL;
+        } else {
+            return (long) getInt(data, offset + 4) << 32 | getInt(data, offset) & 0xFFFFFFFFL;
+        }
+    }
+
+    static void putByte(byte[] data, long offset, byte value) {
+        UNSAFE.putByte(data, offset, value);
+    }
+
+    static void putLong(byte[] data, long offset, long value) {
+        if (UNALIGNED) {
+            UNSAFE.putLong(data, offset, value);
+        } else {
+            for (int i = 0; i < 8; i ++) {
+                int shift = BIG_ENDIAN ? 56 - (i << 3) : i << 3;
+                putByte(data, offset + i, (byte) (value >>> shift));
+            }
+        }
+    }
+
     static void copyMemory(long srcAddr, long dstAddr, long length) {
         UNSAFE.copyMemory(srcAddr, dstAddr, length);
     }
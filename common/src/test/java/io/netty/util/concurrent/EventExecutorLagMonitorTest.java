@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EventExecutorLagMonitorTest {
+
+    private EventExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new DefaultEventExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSharedPerExecutor() {
+        EventExecutorLagMonitor monitor = EventExecutorLagMonitor.get(executor);
+        assertSame(monitor, EventExecutorLagMonitor.get(executor));
+        assertSame(executor, monitor.executor());
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockedExecutorIsReported() throws Exception {
+        EventExecutorLagMonitor monitor = new EventExecutorLagMonitor(executor, TimeUnit.MILLISECONDS.toNanos(10));
+        monitor.schedule();
+
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            }
+        });
+        Thread.sleep(200);
+        // The probe is overdue while the executor is blocked.
+        assertTrue(monitor.lag(TimeUnit.MILLISECONDS) >= 100);
+
+        // The lag decays once the executor is responsive again.
+        while (monitor.lag(TimeUnit.MILLISECONDS) > 20) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testStopsOnShutdown() throws Exception {
+        EventExecutorLagMonitor monitor = EventExecutorLagMonitor.get(executor);
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        Thread.sleep(200);
+        assertEquals(0, monitor.lagNanos());
+        assertNotSame(monitor, EventExecutorLagMonitor.get(executor));
+    }
+}
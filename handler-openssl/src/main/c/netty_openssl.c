@@ -0,0 +1,854 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/*
+ * The JNI part of io.netty.handler.ssl.openssl.Native.  An SSL object is connected to a BIO pair, so that the
+ * Java side feeds and drains the encrypted data through the network end of the pair, directly from and into the
+ * memory of direct buffers.
+ */
+#include <jni.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+#include <openssl/crypto.h>
+#include <openssl/err.h>
+#include <openssl/evp.h>
+#include <openssl/rand.h>
+#include <openssl/ssl.h>
+#include <openssl/x509.h>
+#if OPENSSL_VERSION_NUMBER >= 0x30000000L
+#include <openssl/core_names.h>
+#else
+#include <openssl/hmac.h>
+#endif
+
+#define NATIVE(name) Java_io_netty_handler_ssl_openssl_Native_##name
+
+/* Returned by the read and write functions when the operation must be retried later. */
+#define NETTY_SSL_WANT   (-1)
+/* Returned by the read and write functions when the peer has sent close_notify. */
+#define NETTY_SSL_CLOSED (-2)
+
+/* The size of the buffers of the BIO pair, large enough for a whole handshake flight. */
+#define NETTY_BIO_SIZE   (64 * 1024)
+
+/* A session ticket key: a 16-byte name, a 32-byte HMAC secret and a 32-byte AES key. */
+#define NETTY_TICKET_KEY_SIZE 80
+
+typedef struct {
+    SSL_CTX *ctx;
+    int server;
+    unsigned char *alpn;
+    unsigned int alpn_len;
+    unsigned char *npn;
+    unsigned int npn_len;
+    /* The session ticket keys, the first of which encrypts the new tickets, guarded by ticket_lock. */
+    CRYPTO_RWLOCK *ticket_lock;
+    unsigned char *ticket_keys;
+    int ticket_key_count;
+    /* The minimum protocol version set by the user, 0 for no limit. */
+    int min_version;
+    /* Set when the cipher suites contain no TLSv1.2 suite, so that TLSv1.3 is the only usable protocol. */
+    int tls13_only;
+} netty_ctx_t;
+
+typedef struct {
+    SSL *ssl;
+    BIO *network;
+    /* The last session received by a client, until it is taken by the Java side. */
+    SSL_SESSION *session;
+    /* The same as the fields of netty_ctx_t, inherited from the context. */
+    int min_version;
+    int tls13_only;
+} netty_ssl_t;
+
+/* The index of the ex_data of an SSL_CTX which holds its netty_ctx_t. */
+static int ctx_index = -1;
+
+#define CTX(p) ((netty_ctx_t *) (intptr_t) (p))
+#define SSL_OF(p) (((netty_ssl_t *) (intptr_t) (p))->ssl)
+#define NETWORK_OF(p) (((netty_ssl_t *) (intptr_t) (p))->network)
+
+static void throw_ssl_exception(JNIEnv *env, const char *msg) {
+    char buf[512];
+    unsigned long err = ERR_get_error();
+    jclass cls;
+
+    if (err != 0) {
+        char reason[256];
+        ERR_error_string_n(err, reason, sizeof(reason));
+        snprintf(buf, sizeof(buf), "%s: %s", msg, reason);
+        msg = buf;
+    }
+    ERR_clear_error();
+
+    cls = (*env)->FindClass(env, "javax/net/ssl/SSLException");
+    if (cls != NULL) {
+        (*env)->ThrowNew(env, cls, msg);
+    }
+}
+
+static int copy_bytes(JNIEnv *env, jbyteArray array, unsigned char **out, unsigned int *out_len) {
+    jsize len = (*env)->GetArrayLength(env, array);
+    unsigned char *copy = malloc(len);
+    if (copy == NULL) {
+        return 0;
+    }
+    (*env)->GetByteArrayRegion(env, array, 0, len, (jbyte *) copy);
+    free(*out);
+    *out = copy;
+    *out_len = (unsigned int) len;
+    return 1;
+}
+
+static int alpn_select_cb(SSL *ssl, const unsigned char **out, unsigned char *outlen,
+                          const unsigned char *in, unsigned int inlen, void *arg) {
+    netty_ctx_t *c = (netty_ctx_t *) arg;
+    /* Pick the first protocol of the server which is supported by the client. */
+    if (SSL_select_next_proto((unsigned char **) out, outlen, c->alpn, c->alpn_len, in, inlen) !=
+            OPENSSL_NPN_NEGOTIATED) {
+        return SSL_TLSEXT_ERR_NOACK;
+    }
+    return SSL_TLSEXT_ERR_OK;
+}
+
+#ifndef OPENSSL_NO_NEXTPROTONEG
+static int npn_advertise_cb(SSL *ssl, const unsigned char **out, unsigned int *outlen, void *arg) {
+    netty_ctx_t *c = (netty_ctx_t *) arg;
+    *out = c->npn;
+    *outlen = c->npn_len;
+    return SSL_TLSEXT_ERR_OK;
+}
+
+static int npn_select_cb(SSL *ssl, unsigned char **out, unsigned char *outlen,
+                         const unsigned char *in, unsigned int inlen, void *arg) {
+    netty_ctx_t *c = (netty_ctx_t *) arg;
+    SSL_select_next_proto(out, outlen, in, inlen, c->npn, c->npn_len);
+    return SSL_TLSEXT_ERR_OK;
+}
+#endif
+
+static int ssl_result(JNIEnv *env, SSL *ssl, int ret, const char *op) {
+    if (ret > 0) {
+        return ret;
+    }
+    switch (SSL_get_error(ssl, ret)) {
+    case SSL_ERROR_WANT_READ:
+    case SSL_ERROR_WANT_WRITE:
+        ERR_clear_error();
+        return NETTY_SSL_WANT;
+    case SSL_ERROR_ZERO_RETURN:
+        ERR_clear_error();
+        return NETTY_SSL_CLOSED;
+    default:
+        throw_ssl_exception(env, op);
+        return NETTY_SSL_WANT;
+    }
+}
+
+/*
+ * Returns the minimum protocol version to apply.  OpenSSL refuses an empty TLSv1.2 cipher list and keeps the
+ * default one instead, so the older protocols are disabled by the version range when no TLSv1.2 suite is enabled.
+ */
+static int effective_min_version(int min_version, int tls13_only) {
+    return tls13_only && min_version < TLS1_3_VERSION ? TLS1_3_VERSION : min_version;
+}
+
+/*
+ * Sets the cipher suites from a ':'-separated list of standard (RFC) names, and tells in tls13_only whether the
+ * list contains no TLSv1.2 suite.
+ */
+static int set_cipher_suites(JNIEnv *env, SSL_CTX *ctx, SSL *ssl, jstring names, int *tls13_only) {
+    const char *str = (*env)->GetStringUTFChars(env, names, NULL);
+    size_t len = strlen(str);
+    char *copy = malloc(len + 1);
+    char *tls12 = malloc(len * 2 + 1);
+    char *tls13 = malloc(len + 1);
+    char *name;
+    char *saveptr = NULL;
+    int ok = 1;
+
+    if (copy == NULL || tls12 == NULL || tls13 == NULL) {
+        ok = 0;
+        goto done;
+    }
+    memcpy(copy, str, len + 1);
+    tls12[0] = '\0';
+    tls13[0] = '\0';
+    for (name = strtok_r(copy, ":", &saveptr); name != NULL; name = strtok_r(NULL, ":", &saveptr)) {
+        const char *openssl_name = OPENSSL_cipher_name(name);
+        if (strncmp(name, "TLS_", 4) == 0 && strstr(name, "_WITH_") == NULL) {
+            /* A TLSv1.3 cipher suite, whose standard and OpenSSL names are the same. */
+            if (tls13[0] != '\0') {
+                strcat(tls13, ":");
+            }
+            strcat(tls13, name);
+        } else if (strcmp(openssl_name, "(NONE)") != 0) {
+            if (tls12[0] != '\0') {
+                strcat(tls12, ":");
+            }
+            strcat(tls12, openssl_name);
+        }
+    }
+
+    if (ssl != NULL) {
+        ok = (tls12[0] == '\0' || SSL_set_cipher_list(ssl, tls12)) && SSL_set_ciphersuites(ssl, tls13);
+    } else {
+        ok = (tls12[0] == '\0' || SSL_CTX_set_cipher_list(ctx, tls12)) && SSL_CTX_set_ciphersuites(ctx, tls13);
+    }
+    *tls13_only = tls12[0] == '\0';
+
+done:
+    free(copy);
+    free(tls12);
+    free(tls13);
+    (*env)->ReleaseStringUTFChars(env, names, str);
+    if (!ok) {
+        throw_ssl_exception(env, "failed to set the cipher suites");
+    }
+    return ok;
+}
+
+static jobjectArray cipher_names(JNIEnv *env, STACK_OF(SSL_CIPHER) *ciphers) {
+    jclass string_class = (*env)->FindClass(env, "java/lang/String");
+    int n = ciphers == NULL ? 0 : sk_SSL_CIPHER_num(ciphers);
+    int i;
+    jobjectArray array = (*env)->NewObjectArray(env, n, string_class, NULL);
+    if (array == NULL) {
+        return NULL;
+    }
+    for (i = 0; i < n; i++) {
+        const char *name = SSL_CIPHER_standard_name(sk_SSL_CIPHER_value(ciphers, i));
+        jstring s = (*env)->NewStringUTF(env, name == NULL ? "" : name);
+        (*env)->SetObjectArrayElement(env, array, i, s);
+        (*env)->DeleteLocalRef(env, s);
+    }
+    return array;
+}
+
+/*
+ * Looks up the key of a session ticket under the read lock, and returns its index in the key list, or -1 if
+ * there is no such key.  The key is copied into 'key' so that it can be used after the lock is released.
+ */
+static int find_ticket_key(netty_ctx_t *c, const unsigned char *name, unsigned char *key) {
+    int i;
+    int index = -1;
+
+    if (!CRYPTO_THREAD_read_lock(c->ticket_lock)) {
+        return -1;
+    }
+    for (i = 0; i < c->ticket_key_count; i++) {
+        const unsigned char *k = c->ticket_keys + i * NETTY_TICKET_KEY_SIZE;
+        if (name == NULL || memcmp(k, name, 16) == 0) {
+            memcpy(key, k, NETTY_TICKET_KEY_SIZE);
+            index = i;
+            break;
+        }
+    }
+    CRYPTO_THREAD_unlock(c->ticket_lock);
+    return index;
+}
+
+#if OPENSSL_VERSION_NUMBER >= 0x30000000L
+static int init_ticket_mac(EVP_MAC_CTX *mac, unsigned char *secret) {
+    OSSL_PARAM params[3];
+    params[0] = OSSL_PARAM_construct_octet_string(OSSL_MAC_PARAM_KEY, secret, 32);
+    params[1] = OSSL_PARAM_construct_utf8_string(OSSL_MAC_PARAM_DIGEST, (char *) "SHA256", 0);
+    params[2] = OSSL_PARAM_construct_end();
+    return EVP_MAC_CTX_set_params(mac, params);
+}
+
+static int ticket_key_cb(SSL *ssl, unsigned char *key_name, unsigned char *iv,
+                         EVP_CIPHER_CTX *cipher, EVP_MAC_CTX *mac, int enc) {
+#else
+static int init_ticket_mac(HMAC_CTX *mac, unsigned char *secret) {
+    return HMAC_Init_ex(mac, secret, 32, EVP_sha256(), NULL);
+}
+
+static int ticket_key_cb(SSL *ssl, unsigned char *key_name, unsigned char *iv,
+                         EVP_CIPHER_CTX *cipher, HMAC_CTX *mac, int enc) {
+#endif
+    netty_ctx_t *c = SSL_CTX_get_ex_data(SSL_get_SSL_CTX(ssl), ctx_index);
+    unsigned char key[NETTY_TICKET_KEY_SIZE];
+    int index;
+    int ret;
+
+    if (enc) {
+        /* Encrypt a new ticket with the first key. */
+        if (find_ticket_key(c, NULL, key) < 0 || RAND_bytes(iv, 16) <= 0) {
+            ret = -1;
+        } else {
+            memcpy(key_name, key, 16);
+            ret = EVP_EncryptInit_ex(cipher, EVP_aes_256_cbc(), NULL, key + 48, iv) &&
+                  init_ticket_mac(mac, key + 16) ? 1 : -1;
+        }
+    } else {
+        index = find_ticket_key(c, key_name, key);
+        if (index < 0) {
+            /* Unknown or retired key: fall back to a full handshake. */
+            ret = 0;
+        } else if (!EVP_DecryptInit_ex(cipher, EVP_aes_256_cbc(), NULL, key + 48, iv) ||
+                   !init_ticket_mac(mac, key + 16)) {
+            ret = -1;
+        } else {
+            /* Renew the tickets encrypted with an older key. */
+            ret = index == 0 ? 1 : 2;
+        }
+    }
+    OPENSSL_cleanse(key, sizeof(key));
+    return ret;
+}
+
+/* Keeps the sessions received by a client for the session cache of the Java side. */
+static int new_session_cb(SSL *ssl, SSL_SESSION *session) {
+    netty_ssl_t *s = SSL_get_app_data(ssl);
+    if (s->session != NULL) {
+        SSL_SESSION_free(s->session);
+    }
+    s->session = session;
+    /* Keep the reference. */
+    return 1;
+}
+
+static void free_ctx(void *parent, void *ptr, CRYPTO_EX_DATA *ad, int idx, long argl, void *argp) {
+    netty_ctx_t *c = (netty_ctx_t *) ptr;
+    if (c != NULL) {
+        free(c->alpn);
+        free(c->npn);
+        if (c->ticket_keys != NULL) {
+            OPENSSL_cleanse(c->ticket_keys, c->ticket_key_count * NETTY_TICKET_KEY_SIZE);
+            free(c->ticket_keys);
+        }
+        CRYPTO_THREAD_lock_free(c->ticket_lock);
+        free(c);
+    }
+}
+
+JNIEXPORT jstring JNICALL NATIVE(version)(JNIEnv *env, jclass clazz) {
+    return (*env)->NewStringUTF(env, OpenSSL_version(OPENSSL_VERSION));
+}
+
+JNIEXPORT void JNICALL NATIVE(initialize)(JNIEnv *env, jclass clazz) {
+    if (!OPENSSL_init_ssl(OPENSSL_INIT_LOAD_SSL_STRINGS | OPENSSL_INIT_LOAD_CRYPTO_STRINGS, NULL)) {
+        throw_ssl_exception(env, "failed to initialize OpenSSL");
+        return;
+    }
+    ctx_index = SSL_CTX_get_ex_new_index(0, NULL, NULL, NULL, free_ctx);
+}
+
+JNIEXPORT jlong JNICALL NATIVE(newContext)(JNIEnv *env, jclass clazz, jboolean server) {
+    netty_ctx_t *c = calloc(1, sizeof(netty_ctx_t));
+    if (c == NULL) {
+        throw_ssl_exception(env, "out of memory");
+        return 0;
+    }
+    c->server = server;
+    c->ticket_lock = CRYPTO_THREAD_lock_new();
+    c->ctx = SSL_CTX_new(server ? TLS_server_method() : TLS_client_method());
+    if (c->ctx == NULL || c->ticket_lock == NULL) {
+        SSL_CTX_free(c->ctx);
+        CRYPTO_THREAD_lock_free(c->ticket_lock);
+        free(c);
+        throw_ssl_exception(env, "failed to create an SSL_CTX");
+        return 0;
+    }
+
+    SSL_CTX_set_options(c->ctx, SSL_OP_NO_COMPRESSION | SSL_OP_NO_RENEGOTIATION);
+    if (server) {
+        SSL_CTX_set_options(c->ctx, SSL_OP_CIPHER_SERVER_PREFERENCE);
+        SSL_CTX_set_session_id_context(c->ctx, (const unsigned char *) "netty", 5);
+        SSL_CTX_set_session_cache_mode(c->ctx, SSL_SESS_CACHE_SERVER);
+    } else {
+        /* The sessions are cached by the Java side, keyed by the host and the port of the server. */
+        SSL_CTX_set_session_cache_mode(c->ctx, SSL_SESS_CACHE_CLIENT | SSL_SESS_CACHE_NO_INTERNAL_STORE);
+        SSL_CTX_sess_set_new_cb(c->ctx, new_session_cb);
+    }
+    /* The records are written one at a time into the BIO pair, and the buffers may move between the calls. */
+    SSL_CTX_set_mode(c->ctx, SSL_MODE_ENABLE_PARTIAL_WRITE | SSL_MODE_ACCEPT_MOVING_WRITE_BUFFER |
+                             SSL_MODE_RELEASE_BUFFERS);
+    if (server) {
+        /* A server asks for a client certificate only if it has trusted certificates or the engine wants one. */
+        SSL_CTX_set_verify(c->ctx, SSL_VERIFY_NONE, NULL);
+    } else {
+        /* A client verifies the server against the default trusted certificates of the system unless told not to. */
+        if (!SSL_CTX_set_default_verify_paths(c->ctx)) {
+            ERR_clear_error();
+        }
+        SSL_CTX_set_verify(c->ctx, SSL_VERIFY_PEER, NULL);
+    }
+    /* Freed with the SSL_CTX, which may outlive freeContext() because the SSLs created from it reference it. */
+    SSL_CTX_set_ex_data(c->ctx, ctx_index, c);
+    return (jlong) (intptr_t) c;
+}
+
+JNIEXPORT void JNICALL NATIVE(freeContext)(JNIEnv *env, jclass clazz, jlong ctx) {
+    /* The SSL_CTX is reference counted, so it stays alive as long as an SSL created from it. */
+    SSL_CTX_free(CTX(ctx)->ctx);
+}
+
+JNIEXPORT void JNICALL NATIVE(setContextCipherSuites)(JNIEnv *env, jclass clazz, jlong ctx, jstring names) {
+    netty_ctx_t *c = CTX(ctx);
+    int tls13_only;
+    if (set_cipher_suites(env, c->ctx, NULL, names, &tls13_only)) {
+        c->tls13_only = tls13_only;
+        SSL_CTX_set_min_proto_version(c->ctx, effective_min_version(c->min_version, tls13_only));
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE(setContextProtocolVersions)(
+        JNIEnv *env, jclass clazz, jlong ctx, jint min, jint max) {
+    netty_ctx_t *c = CTX(ctx);
+    if (!SSL_CTX_set_min_proto_version(c->ctx, effective_min_version(min, c->tls13_only)) ||
+            !SSL_CTX_set_max_proto_version(c->ctx, max)) {
+        throw_ssl_exception(env, "failed to set the protocol versions");
+        return;
+    }
+    c->min_version = min;
+}
+
+JNIEXPORT void JNICALL NATIVE(setCertificate)(
+        JNIEnv *env, jclass clazz, jlong ctx, jstring cert_chain_file, jstring key_file, jstring password) {
+    SSL_CTX *c = CTX(ctx)->ctx;
+    const char *cert = (*env)->GetStringUTFChars(env, cert_chain_file, NULL);
+    const char *key = (*env)->GetStringUTFChars(env, key_file, NULL);
+    const char *pass = password == NULL ? NULL : (*env)->GetStringUTFChars(env, password, NULL);
+
+    SSL_CTX_set_default_passwd_cb_userdata(c, (void *) pass);
+    if (!SSL_CTX_use_certificate_chain_file(c, cert)) {
+        throw_ssl_exception(env, "failed to load the certificate chain");
+    } else if (!SSL_CTX_use_PrivateKey_file(c, key, SSL_FILETYPE_PEM)) {
+        throw_ssl_exception(env, "failed to load the private key");
+    } else if (!SSL_CTX_check_private_key(c)) {
+        throw_ssl_exception(env, "the private key does not match the certificate");
+    }
+    SSL_CTX_set_default_passwd_cb_userdata(c, NULL);
+
+    (*env)->ReleaseStringUTFChars(env, cert_chain_file, cert);
+    (*env)->ReleaseStringUTFChars(env, key_file, key);
+    if (pass != NULL) {
+        (*env)->ReleaseStringUTFChars(env, password, pass);
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE(setTrustCertificates)(JNIEnv *env, jclass clazz, jlong ctx, jstring ca_file) {
+    const char *file = (*env)->GetStringUTFChars(env, ca_file, NULL);
+    if (!SSL_CTX_load_verify_locations(CTX(ctx)->ctx, file, NULL)) {
+        throw_ssl_exception(env, "failed to load the trusted certificates");
+    }
+    (*env)->ReleaseStringUTFChars(env, ca_file, file);
+}
+
+JNIEXPORT void JNICALL NATIVE(setContextVerify)(JNIEnv *env, jclass clazz, jlong ctx, jint mode) {
+    SSL_CTX_set_verify(CTX(ctx)->ctx, mode, NULL);
+}
+
+JNIEXPORT void JNICALL NATIVE(setSessionCacheEnabled)(JNIEnv *env, jclass clazz, jlong ctx, jboolean enabled) {
+    netty_ctx_t *c = CTX(ctx);
+    long mode = c->server ? SSL_SESS_CACHE_SERVER : SSL_SESS_CACHE_CLIENT | SSL_SESS_CACHE_NO_INTERNAL_STORE;
+    SSL_CTX_set_session_cache_mode(c->ctx, enabled ? mode : SSL_SESS_CACHE_OFF);
+}
+
+JNIEXPORT void JNICALL NATIVE(setSessionCacheSize)(JNIEnv *env, jclass clazz, jlong ctx, jlong size) {
+    SSL_CTX_sess_set_cache_size(CTX(ctx)->ctx, size);
+}
+
+JNIEXPORT void JNICALL NATIVE(setSessionTimeout)(JNIEnv *env, jclass clazz, jlong ctx, jlong seconds) {
+    SSL_CTX_set_timeout(CTX(ctx)->ctx, seconds);
+}
+
+JNIEXPORT jlong JNICALL NATIVE(getSessionCacheSize)(JNIEnv *env, jclass clazz, jlong ctx) {
+    return SSL_CTX_sess_get_cache_size(CTX(ctx)->ctx);
+}
+
+JNIEXPORT jlong JNICALL NATIVE(getSessionTimeout)(JNIEnv *env, jclass clazz, jlong ctx) {
+    return SSL_CTX_get_timeout(CTX(ctx)->ctx);
+}
+
+JNIEXPORT void JNICALL NATIVE(setSessionTicketsEnabled)(JNIEnv *env, jclass clazz, jlong ctx, jboolean enabled) {
+    if (enabled) {
+        SSL_CTX_clear_options(CTX(ctx)->ctx, SSL_OP_NO_TICKET);
+    } else {
+        SSL_CTX_set_options(CTX(ctx)->ctx, SSL_OP_NO_TICKET);
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE(setSessionTicketKeys)(JNIEnv *env, jclass clazz, jlong ctx, jbyteArray keys) {
+    netty_ctx_t *c = CTX(ctx);
+    jsize len = (*env)->GetArrayLength(env, keys);
+    unsigned char *buf;
+    unsigned char *old;
+    int old_count;
+
+    if (len == 0 || len % NETTY_TICKET_KEY_SIZE != 0) {
+        throw_ssl_exception(env, "the session ticket keys must be a non-empty sequence of 80-byte keys");
+        return;
+    }
+    buf = malloc(len);
+    if (buf == NULL) {
+        throw_ssl_exception(env, "out of memory");
+        return;
+    }
+    (*env)->GetByteArrayRegion(env, keys, 0, len, (jbyte *) buf);
+
+    if (!CRYPTO_THREAD_write_lock(c->ticket_lock)) {
+        OPENSSL_cleanse(buf, len);
+        free(buf);
+        throw_ssl_exception(env, "failed to lock the session ticket keys");
+        return;
+    }
+    old = c->ticket_keys;
+    old_count = c->ticket_key_count;
+    c->ticket_keys = buf;
+    c->ticket_key_count = len / NETTY_TICKET_KEY_SIZE;
+    CRYPTO_THREAD_unlock(c->ticket_lock);
+
+    if (old != NULL) {
+        OPENSSL_cleanse(old, old_count * NETTY_TICKET_KEY_SIZE);
+        free(old);
+    } else {
+#if OPENSSL_VERSION_NUMBER >= 0x30000000L
+        SSL_CTX_set_tlsext_ticket_key_evp_cb(c->ctx, ticket_key_cb);
+#else
+        SSL_CTX_set_tlsext_ticket_key_cb(c->ctx, ticket_key_cb);
+#endif
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE(setAlpnProtocols)(
+        JNIEnv *env, jclass clazz, jlong ctx, jbyteArray protocols, jboolean server) {
+    netty_ctx_t *c = CTX(ctx);
+    if (!copy_bytes(env, protocols, &c->alpn, &c->alpn_len)) {
+        throw_ssl_exception(env, "out of memory");
+        return;
+    }
+    if (server) {
+        SSL_CTX_set_alpn_select_cb(c->ctx, alpn_select_cb, c);
+    } else if (SSL_CTX_set_alpn_protos(c->ctx, c->alpn, c->alpn_len) != 0) {
+        throw_ssl_exception(env, "failed to set the ALPN protocols");
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE(setNpnProtocols)(
+        JNIEnv *env, jclass clazz, jlong ctx, jbyteArray protocols, jboolean server) {
+#ifndef OPENSSL_NO_NEXTPROTONEG
+    netty_ctx_t *c = CTX(ctx);
+    if (!copy_bytes(env, protocols, &c->npn, &c->npn_len)) {
+        throw_ssl_exception(env, "out of memory");
+        return;
+    }
+    if (server) {
+        SSL_CTX_set_next_protos_advertised_cb(c->ctx, npn_advertise_cb, c);
+    } else {
+        SSL_CTX_set_next_proto_select_cb(c->ctx, npn_select_cb, c);
+    }
+#else
+    throw_ssl_exception(env, "NPN is not supported by this OpenSSL build");
+#endif
+}
+
+JNIEXPORT jlong JNICALL NATIVE(newSSL)(JNIEnv *env, jclass clazz, jlong ctx, jboolean server) {
+    netty_ssl_t *s = calloc(1, sizeof(netty_ssl_t));
+    BIO *internal;
+
+    if (s == NULL) {
+        throw_ssl_exception(env, "out of memory");
+        return 0;
+    }
+    s->ssl = SSL_new(CTX(ctx)->ctx);
+    if (s->ssl == NULL) {
+        free(s);
+        throw_ssl_exception(env, "failed to create an SSL");
+        return 0;
+    }
+    if (!BIO_new_bio_pair(&internal, NETTY_BIO_SIZE, &s->network, NETTY_BIO_SIZE)) {
+        SSL_free(s->ssl);
+        free(s);
+        throw_ssl_exception(env, "failed to create a BIO pair");
+        return 0;
+    }
+    SSL_set_bio(s->ssl, internal, internal);
+    SSL_set_app_data(s->ssl, s);
+    s->min_version = CTX(ctx)->min_version;
+    s->tls13_only = CTX(ctx)->tls13_only;
+    if (server) {
+        SSL_set_accept_state(s->ssl);
+    } else {
+        SSL_set_connect_state(s->ssl);
+    }
+    return (jlong) (intptr_t) s;
+}
+
+JNIEXPORT void JNICALL NATIVE(freeSSL)(JNIEnv *env, jclass clazz, jlong ssl) {
+    netty_ssl_t *s = (netty_ssl_t *) (intptr_t) ssl;
+    /* Frees the internal end of the BIO pair too. */
+    SSL_free(s->ssl);
+    BIO_free(s->network);
+    if (s->session != NULL) {
+        SSL_SESSION_free(s->session);
+    }
+    free(s);
+}
+
+JNIEXPORT jint JNICALL NATIVE(writeToSSL)(JNIEnv *env, jclass clazz, jlong ssl, jlong address, jint len) {
+    return ssl_result(env, SSL_OF(ssl), SSL_write(SSL_OF(ssl), (const void *) (intptr_t) address, len),
+                      "SSL_write() failed");
+}
+
+JNIEXPORT jint JNICALL NATIVE(readFromSSL)(JNIEnv *env, jclass clazz, jlong ssl, jlong address, jint len) {
+    return ssl_result(env, SSL_OF(ssl), SSL_read(SSL_OF(ssl), (void *) (intptr_t) address, len),
+                      "SSL_read() failed");
+}
+
+JNIEXPORT jint JNICALL NATIVE(writeToBIO)(JNIEnv *env, jclass clazz, jlong ssl, jlong address, jint len) {
+    int n = BIO_write(NETWORK_OF(ssl), (const void *) (intptr_t) address, len);
+    return n > 0 ? n : 0;
+}
+
+JNIEXPORT jint JNICALL NATIVE(readFromBIO)(JNIEnv *env, jclass clazz, jlong ssl, jlong address, jint len) {
+    int n = BIO_read(NETWORK_OF(ssl), (void *) (intptr_t) address, len);
+    return n > 0 ? n : 0;
+}
+
+JNIEXPORT jint JNICALL NATIVE(pendingWrittenBytesInBIO)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return (jint) BIO_ctrl_pending(NETWORK_OF(ssl));
+}
+
+JNIEXPORT jint JNICALL NATIVE(pendingEncryptedBytesInBIO)(JNIEnv *env, jclass clazz, jlong ssl) {
+    /* The bytes written into the network end which were not read by the SSL yet. */
+    return (jint) BIO_ctrl_wpending(NETWORK_OF(ssl));
+}
+
+JNIEXPORT jint JNICALL NATIVE(pendingReadableBytesInSSL)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return SSL_pending(SSL_OF(ssl));
+}
+
+JNIEXPORT jboolean JNICALL NATIVE(doHandshake)(JNIEnv *env, jclass clazz, jlong ssl) {
+    netty_ssl_t *s = (netty_ssl_t *) (intptr_t) ssl;
+    int ret = SSL_do_handshake(s->ssl);
+    if (ret == 1) {
+        /*
+         * OpenSSL does not pass a resumed TLSv1.2 session to new_session_cb, even if the server has renewed its
+         * ticket, so keep the current session to replace the cached one.
+         */
+        if (!SSL_is_server(s->ssl) && SSL_session_reused(s->ssl) && SSL_version(s->ssl) < TLS1_3_VERSION &&
+            (SSL_CTX_get_session_cache_mode(SSL_get_SSL_CTX(s->ssl)) & SSL_SESS_CACHE_CLIENT) != 0 &&
+            s->session == NULL) {
+            s->session = SSL_get1_session(s->ssl);
+        }
+        return JNI_TRUE;
+    }
+    ssl_result(env, SSL_OF(ssl), ret, "handshake failed");
+    return JNI_FALSE;
+}
+
+JNIEXPORT jboolean JNICALL NATIVE(isInInit)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return SSL_in_init(SSL_OF(ssl)) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL NATIVE(shutdownSSL)(JNIEnv *env, jclass clazz, jlong ssl) {
+    /* Writes close_notify into the BIO pair; we do not wait for the close_notify of the peer. */
+    SSL_shutdown(SSL_OF(ssl));
+    ERR_clear_error();
+}
+
+JNIEXPORT jint JNICALL NATIVE(getShutdown)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return SSL_get_shutdown(SSL_OF(ssl));
+}
+
+JNIEXPORT void JNICALL NATIVE(setVerify)(JNIEnv *env, jclass clazz, jlong ssl, jint mode) {
+    SSL_set_verify(SSL_OF(ssl), mode, NULL);
+}
+
+JNIEXPORT void JNICALL NATIVE(setCipherSuites)(JNIEnv *env, jclass clazz, jlong ssl, jstring names) {
+    netty_ssl_t *s = (netty_ssl_t *) (intptr_t) ssl;
+    int tls13_only;
+    if (set_cipher_suites(env, NULL, s->ssl, names, &tls13_only)) {
+        s->tls13_only = tls13_only;
+        SSL_set_min_proto_version(s->ssl, effective_min_version(s->min_version, tls13_only));
+    }
+}
+
+JNIEXPORT void JNICALL NATIVE(setProtocolVersions)(JNIEnv *env, jclass clazz, jlong ssl, jint min, jint max) {
+    netty_ssl_t *s = (netty_ssl_t *) (intptr_t) ssl;
+    if (!SSL_set_min_proto_version(s->ssl, effective_min_version(min, s->tls13_only)) ||
+            !SSL_set_max_proto_version(s->ssl, max)) {
+        throw_ssl_exception(env, "failed to set the protocol versions");
+        return;
+    }
+    s->min_version = min;
+}
+
+JNIEXPORT jint JNICALL NATIVE(getMinProtocolVersion)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return SSL_get_min_proto_version(SSL_OF(ssl));
+}
+
+JNIEXPORT jint JNICALL NATIVE(getMaxProtocolVersion)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return SSL_get_max_proto_version(SSL_OF(ssl));
+}
+
+JNIEXPORT void JNICALL NATIVE(setHostName)(JNIEnv *env, jclass clazz, jlong ssl, jstring host_name) {
+    const char *name = (*env)->GetStringUTFChars(env, host_name, NULL);
+    if (!SSL_set_tlsext_host_name(SSL_OF(ssl), name)) {
+        throw_ssl_exception(env, "failed to set the server name indication");
+    }
+    (*env)->ReleaseStringUTFChars(env, host_name, name);
+}
+
+JNIEXPORT void JNICALL NATIVE(setVerifyHost)(JNIEnv *env, jclass clazz, jlong ssl, jstring host) {
+    const char *name = (*env)->GetStringUTFChars(env, host, NULL);
+    /* An IP address is matched against the IP addresses of the certificate, and a host name against its names. */
+    if (!X509_VERIFY_PARAM_set1_ip_asc(SSL_get0_param(SSL_OF(ssl)), name)) {
+        ERR_clear_error();
+        if (!SSL_set1_host(SSL_OF(ssl), name)) {
+            throw_ssl_exception(env, "failed to set the host name to verify");
+        }
+    }
+    (*env)->ReleaseStringUTFChars(env, host, name);
+}
+
+JNIEXPORT jobjectArray JNICALL NATIVE(getCiphers)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return cipher_names(env, SSL_get_ciphers(SSL_OF(ssl)));
+}
+
+JNIEXPORT jobjectArray JNICALL NATIVE(getSupportedCiphers)(JNIEnv *env, jclass clazz, jlong ctx) {
+    return cipher_names(env, SSL_CTX_get_ciphers(CTX(ctx)->ctx));
+}
+
+JNIEXPORT jstring JNICALL NATIVE(getCipher)(JNIEnv *env, jclass clazz, jlong ssl) {
+    const SSL_CIPHER *cipher = SSL_get_current_cipher(SSL_OF(ssl));
+    const char *name = cipher == NULL ? NULL : SSL_CIPHER_standard_name(cipher);
+    return name == NULL ? NULL : (*env)->NewStringUTF(env, name);
+}
+
+JNIEXPORT jstring JNICALL NATIVE(getVersion)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return (*env)->NewStringUTF(env, SSL_get_version(SSL_OF(ssl)));
+}
+
+JNIEXPORT jstring JNICALL NATIVE(getApplicationProtocol)(JNIEnv *env, jclass clazz, jlong ssl) {
+    const unsigned char *proto = NULL;
+    unsigned int len = 0;
+    char buf[256];
+
+    SSL_get0_alpn_selected(SSL_OF(ssl), &proto, &len);
+#ifndef OPENSSL_NO_NEXTPROTONEG
+    if (len == 0) {
+        SSL_get0_next_proto_negotiated(SSL_OF(ssl), &proto, &len);
+    }
+#endif
+    if (len == 0) {
+        return NULL;
+    }
+    memcpy(buf, proto, len);
+    buf[len] = '\0';
+    return (*env)->NewStringUTF(env, buf);
+}
+
+JNIEXPORT jbyteArray JNICALL NATIVE(getSessionId)(JNIEnv *env, jclass clazz, jlong ssl) {
+    SSL_SESSION *session = SSL_get_session(SSL_OF(ssl));
+    const unsigned char *id;
+    unsigned int len = 0;
+    jbyteArray array;
+
+    if (session == NULL) {
+        return NULL;
+    }
+    id = SSL_SESSION_get_id(session, &len);
+    array = (*env)->NewByteArray(env, len);
+    if (array != NULL) {
+        (*env)->SetByteArrayRegion(env, array, 0, len, (const jbyte *) id);
+    }
+    return array;
+}
+
+JNIEXPORT jboolean JNICALL NATIVE(isSessionReused)(JNIEnv *env, jclass clazz, jlong ssl) {
+    return SSL_session_reused(SSL_OF(ssl)) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jlong JNICALL NATIVE(takeSession)(JNIEnv *env, jclass clazz, jlong ssl) {
+    netty_ssl_t *s = (netty_ssl_t *) (intptr_t) ssl;
+    SSL_SESSION *session = s->session;
+    s->session = NULL;
+    return (jlong) (intptr_t) session;
+}
+
+JNIEXPORT void JNICALL NATIVE(setSession)(JNIEnv *env, jclass clazz, jlong ssl, jlong session) {
+    /* Takes a reference of its own. */
+    if (!SSL_set_session(SSL_OF(ssl), (SSL_SESSION *) (intptr_t) session)) {
+        ERR_clear_error();
+    }
+}
+
+JNIEXPORT jboolean JNICALL NATIVE(isSessionResumable)(JNIEnv *env, jclass clazz, jlong session) {
+    return SSL_SESSION_is_resumable((SSL_SESSION *) (intptr_t) session) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL NATIVE(freeSession)(JNIEnv *env, jclass clazz, jlong session) {
+    SSL_SESSION_free((SSL_SESSION *) (intptr_t) session);
+}
+
+static jbyteArray encode_certificate(JNIEnv *env, X509 *cert) {
+    unsigned char *der = NULL;
+    int len = i2d_X509(cert, &der);
+    jbyteArray array;
+
+    if (len <= 0) {
+        return NULL;
+    }
+    array = (*env)->NewByteArray(env, len);
+    if (array != NULL) {
+        (*env)->SetByteArrayRegion(env, array, 0, len, (const jbyte *) der);
+    }
+    OPENSSL_free(der);
+    return array;
+}
+
+JNIEXPORT jobjectArray JNICALL NATIVE(getPeerCertChain)(JNIEnv *env, jclass clazz, jlong ssl) {
+    SSL *s = SSL_OF(ssl);
+#if OPENSSL_VERSION_NUMBER >= 0x30000000L
+    X509 *peer = SSL_get1_peer_certificate(s);
+#else
+    /* Also returns a new reference, despite its name. */
+    X509 *peer = SSL_get_peer_certificate(s);
+#endif
+    STACK_OF(X509) *chain = SSL_get_peer_cert_chain(s);
+    jclass byte_array_class;
+    jobjectArray array;
+    int n, i, offset;
+
+    if (peer == NULL) {
+        return NULL;
+    }
+    /* The chain of a client contains the certificate of the server, but the chain of a server does not. */
+    n = chain == NULL ? 0 : sk_X509_num(chain);
+    offset = n > 0 && X509_cmp(sk_X509_value(chain, 0), peer) == 0 ? 0 : 1;
+
+    byte_array_class = (*env)->FindClass(env, "[B");
+    array = (*env)->NewObjectArray(env, n + offset, byte_array_class, NULL);
+    if (array != NULL) {
+        if (offset == 1) {
+            jbyteArray der = encode_certificate(env, peer);
+            (*env)->SetObjectArrayElement(env, array, 0, der);
+            (*env)->DeleteLocalRef(env, der);
+        }
+        for (i = 0; i < n; i++) {
+            jbyteArray der = encode_certificate(env, sk_X509_value(chain, i));
+            (*env)->SetObjectArrayElement(env, array, i + offset, der);
+            (*env)->DeleteLocalRef(env, der);
+        }
+    }
+    X509_free(peer);
+    return array;
+}
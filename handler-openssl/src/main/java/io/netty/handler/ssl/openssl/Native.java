@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl.openssl;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import javax.net.ssl.SSLException;
+
+/**
+ * The JNI methods of {@code netty_openssl.c}.  A context and an SSL are referred to by the address of their native
+ * structures.  The functions which read or write take the address of the memory to read from or to write into.
+ */
+final class Native {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    private static final String LIBRARY_NAME = "netty-openssl";
+
+    /** Returned by the read and write methods when the operation must be retried later. */
+    static final int SSL_WANT = -1;
+    /** Returned by the read and write methods when the peer has sent close_notify. */
+    static final int SSL_CLOSED = -2;
+
+    static final int SSL_SENT_SHUTDOWN = 1;
+    static final int SSL_RECEIVED_SHUTDOWN = 2;
+
+    static final int SSL_VERIFY_NONE = 0;
+    static final int SSL_VERIFY_PEER = 1;
+    static final int SSL_VERIFY_FAIL_IF_NO_PEER_CERT = 2;
+
+    static final int TLS1_VERSION = 0x0301;
+    static final int TLS1_1_VERSION = 0x0302;
+    static final int TLS1_2_VERSION = 0x0303;
+    static final int TLS1_3_VERSION = 0x0304;
+
+    static {
+        loadLibrary();
+        try {
+            initialize();
+        } catch (SSLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Loads the library from the path specified by {@code -Dio.netty.openssl.library}, from the
+     * {@code java.library.path}, or from {@code META-INF/native} in the class path, in this order.
+     */
+    private static void loadLibrary() {
+        String path = SystemPropertyUtil.get("io.netty.openssl.library");
+        if (path != null) {
+            System.load(new File(path).getAbsolutePath());
+            return;
+        }
+
+        try {
+            System.loadLibrary(LIBRARY_NAME);
+            return;
+        } catch (UnsatisfiedLinkError e) {
+            logger.debug("{} is not in java.library.path; trying the class path.", LIBRARY_NAME);
+        }
+
+        String libName = System.mapLibraryName(LIBRARY_NAME);
+        URL url = Native.class.getClassLoader().getResource("META-INF/native/" + libName);
+        if (url == null) {
+            throw new UnsatisfiedLinkError("could not find " + libName);
+        }
+        if ("file".equals(url.getProtocol())) {
+            System.load(new File(url.getPath()).getAbsolutePath());
+            return;
+        }
+
+        // Extract the library from the JAR file.
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile(LIBRARY_NAME, libName.substring(libName.lastIndexOf('.')));
+            tmpFile.deleteOnExit();
+            InputStream in = url.openStream();
+            try {
+                OutputStream out = new FileOutputStream(tmpFile);
+                try {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, n);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            UnsatisfiedLinkError error = new UnsatisfiedLinkError("could not extract " + libName);
+            error.initCause(e);
+            throw error;
+        }
+        System.load(tmpFile.getAbsolutePath());
+    }
+
+    /**
+     * Returns the address of the first byte of the specified direct buffer.
+     */
+    static long address(ByteBuffer buffer) {
+        return PlatformDependent.directBufferAddress(buffer);
+    }
+
+    static native String version();
+    static native void initialize() throws SSLException;
+
+    // SSL_CTX
+    static native long newContext(boolean server) throws SSLException;
+    static native void freeContext(long ctx);
+    static native void setContextCipherSuites(long ctx, String cipherSuites) throws SSLException;
+    static native void setContextProtocolVersions(long ctx, int min, int max) throws SSLException;
+    static native void setCertificate(
+            long ctx, String certChainFile, String keyFile, String keyPassword) throws SSLException;
+    static native void setTrustCertificates(long ctx, String trustCertChainFile) throws SSLException;
+    static native void setContextVerify(long ctx, int mode);
+    static native void setSessionCacheEnabled(long ctx, boolean enabled);
+    static native void setSessionCacheSize(long ctx, long size);
+    static native void setSessionTimeout(long ctx, long seconds);
+    static native long getSessionCacheSize(long ctx);
+    static native long getSessionTimeout(long ctx);
+    static native void setSessionTicketsEnabled(long ctx, boolean enabled);
+    static native void setSessionTicketKeys(long ctx, byte[] keys) throws SSLException;
+    static native void setAlpnProtocols(long ctx, byte[] protocols, boolean server) throws SSLException;
+    static native void setNpnProtocols(long ctx, byte[] protocols, boolean server) throws SSLException;
+    static native String[] getSupportedCiphers(long ctx);
+
+    // SSL
+    static native long newSSL(long ctx, boolean server) throws SSLException;
+    static native void freeSSL(long ssl);
+    static native int writeToSSL(long ssl, long address, int len) throws SSLException;
+    static native int readFromSSL(long ssl, long address, int len) throws SSLException;
+    static native int writeToBIO(long ssl, long address, int len);
+    static native int readFromBIO(long ssl, long address, int len);
+    static native int pendingWrittenBytesInBIO(long ssl);
+    static native int pendingEncryptedBytesInBIO(long ssl);
+    static native int pendingReadableBytesInSSL(long ssl);
+    static native boolean doHandshake(long ssl) throws SSLException;
+    static native boolean isInInit(long ssl);
+    static native void shutdownSSL(long ssl);
+    static native int getShutdown(long ssl);
+    static native void setVerify(long ssl, int mode);
+    static native void setCipherSuites(long ssl, String cipherSuites) throws SSLException;
+    static native void setProtocolVersions(long ssl, int min, int max) throws SSLException;
+    static native int getMinProtocolVersion(long ssl);
+    static native int getMaxProtocolVersion(long ssl);
+    static native void setHostName(long ssl, String hostName) throws SSLException;
+    static native void setVerifyHost(long ssl, String host) throws SSLException;
+    static native String[] getCiphers(long ssl);
+    static native String getCipher(long ssl);
+    static native String getVersion(long ssl);
+    static native String getApplicationProtocol(long ssl);
+    static native byte[] getSessionId(long ssl);
+    static native boolean isSessionReused(long ssl);
+    static native long takeSession(long ssl);
+    static native void setSession(long ssl, long session);
+
+    // SSL_SESSION
+    static native boolean isSessionResumable(long session);
+    static native void freeSession(long session);
+    static native byte[][] getPeerCertChain(long ssl);
+
+    private Native() {
+        // Unused
+    }
+}
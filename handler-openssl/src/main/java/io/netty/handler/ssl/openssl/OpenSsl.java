@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl.openssl;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * Tells whether the native OpenSSL binding of this module can be used, i.e. whether {@code libnetty-openssl} and
+ * the OpenSSL libraries it links against could be loaded.
+ */
+public final class OpenSsl {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(OpenSsl.class);
+
+    private static final Throwable UNAVAILABILITY_CAUSE;
+    private static final String VERSION;
+
+    static {
+        Throwable cause = null;
+        String version = null;
+        if (!PlatformDependent.hasUnsafe()) {
+            cause = new UnsupportedOperationException("sun.misc.Unsafe is required to access the direct buffers");
+        } else {
+            try {
+                version = Native.version();
+            } catch (Throwable t) {
+                cause = t;
+                logger.debug("Failed to load the native OpenSSL binding; the JDK SSLEngine must be used.", t);
+            }
+        }
+        UNAVAILABILITY_CAUSE = cause;
+        VERSION = version;
+    }
+
+    /**
+     * Returns {@code true} if and only if the native OpenSSL binding is available.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Throws the cause of the unavailability if the native OpenSSL binding is not {@linkplain #isAvailable()
+     * available}.
+     */
+    public static void ensureAvailability() {
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw (Error) new UnsatisfiedLinkError(
+                    "failed to load the native OpenSSL binding").initCause(UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * Returns the cause of the unavailability of the native OpenSSL binding, or {@code null} if it is available.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    /**
+     * Returns the version string of the OpenSSL library in use, or {@code null} if it is not available.
+     */
+    public static String versionString() {
+        return VERSION;
+    }
+
+    private OpenSsl() { }
+}
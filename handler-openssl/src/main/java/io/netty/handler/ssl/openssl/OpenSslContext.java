@@ -0,0 +1,330 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl.openssl;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslSessionResumption;
+import io.netty.handler.ssl.SslSessionTicketKey;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.chmv8.LongAdder;
+
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An OpenSSL context ({@code SSL_CTX}) which creates {@link OpenSslEngine}s sharing the same certificates, settings
+ * and session cache.  A context is built with an {@link OpenSslContextBuilder} and is usually shared by all the
+ * channels of an application.  The native resources of a context are freed when {@link #destroy()} is called and
+ * all the engines created from it are closed.
+ * <p>
+ * A server-side context caches the sessions in the native session cache of OpenSSL and issues session tickets,
+ * which are encrypted with a random key of the context unless other keys are specified with
+ * {@link #setSessionTicketKeys(SslSessionTicketKey...)}.  A client-side context caches the last session received
+ * from every server, keyed by the host and the port given to {@link #newEngine(ByteBufAllocator, String, int)},
+ * and offers it to the server when it connects again.  The handshakes completed by the engines of a context are
+ * counted as {@linkplain #sessionHits() hits} if they resumed a session and as {@linkplain #sessionMisses() misses}
+ * otherwise.
+ */
+public final class OpenSslContext extends SslContext implements SslSessionResumption {
+
+    /**
+     * The default maximum number of the sessions cached by a client-side context.
+     */
+    public static final long DEFAULT_CLIENT_SESSION_CACHE_SIZE = 1024;
+
+    private final boolean server;
+    private final boolean trustAllCertificates;
+    private final long sessionCacheSize;
+    private final long sessionTimeout;
+    private final OpenSslSessionCache clientSessionCache;
+    private final List<String> applicationProtocols;
+    private final List<String> nextProtocols;
+    private final List<String> supportedCipherSuites;
+    private final LongAdder sessionHits = new LongAdder();
+    private final LongAdder sessionMisses = new LongAdder();
+
+    // Guarded by 'this'
+    private long ctx;
+
+    OpenSslContext(OpenSslContextBuilder builder) throws SSLException {
+        OpenSsl.ensureAvailability();
+
+        server = builder.server;
+        trustAllCertificates = builder.trustAllCertificates;
+        applicationProtocols = builder.applicationProtocols;
+        nextProtocols = builder.nextProtocols;
+
+        long ctx = Native.newContext(server);
+        boolean success = false;
+        try {
+            if (builder.cipherSuites != null) {
+                Native.setContextCipherSuites(ctx, OpenSslEngine.join(builder.cipherSuites));
+            }
+            if (builder.protocols != null) {
+                int[] range = OpenSslEngine.protocolRange(builder.protocols);
+                Native.setContextProtocolVersions(ctx, range[0], range[1]);
+            }
+            if (builder.certChainFile != null) {
+                Native.setCertificate(
+                        ctx, builder.certChainFile.getPath(), builder.keyFile.getPath(), builder.keyPassword);
+            }
+            if (builder.trustCertChainFile != null) {
+                Native.setTrustCertificates(ctx, builder.trustCertChainFile.getPath());
+                Native.setContextVerify(ctx, Native.SSL_VERIFY_PEER);
+            }
+            if (builder.trustAllCertificates) {
+                Native.setContextVerify(ctx, Native.SSL_VERIFY_NONE);
+            }
+            Native.setSessionCacheEnabled(ctx, builder.sessionCacheEnabled);
+            if (server && builder.sessionCacheSize >= 0) {
+                Native.setSessionCacheSize(ctx, builder.sessionCacheSize);
+            }
+            if (builder.sessionTimeout > 0) {
+                Native.setSessionTimeout(ctx, builder.sessionTimeout);
+            }
+            Native.setSessionTicketsEnabled(ctx, builder.sessionTicketsEnabled);
+            if (builder.sessionTicketKeys != null) {
+                Native.setSessionTicketKeys(ctx, builder.sessionTicketKeys);
+            }
+            if (!applicationProtocols.isEmpty()) {
+                Native.setAlpnProtocols(ctx, encodeProtocols(applicationProtocols), server);
+            }
+            if (!nextProtocols.isEmpty()) {
+                Native.setNpnProtocols(ctx, encodeProtocols(nextProtocols), server);
+            }
+            supportedCipherSuites = Collections.unmodifiableList(Arrays.asList(Native.getSupportedCiphers(ctx)));
+            sessionTimeout = Native.getSessionTimeout(ctx);
+            if (server) {
+                sessionCacheSize = Native.getSessionCacheSize(ctx);
+            } else {
+                sessionCacheSize = builder.sessionCacheSize >= 0 ?
+                        builder.sessionCacheSize : DEFAULT_CLIENT_SESSION_CACHE_SIZE;
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                Native.freeContext(ctx);
+            }
+        }
+        this.ctx = ctx;
+        clientSessionCache = !server && builder.sessionCacheEnabled ?
+                new OpenSslSessionCache(sessionCacheSize, sessionTimeout) : null;
+    }
+
+    @Override
+    public boolean isServer() {
+        return server;
+    }
+
+    @Override
+    public long sessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    @Override
+    public long sessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Returns the protocols negotiated with the ALPN extension, in the order of preference.
+     */
+    public List<String> applicationProtocols() {
+        return applicationProtocols;
+    }
+
+    /**
+     * Returns the protocols negotiated with the NPN extension, in the order of preference.
+     */
+    public List<String> nextProtocols() {
+        return nextProtocols;
+    }
+
+    /**
+     * Returns the standard names of the cipher suites enabled by default.
+     */
+    public List<String> supportedCipherSuites() {
+        return supportedCipherSuites;
+    }
+
+    /**
+     * Creates a new engine which copies heap buffers through {@link PooledByteBufAllocator#DEFAULT}.
+     */
+    public OpenSslEngine newEngine() throws SSLException {
+        return newEngine(PooledByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * Creates a new engine which copies heap buffers through the specified allocator.  Direct buffers are passed
+     * to OpenSSL without copying.
+     */
+    @Override
+    public OpenSslEngine newEngine(ByteBufAllocator alloc) throws SSLException {
+        return newEngine(alloc, null, -1);
+    }
+
+    /**
+     * Creates a new engine for the specified peer.  A client-side engine sends the host name with the Server Name
+     * Indication (SNI) extension, verifies it against the certificate of the server, and resumes the cached session
+     * of the peer if there is one.
+     */
+    @Override
+    public synchronized OpenSslEngine newEngine(ByteBufAllocator alloc, String peerHost, int peerPort)
+            throws SSLException {
+        if (alloc == null) {
+            throw new NullPointerException("alloc");
+        }
+        if (ctx == 0) {
+            throw new IllegalStateException("context destroyed");
+        }
+        long ssl = Native.newSSL(ctx, server);
+        if (clientSessionCache != null && peerHost != null) {
+            clientSessionCache.setSession(ssl, peerHost, peerPort);
+        }
+        return new OpenSslEngine(this, ssl, alloc, peerHost, peerPort);
+    }
+
+    /**
+     * Returns {@code true} if the client-side engines of this context accept any server certificate.
+     */
+    boolean isTrustAllCertificates() {
+        return trustAllCertificates;
+    }
+
+    /**
+     * Returns {@code true} if the engines of this context pass the sessions they receive to
+     * {@link #cacheSession(String, int, long)}.
+     */
+    boolean isClientSessionCacheEnabled() {
+        return clientSessionCache != null;
+    }
+
+    /**
+     * Caches the specified session received from the specified server, taking over the reference to it.  The
+     * session is freed if this context has been destroyed.
+     */
+    void cacheSession(String peerHost, int peerPort, long session) {
+        clientSessionCache.put(peerHost, peerPort, session);
+    }
+
+    /**
+     * Returns the number of the sessions cached by this client-side context.
+     */
+    int clientSessionCacheSize() {
+        return clientSessionCache == null ? 0 : clientSessionCache.size();
+    }
+
+    /**
+     * Counts a handshake completed by an engine of this context.
+     */
+    void handshakeCompleted(boolean sessionReused) {
+        if (sessionReused) {
+            sessionHits.increment();
+        } else {
+            sessionMisses.increment();
+        }
+    }
+
+    @Override
+    public long sessionHits() {
+        return sessionHits.sum();
+    }
+
+    @Override
+    public long sessionMisses() {
+        return sessionMisses.sum();
+    }
+
+    /**
+     * {@inheritDoc}  The keys are shared by all the engines of this context, including the ones which are
+     * handshaking.
+     */
+    @Override
+    public synchronized void setSessionTicketKeys(SslSessionTicketKey... keys) {
+        if (!server) {
+            throw new IllegalStateException("not a server-side context");
+        }
+        if (ctx == 0) {
+            throw new IllegalStateException("context destroyed");
+        }
+        try {
+            Native.setSessionTicketKeys(ctx, encodeTicketKeys(keys));
+        } catch (SSLException e) {
+            throw new IllegalStateException("failed to set the session ticket keys", e);
+        }
+    }
+
+    /**
+     * Frees the native resources of this context.  The engines created from this context remain usable until
+     * they are closed.
+     */
+    public synchronized void destroy() {
+        if (ctx != 0) {
+            Native.freeContext(ctx);
+            ctx = 0;
+            if (clientSessionCache != null) {
+                clientSessionCache.destroy();
+            }
+        }
+    }
+
+    /**
+     * Encodes the specified session ticket keys into the format of the native library, i.e. the name, the HMAC
+     * secret and the AES key of each key.
+     */
+    static byte[] encodeTicketKeys(SslSessionTicketKey... keys) {
+        if (keys == null) {
+            throw new NullPointerException("keys");
+        }
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("keys is empty");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (SslSessionTicketKey k: keys) {
+            if (k == null) {
+                throw new NullPointerException("keys");
+            }
+            byte[] name = k.name();
+            byte[] hmacKey = k.hmacKey();
+            byte[] aesKey = k.aesKey();
+            out.write(name, 0, name.length);
+            out.write(hmacKey, 0, hmacKey.length);
+            out.write(aesKey, 0, aesKey.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the specified protocol names into the wire format of ALPN and NPN, i.e. a length-prefixed sequence.
+     */
+    static byte[] encodeProtocols(List<String> protocols) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String p: protocols) {
+            byte[] name = p.getBytes(CharsetUtil.US_ASCII);
+            if (name.length > 255) {
+                throw new IllegalArgumentException("protocol name too long: " + p);
+            }
+            out.write(name.length);
+            out.write(name, 0, name.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl.openssl;
+
+import io.netty.handler.ssl.SslSessionTicketKey;
+
+import javax.net.ssl.SSLException;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds an {@link OpenSslContext}.
+ *
+ * <pre>
+ * {@link OpenSslContext} context = {@link OpenSslContextBuilder}.forServer(certChainFile, keyFile)
+ *         .protocols("TLSv1.2", "TLSv1.3")
+ *         .applicationProtocols("h2", "http/1.1")
+ *         .sessionCacheSize(20480)
+ *         .build();
+ * ...
+ * pipeline.addLast("ssl", new {@link io.netty.handler.ssl.SslHandler}(context.newEngine(ch.alloc())));
+ * </pre>
+ */
+public final class OpenSslContextBuilder {
+
+    /**
+     * Creates a builder of a server-side context.
+     *
+     * @param certChainFile an X.509 certificate chain file in PEM format, starting with the certificate of the server
+     * @param keyFile       a private key file in PEM format
+     */
+    public static OpenSslContextBuilder forServer(File certChainFile, File keyFile) {
+        if (certChainFile == null) {
+            throw new NullPointerException("certChainFile");
+        }
+        if (keyFile == null) {
+            throw new NullPointerException("keyFile");
+        }
+        OpenSslContextBuilder builder = new OpenSslContextBuilder(true);
+        builder.certChainFile = certChainFile;
+        builder.keyFile = keyFile;
+        return builder;
+    }
+
+    /**
+     * Creates a builder of a client-side context.
+     */
+    public static OpenSslContextBuilder forClient() {
+        return new OpenSslContextBuilder(false);
+    }
+
+    final boolean server;
+    File certChainFile;
+    File keyFile;
+    String keyPassword;
+    File trustCertChainFile;
+    boolean trustAllCertificates;
+    List<String> cipherSuites;
+    List<String> protocols;
+    boolean sessionCacheEnabled = true;
+    long sessionCacheSize = -1;
+    long sessionTimeout = -1;
+    boolean sessionTicketsEnabled = true;
+    byte[] sessionTicketKeys;
+    List<String> applicationProtocols = Collections.emptyList();
+    List<String> nextProtocols = Collections.emptyList();
+
+    private OpenSslContextBuilder(boolean server) {
+        this.server = server;
+    }
+
+    /**
+     * Specifies the certificate chain and the private key a client presents when the server asks for them.
+     */
+    public OpenSslContextBuilder keyManager(File certChainFile, File keyFile) {
+        if (certChainFile == null) {
+            throw new NullPointerException("certChainFile");
+        }
+        if (keyFile == null) {
+            throw new NullPointerException("keyFile");
+        }
+        this.certChainFile = certChainFile;
+        this.keyFile = keyFile;
+        return this;
+    }
+
+    /**
+     * Specifies the password of the private key file, or {@code null} if it is not encrypted.
+     */
+    public OpenSslContextBuilder keyPassword(String keyPassword) {
+        this.keyPassword = keyPassword;
+        return this;
+    }
+
+    /**
+     * Specifies the X.509 certificates in PEM format which are trusted to verify the certificate chain of the peer.
+     * A client also trusts the default trusted certificates of the system, and a server which has some asks the
+     * clients for a certificate.
+     */
+    public OpenSslContextBuilder trustCertChainFile(File trustCertChainFile) {
+        this.trustCertChainFile = trustCertChainFile;
+        return this;
+    }
+
+    /**
+     * Makes a client accept any server certificate without verifying its chain or its host name.  This is insecure
+     * and meant only for testing.  By default, a client verifies the certificate chain of the server against the
+     * trusted certificates, and its host name against the host given to
+     * {@link OpenSslContext#newEngine(io.netty.buffer.ByteBufAllocator, String, int)}.
+     */
+    public OpenSslContextBuilder trustAllCertificates() {
+        if (server) {
+            throw new IllegalStateException("not a client-side context");
+        }
+        trustAllCertificates = true;
+        return this;
+    }
+
+    /**
+     * Specifies the enabled cipher suites by their standard names, such as
+     * {@code TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256}, in the order of preference.  The default is the list of
+     * OpenSSL.  If no TLSv1.2 cipher suite is specified, only TLSv1.3 is enabled.
+     */
+    public OpenSslContextBuilder cipherSuites(String... cipherSuites) {
+        this.cipherSuites = toList(cipherSuites, "cipherSuites");
+        return this;
+    }
+
+    /**
+     * Specifies the enabled protocols, such as {@code TLSv1.2}.  OpenSSL enables a range of versions, thus all
+     * the versions between the oldest and the latest specified ones are enabled.
+     */
+    public OpenSslContextBuilder protocols(String... protocols) {
+        this.protocols = toList(protocols, "protocols");
+        return this;
+    }
+
+    /**
+     * Enables or disables the session cache.  A server caches the sessions it has established, and a client caches
+     * the last session received from every server to resume it on the next connection.  The default is enabled.
+     */
+    public OpenSslContextBuilder sessionCacheEnabled(boolean sessionCacheEnabled) {
+        this.sessionCacheEnabled = sessionCacheEnabled;
+        return this;
+    }
+
+    /**
+     * Specifies the maximum number of the cached sessions, {@code 0} for unlimited.  The default of a server is the
+     * default of OpenSSL, i.e. {@code 20480}, and the default of a client is
+     * {@value OpenSslContext#DEFAULT_CLIENT_SESSION_CACHE_SIZE}.
+     */
+    public OpenSslContextBuilder sessionCacheSize(long sessionCacheSize) {
+        if (sessionCacheSize < 0) {
+            throw new IllegalArgumentException("sessionCacheSize: " + sessionCacheSize + " (expected: >= 0)");
+        }
+        this.sessionCacheSize = sessionCacheSize;
+        return this;
+    }
+
+    /**
+     * Specifies how long a session can be resumed, in seconds.  The default is the default of OpenSSL, i.e.
+     * {@code 300} seconds.
+     */
+    public OpenSslContextBuilder sessionTimeout(long sessionTimeout) {
+        if (sessionTimeout <= 0) {
+            throw new IllegalArgumentException("sessionTimeout: " + sessionTimeout + " (expected: > 0)");
+        }
+        this.sessionTimeout = sessionTimeout;
+        return this;
+    }
+
+    /**
+     * Enables or disables the session tickets (RFC 5077).  The default is enabled.
+     */
+    public OpenSslContextBuilder sessionTicketsEnabled(boolean sessionTicketsEnabled) {
+        this.sessionTicketsEnabled = sessionTicketsEnabled;
+        return this;
+    }
+
+    /**
+     * Specifies the key a server encrypts its session tickets with, as 80 bytes: a 16-byte key name, a 32-byte
+     * HMAC secret and a 32-byte AES key.  The servers of a cluster must share the same key to resume each other's
+     * sessions.  By default, OpenSSL generates a random key per context.
+     */
+    public OpenSslContextBuilder sessionTicketKeys(byte[] sessionTicketKeys) {
+        if (sessionTicketKeys == null) {
+            throw new NullPointerException("sessionTicketKeys");
+        }
+        if (sessionTicketKeys.length != 80) {
+            throw new IllegalArgumentException(
+                    "sessionTicketKeys.length: " + sessionTicketKeys.length + " (expected: 80)");
+        }
+        this.sessionTicketKeys = sessionTicketKeys.clone();
+        return this;
+    }
+
+    /**
+     * Specifies the keys of the session tickets.  The first key encrypts the new tickets, and all the keys decrypt
+     * the tickets presented by the clients.  The keys can be replaced later with
+     * {@link OpenSslContext#setSessionTicketKeys(SslSessionTicketKey...)}.
+     */
+    public OpenSslContextBuilder sessionTicketKeys(SslSessionTicketKey... sessionTicketKeys) {
+        this.sessionTicketKeys = OpenSslContext.encodeTicketKeys(sessionTicketKeys);
+        return this;
+    }
+
+    /**
+     * Specifies the protocols to negotiate with the Application-Layer Protocol Negotiation (ALPN) extension, such
+     * as {@code h2} and {@code http/1.1}, in the order of preference.
+     */
+    public OpenSslContextBuilder applicationProtocols(String... protocols) {
+        applicationProtocols = toList(protocols, "protocols");
+        return this;
+    }
+
+    /**
+     * Specifies the protocols to negotiate with the Next Protocol Negotiation (NPN) extension, such as
+     * {@code spdy/3.1} and {@code http/1.1}, in the order of preference.
+     */
+    public OpenSslContextBuilder nextProtocols(String... protocols) {
+        nextProtocols = toList(protocols, "protocols");
+        return this;
+    }
+
+    /**
+     * Creates a new context with the current settings of this builder.
+     */
+    public OpenSslContext build() throws SSLException {
+        return new OpenSslContext(this);
+    }
+
+    private static List<String> toList(String[] values, String name) {
+        if (values == null) {
+            throw new NullPointerException(name);
+        }
+        List<String> list = new ArrayList<String>(values.length);
+        for (String v: values) {
+            if (v == null || v.isEmpty()) {
+                throw new IllegalArgumentException(name + ": " + Arrays.toString(values));
+            }
+            list.add(v);
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
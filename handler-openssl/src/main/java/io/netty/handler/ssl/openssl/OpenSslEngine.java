@@ -0,0 +1,930 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl.openssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.internal.EmptyArrays;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionBindingEvent;
+import javax.net.ssl.SSLSessionBindingListener;
+import javax.net.ssl.SSLSessionContext;
+import javax.security.cert.X509Certificate;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.security.Principal;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link SSLEngine} which is implemented with OpenSSL.  It is created by an {@link OpenSslContext} and can be
+ * used with {@link io.netty.handler.ssl.SslHandler} like any other {@link SSLEngine}.
+ * <p>
+ * The encrypted data is transferred from and into the memory of direct buffers without copying.  The content of
+ * heap buffers is copied through a temporary direct buffer.  An engine does not delegate any task.
+ * <p>
+ * The native resources of an engine are freed by {@link #closeInbound()}, which {@link io.netty.handler.ssl.SslHandler}
+ * calls when the channel is closed.  An engine which is used without an {@link io.netty.handler.ssl.SslHandler} must
+ * be closed explicitly.
+ * <p>
+ * A client-side engine created for a peer host verifies the host name against the certificate of the server,
+ * unless the context accepts any certificate.  When the handshake fails, the alert to the peer is returned by
+ * {@link #wrap(ByteBuffer[], int, int, ByteBuffer)} before the failure is thrown.
+ */
+public final class OpenSslEngine extends SSLEngine {
+
+    private static final String[] PROTOCOLS = { "TLSv1", "TLSv1.1", "TLSv1.2", "TLSv1.3" };
+    private static final int[] PROTOCOL_VERSIONS = {
+            Native.TLS1_VERSION, Native.TLS1_1_VERSION, Native.TLS1_2_VERSION, Native.TLS1_3_VERSION };
+
+    static final int MAX_PLAINTEXT_LENGTH = 16 * 1024;
+    // The header, the padding, the MAC or the tag, and the compression overhead of a record.
+    static final int MAX_RECORD_OVERHEAD = 5 + 256 + 20 + 2048;
+    static final int MAX_ENCRYPTED_PACKET_LENGTH = MAX_PLAINTEXT_LENGTH + MAX_RECORD_OVERHEAD;
+
+    private static final SSLEngineResult CLOSED_NOT_HANDSHAKING =
+            new SSLEngineResult(Status.CLOSED, HandshakeStatus.NOT_HANDSHAKING, 0, 0);
+
+    private enum HandshakeState {
+        NOT_STARTED,
+        STARTED,
+        /** The handshake is done, but {@link HandshakeStatus#FINISHED} has not been reported yet. */
+        COMPLETE,
+        FINISHED
+    }
+
+    private final OpenSslContext context;
+    private final ByteBufAllocator alloc;
+    private final boolean cacheSessions;
+    private final OpenSslSession session = new OpenSslSession();
+
+    // Guarded by 'this'
+    private long ssl;
+    private HandshakeState handshakeState = HandshakeState.NOT_STARTED;
+    private boolean receivedShutdown;
+    private boolean inboundClosed;
+    private boolean outboundClosed;
+    private boolean needClientAuth;
+    private boolean wantClientAuth;
+    private boolean enableSessionCreation = true;
+    private SSLException handshakeException;
+
+    OpenSslEngine(OpenSslContext context, long ssl, ByteBufAllocator alloc, String peerHost, int peerPort)
+            throws SSLException {
+        super(peerHost, peerPort);
+        this.context = context;
+        this.ssl = ssl;
+        this.alloc = alloc;
+        cacheSessions = peerHost != null && context.isClientSessionCacheEnabled();
+        if (!context.isServer() && peerHost != null) {
+            try {
+                Native.setHostName(ssl, peerHost);
+                if (!context.isTrustAllCertificates()) {
+                    Native.setVerifyHost(ssl, peerHost);
+                }
+            } catch (SSLException e) {
+                shutdown();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the protocol negotiated with ALPN or NPN, or {@code null} if no protocol was negotiated.
+     */
+    public synchronized String getApplicationProtocol() {
+        if (ssl == 0 || handshakeState.compareTo(HandshakeState.COMPLETE) < 0) {
+            return null;
+        }
+        return Native.getApplicationProtocol(ssl);
+    }
+
+    /**
+     * Returns {@code true} if and only if the session was resumed from a cached session or a session ticket.
+     */
+    public synchronized boolean isSessionReused() {
+        return ssl != 0 && Native.isSessionReused(ssl);
+    }
+
+    @Override
+    public synchronized SSLEngineResult wrap(
+            ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+        checkBuffers(srcs, offset, length);
+        if (dst == null) {
+            throw new NullPointerException("dst");
+        }
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        if (ssl == 0) {
+            return CLOSED_NOT_HANDSHAKING;
+        }
+        beginHandshakeImplicitly();
+
+        // Drain what is left from the previous calls, such as a handshake message or close_notify.
+        int produced = 0;
+        if (Native.pendingWrittenBytesInBIO(ssl) > 0) {
+            if (!dst.hasRemaining()) {
+                return new SSLEngineResult(Status.BUFFER_OVERFLOW, handshakeStatus(), 0, 0);
+            }
+            produced = readFromBIO(dst);
+            if (Native.pendingWrittenBytesInBIO(ssl) > 0) {
+                return newResult(0, produced);
+            }
+        }
+
+        if (handshakeException != null) {
+            if (produced > 0) {
+                // Let the alert be sent before the failure.
+                return newResult(0, produced);
+            }
+            throw handshakeException;
+        }
+
+        if (outboundClosed) {
+            return newResult(0, produced);
+        }
+
+        if (handshakeState == HandshakeState.STARTED) {
+            handshake();
+            produced += readFromBIO(dst);
+            return newResult(0, produced);
+        }
+
+        int consumed = 0;
+        for (int i = offset; i < offset + length; i ++) {
+            ByteBuffer src = srcs[i];
+            while (src.hasRemaining()) {
+                int chunk = Math.min(src.remaining(), MAX_PLAINTEXT_LENGTH);
+                if (dst.remaining() < chunk + MAX_RECORD_OVERHEAD) {
+                    if (consumed == 0 && produced == 0) {
+                        return new SSLEngineResult(Status.BUFFER_OVERFLOW, handshakeStatus(), 0, 0);
+                    }
+                    return newResult(consumed, produced);
+                }
+                int written = writeToSSL(src, chunk);
+                if (written <= 0) {
+                    // The peer has closed the connection or the BIO is full.
+                    return newResult(consumed, produced);
+                }
+                consumed += written;
+                produced += readFromBIO(dst);
+            }
+        }
+        return newResult(consumed, produced);
+    }
+
+    @Override
+    public synchronized SSLEngineResult unwrap(
+            ByteBuffer src, ByteBuffer[] dsts, int offset, int length) throws SSLException {
+        if (src == null) {
+            throw new NullPointerException("src");
+        }
+        checkBuffers(dsts, offset, length);
+        for (int i = offset; i < offset + length; i ++) {
+            if (dsts[i].isReadOnly()) {
+                throw new ReadOnlyBufferException();
+            }
+        }
+        if (ssl == 0 || inboundClosed) {
+            return CLOSED_NOT_HANDSHAKING;
+        }
+        beginHandshakeImplicitly();
+        if (handshakeException != null) {
+            if (Native.pendingWrittenBytesInBIO(ssl) > 0) {
+                return newResult(0, 0);
+            }
+            throw handshakeException;
+        }
+
+        int consumed = 0;
+        int produced = 0;
+        for (;;) {
+            int fed = 0;
+            if (src.hasRemaining()) {
+                fed = writeToBIO(src);
+                consumed += fed;
+            }
+
+            if (handshakeState == HandshakeState.STARTED) {
+                handshake();
+                if (handshakeState == HandshakeState.STARTED || Native.pendingWrittenBytesInBIO(ssl) > 0) {
+                    // Wait for more data from the peer, or let the handshake messages be wrapped first.
+                    return newResult(consumed, produced);
+                }
+            }
+
+            int read = 0;
+            for (int i = offset; i < offset + length && !receivedShutdown; i ++) {
+                ByteBuffer dst = dsts[i];
+                while (dst.hasRemaining()) {
+                    int n = readFromSSL(dst);
+                    if (n <= 0) {
+                        break;
+                    }
+                    read += n;
+                }
+                if (dst.hasRemaining()) {
+                    // OpenSSL has nothing more to decrypt.
+                    break;
+                }
+            }
+            produced += read;
+
+            if (receivedShutdown) {
+                return newResult(consumed, produced);
+            }
+            if (read == 0 && fed == 0) {
+                break;
+            }
+        }
+
+        if (produced == 0 && !hasRemaining(dsts, offset, length) &&
+            (Native.pendingReadableBytesInSSL(ssl) > 0 || Native.pendingEncryptedBytesInBIO(ssl) > 0)) {
+            return new SSLEngineResult(Status.BUFFER_OVERFLOW, handshakeStatus(), consumed, 0);
+        }
+        return newResult(consumed, produced);
+    }
+
+    @Override
+    public Runnable getDelegatedTask() {
+        // The handshake is done in the calling thread.
+        return null;
+    }
+
+    @Override
+    public synchronized void closeInbound() throws SSLException {
+        if (inboundClosed) {
+            return;
+        }
+        inboundClosed = true;
+        boolean truncated = handshakeState != HandshakeState.NOT_STARTED && !receivedShutdown && !isDestroyed();
+        shutdown();
+        if (truncated) {
+            throw new SSLException(
+                    "Inbound closed before receiving peer's close_notify: possible truncation attack?");
+        }
+    }
+
+    @Override
+    public synchronized boolean isInboundDone() {
+        return inboundClosed || receivedShutdown || ssl == 0;
+    }
+
+    @Override
+    public synchronized void closeOutbound() {
+        if (outboundClosed) {
+            return;
+        }
+        outboundClosed = true;
+        if (handshakeState.compareTo(HandshakeState.COMPLETE) >= 0 && ssl != 0) {
+            // Write close_notify, which is drained by the next wrap().
+            Native.shutdownSSL(ssl);
+        } else {
+            shutdown();
+        }
+    }
+
+    @Override
+    public synchronized boolean isOutboundDone() {
+        return ssl == 0 || outboundClosed && Native.pendingWrittenBytesInBIO(ssl) == 0;
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        List<String> suites = context.supportedCipherSuites();
+        return suites.toArray(new String[suites.size()]);
+    }
+
+    @Override
+    public synchronized String[] getEnabledCipherSuites() {
+        if (ssl == 0) {
+            return EmptyArrays.EMPTY_STRINGS;
+        }
+        return Native.getCiphers(ssl);
+    }
+
+    @Override
+    public synchronized void setEnabledCipherSuites(String[] suites) {
+        if (suites == null) {
+            throw new NullPointerException("suites");
+        }
+        checkNotDestroyed();
+        try {
+            Native.setCipherSuites(ssl, join(Arrays.asList(suites)));
+        } catch (SSLException e) {
+            throw new IllegalArgumentException("failed to enable cipher suites: " + Arrays.toString(suites), e);
+        }
+    }
+
+    @Override
+    public String[] getSupportedProtocols() {
+        return PROTOCOLS.clone();
+    }
+
+    @Override
+    public synchronized String[] getEnabledProtocols() {
+        if (ssl == 0) {
+            return EmptyArrays.EMPTY_STRINGS;
+        }
+        int min = Native.getMinProtocolVersion(ssl);
+        int max = Native.getMaxProtocolVersion(ssl);
+        List<String> enabled = new ArrayList<String>(PROTOCOLS.length);
+        for (int i = 0; i < PROTOCOLS.length; i ++) {
+            int v = PROTOCOL_VERSIONS[i];
+            // 0 means no limit.
+            if ((min == 0 || v >= min) && (max == 0 || v <= max)) {
+                enabled.add(PROTOCOLS[i]);
+            }
+        }
+        return enabled.toArray(new String[enabled.size()]);
+    }
+
+    @Override
+    public synchronized void setEnabledProtocols(String[] protocols) {
+        if (protocols == null) {
+            throw new NullPointerException("protocols");
+        }
+        checkNotDestroyed();
+        int[] range = protocolRange(Arrays.asList(protocols));
+        try {
+            Native.setProtocolVersions(ssl, range[0], range[1]);
+        } catch (SSLException e) {
+            throw new IllegalArgumentException("failed to enable protocols: " + Arrays.toString(protocols), e);
+        }
+    }
+
+    @Override
+    public SSLSession getSession() {
+        return session;
+    }
+
+    @Override
+    public synchronized void beginHandshake() throws SSLException {
+        if (handshakeState != HandshakeState.NOT_STARTED) {
+            // Renegotiation is disabled.
+            return;
+        }
+        checkNotDestroyed();
+        if (outboundClosed || inboundClosed) {
+            throw new SSLException("engine closed");
+        }
+        handshakeState = HandshakeState.STARTED;
+        // Let a client write its ClientHello so that the first wrap() sends it.
+        handshake();
+    }
+
+    @Override
+    public synchronized HandshakeStatus getHandshakeStatus() {
+        HandshakeStatus status = handshakeStatus();
+        return status == HandshakeStatus.FINISHED ? HandshakeStatus.NOT_HANDSHAKING : status;
+    }
+
+    @Override
+    public void setUseClientMode(boolean clientMode) {
+        if (clientMode == context.isServer()) {
+            throw new IllegalArgumentException(
+                    "cannot change the mode of an engine created by a " +
+                    (context.isServer() ? "server" : "client") + "-side context");
+        }
+    }
+
+    @Override
+    public boolean getUseClientMode() {
+        return !context.isServer();
+    }
+
+    @Override
+    public synchronized void setNeedClientAuth(boolean need) {
+        needClientAuth = need;
+        wantClientAuth = false;
+        updateVerifyMode();
+    }
+
+    @Override
+    public synchronized boolean getNeedClientAuth() {
+        return needClientAuth;
+    }
+
+    @Override
+    public synchronized void setWantClientAuth(boolean want) {
+        wantClientAuth = want;
+        needClientAuth = false;
+        updateVerifyMode();
+    }
+
+    @Override
+    public synchronized boolean getWantClientAuth() {
+        return wantClientAuth;
+    }
+
+    /**
+     * {@inheritDoc}  OpenSSL does not tell whether it can resume a session until the handshake is done, so a
+     * handshake which has not resumed a session fails when it completes.
+     */
+    @Override
+    public synchronized void setEnableSessionCreation(boolean flag) {
+        enableSessionCreation = flag;
+    }
+
+    @Override
+    public synchronized boolean getEnableSessionCreation() {
+        return enableSessionCreation;
+    }
+
+    private void updateVerifyMode() {
+        if (!context.isServer() || ssl == 0) {
+            return;
+        }
+        int mode;
+        if (needClientAuth) {
+            mode = Native.SSL_VERIFY_PEER | Native.SSL_VERIFY_FAIL_IF_NO_PEER_CERT;
+        } else if (wantClientAuth) {
+            mode = Native.SSL_VERIFY_PEER;
+        } else {
+            mode = Native.SSL_VERIFY_NONE;
+        }
+        Native.setVerify(ssl, mode);
+    }
+
+    private void beginHandshakeImplicitly() throws SSLException {
+        if (handshakeState == HandshakeState.NOT_STARTED) {
+            beginHandshake();
+        }
+    }
+
+    private void handshake() throws SSLException {
+        boolean done;
+        try {
+            done = Native.doHandshake(ssl);
+        } catch (SSLException e) {
+            if (Native.pendingWrittenBytesInBIO(ssl) == 0) {
+                throw e;
+            }
+            // Keep the failure until wrap() has drained the alert from the BIO.
+            handshakeException = e;
+            return;
+        }
+        if (done) {
+            boolean sessionReused = Native.isSessionReused(ssl);
+            if (!enableSessionCreation && !sessionReused) {
+                throw new SSLHandshakeException("no existing session to resume, and session creation is disabled");
+            }
+            handshakeState = HandshakeState.COMPLETE;
+            context.handshakeCompleted(sessionReused);
+        }
+    }
+
+    /**
+     * Frees the native resources of this engine.
+     */
+    synchronized void shutdown() {
+        if (ssl != 0) {
+            Native.freeSSL(ssl);
+            ssl = 0;
+        }
+        inboundClosed = outboundClosed = true;
+    }
+
+    private boolean isDestroyed() {
+        return ssl == 0;
+    }
+
+    private void checkNotDestroyed() {
+        if (ssl == 0) {
+            throw new IllegalStateException("engine closed");
+        }
+    }
+
+    private HandshakeStatus handshakeStatus() {
+        if (ssl == 0 || handshakeState == HandshakeState.NOT_STARTED) {
+            return HandshakeStatus.NOT_HANDSHAKING;
+        }
+        if (handshakeException != null || Native.pendingWrittenBytesInBIO(ssl) > 0) {
+            return HandshakeStatus.NEED_WRAP;
+        }
+        switch (handshakeState) {
+            case STARTED:
+                return HandshakeStatus.NEED_UNWRAP;
+            case COMPLETE:
+                handshakeState = HandshakeState.FINISHED;
+                return HandshakeStatus.FINISHED;
+            default:
+                return HandshakeStatus.NOT_HANDSHAKING;
+        }
+    }
+
+    private SSLEngineResult newResult(int consumed, int produced) {
+        if (ssl != 0 && !receivedShutdown && (Native.getShutdown(ssl) & Native.SSL_RECEIVED_SHUTDOWN) != 0) {
+            receivedShutdown = true;
+        }
+        if (cacheSessions && ssl != 0) {
+            // A TLSv1.3 session arrives with a ticket after the handshake, so check after every operation.
+            long session = Native.takeSession(ssl);
+            if (session != 0) {
+                context.cacheSession(getPeerHost(), getPeerPort(), session);
+            }
+        }
+        HandshakeStatus handshakeStatus = handshakeStatus();
+        Status status = outboundClosed && isOutboundDone() || receivedShutdown ? Status.CLOSED : Status.OK;
+        return new SSLEngineResult(status, handshakeStatus, consumed, produced);
+    }
+
+    /**
+     * Encrypts up to {@code length} bytes of the specified buffer.
+     */
+    private int writeToSSL(ByteBuffer src, int length) throws SSLException {
+        int position = src.position();
+        int written;
+        if (src.isDirect()) {
+            written = Native.writeToSSL(ssl, Native.address(src) + position, length);
+        } else {
+            ByteBuf buf = alloc.directBuffer(length);
+            try {
+                ByteBuffer tmp = buf.nioBuffer(0, length);
+                ByteBuffer slice = src.duplicate();
+                slice.limit(position + length);
+                tmp.put(slice);
+                written = Native.writeToSSL(ssl, Native.address(tmp), length);
+            } finally {
+                buf.release();
+            }
+        }
+        if (written > 0) {
+            src.position(position + written);
+        } else if (written == Native.SSL_CLOSED) {
+            receivedShutdown = true;
+        }
+        return written;
+    }
+
+    /**
+     * Decrypts the received data into the specified buffer.
+     */
+    private int readFromSSL(ByteBuffer dst) throws SSLException {
+        int position = dst.position();
+        int read;
+        if (dst.isDirect()) {
+            read = Native.readFromSSL(ssl, Native.address(dst) + position, dst.remaining());
+            if (read > 0) {
+                dst.position(position + read);
+            }
+        } else {
+            int length = Math.min(dst.remaining(), MAX_PLAINTEXT_LENGTH);
+            ByteBuf buf = alloc.directBuffer(length);
+            try {
+                ByteBuffer tmp = buf.nioBuffer(0, length);
+                read = Native.readFromSSL(ssl, Native.address(tmp), length);
+                if (read > 0) {
+                    tmp.limit(read);
+                    dst.put(tmp);
+                }
+            } finally {
+                buf.release();
+            }
+        }
+        if (read == Native.SSL_CLOSED) {
+            receivedShutdown = true;
+        }
+        return read;
+    }
+
+    /**
+     * Feeds the received encrypted data into OpenSSL.
+     */
+    private int writeToBIO(ByteBuffer src) {
+        int position = src.position();
+        int written;
+        if (src.isDirect()) {
+            written = Native.writeToBIO(ssl, Native.address(src) + position, src.remaining());
+        } else {
+            int length = src.remaining();
+            ByteBuf buf = alloc.directBuffer(length);
+            try {
+                ByteBuffer tmp = buf.nioBuffer(0, length);
+                tmp.put(src.duplicate());
+                written = Native.writeToBIO(ssl, Native.address(tmp), length);
+            } finally {
+                buf.release();
+            }
+        }
+        src.position(position + written);
+        return written;
+    }
+
+    /**
+     * Drains the encrypted data produced by OpenSSL into the specified buffer.
+     */
+    private int readFromBIO(ByteBuffer dst) {
+        int length = Math.min(dst.remaining(), Native.pendingWrittenBytesInBIO(ssl));
+        if (length == 0) {
+            return 0;
+        }
+        int position = dst.position();
+        int read;
+        if (dst.isDirect()) {
+            read = Native.readFromBIO(ssl, Native.address(dst) + position, length);
+            dst.position(position + read);
+        } else {
+            ByteBuf buf = alloc.directBuffer(length);
+            try {
+                ByteBuffer tmp = buf.nioBuffer(0, length);
+                read = Native.readFromBIO(ssl, Native.address(tmp), length);
+                tmp.limit(read);
+                dst.put(tmp);
+            } finally {
+                buf.release();
+            }
+        }
+        return read;
+    }
+
+    private static void checkBuffers(ByteBuffer[] buffers, int offset, int length) {
+        if (buffers == null) {
+            throw new NullPointerException("buffers");
+        }
+        if (offset < 0 || length < 0 || offset > buffers.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + ", length: " + length + " (expected: offset <= offset + length <= " +
+                    buffers.length + ')');
+        }
+        for (int i = offset; i < offset + length; i ++) {
+            if (buffers[i] == null) {
+                throw new NullPointerException("buffers[" + i + ']');
+            }
+        }
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] buffers, int offset, int length) {
+        for (int i = offset; i < offset + length; i ++) {
+            if (buffers[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the oldest and the latest versions of the specified protocols.
+     */
+    static int[] protocolRange(List<String> protocols) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (String p: protocols) {
+            int i = Arrays.asList(PROTOCOLS).indexOf(p);
+            if (i < 0) {
+                throw new IllegalArgumentException("unsupported protocol: " + p);
+            }
+            min = Math.min(min, PROTOCOL_VERSIONS[i]);
+            max = Math.max(max, PROTOCOL_VERSIONS[i]);
+        }
+        if (min > max) {
+            throw new IllegalArgumentException("no protocol specified");
+        }
+        return new int[] { min, max };
+    }
+
+    static String join(List<String> values) {
+        StringBuilder buf = new StringBuilder();
+        for (String v: values) {
+            if (buf.length() > 0) {
+                buf.append(':');
+            }
+            buf.append(v);
+        }
+        return buf.toString();
+    }
+
+    private final class OpenSslSession implements SSLSession {
+
+        private final long creationTime = System.currentTimeMillis();
+        // Guarded by 'this'
+        private Map<String, Object> values;
+        private Certificate[] peerCertificates;
+
+        @Override
+        public byte[] getId() {
+            synchronized (OpenSslEngine.this) {
+                if (ssl == 0) {
+                    return EmptyArrays.EMPTY_BYTES;
+                }
+                byte[] id = Native.getSessionId(ssl);
+                return id == null ? EmptyArrays.EMPTY_BYTES : id;
+            }
+        }
+
+        @Override
+        public SSLSessionContext getSessionContext() {
+            return null;
+        }
+
+        @Override
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        @Override
+        public long getLastAccessedTime() {
+            return creationTime;
+        }
+
+        @Override
+        public void invalidate() {
+            // Not supported.
+        }
+
+        @Override
+        public boolean isValid() {
+            synchronized (OpenSslEngine.this) {
+                return ssl != 0;
+            }
+        }
+
+        @Override
+        public void putValue(String name, Object value) {
+            if (name == null) {
+                throw new NullPointerException("name");
+            }
+            if (value == null) {
+                throw new NullPointerException("value");
+            }
+            Object old;
+            synchronized (this) {
+                if (values == null) {
+                    values = new HashMap<String, Object>(2);
+                }
+                old = values.put(name, value);
+            }
+            if (value instanceof SSLSessionBindingListener) {
+                ((SSLSessionBindingListener) value).valueBound(new SSLSessionBindingEvent(this, name));
+            }
+            notifyUnbound(old, name);
+        }
+
+        @Override
+        public synchronized Object getValue(String name) {
+            if (name == null) {
+                throw new NullPointerException("name");
+            }
+            return values == null ? null : values.get(name);
+        }
+
+        @Override
+        public void removeValue(String name) {
+            if (name == null) {
+                throw new NullPointerException("name");
+            }
+            Object old;
+            synchronized (this) {
+                old = values == null ? null : values.remove(name);
+            }
+            notifyUnbound(old, name);
+        }
+
+        @Override
+        public synchronized String[] getValueNames() {
+            if (values == null || values.isEmpty()) {
+                return EmptyArrays.EMPTY_STRINGS;
+            }
+            return values.keySet().toArray(new String[values.size()]);
+        }
+
+        private void notifyUnbound(Object value, String name) {
+            if (value instanceof SSLSessionBindingListener) {
+                ((SSLSessionBindingListener) value).valueUnbound(new SSLSessionBindingEvent(this, name));
+            }
+        }
+
+        @Override
+        public Certificate[] getPeerCertificates() throws SSLPeerUnverifiedException {
+            Certificate[] certs = peerCertificates();
+            if (certs.length == 0) {
+                throw new SSLPeerUnverifiedException("peer not verified");
+            }
+            return certs.clone();
+        }
+
+        private synchronized Certificate[] peerCertificates() throws SSLPeerUnverifiedException {
+            if (peerCertificates != null) {
+                return peerCertificates;
+            }
+            byte[][] chain;
+            synchronized (OpenSslEngine.this) {
+                if (ssl == 0 || handshakeState.compareTo(HandshakeState.COMPLETE) < 0) {
+                    throw new SSLPeerUnverifiedException("handshake not complete");
+                }
+                chain = Native.getPeerCertChain(ssl);
+            }
+            if (chain == null) {
+                chain = new byte[0][];
+            }
+            try {
+                CertificateFactory factory = CertificateFactory.getInstance("X.509");
+                Certificate[] certs = new Certificate[chain.length];
+                for (int i = 0; i < chain.length; i ++) {
+                    certs[i] = factory.generateCertificate(new ByteArrayInputStream(chain[i]));
+                }
+                return peerCertificates = certs;
+            } catch (CertificateException e) {
+                SSLPeerUnverifiedException cause = new SSLPeerUnverifiedException("invalid peer certificate");
+                cause.initCause(e);
+                throw cause;
+            }
+        }
+
+        @Override
+        public Certificate[] getLocalCertificates() {
+            return null;
+        }
+
+        @Override
+        public X509Certificate[] getPeerCertificateChain() throws SSLPeerUnverifiedException {
+            Certificate[] certs = getPeerCertificates();
+            X509Certificate[] chain = new X509Certificate[certs.length];
+            try {
+                for (int i = 0; i < certs.length; i ++) {
+                    chain[i] = X509Certificate.getInstance(certs[i].getEncoded());
+                }
+            } catch (Exception e) {
+                SSLPeerUnverifiedException cause = new SSLPeerUnverifiedException("invalid peer certificate");
+                cause.initCause(e);
+                throw cause;
+            }
+            return chain;
+        }
+
+        @Override
+        public Principal getPeerPrincipal() throws SSLPeerUnverifiedException {
+            return ((java.security.cert.X509Certificate) getPeerCertificates()[0]).getSubjectX500Principal();
+        }
+
+        @Override
+        public Principal getLocalPrincipal() {
+            return null;
+        }
+
+        @Override
+        public String getCipherSuite() {
+            synchronized (OpenSslEngine.this) {
+                String cipher = ssl == 0 ? null : Native.getCipher(ssl);
+                return cipher == null ? "SSL_NULL_WITH_NULL_NULL" : cipher;
+            }
+        }
+
+        @Override
+        public String getProtocol() {
+            synchronized (OpenSslEngine.this) {
+                String version = ssl == 0 ? null : Native.getVersion(ssl);
+                return version == null ? "NONE" : version;
+            }
+        }
+
+        @Override
+        public String getPeerHost() {
+            return OpenSslEngine.this.getPeerHost();
+        }
+
+        @Override
+        public int getPeerPort() {
+            return OpenSslEngine.this.getPeerPort();
+        }
+
+        @Override
+        public int getPacketBufferSize() {
+            return MAX_ENCRYPTED_PACKET_LENGTH;
+        }
+
+        @Override
+        public int getApplicationBufferSize() {
+            return MAX_PLAINTEXT_LENGTH;
+        }
+    }
+}
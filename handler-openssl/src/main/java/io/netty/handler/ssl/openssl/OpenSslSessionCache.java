@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl.openssl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of the sessions of a client-side {@link OpenSslContext}, keyed by the host and the
+ * port of the server.  Each entry holds a reference to a native {@code SSL_SESSION}, which is freed when the entry is
+ * replaced, evicted or expires.
+ */
+final class OpenSslSessionCache {
+
+    private final long maxSize;
+    private final long timeoutMillis;
+
+    // Guarded by 'this'
+    private final Map<String, Entry> sessions = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private boolean destroyed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxSize        the maximum number of the cached sessions, {@code 0} for unlimited
+     * @param timeoutSeconds the number of seconds a session stays in the cache, {@code 0} for unlimited
+     */
+    OpenSslSessionCache(long maxSize, long timeoutSeconds) {
+        this.maxSize = maxSize;
+        timeoutMillis = timeoutSeconds * 1000;
+    }
+
+    /**
+     * Sets the cached session of the specified server to the specified {@code SSL}, so that it is offered to the
+     * server in the handshake.
+     *
+     * @return {@code true} if a session was found
+     */
+    synchronized boolean setSession(long ssl, String host, int port) {
+        String key = key(host, port);
+        Entry e = sessions.get(key);
+        if (e == null) {
+            return false;
+        }
+        if (timeoutMillis > 0 && System.currentTimeMillis() - e.creationTime > timeoutMillis ||
+            !Native.isSessionResumable(e.session)) {
+            sessions.remove(key);
+            Native.freeSession(e.session);
+            return false;
+        }
+        // The SSL takes a reference of its own, so the entry can be evicted at any time.
+        Native.setSession(ssl, e.session);
+        return true;
+    }
+
+    /**
+     * Caches the specified session, which was received from the specified server.  The cache takes over the
+     * reference to the session, and frees it right away if the cache has been destroyed.
+     */
+    synchronized void put(String host, int port, long session) {
+        if (destroyed) {
+            // An engine which was handshaking when the context was destroyed.
+            Native.freeSession(session);
+            return;
+        }
+        Entry old = sessions.put(key(host, port), new Entry(session, System.currentTimeMillis()));
+        if (old != null) {
+            Native.freeSession(old.session);
+        }
+        if (maxSize > 0) {
+            Iterator<Entry> i = sessions.values().iterator();
+            while (sessions.size() > maxSize) {
+                Native.freeSession(i.next().session);
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the cached sessions.
+     */
+    synchronized int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Frees all the cached sessions, and refuses the sessions cached later.
+     */
+    synchronized void destroy() {
+        destroyed = true;
+        for (Entry e: sessions.values()) {
+            Native.freeSession(e.session);
+        }
+        sessions.clear();
+    }
+
+    private static String key(String host, int port) {
+        return host + ':' + port;
+    }
+
+    private static final class Entry {
+        final long session;
+        final long creationTime;
+
+        Entry(long session, long creationTime) {
+            this.session = session;
+            this.creationTime = creationTime;
+        }
+    }
+}
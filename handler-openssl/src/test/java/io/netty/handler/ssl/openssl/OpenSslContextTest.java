@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl.openssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslSessionTicketKey;
+import io.netty.util.CharsetUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+public class OpenSslContextTest {
+
+    private static File certFile;
+    private static File keyFile;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        certFile = new File(OpenSslContextTest.class.getResource("test.crt").toURI());
+        keyFile = new File(OpenSslContextTest.class.getResource("test.key").toURI());
+    }
+
+    @Test
+    public void testClientSessionCacheTls12() throws Exception {
+        testClientSessionCache("TLSv1.2");
+    }
+
+    @Test
+    public void testClientSessionCacheTls13() throws Exception {
+        testClientSessionCache("TLSv1.3");
+    }
+
+    private static void testClientSessionCache(String protocol) throws Exception {
+        OpenSslContext server = OpenSslContextBuilder.forServer(certFile, keyFile).protocols(protocol).build();
+        OpenSslContext client = OpenSslContextBuilder.forClient().trustCertChainFile(certFile)
+                .protocols(protocol).sessionCacheSize(1).build();
+        try {
+            assertEquals(1, client.sessionCacheSize());
+
+            connect(client, "localhost", 8443, server);
+            assertEquals(0, client.sessionHits());
+            assertEquals(1, client.sessionMisses());
+            assertEquals(1, client.clientSessionCacheSize());
+
+            connect(client, "localhost", 8443, server);
+            assertEquals(1, client.sessionHits());
+            assertEquals(1, server.sessionHits());
+
+            // Another peer evicts the session of the first one.
+            connect(client, "localhost", 8444, server);
+            connect(client, "localhost", 8443, server);
+            assertEquals(1, client.sessionHits());
+            assertEquals(3, client.sessionMisses());
+            assertEquals(1, client.clientSessionCacheSize());
+        } finally {
+            client.destroy();
+            server.destroy();
+        }
+    }
+
+    @Test
+    public void testSessionRefusedAfterDestroy() throws Exception {
+        OpenSslContext server = OpenSslContextBuilder.forServer(certFile, keyFile).protocols("TLSv1.3").build();
+        OpenSslContext client = OpenSslContextBuilder.forClient().trustCertChainFile(certFile)
+                .protocols("TLSv1.3").build();
+        try {
+            SslHandler clientHandler = client.newHandler(UnpooledByteBufAllocator.DEFAULT, "localhost", 8443);
+            SslHandler serverHandler = server.newHandler(UnpooledByteBufAllocator.DEFAULT);
+            clientHandler.setHandshakeTimeoutMillis(0);
+            serverHandler.setHandshakeTimeoutMillis(0);
+            EmbeddedChannel clientChannel = new EmbeddedChannel(clientHandler);
+            EmbeddedChannel serverChannel = new EmbeddedChannel(serverHandler);
+            forward(clientChannel, serverChannel);
+            forward(serverChannel, clientChannel);
+            forward(clientChannel, serverChannel);
+            assertTrue(clientHandler.handshakeFuture().isSuccess());
+
+            // The session ticket of TLSv1.3 arrives after the context has been destroyed.
+            client.destroy();
+            forward(serverChannel, clientChannel);
+            assertEquals(0, client.clientSessionCacheSize());
+
+            clientChannel.close();
+            serverChannel.close();
+        } finally {
+            client.destroy();
+            server.destroy();
+        }
+    }
+
+    @Test
+    public void testSessionTicketKeyRotation() throws Exception {
+        SslSessionTicketKey key1 = SslSessionTicketKey.newRandomKey();
+        SslSessionTicketKey key2 = SslSessionTicketKey.newRandomKey();
+        // Disable the cache of the server so that only the tickets resume the sessions.
+        OpenSslContext server = OpenSslContextBuilder.forServer(certFile, keyFile)
+                .protocols("TLSv1.2").sessionCacheEnabled(false).sessionTicketKeys(key1).build();
+        OpenSslContext client = OpenSslContextBuilder.forClient().trustCertChainFile(certFile).build();
+        try {
+            connect(client, "localhost", 8443, server);
+            connect(client, "localhost", 8443, server);
+            assertEquals(1, server.sessionHits());
+
+            // The tickets encrypted with the previous key are still accepted, and renewed with the new key.
+            server.setSessionTicketKeys(key2, key1);
+            connect(client, "localhost", 8443, server);
+            assertEquals(2, server.sessionHits());
+
+            server.setSessionTicketKeys(key2);
+            connect(client, "localhost", 8443, server);
+            assertEquals(3, server.sessionHits());
+
+            // A retired key leads to a full handshake.
+            server.setSessionTicketKeys(SslSessionTicketKey.newRandomKey());
+            connect(client, "localhost", 8443, server);
+            assertEquals(3, server.sessionHits());
+            assertEquals(2, server.sessionMisses());
+        } finally {
+            client.destroy();
+            server.destroy();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSessionTicketKeysOfClient() throws Exception {
+        OpenSslContext client = OpenSslContextBuilder.forClient().build();
+        try {
+            client.setSessionTicketKeys(SslSessionTicketKey.newRandomKey());
+        } finally {
+            client.destroy();
+        }
+    }
+
+    private static void connect(SslContext client, String host, int port, SslContext server) throws Exception {
+        SslHandler clientHandler = client.newHandler(UnpooledByteBufAllocator.DEFAULT, host, port);
+        SslHandler serverHandler = server.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        // EmbeddedChannel does not support scheduling a timeout.
+        clientHandler.setHandshakeTimeoutMillis(0);
+        serverHandler.setHandshakeTimeoutMillis(0);
+        EmbeddedChannel clientChannel = new EmbeddedChannel(clientHandler);
+        EmbeddedChannel serverChannel = new EmbeddedChannel(serverHandler);
+        for (int i = 0; i < 10; i ++) {
+            forward(clientChannel, serverChannel);
+            forward(serverChannel, clientChannel);
+        }
+        assertTrue(clientHandler.handshakeFuture().isSuccess());
+        assertTrue(serverHandler.handshakeFuture().isSuccess());
+
+        serverChannel.writeOutbound(Unpooled.copiedBuffer("ping", CharsetUtil.US_ASCII));
+        forward(serverChannel, clientChannel);
+        ByteBuf received = (ByteBuf) clientChannel.readInbound();
+        assertEquals("ping", received.toString(CharsetUtil.US_ASCII));
+        received.release();
+
+        clientHandler.setCloseNotifyTimeoutMillis(0);
+        serverHandler.setCloseNotifyTimeoutMillis(0);
+        clientChannel.close();
+        forward(clientChannel, serverChannel);
+        serverChannel.close();
+    }
+
+    private static void forward(EmbeddedChannel from, EmbeddedChannel to) {
+        for (;;) {
+            ByteBuf buf = (ByteBuf) from.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            to.writeInbound(buf);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl.openssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.CharsetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLException;
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.security.cert.X509Certificate;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+public class OpenSslEngineTest {
+
+    private static final Random random = new Random();
+
+    private static File certFile;
+    private static File keyFile;
+    private static OpenSslContext serverContext;
+    private static OpenSslContext clientContext;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        certFile = resource("test.crt");
+        keyFile = resource("test.key");
+        serverContext = OpenSslContextBuilder.forServer(certFile, keyFile).build();
+        clientContext = OpenSslContextBuilder.forClient().trustCertChainFile(certFile).build();
+    }
+
+    @AfterClass
+    public static void destroy() {
+        if (serverContext != null) {
+            serverContext.destroy();
+            clientContext.destroy();
+        }
+    }
+
+    private static File resource(String name) throws URISyntaxException {
+        return new File(OpenSslEngineTest.class.getResource(name).toURI());
+    }
+
+    @Test
+    public void testDirectBuffers() throws Exception {
+        testExchange(serverContext.newEngine(), clientContext.newEngine(), true);
+    }
+
+    @Test
+    public void testHeapBuffers() throws Exception {
+        testExchange(serverContext.newEngine(), clientContext.newEngine(), false);
+    }
+
+    private static void testExchange(OpenSslEngine server, OpenSslEngine client, boolean direct) throws Exception {
+        handshake(client, server, direct);
+        assertEquals(HandshakeStatus.NOT_HANDSHAKING, client.getHandshakeStatus());
+        assertEquals(HandshakeStatus.NOT_HANDSHAKING, server.getHandshakeStatus());
+        assertEquals(server.getSession().getCipherSuite(), client.getSession().getCipherSuite());
+        assertTrue(client.getSession().getCipherSuite().startsWith("TLS_"));
+        assertEquals(
+                "CN=localhost",
+                ((X509Certificate) client.getSession().getPeerCertificates()[0]).getSubjectX500Principal().getName());
+
+        // Larger than a record so that it is split into several ones.
+        byte[] data = new byte[100000];
+        random.nextBytes(data);
+        assertArrayEquals(data, transfer(client, server, data, direct));
+        assertArrayEquals(data, transfer(server, client, data, direct));
+
+        // close_notify
+        client.closeOutbound();
+        ByteBuffer packet = allocate(client.getSession().getPacketBufferSize(), direct);
+        SSLEngineResult result = client.wrap(allocate(0, direct), packet);
+        assertEquals(Status.CLOSED, result.getStatus());
+        assertTrue(result.bytesProduced() > 0);
+        assertTrue(client.isOutboundDone());
+        packet.flip();
+        result = server.unwrap(packet, allocate(server.getSession().getApplicationBufferSize(), direct));
+        assertEquals(Status.CLOSED, result.getStatus());
+        assertTrue(server.isInboundDone());
+
+        server.closeInbound();
+        server.closeOutbound();
+        try {
+            client.closeInbound();
+            fail();
+        } catch (SSLException e) {
+            // The client did not receive close_notify.
+        }
+        assertTrue(client.isInboundDone());
+    }
+
+    @Test
+    public void testApplicationProtocolNegotiation() throws Exception {
+        OpenSslContext serverContext = OpenSslContextBuilder.forServer(certFile, keyFile)
+                .applicationProtocols("h2", "http/1.1").build();
+        OpenSslContext clientContext = OpenSslContextBuilder.forClient().trustCertChainFile(certFile)
+                .applicationProtocols("spdy/3.1", "http/1.1").build();
+        try {
+            OpenSslEngine server = serverContext.newEngine();
+            OpenSslEngine client = clientContext.newEngine();
+            handshake(client, server, true);
+            assertEquals("http/1.1", server.getApplicationProtocol());
+            assertEquals("http/1.1", client.getApplicationProtocol());
+            server.shutdown();
+            client.shutdown();
+        } finally {
+            serverContext.destroy();
+            clientContext.destroy();
+        }
+    }
+
+    @Test
+    public void testNextProtocolNegotiation() throws Exception {
+        OpenSslContext serverContext;
+        try {
+            serverContext = OpenSslContextBuilder.forServer(certFile, keyFile)
+                    .protocols("TLSv1.2").nextProtocols("spdy/3.1", "http/1.1").build();
+        } catch (SSLException e) {
+            assumeNoException(e);
+            return;
+        }
+        OpenSslContext clientContext = OpenSslContextBuilder.forClient().trustCertChainFile(certFile)
+                .protocols("TLSv1.2").nextProtocols("spdy/3.1").build();
+        try {
+            OpenSslEngine server = serverContext.newEngine();
+            OpenSslEngine client = clientContext.newEngine();
+            handshake(client, server, true);
+            assertEquals("TLSv1.2", client.getSession().getProtocol());
+            assertEquals("spdy/3.1", server.getApplicationProtocol());
+            assertEquals("spdy/3.1", client.getApplicationProtocol());
+            server.shutdown();
+            client.shutdown();
+        } finally {
+            serverContext.destroy();
+            clientContext.destroy();
+        }
+    }
+
+    @Test
+    public void testUntrustedServer() throws Exception {
+        // Trust a certificate which did not sign the certificate of the server.
+        OpenSslContext clientContext =
+                OpenSslContextBuilder.forClient().trustCertChainFile(resource("untrusted.crt")).build();
+        try {
+            handshake(clientContext.newEngine(), serverContext.newEngine(), true);
+            fail();
+        } catch (SSLException e) {
+            // Expected
+        } finally {
+            clientContext.destroy();
+        }
+    }
+
+    @Test
+    public void testAlertOnUntrustedServer() throws Exception {
+        // The server certificate is not signed by any of the default trusted certificates.
+        OpenSslContext clientContext = OpenSslContextBuilder.forClient().build();
+        try {
+            OpenSslEngine client = clientContext.newEngine(UnpooledByteBufAllocator.DEFAULT, "localhost", 8443);
+            try {
+                handshake(client, serverContext.newEngine(), true);
+                fail();
+            } catch (SSLException e) {
+                // The server has received the alert of the client.
+                assertTrue(e.getMessage(), e.getMessage().contains("alert"));
+            }
+            try {
+                client.wrap(allocate(0, true), allocate(client.getSession().getPacketBufferSize(), true));
+                fail();
+            } catch (SSLException e) {
+                // Expected
+            }
+            client.shutdown();
+        } finally {
+            clientContext.destroy();
+        }
+    }
+
+    @Test
+    public void testHostNameMismatch() throws Exception {
+        try {
+            handshake(clientContext.newEngine(UnpooledByteBufAllocator.DEFAULT, "example.com", 443),
+                      serverContext.newEngine(), true);
+            fail();
+        } catch (SSLException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testTls13CipherSuitesOnly() throws Exception {
+        OpenSslEngine server = serverContext.newEngine();
+        server.setEnabledCipherSuites(new String[] { "TLS_AES_128_GCM_SHA256" });
+        server.setEnabledProtocols(new String[] { "TLSv1.2", "TLSv1.3" });
+        assertArrayEquals(new String[] { "TLSv1.3" }, server.getEnabledProtocols());
+
+        OpenSslEngine client = clientContext.newEngine();
+        client.setEnabledProtocols(new String[] { "TLSv1.2" });
+        try {
+            handshake(client, server, true);
+            fail();
+        } catch (SSLException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testTrustAllCertificates() throws Exception {
+        OpenSslContext clientContext = OpenSslContextBuilder.forClient().trustAllCertificates().build();
+        try {
+            OpenSslEngine client = clientContext.newEngine(UnpooledByteBufAllocator.DEFAULT, "example.com", 443);
+            OpenSslEngine server = serverContext.newEngine();
+            handshake(client, server, true);
+            client.shutdown();
+            server.shutdown();
+        } finally {
+            clientContext.destroy();
+        }
+    }
+
+    @Test
+    public void testSessionCreationDisabled() throws Exception {
+        OpenSslEngine client = clientContext.newEngine();
+        client.setEnableSessionCreation(false);
+        try {
+            handshake(client, serverContext.newEngine(), true);
+            fail();
+        } catch (SSLException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSslHandler() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(newSslHandler(clientContext));
+        EmbeddedChannel server = new EmbeddedChannel(newSslHandler(serverContext));
+
+        for (int i = 0; i < 10; i ++) {
+            forward(client, server);
+            forward(server, client);
+        }
+        assertTrue(client.pipeline().get(SslHandler.class).handshakeFuture().isSuccess());
+        assertTrue(server.pipeline().get(SslHandler.class).handshakeFuture().isSuccess());
+
+        client.writeOutbound(Unpooled.copiedBuffer("Hello, World!", CharsetUtil.US_ASCII));
+        forward(client, server);
+        ByteBuf received = (ByteBuf) server.readInbound();
+        assertEquals("Hello, World!", received.toString(CharsetUtil.US_ASCII));
+        received.release();
+
+        client.close();
+        forward(client, server);
+        assertTrue(server.pipeline().get(SslHandler.class).sslCloseFuture().isSuccess());
+        server.close();
+    }
+
+    private static SslHandler newSslHandler(OpenSslContext context) throws SSLException {
+        SslHandler handler = new SslHandler(context.newEngine());
+        // EmbeddedChannel does not support scheduling a timeout.
+        handler.setHandshakeTimeoutMillis(0);
+        return handler;
+    }
+
+    private static void forward(EmbeddedChannel from, EmbeddedChannel to) {
+        for (;;) {
+            ByteBuf buf = (ByteBuf) from.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            to.writeInbound(buf);
+        }
+    }
+
+    private static void handshake(SSLEngine client, SSLEngine server, boolean direct) throws SSLException {
+        ByteBuffer empty = allocate(0, direct);
+        ByteBuffer clientPacket = allocate(client.getSession().getPacketBufferSize(), direct);
+        ByteBuffer serverPacket = allocate(server.getSession().getPacketBufferSize(), direct);
+        ByteBuffer clientApp = allocate(client.getSession().getApplicationBufferSize(), direct);
+        ByteBuffer serverApp = allocate(server.getSession().getApplicationBufferSize(), direct);
+
+        client.beginHandshake();
+        server.beginHandshake();
+        boolean clientFinished = false;
+        boolean serverFinished = false;
+        for (int i = 0; i < 10 && !(clientFinished && serverFinished); i ++) {
+            clientFinished |= client.wrap(empty, clientPacket).getHandshakeStatus() == HandshakeStatus.FINISHED;
+            clientPacket.flip();
+            serverFinished |= server.unwrap(clientPacket, serverApp).getHandshakeStatus() == HandshakeStatus.FINISHED;
+            clientPacket.compact();
+
+            serverFinished |= server.wrap(empty, serverPacket).getHandshakeStatus() == HandshakeStatus.FINISHED;
+            serverPacket.flip();
+            clientFinished |= client.unwrap(serverPacket, clientApp).getHandshakeStatus() == HandshakeStatus.FINISHED;
+            serverPacket.compact();
+        }
+        assertTrue(clientFinished);
+        assertTrue(serverFinished);
+        assertEquals(0, clientApp.position());
+        assertEquals(0, serverApp.position());
+    }
+
+    private static byte[] transfer(SSLEngine from, SSLEngine to, byte[] data, boolean direct) throws SSLException {
+        ByteBuffer src = allocate(data.length, direct);
+        src.put(data).flip();
+        ByteBuffer packet = allocate(from.getSession().getPacketBufferSize() * 2, direct);
+        ByteBuffer dst = allocate(data.length, direct);
+        while (src.hasRemaining()) {
+            SSLEngineResult result = from.wrap(src, packet);
+            assertEquals(Status.OK, result.getStatus());
+            packet.flip();
+            while (packet.hasRemaining()) {
+                result = to.unwrap(packet, dst);
+                assertEquals(Status.OK, result.getStatus());
+            }
+            packet.clear();
+        }
+        // Read what was left in the engine.
+        to.unwrap(allocate(0, direct), dst);
+        assertEquals(data.length, dst.position());
+
+        byte[] received = new byte[data.length];
+        dst.flip();
+        dst.get(received);
+        return received;
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
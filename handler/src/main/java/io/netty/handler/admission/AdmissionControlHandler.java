@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.admission;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.chmv8.LongAdder;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops admitting new connections while all the {@link EventExecutor}s of the child group of a server are
+ * overloaded, so that the registration, handshakes and decoding of new connections do not pile up on event loops
+ * which are already saturated.  It has to be added to the pipeline of the server channel:
+ *
+ * <pre>
+ * {@link EventLoopGroup} childGroup = ...;
+ * {@link ServerBootstrap} bootstrap = ...;
+ * bootstrap.childGroup(childGroup);
+ * {@link LoadThresholds} thresholds = new {@link LoadThresholds}(100, TimeUnit.MILLISECONDS, 10000);
+ * bootstrap.handler(new {@link AdmissionControlHandler}(childGroup, thresholds, {@link OverloadPolicy}.PAUSE_READ));
+ * </pre>
+ *
+ * With {@link OverloadPolicy#PAUSE_READ}, the server channel stops accepting until the load drops below the
+ * thresholds, which is checked at a fixed interval.  With {@link OverloadPolicy#CLOSE}, the connections accepted
+ * while overloaded are closed right away.
+ */
+public class AdmissionControlHandler extends ChannelHandlerAdapter {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AdmissionControlHandler.class);
+
+    private static final long DEFAULT_CHECK_INTERVAL_MILLIS = 100;
+
+    private final EventLoopGroup childGroup;
+    private final LoadThresholds thresholds;
+    private final OverloadPolicy policy;
+    private final long checkIntervalNanos;
+
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder pauses = new LongAdder();
+
+    private volatile boolean paused;
+    private ScheduledFuture<?> resumeFuture;
+
+    /**
+     * Creates a new instance which checks whether the load has dropped every 100 milliseconds.
+     *
+     * @param childGroup the {@link EventLoopGroup} the accepted connections are registered to
+     * @param thresholds the thresholds beyond which an event loop is overloaded
+     * @param policy     what to do when all the event loops are overloaded
+     */
+    public AdmissionControlHandler(EventLoopGroup childGroup, LoadThresholds thresholds, OverloadPolicy policy) {
+        this(childGroup, thresholds, policy, DEFAULT_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param childGroup    the {@link EventLoopGroup} the accepted connections are registered to
+     * @param thresholds    the thresholds beyond which an event loop is overloaded
+     * @param policy        what to do when all the event loops are overloaded
+     * @param checkInterval the interval at which the load is checked while accepting is paused
+     * @param unit          the {@link TimeUnit} of {@code checkInterval}
+     */
+    public AdmissionControlHandler(EventLoopGroup childGroup, LoadThresholds thresholds, OverloadPolicy policy,
+                                   long checkInterval, TimeUnit unit) {
+        if (childGroup == null) {
+            throw new NullPointerException("childGroup");
+        }
+        if (thresholds == null) {
+            throw new NullPointerException("thresholds");
+        }
+        if (policy == null) {
+            throw new NullPointerException("policy");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (checkInterval <= 0) {
+            throw new IllegalArgumentException("checkInterval: " + checkInterval + " (expected: > 0)");
+        }
+        this.childGroup = childGroup;
+        this.thresholds = thresholds;
+        this.policy = policy;
+        checkIntervalNanos = unit.toNanos(checkInterval);
+    }
+
+    /**
+     * Returns the thresholds beyond which an event loop is overloaded.
+     */
+    public LoadThresholds thresholds() {
+        return thresholds;
+    }
+
+    /**
+     * Returns what this handler does when all the event loops are overloaded.
+     */
+    public OverloadPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Returns {@code true} if accepting is paused right now.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Returns the number of connections which were closed because all the event loops were overloaded.
+     */
+    public long rejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    /**
+     * Returns the number of times accepting was paused.
+     */
+    public long pauses() {
+        return pauses.sum();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Channel && thresholds.isExceeded(childGroup.children())) {
+            if (policy == OverloadPolicy.CLOSE) {
+                reject((Channel) msg);
+                return;
+            }
+            // The connection was accepted already, so let it in but do not accept more.
+            pause(ctx);
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (resumeFuture != null) {
+            resumeFuture.cancel(false);
+            resumeFuture = null;
+        }
+        if (paused) {
+            ctx.channel().config().setAutoRead(true);
+            paused = false;
+        }
+    }
+
+    private void reject(Channel child) {
+        rejectedConnections.increment();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Rejected a connection because all event loops are overloaded: {}", child);
+        }
+        // The channel is not registered yet, so no event is fired.
+        child.unsafe().closeForcibly();
+    }
+
+    private void pause(ChannelHandlerContext ctx) {
+        if (paused) {
+            return;
+        }
+        pauses.increment();
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} Paused accepting because all event loops are overloaded.", ctx.channel());
+        }
+        ctx.channel().config().setAutoRead(false);
+        paused = true;
+        scheduleResume(ctx);
+    }
+
+    private void scheduleResume(final ChannelHandlerContext ctx) {
+        resumeFuture = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                resumeFuture = null;
+                if (!paused || !ctx.channel().isOpen()) {
+                    return;
+                }
+                if (thresholds.isExceeded(childGroup.children())) {
+                    scheduleResume(ctx);
+                } else {
+                    ctx.channel().config().setAutoRead(true);
+                    paused = false;
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("{} Resumed accepting.", ctx.channel());
+                    }
+                }
+            }
+        }, checkIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+}
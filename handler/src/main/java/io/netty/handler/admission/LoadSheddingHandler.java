@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.admission;
+
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sheds the load of a connection while its {@link EventExecutor} is overloaded.  The load is checked once per read
+ * loop.  With {@link OverloadPolicy#PAUSE_READ}, the handler stops reading from the channel until the load drops
+ * below the thresholds, so that the peer is slowed down by the flow control of the transport.  With
+ * {@link OverloadPolicy#CLOSE}, the channel is closed.
+ * <p>
+ * Use it together with {@link AdmissionControlHandler}, which protects the event loops from new connections.
+ */
+public class LoadSheddingHandler extends ChannelHandlerAdapter {
+
+    private static final long DEFAULT_CHECK_INTERVAL_MILLIS = 100;
+
+    private final LoadThresholds thresholds;
+    private final OverloadPolicy policy;
+    private final long checkIntervalNanos;
+
+    private boolean paused;
+    private ScheduledFuture<?> resumeFuture;
+
+    /**
+     * Creates a new instance which checks whether the load has dropped every 100 milliseconds.
+     *
+     * @param thresholds the thresholds beyond which the event loop is overloaded
+     * @param policy     what to do when the event loop is overloaded
+     */
+    public LoadSheddingHandler(LoadThresholds thresholds, OverloadPolicy policy) {
+        this(thresholds, policy, DEFAULT_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param thresholds    the thresholds beyond which the event loop is overloaded
+     * @param policy        what to do when the event loop is overloaded
+     * @param checkInterval the interval at which the load is checked while reading is paused
+     * @param unit          the {@link TimeUnit} of {@code checkInterval}
+     */
+    public LoadSheddingHandler(LoadThresholds thresholds, OverloadPolicy policy, long checkInterval, TimeUnit unit) {
+        if (thresholds == null) {
+            throw new NullPointerException("thresholds");
+        }
+        if (policy == null) {
+            throw new NullPointerException("policy");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (checkInterval <= 0) {
+            throw new IllegalArgumentException("checkInterval: " + checkInterval + " (expected: > 0)");
+        }
+        this.thresholds = thresholds;
+        this.policy = policy;
+        checkIntervalNanos = unit.toNanos(checkInterval);
+    }
+
+    /**
+     * Returns {@code true} if reading is paused right now.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (!paused && thresholds.isExceeded(ctx.executor())) {
+            overloaded(ctx);
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (resumeFuture != null) {
+            resumeFuture.cancel(false);
+            resumeFuture = null;
+        }
+        if (paused) {
+            paused = false;
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * Is called when the event loop of the channel is overloaded.  This implementation applies the
+     * {@link OverloadPolicy} of this handler.
+     */
+    protected void overloaded(ChannelHandlerContext ctx) throws Exception {
+        if (policy == OverloadPolicy.CLOSE) {
+            ctx.close();
+            return;
+        }
+
+        paused = true;
+        ctx.channel().config().setAutoRead(false);
+        scheduleResume(ctx);
+    }
+
+    private void scheduleResume(final ChannelHandlerContext ctx) {
+        resumeFuture = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                resumeFuture = null;
+                if (!paused || !ctx.channel().isOpen()) {
+                    return;
+                }
+                if (thresholds.isExceeded(ctx.executor())) {
+                    scheduleResume(ctx);
+                } else {
+                    paused = false;
+                    ctx.channel().config().setAutoRead(true);
+                }
+            }
+        }, checkIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.admission;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorLagMonitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limits beyond which an {@link EventExecutor} is considered overloaded: the scheduling lag measured by
+ * {@link EventExecutorLagMonitor} and the number of tasks waiting in its queue, as sampled by the same monitor.
+ * Both are read from the monitor without touching the executor, so that they can be checked on every accepted
+ * connection.
+ */
+public final class LoadThresholds {
+
+    private final long maxLagNanos;
+    private final int maxPendingTasks;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxLag          the maximum scheduling lag.  Specify {@code 0} to ignore the lag.
+     * @param unit            the {@link TimeUnit} of {@code maxLag}
+     * @param maxPendingTasks the maximum number of pending tasks, as sampled at the interval of the monitor.
+     *                        Specify {@code 0} to ignore the pending tasks.
+     */
+    public LoadThresholds(long maxLag, TimeUnit unit, int maxPendingTasks) {
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (maxLag < 0) {
+            throw new IllegalArgumentException("maxLag: " + maxLag + " (expected: >= 0)");
+        }
+        if (maxPendingTasks < 0) {
+            throw new IllegalArgumentException("maxPendingTasks: " + maxPendingTasks + " (expected: >= 0)");
+        }
+        if (maxLag == 0 && maxPendingTasks == 0) {
+            throw new IllegalArgumentException("either maxLag or maxPendingTasks must be positive");
+        }
+        maxLagNanos = unit.toNanos(maxLag);
+        this.maxPendingTasks = maxPendingTasks;
+    }
+
+    /**
+     * Returns the maximum scheduling lag in nanoseconds, or {@code 0} if the lag is ignored.
+     */
+    public long maxLagNanos() {
+        return maxLagNanos;
+    }
+
+    /**
+     * Returns the maximum number of pending tasks, or {@code 0} if the pending tasks are ignored.
+     */
+    public int maxPendingTasks() {
+        return maxPendingTasks;
+    }
+
+    /**
+     * Returns {@code true} if the specified {@link EventExecutor} exceeds any of the thresholds.  The executor is
+     * monitored from the first call on.
+     */
+    public boolean isExceeded(EventExecutor executor) {
+        EventExecutorLagMonitor monitor = EventExecutorLagMonitor.get(executor);
+        if (maxLagNanos > 0 && monitor.lagNanos() > maxLagNanos) {
+            return true;
+        }
+        return maxPendingTasks > 0 && monitor.pendingTasks() > maxPendingTasks;
+    }
+
+    /**
+     * Returns {@code true} if all the {@link EventExecutor}s of the specified group exceed any of the thresholds,
+     * which means that a new channel would be registered to an overloaded one no matter how it is chosen.
+     */
+    public boolean isExceeded(Iterable<? extends EventExecutor> executors) {
+        for (EventExecutor e: executors) {
+            if (!isExceeded(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(maxLag: " + TimeUnit.NANOSECONDS.toMillis(maxLagNanos) +
+               "ms, maxPendingTasks: " + maxPendingTasks + ')';
+    }
+}
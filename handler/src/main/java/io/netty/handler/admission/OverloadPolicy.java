@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.admission;
+
+/**
+ * Defines what {@link AdmissionControlHandler} and {@link LoadSheddingHandler} do when the event loops are
+ * overloaded.
+ */
+public enum OverloadPolicy {
+    /**
+     * Stops reading until the load drops below the thresholds.  {@link AdmissionControlHandler} stops accepting new
+     * connections, which are then queued by the operating system in the backlog of the server socket, and
+     * {@link LoadSheddingHandler} stops reading from its channel.
+     */
+    PAUSE_READ,
+
+    /**
+     * Closes the connections.  {@link AdmissionControlHandler} closes the newly accepted connections before they are
+     * registered, and {@link LoadSheddingHandler} closes its channel.
+     */
+    CLOSE
+}
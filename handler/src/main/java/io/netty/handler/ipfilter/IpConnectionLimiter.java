@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ipfilter;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent connections from the same remote address.  An instance can be shared by all the
+ * channels of a server.
+ */
+public final class IpConnectionLimiter {
+
+    private final ConcurrentMap<InetAddress, AtomicInteger> connections = PlatformDependent.newConcurrentHashMap();
+    private final int maxConnectionsPerAddress;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxConnectionsPerAddress the maximum number of concurrent connections from the same address
+     */
+    public IpConnectionLimiter(int maxConnectionsPerAddress) {
+        if (maxConnectionsPerAddress <= 0) {
+            throw new IllegalArgumentException(
+                    "maxConnectionsPerAddress: " + maxConnectionsPerAddress + " (expected: > 0)");
+        }
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    }
+
+    /**
+     * Returns the maximum number of concurrent connections from the same address.
+     */
+    public int maxConnectionsPerAddress() {
+        return maxConnectionsPerAddress;
+    }
+
+    /**
+     * Counts a new connection from the specified address.
+     *
+     * @return {@code true} if the connection is allowed, or {@code false} if the address has reached the limit
+     *         already.  Only an allowed connection has to be {@linkplain #release(InetAddress) released}.
+     */
+    public boolean tryAcquire(InetAddress address) {
+        if (address == null) {
+            throw new NullPointerException("address");
+        }
+        for (;;) {
+            AtomicInteger counter = connections.get(address);
+            if (counter == null) {
+                counter = connections.putIfAbsent(address, new AtomicInteger(1));
+                if (counter == null) {
+                    return true;
+                }
+            }
+
+            for (;;) {
+                int count = counter.get();
+                if (count == 0) {
+                    // The counter is being removed by release() - help and start over.
+                    connections.remove(address, counter);
+                    break;
+                }
+                if (count >= maxConnectionsPerAddress) {
+                    return false;
+                }
+                if (counter.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a closed connection from the specified address, which was allowed by {@link #tryAcquire(InetAddress)}.
+     */
+    public void release(InetAddress address) {
+        if (address == null) {
+            throw new NullPointerException("address");
+        }
+        AtomicInteger counter = connections.get(address);
+        if (counter == null) {
+            throw new IllegalStateException("no connection from " + address);
+        }
+        if (counter.decrementAndGet() == 0) {
+            connections.remove(address, counter);
+        }
+    }
+
+    /**
+     * Returns the number of the current connections from the specified address.
+     */
+    public int connections(InetAddress address) {
+        AtomicInteger counter = connections.get(address);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Returns the number of the addresses which have at least one connection.
+     */
+    public int addresses() {
+        return connections.size();
+    }
+}
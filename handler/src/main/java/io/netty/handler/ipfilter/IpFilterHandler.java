@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ipfilter;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.internal.chmv8.LongAdder;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Closes the accepted connections whose remote address is rejected by an {@link IpFilterRules} or which exceed the
+ * per-address limit of an {@link IpConnectionLimiter}.  The decision is made as soon as the channel is registered,
+ * so that a rejected peer never costs a handshake or any decoding.  It has to be the first handler of the pipeline
+ * of the accepted channels:
+ *
+ * <pre>
+ * {@link IpFilterRules} rules = new {@link IpFilterRules}().add("10.0.0.0/8", {@link IpFilterRuleType}.REJECT);
+ * {@link IpFilterHandler} filter = new {@link IpFilterHandler}(rules, {@link IpFilterRuleType}.ACCEPT);
+ *
+ * public void initChannel({@link io.netty.channel.Channel} ch) {
+ *     ch.pipeline().addLast("ipfilter", filter);
+ *     ch.pipeline().addLast("ssl", new {@link SslHandler}(...));
+ *     ...
+ * }
+ * </pre>
+ *
+ * When it is added by a {@link ChannelInitializer}, the channel is registered already, so the decision is made when
+ * it is added, before the handlers after it are added.  Once the connection is accepted, this handler removes itself
+ * from the pipeline.
+ */
+@Sharable
+public class IpFilterHandler extends ChannelHandlerAdapter {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IpFilterHandler.class);
+
+    private final IpFilterRules rules;
+    private final IpFilterRuleType defaultType;
+    private final IpConnectionLimiter limiter;
+    private final LongAdder rejectedConnections = new LongAdder();
+
+    /**
+     * Creates a new instance which accepts the addresses that do not match any rule.
+     */
+    public IpFilterHandler(IpFilterRules rules) {
+        this(rules, IpFilterRuleType.ACCEPT);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rules       the rules to apply to the remote addresses
+     * @param defaultType what to do with the addresses that do not match any rule
+     */
+    public IpFilterHandler(IpFilterRules rules, IpFilterRuleType defaultType) {
+        this(rules, defaultType, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rules       the rules to apply to the remote addresses
+     * @param defaultType what to do with the addresses that do not match any rule
+     * @param limiter     the limiter of the concurrent connections from the accepted addresses, or {@code null} for
+     *                    no limit
+     */
+    public IpFilterHandler(IpFilterRules rules, IpFilterRuleType defaultType, IpConnectionLimiter limiter) {
+        if (rules == null) {
+            throw new NullPointerException("rules");
+        }
+        if (defaultType == null) {
+            throw new NullPointerException("defaultType");
+        }
+        this.rules = rules;
+        this.defaultType = defaultType;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Returns the number of the connections rejected by this handler.
+     */
+    public long rejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isRegistered()) {
+            filter(ctx);
+        }
+    }
+
+    @Override
+    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+        filter(ctx);
+        ctx.fireChannelRegistered();
+    }
+
+    private void filter(ChannelHandlerContext ctx) throws Exception {
+        // Remove first so that the decision is never made twice for the same channel.
+        ctx.pipeline().remove(this);
+
+        SocketAddress remoteAddress = ctx.channel().remoteAddress();
+        if (!(remoteAddress instanceof InetSocketAddress)) {
+            return;
+        }
+        InetSocketAddress inetRemoteAddress = (InetSocketAddress) remoteAddress;
+        final InetAddress address = inetRemoteAddress.getAddress();
+        if (address == null) {
+            // Unresolved
+            return;
+        }
+
+        IpFilterRuleType type = rules.match(address);
+        if (type == null) {
+            type = defaultType;
+        }
+        if (type == IpFilterRuleType.REJECT) {
+            reject(ctx, inetRemoteAddress);
+            return;
+        }
+
+        if (limiter != null) {
+            if (!limiter.tryAcquire(address)) {
+                reject(ctx, inetRemoteAddress);
+                return;
+            }
+            ctx.channel().closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    limiter.release(address);
+                }
+            });
+        }
+    }
+
+    private void reject(ChannelHandlerContext ctx, InetSocketAddress remoteAddress) throws Exception {
+        rejectedConnections.increment();
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} Rejected a connection from {}", ctx.channel(), remoteAddress);
+        }
+        channelRejected(ctx, remoteAddress);
+        ctx.close();
+    }
+
+    /**
+     * Invoked right before a rejected channel is closed.  Override this method to send a response to the peer or to
+     * record the rejection.  The default implementation does nothing.
+     */
+    protected void channelRejected(ChannelHandlerContext ctx, InetSocketAddress remoteAddress) throws Exception {
+        // NOOP
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ipfilter;
+
+import io.netty.util.NetUtil;
+
+import java.net.InetAddress;
+
+/**
+ * A set of IPv4 and IPv6 CIDR ranges, each of which is either accepted or rejected.  The ranges are stored in a
+ * binary trie of flat arrays which is indexed by the bits of the address, so that a lookup takes at most as many
+ * steps as the prefix length of the matching range and does not allocate besides the copy of the address bytes
+ * returned by {@link InetAddress#getAddress()}.  If more than one range contains an address, the most specific one
+ * wins.
+ * <p>
+ * The rules must be added before this instance is shared with the event loops.  Once populated, it can be used by
+ * any number of threads at the same time.
+ */
+public final class IpFilterRules {
+
+    private static final int ROOT4 = 0;
+    private static final int ROOT6 = 1;
+    private static final IpFilterRuleType[] TYPES = IpFilterRuleType.values();
+
+    // children[node << 1 | bit] is the index of the child node, or 0 (which is always a root) if there is none.
+    private int[] children = new int[64];
+    // types[node] is the ordinal of the rule type plus one, or 0 if no range ends at the node.
+    private byte[] types = new byte[32];
+    private int nodes = 2;
+    private int size;
+
+    /**
+     * Adds a rule for the specified CIDR range, such as {@code "192.168.0.0/16"} or {@code "2001:db8::/32"}.
+     * An address without a prefix length matches only itself.  A rule for the same range replaces the previous one.
+     *
+     * @return this instance
+     */
+    public IpFilterRules add(String cidr, IpFilterRuleType type) {
+        if (cidr == null) {
+            throw new NullPointerException("cidr");
+        }
+
+        String address;
+        int prefixLength;
+        int slash = cidr.indexOf('/');
+        if (slash < 0) {
+            address = cidr;
+            prefixLength = -1;
+        } else {
+            address = cidr.substring(0, slash);
+            try {
+                prefixLength = Integer.parseInt(cidr.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid CIDR notation: " + cidr, e);
+            }
+        }
+
+        byte[] bytes = NetUtil.createByteArrayFromIpAddressString(address);
+        if (bytes == null) {
+            throw new IllegalArgumentException("invalid CIDR notation: " + cidr);
+        }
+        return add(bytes, prefixLength < 0 ? bytes.length * 8 : prefixLength, type);
+    }
+
+    /**
+     * Adds a rule for the range of the specified prefix length which contains the specified address.
+     *
+     * @return this instance
+     */
+    public IpFilterRules add(InetAddress address, int prefixLength, IpFilterRuleType type) {
+        if (address == null) {
+            throw new NullPointerException("address");
+        }
+        return add(address.getAddress(), prefixLength, type);
+    }
+
+    private IpFilterRules add(byte[] address, int prefixLength, IpFilterRuleType type) {
+        if (type == null) {
+            throw new NullPointerException("type");
+        }
+        if (isIpV4Mapped(address) && prefixLength >= 96) {
+            // Inet4Address is used for the IPv4-mapped addresses of the connected peers.
+            byte[] v4 = new byte[4];
+            System.arraycopy(address, 12, v4, 0, 4);
+            address = v4;
+            prefixLength -= 96;
+        }
+
+        int bits = address.length * 8;
+        if (prefixLength < 0 || prefixLength > bits) {
+            throw new IllegalArgumentException(
+                    "prefixLength: " + prefixLength + " (expected: 0-" + bits + ')');
+        }
+
+        int node = address.length == 4 ? ROOT4 : ROOT6;
+        for (int i = 0; i < prefixLength; i ++) {
+            int slot = node << 1 | bit(address, i);
+            int child = children[slot];
+            if (child == 0) {
+                child = newNode();
+                children[slot] = child;
+            }
+            node = child;
+        }
+
+        if (types[node] == 0) {
+            size ++;
+        }
+        types[node] = (byte) (type.ordinal() + 1);
+        return this;
+    }
+
+    private int newNode() {
+        int node = nodes ++;
+        if (node == types.length) {
+            int[] newChildren = new int[children.length << 1];
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            children = newChildren;
+            byte[] newTypes = new byte[types.length << 1];
+            System.arraycopy(types, 0, newTypes, 0, types.length);
+            types = newTypes;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the type of the most specific rule which matches the specified address, or {@code null} if no rule
+     * matches.
+     */
+    public IpFilterRuleType match(InetAddress address) {
+        if (address == null) {
+            throw new NullPointerException("address");
+        }
+        return match(address.getAddress());
+    }
+
+    IpFilterRuleType match(byte[] address) {
+        int[] children = this.children;
+        byte[] types = this.types;
+        int node = address.length == 4 ? ROOT4 : ROOT6;
+        int type = types[node];
+        for (int i = 0, bits = address.length << 3; i < bits; i ++) {
+            node = children[node << 1 | bit(address, i)];
+            if (node == 0) {
+                break;
+            }
+            if (types[node] != 0) {
+                type = types[node];
+            }
+        }
+        return type == 0 ? null : TYPES[type - 1];
+    }
+
+    /**
+     * Returns the number of the ranges in this set.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int bit(byte[] address, int index) {
+        return address[index >>> 3] >>> 7 - (index & 7) & 1;
+    }
+
+    private static boolean isIpV4Mapped(byte[] address) {
+        if (address.length != 16) {
+            return false;
+        }
+        for (int i = 0; i < 10; i ++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(size: " + size + ", nodes: " + nodes + ')';
+    }
+}
@@ -17,102 +17,64 @@ package io.netty.handler.logging;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.logging.InternalLogLevel;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A {@link ChannelHandler} that logs all events using a logging framework.
  * By default, all events are logged at <tt>DEBUG</tt> level.
+ *
+ * <h3>Reducing the overhead</h3>
+ * Logging every event with a full hex dump is expensive.  The following properties reduce the cost when the traffic
+ * of a busy channel has to be logged:
+ * <ul>
+ * <li>{@link #setSampleInterval(int)} logs only every Nth event,</li>
+ * <li>{@link #setMaxEventsPerSecond(int)} logs at most the specified number of events per second,</li>
+ * <li>{@link #setMaxHexDumpBytes(int)} dumps only the first bytes of a message, and</li>
+ * <li>{@link #setExecutor(Executor)} formats the messages which contain a buffer in the specified executor rather
+ *     than in the event loop.  The buffer is retained until it is formatted.  The executor should run the tasks in
+ *     order, like a single-threaded executor does, so that the events are logged in order.</li>
+ * </ul>
  */
 @Sharable
 @SuppressWarnings("StringBufferReplaceableByString")
 public class LoggingHandler extends ChannelHandlerAdapter {
 
     private static final LogLevel DEFAULT_LEVEL = LogLevel.DEBUG;
-
-    private static final String NEWLINE = String.format("%n");
-
-    private static final String[] BYTE2HEX = new String[256];
-    private static final String[] HEXPADDING = new String[16];
-    private static final String[] BYTEPADDING = new String[16];
-    private static final char[] BYTE2CHAR = new char[256];
-    private static final String[] HEXDUMP_ROWPREFIXES = new String[65536 >>> 4];
-
-    static {
-        int i;
-
-        // Generate the lookup table for byte-to-hex-dump conversion
-        for (i = 0; i < 10; i ++) {
-            StringBuilder buf = new StringBuilder(3);
-            buf.append(" 0");
-            buf.append(i);
-            BYTE2HEX[i] = buf.toString();
-        }
-        for (; i < 16; i ++) {
-            StringBuilder buf = new StringBuilder(3);
-            buf.append(" 0");
-            buf.append((char) ('a' + i - 10));
-            BYTE2HEX[i] = buf.toString();
-        }
-        for (; i < BYTE2HEX.length; i ++) {
-            StringBuilder buf = new StringBuilder(3);
-            buf.append(' ');
-            buf.append(Integer.toHexString(i));
-            BYTE2HEX[i] = buf.toString();
-        }
-
-        // Generate the lookup table for hex dump paddings
-        for (i = 0; i < HEXPADDING.length; i ++) {
-            int padding = HEXPADDING.length - i;
-            StringBuilder buf = new StringBuilder(padding * 3);
-            for (int j = 0; j < padding; j ++) {
-                buf.append("   ");
-            }
-            HEXPADDING[i] = buf.toString();
-        }
-
-        // Generate the lookup table for byte dump paddings
-        for (i = 0; i < BYTEPADDING.length; i ++) {
-            int padding = BYTEPADDING.length - i;
-            StringBuilder buf = new StringBuilder(padding);
-            for (int j = 0; j < padding; j ++) {
-                buf.append(' ');
-            }
-            BYTEPADDING[i] = buf.toString();
-        }
-
-        // Generate the lookup table for byte-to-char conversion
-        for (i = 0; i < BYTE2CHAR.length; i ++) {
-            if (i <= 0x1f || i >= 0x7f) {
-                BYTE2CHAR[i] = '.';
-            } else {
-                BYTE2CHAR[i] = (char) i;
-            }
-        }
-
-        // Generate the lookup table for the start-offset header in each row (up to 64KiB).
-        for (i = 0; i < HEXDUMP_ROWPREFIXES.length; i ++) {
-            StringBuilder buf = new StringBuilder(12);
-            buf.append(NEWLINE);
-            buf.append(Long.toHexString(i << 4 & 0xFFFFFFFFL | 0x100000000L));
-            buf.setCharAt(buf.length() - 9, '|');
-            buf.append('|');
-            HEXDUMP_ROWPREFIXES[i] = buf.toString();
-        }
-    }
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
 
     protected final InternalLogger logger;
     protected final InternalLogLevel internalLevel;
     private final LogLevel level;
 
+    private volatile int sampleInterval = 1;
+    private volatile int maxEventsPerSecond;
+    private volatile int maxHexDumpBytes = Integer.MAX_VALUE;
+    private volatile Executor executor;
+
+    private final AtomicInteger sampleCounter = new AtomicInteger();
+    /**
+     * The index of the current one-second window in the upper 32 bits and the number of the events logged in it in
+     * the lower 32 bits, so that the window and its count are replaced at once.
+     */
+    private final AtomicLong window = new AtomicLong();
+
     /**
      * Creates a new instance whose logger name is the fully qualified class
      * name of the instance with hex dump enabled.
@@ -201,50 +163,121 @@ public class LoggingHandler extends ChannelHandlerAdapter {
         return level;
     }
 
+    /**
+     * Returns the interval of the logged events.  {@code 1} means that every event is logged.
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Logs only every Nth event.  The default is {@code 1}, which logs every event.
+     */
+    public void setSampleInterval(int sampleInterval) {
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("sampleInterval: " + sampleInterval + " (expected: > 0)");
+        }
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Returns the maximum number of events logged per second.  {@code 0} means no limit.
+     */
+    public int getMaxEventsPerSecond() {
+        return maxEventsPerSecond;
+    }
+
+    /**
+     * Logs at most the specified number of events per second and discards the others.  Specify {@code 0} to
+     * disable the limit, which is the default.
+     */
+    public void setMaxEventsPerSecond(int maxEventsPerSecond) {
+        if (maxEventsPerSecond < 0) {
+            throw new IllegalArgumentException(
+                    "maxEventsPerSecond: " + maxEventsPerSecond + " (expected: >= 0)");
+        }
+        this.maxEventsPerSecond = maxEventsPerSecond;
+    }
+
+    /**
+     * Returns the maximum number of bytes of a message which are hex-dumped.
+     */
+    public int getMaxHexDumpBytes() {
+        return maxHexDumpBytes;
+    }
+
+    /**
+     * Hex-dumps only the first {@code maxHexDumpBytes} bytes of a message.  Specify {@code 0} to log only the
+     * length of a message.  The whole message is dumped by default.
+     */
+    public void setMaxHexDumpBytes(int maxHexDumpBytes) {
+        if (maxHexDumpBytes < 0) {
+            throw new IllegalArgumentException("maxHexDumpBytes: " + maxHexDumpBytes + " (expected: >= 0)");
+        }
+        this.maxHexDumpBytes = maxHexDumpBytes;
+    }
+
+    /**
+     * Returns the {@link Executor} which formats the messages, or {@code null} if they are formatted in the
+     * event loop.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Formats the messages which contain a buffer in the specified {@link Executor}, and logs all the events from
+     * it so that they stay in order.  Specify {@code null} to format and log in the event loop, which is the
+     * default.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "REGISTERED"));
+        if (isLoggable()) {
+            log(format(ctx, "REGISTERED"), null);
         }
         ctx.fireChannelRegistered();
     }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "ACTIVE"));
+        if (isLoggable()) {
+            log(format(ctx, "ACTIVE"), null);
         }
         ctx.fireChannelActive();
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "INACTIVE"));
+        if (isLoggable()) {
+            log(format(ctx, "INACTIVE"), null);
         }
         ctx.fireChannelInactive();
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "EXCEPTION", cause), cause);
+        if (isLoggable()) {
+            log(format(ctx, "EXCEPTION", cause), cause);
         }
         ctx.fireExceptionCaught(cause);
     }
 
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "USER_EVENT", evt));
+        if (isLoggable()) {
+            log(format(ctx, "USER_EVENT", evt), null);
         }
         ctx.fireUserEventTriggered(evt);
     }
 
     @Override
     public void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelPromise promise) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "BIND", localAddress));
+        if (isLoggable()) {
+            log(format(ctx, "BIND", localAddress), null);
         }
         ctx.bind(localAddress, promise);
     }
@@ -252,52 +285,149 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     @Override
     public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress,
         ChannelPromise promise) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "CONNECT", remoteAddress, localAddress));
+        if (isLoggable()) {
+            log(format(ctx, "CONNECT", remoteAddress, localAddress), null);
         }
         ctx.connect(remoteAddress, localAddress, promise);
     }
 
     @Override
     public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "DISCONNECT"));
+        if (isLoggable()) {
+            log(format(ctx, "DISCONNECT"), null);
         }
         ctx.disconnect(promise);
     }
 
     @Override
     public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "CLOSE"));
+        if (isLoggable()) {
+            log(format(ctx, "CLOSE"), null);
         }
         ctx.close(promise);
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "RECEIVED", msg));
+        if (isLoggable()) {
+            logMessage(ctx, "RECEIVED", msg);
         }
         ctx.fireChannelRead(msg);
     }
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "WRITE", msg));
+        if (isLoggable()) {
+            logMessage(ctx, "WRITE", msg);
         }
         ctx.write(msg, promise);
     }
 
     @Override
     public void flush(ChannelHandlerContext ctx) throws Exception {
-        if (logger.isEnabled(internalLevel)) {
-            logger.log(internalLevel, format(ctx, "FLUSH"));
+        if (isLoggable()) {
+            log(format(ctx, "FLUSH"), null);
         }
         ctx.flush();
     }
 
+    /**
+     * Returns {@code true} if the current event should be logged, taking the sampling into account.
+     */
+    private boolean isLoggable() {
+        if (!logger.isEnabled(internalLevel)) {
+            return false;
+        }
+
+        int sampleInterval = this.sampleInterval;
+        if (sampleInterval > 1 && (sampleCounter.getAndIncrement() & Integer.MAX_VALUE) % sampleInterval != 0) {
+            return false;
+        }
+
+        int maxEventsPerSecond = this.maxEventsPerSecond;
+        if (maxEventsPerSecond > 0) {
+            int index = (int) (System.nanoTime() / WINDOW_NANOS);
+            for (;;) {
+                long window = this.window.get();
+                long newWindow;
+                if ((int) (window >>> 32) != index) {
+                    newWindow = (long) index << 32 | 1;
+                } else if ((int) window >= maxEventsPerSecond) {
+                    return false;
+                } else {
+                    newWindow = window + 1;
+                }
+                if (this.window.compareAndSet(window, newWindow)) {
+                    return true;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void log(final String msg, final Throwable cause) {
+        Executor executor = this.executor;
+        if (executor == null) {
+            logNow(msg, cause);
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    logNow(msg, cause);
+                }
+            });
+        } catch (RejectedExecutionException ignore) {
+            // The executor is shutting down - the event is not logged.
+        }
+    }
+
+    private void logNow(String msg, Throwable cause) {
+        if (cause == null) {
+            logger.log(internalLevel, msg);
+        } else {
+            logger.log(internalLevel, msg, cause);
+        }
+    }
+
+    private void logMessage(final ChannelHandlerContext ctx, final String eventName, Object msg) {
+        Executor executor = this.executor;
+        final Object retained;
+        if (executor == null) {
+            retained = null;
+        } else if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            retained = buf.slice().retain();
+        } else if (msg instanceof ByteBufHolder) {
+            retained = ((ByteBufHolder) msg).duplicate().retain();
+        } else {
+            retained = null;
+        }
+
+        if (retained == null) {
+            // Other messages are formatted right away because they might be modified once passed on.
+            log(format(ctx, eventName, msg), null);
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        logger.log(internalLevel, format(ctx, eventName, retained));
+                    } finally {
+                        ReferenceCountUtil.release(retained);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ignore) {
+            ReferenceCountUtil.release(retained);
+        }
+    }
+
     /**
      * Formats an event and returns the formatted message.
      *
@@ -353,7 +483,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     /**
      * Generates the default log message of the specified event whose argument is a {@link ByteBuf}.
      */
-    private static String formatByteBuf(ChannelHandlerContext ctx, String eventName, ByteBuf msg) {
+    private String formatByteBuf(ChannelHandlerContext ctx, String eventName, ByteBuf msg) {
         String chStr = ctx.channel().toString();
         int length = msg.readableBytes();
         if (length == 0) {
@@ -361,11 +491,12 @@ public class LoggingHandler extends ChannelHandlerAdapter {
             buf.append(chStr).append(' ').append(eventName).append(": 0B");
             return buf.toString();
         } else {
-            int rows = length / 16 + (length % 15 == 0? 0 : 1) + 4;
-            StringBuilder buf = new StringBuilder(chStr.length() + 1 + eventName.length() + 2 + 10 + 1 + 2 + rows * 80);
+            int dumpLength = Math.min(length, maxHexDumpBytes);
+            StringBuilder buf = new StringBuilder(
+                    chStr.length() + 1 + eventName.length() + 2 + 10 + 1 + 2 + hexDumpLength(dumpLength));
 
             buf.append(chStr).append(' ').append(eventName).append(": ").append(length).append('B');
-            appendHexDump(buf, msg);
+            appendHexDump(buf, msg, length, dumpLength);
 
             return buf.toString();
         }
@@ -374,7 +505,7 @@ public class LoggingHandler extends ChannelHandlerAdapter {
     /**
      * Generates the default log message of the specified event whose argument is a {@link ByteBufHolder}.
      */
-    private static String formatByteBufHolder(ChannelHandlerContext ctx, String eventName, ByteBufHolder msg) {
+    private String formatByteBufHolder(ChannelHandlerContext ctx, String eventName, ByteBufHolder msg) {
         String chStr = ctx.channel().toString();
         String msgStr = msg.toString();
         ByteBuf content = msg.content();
@@ -384,91 +515,37 @@ public class LoggingHandler extends ChannelHandlerAdapter {
             buf.append(chStr).append(' ').append(eventName).append(", ").append(msgStr).append(", 0B");
             return buf.toString();
         } else {
-            int rows = length / 16 + (length % 15 == 0? 0 : 1) + 4;
+            int dumpLength = Math.min(length, maxHexDumpBytes);
             StringBuilder buf = new StringBuilder(
-                    chStr.length() + 1 + eventName.length() + 2 + msgStr.length() + 2 + 10 + 1 + 2 + rows * 80);
+                    chStr.length() + 1 + eventName.length() + 2 + msgStr.length() + 2 + 10 + 1 + 2 +
+                    hexDumpLength(dumpLength));
 
             buf.append(chStr).append(' ').append(eventName).append(": ");
             buf.append(msgStr).append(", ").append(length).append('B');
-            appendHexDump(buf, content);
+            appendHexDump(buf, content, length, dumpLength);
 
             return buf.toString();
         }
     }
 
-    /**
-     * Appends the prettifies multi-line hexadecimal dump of the specified {@link ByteBuf} to the specified
-     * {@link StringBuilder}.
-     */
-    protected static void appendHexDump(StringBuilder dump, ByteBuf buf) {
-        dump.append(
-                NEWLINE + "         +-------------------------------------------------+" +
-                NEWLINE + "         |  0  1  2  3  4  5  6  7  8  9  a  b  c  d  e  f |" +
-                NEWLINE + "+--------+-------------------------------------------------+----------------+");
-
-        final int startIndex = buf.readerIndex();
-        final int endIndex = buf.writerIndex();
-        final int length = endIndex - startIndex;
-        final int fullRows = length >>> 4;
-        final int remainder = length & 0xF;
-
-        // Dump the rows which have 16 bytes.
-        for (int row = 0; row < fullRows; row ++) {
-            int rowStartIndex = row << 4;
-
-            // Per-row prefix.
-            appendHexDumpRowPrefix(dump, row, rowStartIndex);
-
-            // Hex dump
-            int rowEndIndex = rowStartIndex + 16;
-            for (int j = rowStartIndex; j < rowEndIndex; j ++) {
-                dump.append(BYTE2HEX[buf.getUnsignedByte(j)]);
-            }
-            dump.append(" |");
-
-            // ASCII dump
-            for (int j = rowStartIndex; j < rowEndIndex; j ++) {
-                dump.append(BYTE2CHAR[buf.getUnsignedByte(j)]);
-            }
-            dump.append('|');
-        }
-
-        // Dump the last row which has less than 16 bytes.
-        if (remainder != 0) {
-            int rowStartIndex = fullRows << 4;
-            appendHexDumpRowPrefix(dump, fullRows, rowStartIndex);
-
-            // Hex dump
-            int rowEndIndex = rowStartIndex + remainder;
-            for (int j = rowStartIndex; j < rowEndIndex; j ++) {
-                dump.append(BYTE2HEX[buf.getUnsignedByte(j)]);
-            }
-            dump.append(HEXPADDING[remainder]);
-            dump.append(" |");
+    private static int hexDumpLength(int dumpLength) {
+        // Leave some room for the note about the truncated bytes.
+        return dumpLength == 0 ? 0 : ByteBufUtil.prettyHexDumpLength(dumpLength) + 32;
+    }
 
-            // Ascii dump
-            for (int j = rowStartIndex; j < rowEndIndex; j ++) {
-                dump.append(BYTE2CHAR[buf.getUnsignedByte(j)]);
-            }
-            dump.append(BYTEPADDING[remainder]);
-            dump.append('|');
+    private static void appendHexDump(StringBuilder dump, ByteBuf buf, int length, int dumpLength) {
+        ByteBufUtil.appendPrettyHexDump(dump, buf, buf.readerIndex(), dumpLength);
+        if (dumpLength < length) {
+            dump.append(StringUtil.NEWLINE).append("... ").append(length - dumpLength).append("B more");
         }
-
-        dump.append(NEWLINE + "+--------+-------------------------------------------------+----------------+");
     }
 
     /**
-     * Appends the prefix of each hex dump row.  Uses the look-up table for the buffer <= 64 KiB.
+     * Appends the prettifies multi-line hexadecimal dump of the specified {@link ByteBuf} to the specified
+     * {@link StringBuilder}.
      */
-    private static void appendHexDumpRowPrefix(StringBuilder dump, int row, int rowStartIndex) {
-        if (row < HEXDUMP_ROWPREFIXES.length) {
-            dump.append(HEXDUMP_ROWPREFIXES[row]);
-        } else {
-            dump.append(NEWLINE);
-            dump.append(Long.toHexString(rowStartIndex & 0xFFFFFFFFL | 0x100000000L));
-            dump.setCharAt(dump.length() - 9, '|');
-            dump.append('|');
-        }
+    protected static void appendHexDump(StringBuilder dump, ByteBuf buf) {
+        ByteBufUtil.appendPrettyHexDump(dump, buf);
     }
 
     /**
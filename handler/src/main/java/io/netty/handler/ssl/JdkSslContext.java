@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.buffer.ByteBufAllocator;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * An {@link SslContext} which creates the {@link SSLEngine}s of the JDK from an {@link SSLContext}.
+ * <p>
+ * The sessions are cached by the client or the server session context of the {@link SSLContext}, depending on the
+ * side of this context.  The client session cache of the JDK is keyed by the host and the port of the server, so
+ * the engines created with {@link #newEngine(ByteBufAllocator, String, int)} resume the sessions established with
+ * the same server.  The engines of the JDK neither support session tickets on the server side nor tell whether a
+ * handshake resumed a session, thus this context does not implement {@link SslSessionResumption}.
+ */
+public final class JdkSslContext extends SslContext {
+
+    private final SSLContext context;
+    private final boolean server;
+
+    /**
+     * Creates a new instance which keeps the session cache settings of the specified {@link SSLContext}.
+     */
+    public JdkSslContext(SSLContext context, boolean server) {
+        this(context, server, -1, -1);
+    }
+
+    /**
+     * Creates a new instance.  The session cache settings are applied to the session context of the specified
+     * {@link SSLContext}, and thus affect all the users of the {@link SSLContext}.
+     *
+     * @param sessionCacheSize the maximum number of the cached sessions, {@code 0} for no limit, or {@code -1} to
+     *                         keep the current setting
+     * @param sessionTimeout   the number of seconds a cached session stays valid, {@code 0} for no limit, or
+     *                         {@code -1} to keep the current setting
+     */
+    public JdkSslContext(SSLContext context, boolean server, int sessionCacheSize, int sessionTimeout) {
+        if (context == null) {
+            throw new NullPointerException("context");
+        }
+        if (sessionCacheSize < -1) {
+            throw new IllegalArgumentException("sessionCacheSize: " + sessionCacheSize + " (expected: >= -1)");
+        }
+        if (sessionTimeout < -1) {
+            throw new IllegalArgumentException("sessionTimeout: " + sessionTimeout + " (expected: >= -1)");
+        }
+        this.context = context;
+        this.server = server;
+
+        SSLSessionContext sessionContext = sessionContext();
+        if (sessionCacheSize >= 0) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+        }
+        if (sessionTimeout >= 0) {
+            sessionContext.setSessionTimeout(sessionTimeout);
+        }
+    }
+
+    /**
+     * Returns the {@link SSLContext} which creates the engines.
+     */
+    public SSLContext context() {
+        return context;
+    }
+
+    /**
+     * Returns the session context of the {@link SSLContext} which caches the sessions of this context.
+     */
+    public SSLSessionContext sessionContext() {
+        return server ? context.getServerSessionContext() : context.getClientSessionContext();
+    }
+
+    @Override
+    public boolean isServer() {
+        return server;
+    }
+
+    @Override
+    public long sessionCacheSize() {
+        return sessionContext().getSessionCacheSize();
+    }
+
+    @Override
+    public long sessionTimeout() {
+        return sessionContext().getSessionTimeout();
+    }
+
+    @Override
+    public SSLEngine newEngine(ByteBufAllocator alloc) {
+        return configure(context.createSSLEngine());
+    }
+
+    @Override
+    public SSLEngine newEngine(ByteBufAllocator alloc, String peerHost, int peerPort) {
+        return configure(context.createSSLEngine(peerHost, peerPort));
+    }
+
+    private SSLEngine configure(SSLEngine engine) {
+        engine.setUseClientMode(!server);
+        return engine;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.ImmediateExecutor;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import java.util.concurrent.Executor;
+
+/**
+ * A factory of {@link SSLEngine}s and {@link SslHandler}s which share the same certificates, settings and session
+ * cache.  A context is usually shared by all the channels of an application.
+ *
+ * <h3>Resuming sessions</h3>
+ * A client resumes a session only if it connects to the same server again, so the client session cache is keyed by
+ * the host and the port of the server.  Create the handlers of a client with
+ * {@link #newHandler(ByteBufAllocator, String, int)} to let it resume the sessions established by the previous
+ * connections, which is much cheaper than a full handshake:
+ * <pre>
+ * // Shared by all channels.
+ * {@link SslContext} context = new {@link JdkSslContext}({@link javax.net.ssl.SSLContext}.getDefault(), false);
+ * ...
+ * pipeline.addLast("ssl", context.newHandler(ch.alloc(), host, port));
+ * </pre>
+ * A server resumes the sessions of its cache, whose size and timeout are given when the context is created.  A
+ * context which implements {@link SslSessionResumption} also resumes the sessions carried by the session tickets it
+ * has issued, lets the keys which protect the tickets be replaced at any time, for example by a
+ * {@link SslSessionTicketKeyRotator}, and counts the handshakes which resumed a session.
+ */
+public abstract class SslContext {
+
+    /**
+     * Returns {@code true} if and only if this context creates server-side engines.
+     */
+    public abstract boolean isServer();
+
+    /**
+     * Returns {@code true} if and only if this context creates client-side engines.
+     */
+    public final boolean isClient() {
+        return !isServer();
+    }
+
+    /**
+     * Returns the maximum number of the sessions cached by this context, {@code 0} if unlimited.
+     */
+    public abstract long sessionCacheSize();
+
+    /**
+     * Returns the number of seconds a cached session stays valid, {@code 0} if unlimited.
+     */
+    public abstract long sessionTimeout();
+
+    /**
+     * Creates a new engine which is not bound to a peer, and thus never resumes a session on the client side.
+     */
+    public abstract SSLEngine newEngine(ByteBufAllocator alloc) throws SSLException;
+
+    /**
+     * Creates a new engine for the specified peer.  A client-side engine may resume a session established with the
+     * same host and port.
+     */
+    public abstract SSLEngine newEngine(ByteBufAllocator alloc, String peerHost, int peerPort) throws SSLException;
+
+    /**
+     * Creates a new {@link SslHandler} with an engine which is not bound to a peer.
+     */
+    public final SslHandler newHandler(ByteBufAllocator alloc) throws SSLException {
+        return new SslHandler(newEngine(alloc), ImmediateExecutor.INSTANCE);
+    }
+
+    /**
+     * Creates a new {@link SslHandler} with an engine for the specified peer.
+     */
+    public final SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort) throws SSLException {
+        return new SslHandler(newEngine(alloc, peerHost, peerPort), ImmediateExecutor.INSTANCE);
+    }
+
+    /**
+     * Creates a new {@link SslHandler} with an engine for the specified peer, which runs the delegated tasks of
+     * the engine with the specified {@link Executor}.
+     */
+    public final SslHandler newHandler(
+            ByteBufAllocator alloc, String peerHost, int peerPort, Executor delegatedTaskExecutor)
+            throws SSLException {
+        return new SslHandler(newEngine(alloc, peerHost, peerPort), delegatedTaskExecutor);
+    }
+}
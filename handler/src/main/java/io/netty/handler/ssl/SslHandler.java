@@ -26,6 +26,7 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.EventExecutor;
@@ -51,9 +52,12 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -83,6 +87,20 @@ import java.util.regex.Pattern;
  * {@link SSLEngine#getUseClientMode()} returns {@code true}.
  * So no need to bother with it by your self.
  *
+ * <h3>Offloading the handshake</h3>
+ * <p>
+ * By default, the delegated tasks of the {@link SSLEngine}, such as the key exchange, are run in the I/O thread.
+ * If an {@link Executor} other than {@link ImmediateExecutor} is specified, they are run by that executor while the
+ * handshake of the channel is suspended, and the handshake is resumed in the I/O thread once they are done.
+ * An {@link SslHandshakeExecutor} also bounds the number of the concurrent tasks of an I/O thread and keeps the
+ * statistics of the handshakes.
+ *
+ * <h3>Coalescing small writes</h3>
+ * <p>
+ * The consecutive {@link ByteBuf}s written between two flushes are copied into one buffer of up to 16 KiB (the
+ * maximum plaintext length of a record) once the handshake is done, so that they are encrypted into one record
+ * instead of one record per write.  The promise of each write is notified when the record is written.
+ *
  * <h3>Closing the session</h3>
  * <p>
  * To close the SSL session, the {@link #close()} method should be
@@ -168,6 +186,11 @@ public class SslHandler extends ByteToMessageDecoder {
     private static final SSLException HANDSHAKE_TIMED_OUT = new SSLException("handshake timed out");
     private static final ClosedChannelException CHANNEL_CLOSED = new ClosedChannelException();
 
+    /**
+     * The maximum length of the plaintext of a record.
+     */
+    private static final int MAX_PLAINTEXT_LENGTH = 16 * 1024;
+
     static {
         SSLENGINE_CLOSED.setStackTrace(EmptyArrays.EMPTY_STACK_TRACE);
         HANDSHAKE_TIMED_OUT.setStackTrace(EmptyArrays.EMPTY_STACK_TRACE);
@@ -195,6 +218,17 @@ public class SslHandler extends ByteToMessageDecoder {
     private int packetLength;
     private ByteBuf decodeOut;
 
+    /**
+     * {@code true} while the delegated tasks of {@link #engine} are run by {@link #delegatedTaskExecutor}.  Reset by
+     * the executor if the event loop rejects the task which resumes the handshake.
+     */
+    private volatile boolean delegatingTasks;
+    /**
+     * The records which were received while the delegated tasks are run.
+     */
+    private ByteBuf suspendedPacket;
+    private long handshakeStartNanos;
+
     private volatile long handshakeTimeoutMillis = 10000;
     private volatile long closeNotifyTimeoutMillis = 3000;
 
@@ -225,7 +259,8 @@ public class SslHandler extends ByteToMessageDecoder {
      *        the {@link SSLEngine} this handler will use
      * @param delegatedTaskExecutor
      *        the {@link Executor} which will execute the delegated task
-     *        that {@link SSLEngine#getDelegatedTask()} will return
+     *        that {@link SSLEngine#getDelegatedTask()} will return.
+     *        The handshake is suspended until the task is done unless it is {@link ImmediateExecutor}.
      */
     public SslHandler(SSLEngine engine, Executor delegatedTaskExecutor) {
         this(engine, false, delegatedTaskExecutor);
@@ -359,6 +394,10 @@ public class SslHandler extends ByteToMessageDecoder {
             decodeOut.release();
             decodeOut = null;
         }
+        if (suspendedPacket != null) {
+            suspendedPacket.release();
+            suspendedPacket = null;
+        }
         for (;;) {
             PendingWrite write = pendingUnencryptedWrites.poll();
             if (write == null) {
@@ -417,6 +456,10 @@ public class SslHandler extends ByteToMessageDecoder {
             ctx.flush();
             return;
         }
+        if (delegatingTasks) {
+            // Written once the delegated tasks are done.
+            return;
+        }
         if (pendingUnencryptedWrites.isEmpty()) {
             pendingUnencryptedWrites.add(PendingWrite.newInstance(Unpooled.EMPTY_BUFFER, null));
         }
@@ -425,10 +468,16 @@ public class SslHandler extends ByteToMessageDecoder {
     }
 
     private void wrap(ChannelHandlerContext ctx, boolean inUnwrap) throws SSLException {
+        if (delegatingTasks) {
+            return;
+        }
         ByteBuf out = null;
         ChannelPromise promise = null;
         try {
             for (;;) {
+                if (handshakePromise.isSuccess()) {
+                    coalescePendingWrites(ctx);
+                }
                 PendingWrite pending = pendingUnencryptedWrites.peek();
                 if (pending == null) {
                     break;
@@ -468,7 +517,9 @@ public class SslHandler extends ByteToMessageDecoder {
                 } else {
                     switch (result.getHandshakeStatus()) {
                         case NEED_TASK:
-                            runDelegatedTasks();
+                            if (!runDelegatedTasks()) {
+                                return;
+                            }
                             break;
                         case FINISHED:
                             setHandshakeSuccess();
@@ -494,6 +545,51 @@ public class SslHandler extends ByteToMessageDecoder {
         }
     }
 
+    /**
+     * Replaces the consecutive small {@link ByteBuf}s at the head of {@link #pendingUnencryptedWrites} by one buffer
+     * which fits into a record, so that the {@link SSLEngine} encrypts them at once.
+     */
+    private void coalescePendingWrites(ChannelHandlerContext ctx) {
+        int count = 0;
+        int length = 0;
+        for (Iterator<PendingWrite> i = pendingUnencryptedWrites.iterator(); i.hasNext();) {
+            Object msg = i.next().msg();
+            if (!(msg instanceof ByteBuf)) {
+                break;
+            }
+            int readableBytes = ((ByteBuf) msg).readableBytes();
+            if (length + readableBytes > MAX_PLAINTEXT_LENGTH) {
+                break;
+            }
+            length += readableBytes;
+            count ++;
+        }
+        if (count < 2) {
+            return;
+        }
+
+        ByteBuf coalesced = ctx.alloc().buffer(length);
+        List<ChannelPromise> promises = new ArrayList<ChannelPromise>(count);
+        for (int i = 0; i < count; i ++) {
+            PendingWrite pending = pendingUnencryptedWrites.poll();
+            ByteBuf buf = (ByteBuf) pending.msg();
+            coalesced.writeBytes(buf);
+            buf.release();
+            ChannelPromise promise = (ChannelPromise) pending.recycleAndGet();
+            if (promise != null) {
+                promises.add(promise);
+            }
+        }
+
+        ChannelPromise promise = null;
+        if (!promises.isEmpty()) {
+            promise = ctx.newPromise();
+            promise.addListener(
+                    new ChannelPromiseNotifier(true, promises.toArray(new ChannelPromise[promises.size()])));
+        }
+        pendingUnencryptedWrites.addFirst(PendingWrite.newInstance(coalesced, promise));
+    }
+
     private void finishWrap(ChannelHandlerContext ctx, ByteBuf out, ChannelPromise promise, boolean inUnwrap) {
         if (out == null) {
             out = Unpooled.EMPTY_BUFFER;
@@ -514,6 +610,9 @@ public class SslHandler extends ByteToMessageDecoder {
     }
 
     private void wrapNonAppData(ChannelHandlerContext ctx, boolean inUnwrap) throws SSLException {
+        if (delegatingTasks) {
+            return;
+        }
         ByteBuf out = null;
         try {
             for (;;) {
@@ -535,7 +634,9 @@ public class SslHandler extends ByteToMessageDecoder {
                         setHandshakeSuccess();
                         break;
                     case NEED_TASK:
-                        runDelegatedTasks();
+                        if (!runDelegatedTasks()) {
+                            return;
+                        }
                         break;
                     case NEED_UNWRAP:
                         if (!inUnwrap) {
@@ -775,6 +876,10 @@ public class SslHandler extends ByteToMessageDecoder {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws SSLException {
+        if (delegatingTasks) {
+            // Decoded once the delegated tasks are done.
+            return;
+        }
         final int startOffset = in.readerIndex();
         final int endOffset = in.writerIndex();
         int offset = startOffset;
@@ -864,6 +969,10 @@ public class SslHandler extends ByteToMessageDecoder {
     }
 
     private void unwrap(ChannelHandlerContext ctx, ByteBuffer packet, List<Object> out) throws SSLException {
+        if (delegatingTasks) {
+            suspendPacket(ctx, packet);
+            return;
+        }
         boolean wrapLater = false;
         int totalProduced = 0;
         try {
@@ -892,7 +1001,10 @@ public class SslHandler extends ByteToMessageDecoder {
                         wrapNonAppData(ctx, true);
                         break;
                     case NEED_TASK:
-                        runDelegatedTasks();
+                        if (!runDelegatedTasks()) {
+                            suspendPacket(ctx, packet);
+                            return;
+                        }
                         break;
                     case FINISHED:
                         setHandshakeSuccess();
@@ -947,15 +1059,137 @@ public class SslHandler extends ByteToMessageDecoder {
         }
     }
 
-    private void runDelegatedTasks() {
+    /**
+     * Runs the delegated tasks of {@link #engine}.  Unless {@link #delegatedTaskExecutor} is
+     * {@link ImmediateExecutor}, the tasks are run asynchronously and {@code false} is returned, in which case the
+     * caller must stop using {@link #engine} until {@link #resumeAfterTasks()} is called.
+     */
+    private boolean runDelegatedTasks() {
+        if (delegatedTaskExecutor == ImmediateExecutor.INSTANCE) {
+            for (;;) {
+                Runnable task = engine.getDelegatedTask();
+                if (task == null) {
+                    return true;
+                }
+                task.run();
+            }
+        }
+
+        final List<Runnable> tasks = new ArrayList<Runnable>(2);
         for (;;) {
             Runnable task = engine.getDelegatedTask();
             if (task == null) {
                 break;
             }
+            tasks.add(task);
+        }
+        if (tasks.isEmpty()) {
+            return true;
+        }
+
+        delegatingTasks = true;
+        try {
+            delegatedTaskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (Runnable task: tasks) {
+                            task.run();
+                        }
+                    } finally {
+                        try {
+                            ctx.executor().execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    resumeAfterTasks();
+                                }
+                            });
+                        } catch (RejectedExecutionException e) {
+                            // The event loop is shutting down, thus the handshake can never be resumed.
+                            delegatingTasks = false;
+                            handshakePromise.tryFailure(e);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            delegatingTasks = false;
+            for (Runnable task: tasks) {
+                task.run();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Continues the handshake which was suspended by {@link #runDelegatedTasks()}.
+     */
+    private void resumeAfterTasks() {
+        delegatingTasks = false;
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx.isRemoved() || !ctx.channel().isActive()) {
+            // The handshake has been failed by channelInactive() already, but the suspended packet is still held.
+            if (suspendedPacket != null) {
+                suspendedPacket.release();
+                suspendedPacket = null;
+            }
+            return;
+        }
+        RecyclableArrayList out = RecyclableArrayList.newInstance();
+        try {
+            ByteBuf packet = suspendedPacket;
+            if (packet != null) {
+                suspendedPacket = null;
+                try {
+                    unwrap(ctx, packet.nioBuffer(), out);
+                } finally {
+                    packet.release();
+                }
+            }
 
-            delegatedTaskExecutor.execute(task);
+            // Send what the tasks produced, such as the key exchange message.
+            wrapNonAppData(ctx, false);
+            if (handshakePromise.isSuccess() && !pendingUnencryptedWrites.isEmpty()) {
+                wrap(ctx, false);
+            }
+            ctx.flush();
+
+            // Decode the records which were received in the meantime.
+            if (!delegatingTasks && internalBuffer().isReadable()) {
+                callDecode(ctx, internalBuffer(), out);
+                if (needsFlush) {
+                    needsFlush = false;
+                    ctx.flush();
+                }
+            }
+        } catch (Throwable cause) {
+            setHandshakeFailure(cause);
+            ctx.fireExceptionCaught(cause);
+        } finally {
+            // Fire channelReadComplete() only if a message was decoded, because this is not a real read.
+            final int size = out.size();
+            for (int i = 0; i < size; i ++) {
+                ctx.fireChannelRead(out.get(i));
+            }
+            if (size > 0) {
+                ctx.fireChannelReadComplete();
+            }
+            out.recycle();
+        }
+    }
+
+    /**
+     * Keeps the records in the specified buffer which were not unwrapped yet, until the delegated tasks are done.
+     */
+    private void suspendPacket(ChannelHandlerContext ctx, ByteBuffer packet) {
+        if (!packet.hasRemaining()) {
+            return;
+        }
+        if (suspendedPacket == null) {
+            suspendedPacket = ctx.alloc().buffer(packet.remaining());
         }
+        suspendedPacket.writeBytes(packet);
     }
 
     /**
@@ -963,6 +1197,10 @@ public class SslHandler extends ByteToMessageDecoder {
      */
     private void setHandshakeSuccess() {
         if (handshakePromise.trySuccess(ctx.channel())) {
+            if (delegatedTaskExecutor instanceof SslHandshakeExecutor) {
+                ((SslHandshakeExecutor) delegatedTaskExecutor).handshakeCompleted(
+                        System.nanoTime() - handshakeStartNanos);
+            }
             ctx.fireUserEventTriggered(SslHandshakeCompletionEvent.SUCCESS);
         }
     }
@@ -1030,6 +1268,7 @@ public class SslHandler extends ByteToMessageDecoder {
         if (ctx.channel().isActive()) {
             // channelActive() event has been fired already, which means this.channelActive() will
             // not be invoked. We have to initialize here instead.
+            handshakeStartNanos = System.nanoTime();
             handshake();
         } else {
             // channelActive() event has not been fired yet.  this.channelOpen() will be invoked
@@ -1076,6 +1315,7 @@ public class SslHandler extends ByteToMessageDecoder {
      */
     @Override
     public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        handshakeStartNanos = System.nanoTime();
         if (!startTls && engine.getUseClientMode()) {
             // issue and handshake and add a listener to it which will fire an exception event if
             // an exception was thrown while doing the handshake
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.util.internal.chmv8.LongAdder;
+
+import javax.net.ssl.SSLEngine;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link Executor} which runs the delegated tasks of {@link SSLEngine}s, i.e. the expensive key exchange and
+ * certificate validation steps of a handshake, in a separate pool so that they do not block the event loops.
+ * Pass it to the constructor of {@link SslHandler}, which then suspends the handshake until the tasks are done:
+ * <pre>
+ * // Shared by all channels.
+ * {@link SslHandshakeExecutor} handshakeExecutor = new {@link SslHandshakeExecutor}(
+ *         {@link java.util.concurrent.Executors}.newFixedThreadPool(8), 4);
+ * ...
+ * pipeline.addLast("ssl", new {@link SslHandler}(engine, handshakeExecutor));
+ * </pre>
+ * At most {@code maxConcurrentTasks} tasks submitted by the same event loop run at the same time, and the others
+ * wait in a queue of that loop.  A burst of handshakes on one loop therefore cannot occupy the whole pool, and the
+ * established connections of the loop are not slowed down by the completion of too many handshakes at once.
+ * <p>
+ * This executor also keeps the statistics of the tasks and of the handshakes of the {@link SslHandler}s using it.
+ */
+public final class SslHandshakeExecutor implements Executor {
+
+    private final Executor executor;
+    private final int maxConcurrentTasks;
+    private final ThreadLocal<TaskQueue> queues = new ThreadLocal<TaskQueue>() {
+        @Override
+        protected TaskQueue initialValue() {
+            return new TaskQueue();
+        }
+    };
+
+    private final LongAdder queuedTasks = new LongAdder();
+    private final LongAdder activeTasks = new LongAdder();
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder totalQueueTimeNanos = new LongAdder();
+    private final LongAdder totalTaskTimeNanos = new LongAdder();
+    private final LongAdder completedHandshakes = new LongAdder();
+    private final LongAdder totalHandshakeTimeNanos = new LongAdder();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executor           the {@link Executor} which runs the tasks
+     * @param maxConcurrentTasks the maximum number of the tasks of an event loop which run at the same time
+     */
+    public SslHandshakeExecutor(Executor executor, int maxConcurrentTasks) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (maxConcurrentTasks <= 0) {
+            throw new IllegalArgumentException("maxConcurrentTasks: " + maxConcurrentTasks + " (expected: > 0)");
+        }
+        this.executor = executor;
+        this.maxConcurrentTasks = maxConcurrentTasks;
+    }
+
+    /**
+     * Returns the maximum number of the tasks of an event loop which run at the same time.
+     */
+    public int maxConcurrentTasks() {
+        return maxConcurrentTasks;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        TaskQueue queue = queues.get();
+        queuedTasks.increment();
+        queue.tasks.add(new Task(queue, task));
+        queue.drain();
+    }
+
+    /**
+     * Returns the number of the tasks waiting for their event loop to have less than {@link #maxConcurrentTasks()}
+     * running tasks.
+     */
+    public long queuedTasks() {
+        return queuedTasks.sum();
+    }
+
+    /**
+     * Returns the number of the running tasks.
+     */
+    public long activeTasks() {
+        return activeTasks.sum();
+    }
+
+    /**
+     * Returns the number of the completed tasks.
+     */
+    public long completedTasks() {
+        return completedTasks.sum();
+    }
+
+    /**
+     * Returns the average time the completed tasks waited in the queue.
+     */
+    public long averageQueueTime(TimeUnit unit) {
+        return average(totalQueueTimeNanos, completedTasks, unit);
+    }
+
+    /**
+     * Returns the average time the completed tasks took to run.
+     */
+    public long averageTaskTime(TimeUnit unit) {
+        return average(totalTaskTimeNanos, completedTasks, unit);
+    }
+
+    /**
+     * Returns the number of the successful handshakes of the {@link SslHandler}s using this executor.
+     */
+    public long completedHandshakes() {
+        return completedHandshakes.sum();
+    }
+
+    /**
+     * Returns the average time from the activation of a channel to the completion of its handshake.
+     */
+    public long averageHandshakeTime(TimeUnit unit) {
+        return average(totalHandshakeTimeNanos, completedHandshakes, unit);
+    }
+
+    /**
+     * Called by {@link SslHandler} when a handshake is done.
+     */
+    void handshakeCompleted(long handshakeTimeNanos) {
+        totalHandshakeTimeNanos.add(handshakeTimeNanos);
+        completedHandshakes.increment();
+    }
+
+    private static long average(LongAdder totalNanos, LongAdder count, TimeUnit unit) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        return unit.convert(totalNanos.sum() / n, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() +
+               "(maxConcurrentTasks: " + maxConcurrentTasks +
+               ", queued: " + queuedTasks() +
+               ", active: " + activeTasks() +
+               ", completed: " + completedTasks() +
+               ", handshakes: " + completedHandshakes() +
+               ", averageHandshakeTime: " + averageHandshakeTime(TimeUnit.MILLISECONDS) + "ms)";
+    }
+
+    /**
+     * The tasks submitted by an event loop.
+     */
+    private final class TaskQueue {
+        final Queue<Task> tasks = new ConcurrentLinkedQueue<Task>();
+        final AtomicInteger active = new AtomicInteger();
+
+        /**
+         * Submits the queued tasks to {@link #executor} as long as less than {@link #maxConcurrentTasks} run.  Called
+         * whenever a task is queued or completes, so that no task is left behind.
+         */
+        void drain() {
+            for (;;) {
+                int active = this.active.get();
+                if (active >= maxConcurrentTasks || tasks.isEmpty()) {
+                    return;
+                }
+                if (!this.active.compareAndSet(active, active + 1)) {
+                    continue;
+                }
+                Task task = tasks.poll();
+                if (task == null) {
+                    this.active.decrementAndGet();
+                    continue;
+                }
+                queuedTasks.decrement();
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // Run it in the caller thread rather than stalling the handshake forever.
+                    task.run();
+                }
+            }
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final TaskQueue queue;
+        private final Runnable task;
+        private final long queuedNanos = System.nanoTime();
+
+        Task(TaskQueue queue, Runnable task) {
+            this.queue = queue;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            totalQueueTimeNanos.add(startNanos - queuedNanos);
+            activeTasks.increment();
+            try {
+                task.run();
+            } finally {
+                totalTaskTimeNanos.add(System.nanoTime() - startNanos);
+                activeTasks.decrement();
+                completedTasks.increment();
+                queue.active.decrementAndGet();
+                queue.drain();
+            }
+        }
+    }
+}
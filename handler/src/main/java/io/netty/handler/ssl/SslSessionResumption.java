@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+/**
+ * Implemented by an {@link SslContext} whose engines tell whether a handshake resumed a session and support
+ * session tickets.  The {@link javax.net.ssl.SSLEngine} API has neither, so {@link JdkSslContext} does not
+ * implement it.
+ */
+public interface SslSessionResumption {
+
+    /**
+     * Returns the number of the handshakes which resumed a session.
+     */
+    long sessionHits();
+
+    /**
+     * Returns the number of the handshakes which established a new session.
+     */
+    long sessionMisses();
+
+    /**
+     * Replaces the keys which protect the session tickets issued by this server-side context.  The first key
+     * encrypts the new tickets, and all the keys decrypt the tickets presented by the clients, so that the tickets
+     * encrypted by the previous keys remain valid for some time after a rotation.  A ticket decrypted by another key
+     * than the first one is renewed.
+     *
+     * @throws IllegalStateException if this context is a client-side context
+     */
+    void setSessionTicketKeys(SslSessionTicketKey... keys);
+}
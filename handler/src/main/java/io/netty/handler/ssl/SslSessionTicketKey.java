@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import java.security.SecureRandom;
+
+/**
+ * A key which protects the session tickets issued by a server, as defined in
+ * <a href="http://tools.ietf.org/html/rfc5077">RFC 5077</a>.  The name of the key is sent in the clear with the
+ * ticket so that the server can find the key which decrypts it.  All the servers sharing the same keys can resume
+ * the sessions of each other.
+ */
+public final class SslSessionTicketKey {
+
+    /** The length of the name of a key. */
+    public static final int NAME_SIZE = 16;
+    /** The length of the HMAC secret of a key. */
+    public static final int HMAC_KEY_SIZE = 32;
+    /** The length of the AES key of a key. */
+    public static final int AES_KEY_SIZE = 32;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Creates a new key with a random name and random secrets.
+     */
+    public static SslSessionTicketKey newRandomKey() {
+        byte[] name = new byte[NAME_SIZE];
+        byte[] hmacKey = new byte[HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new SslSessionTicketKey(name, hmacKey, aesKey);
+    }
+
+    private final byte[] name;
+    private final byte[] hmacKey;
+    private final byte[] aesKey;
+
+    /**
+     * Creates a new key.
+     *
+     * @param name    the {@value #NAME_SIZE}-byte name of the key
+     * @param hmacKey the {@value #HMAC_KEY_SIZE}-byte secret which authenticates the tickets
+     * @param aesKey  the {@value #AES_KEY_SIZE}-byte key which encrypts the tickets
+     */
+    public SslSessionTicketKey(byte[] name, byte[] hmacKey, byte[] aesKey) {
+        this.name = copy(name, NAME_SIZE, "name");
+        this.hmacKey = copy(hmacKey, HMAC_KEY_SIZE, "hmacKey");
+        this.aesKey = copy(aesKey, AES_KEY_SIZE, "aesKey");
+    }
+
+    private static byte[] copy(byte[] array, int expectedLength, String name) {
+        if (array == null) {
+            throw new NullPointerException(name);
+        }
+        if (array.length != expectedLength) {
+            throw new IllegalArgumentException(
+                    name + ".length: " + array.length + " (expected: " + expectedLength + ')');
+        }
+        return array.clone();
+    }
+
+    /**
+     * Returns the name of this key.
+     */
+    public byte[] name() {
+        return name.clone();
+    }
+
+    /**
+     * Returns the secret which authenticates the tickets.
+     */
+    public byte[] hmacKey() {
+        return hmacKey.clone();
+    }
+
+    /**
+     * Returns the key which encrypts the tickets.
+     */
+    public byte[] aesKey() {
+        return aesKey.clone();
+    }
+}
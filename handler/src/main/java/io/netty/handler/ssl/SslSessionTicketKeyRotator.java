@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Rotates the session ticket keys of {@link SslSessionResumption} contexts.  Every run generates a new random key
+ * which encrypts the tickets issued from then on, and keeps the {@code maxKeys - 1} previous keys so that the
+ * tickets they have encrypted can still be decrypted.  Schedule it at a fixed rate to limit the lifetime of a key:
+ * <pre>
+ * {@link SslSessionTicketKeyRotator} rotator = new {@link SslSessionTicketKeyRotator}(3, context);
+ * eventLoopGroup.scheduleAtFixedRate(rotator, 0, 1, {@link java.util.concurrent.TimeUnit}.HOURS);
+ * </pre>
+ * A ticket is then accepted for {@code maxKeys} periods at most.  To share the keys between several servers,
+ * generate them in one place and call {@link SslSessionResumption#setSessionTicketKeys(SslSessionTicketKey...)}
+ * instead.
+ */
+public final class SslSessionTicketKeyRotator implements Runnable {
+
+    private final SslSessionResumption[] contexts;
+    private final int maxKeys;
+
+    // Guarded by 'this'
+    private final Deque<SslSessionTicketKey> keys = new ArrayDeque<SslSessionTicketKey>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxKeys  the number of the keys which decrypt the tickets, including the current key
+     * @param contexts the server-side contexts which use the keys
+     */
+    public SslSessionTicketKeyRotator(int maxKeys, SslSessionResumption... contexts) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys: " + maxKeys + " (expected: > 0)");
+        }
+        if (contexts == null) {
+            throw new NullPointerException("contexts");
+        }
+        for (SslSessionResumption c: contexts) {
+            if (c == null) {
+                throw new NullPointerException("contexts");
+            }
+        }
+        this.maxKeys = maxKeys;
+        this.contexts = contexts.clone();
+    }
+
+    @Override
+    public synchronized void run() {
+        keys.addFirst(SslSessionTicketKey.newRandomKey());
+        while (keys.size() > maxKeys) {
+            keys.removeLast();
+        }
+        SslSessionTicketKey[] keys = this.keys.toArray(new SslSessionTicketKey[this.keys.size()]);
+        for (SslSessionResumption c: contexts) {
+            c.setSessionTicketKeys(keys);
+        }
+    }
+}
@@ -29,6 +29,10 @@ import java.io.RandomAccessFile;
  * If your operating system supports
  * <a href="http://en.wikipedia.org/wiki/Zero-copy">zero-copy file transfer</a>
  * such as {@code sendfile()}, you might want to use {@link FileRegion} instead.
+ * <p>
+ * Unless a chunk size is specified, the size of a chunk adapts to the channel: it grows up to what can be written
+ * before the channel becomes unwritable and what the socket send buffer accepts at once.  A chunk is read into
+ * a pooled direct buffer if the allocator of the channel pools direct buffers.
  */
 public class ChunkedFile implements ChunkedInput<ByteBuf> {
 
@@ -36,13 +40,15 @@ public class ChunkedFile implements ChunkedInput<ByteBuf> {
     private final long startOffset;
     private final long endOffset;
     private final int chunkSize;
+    private final boolean adaptive;
+    private int sendBufferSize = -1;
     private long offset;
 
     /**
      * Creates a new instance that fetches data from the specified file.
      */
     public ChunkedFile(File file) throws IOException {
-        this(file, ChunkedStream.DEFAULT_CHUNK_SIZE);
+        this(new RandomAccessFile(file, "r"));
     }
 
     /**
@@ -59,7 +65,7 @@ public class ChunkedFile implements ChunkedInput<ByteBuf> {
      * Creates a new instance that fetches data from the specified file.
      */
     public ChunkedFile(RandomAccessFile file) throws IOException {
-        this(file, ChunkedStream.DEFAULT_CHUNK_SIZE);
+        this(file, 0, file.length(), ChunkedStream.DEFAULT_CHUNK_SIZE, true);
     }
 
     /**
@@ -81,6 +87,11 @@ public class ChunkedFile implements ChunkedInput<ByteBuf> {
      *                  {@link #readChunk(ChannelHandlerContext)} call
      */
     public ChunkedFile(RandomAccessFile file, long offset, long length, int chunkSize) throws IOException {
+        this(file, offset, length, chunkSize, false);
+    }
+
+    private ChunkedFile(RandomAccessFile file, long offset, long length, int chunkSize,
+            boolean adaptive) throws IOException {
         if (file == null) {
             throw new NullPointerException("file");
         }
@@ -102,6 +113,7 @@ public class ChunkedFile implements ChunkedInput<ByteBuf> {
         this.offset = startOffset = offset;
         endOffset = offset + length;
         this.chunkSize = chunkSize;
+        this.adaptive = adaptive;
 
         file.seek(offset);
     }
@@ -144,14 +156,17 @@ public class ChunkedFile implements ChunkedInput<ByteBuf> {
             return null;
         }
 
-        int chunkSize = (int) Math.min(this.chunkSize, endOffset - offset);
-        // Check if the buffer is backed by an byte array. If so we can optimize it a bit an safe a copy
-
-        ByteBuf buf = ctx.alloc().heapBuffer(chunkSize);
+        int chunkSize = (int) Math.min(nextChunkSize(ctx), endOffset - offset);
+        ByteBuf buf = ChunkedInputUtil.newChunkBuffer(ctx.alloc(), chunkSize);
         boolean release = true;
         try {
-            file.readFully(buf.array(), buf.arrayOffset(), chunkSize);
-            buf.writerIndex(chunkSize);
+            if (buf.hasArray()) {
+                file.readFully(buf.array(), buf.arrayOffset(), chunkSize);
+                buf.writerIndex(chunkSize);
+            } else {
+                // Read straight into the direct buffer without copying through a temporary array.
+                ChunkedInputUtil.readFully(file.getChannel(), buf, chunkSize);
+            }
             this.offset = offset + chunkSize;
             release = false;
             return buf;
@@ -161,4 +176,14 @@ public class ChunkedFile implements ChunkedInput<ByteBuf> {
             }
         }
     }
+
+    private int nextChunkSize(ChannelHandlerContext ctx) {
+        if (!adaptive) {
+            return chunkSize;
+        }
+        if (sendBufferSize < 0) {
+            sendBufferSize = ChunkedInputUtil.sendBufferSize(ctx);
+        }
+        return ChunkedInputUtil.adaptiveChunkSize(ctx, chunkSize, sendBufferSize);
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundBuffer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Utility methods shared by the file-based {@link ChunkedInput}s.
+ */
+final class ChunkedInputUtil {
+
+    /**
+     * The largest chunk read at once, so that reading a file does not block the event loop for too long.
+     */
+    static final int MAX_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Returns the send buffer size of the socket of the specified channel or {@code 0} if it is not a socket.
+     */
+    static int sendBufferSize(ChannelHandlerContext ctx) {
+        Integer size;
+        try {
+            size = ctx.channel().config().getOption(ChannelOption.SO_SNDBUF);
+        } catch (Exception ignore) {
+            return 0;
+        }
+        return size == null || size < 0 ? 0 : size;
+    }
+
+    /**
+     * Returns the size of the next chunk to read.  It is as large as what can be written until the channel becomes
+     * unwritable, but no larger than what the socket accepts at once, and no smaller than {@code minChunkSize} so
+     * that a channel which is about to become unwritable does not get tiny chunks.
+     *
+     * @param sendBufferSize the size of the socket send buffer, or {@code 0} if unknown
+     */
+    static int adaptiveChunkSize(ChannelHandlerContext ctx, int minChunkSize, int sendBufferSize) {
+        Channel channel = ctx.channel();
+        if (!channel.isWritable()) {
+            return minChunkSize;
+        }
+
+        long size = channel.config().getWriteBufferHighWaterMark();
+        ChannelOutboundBuffer buf = channel.unsafe().outboundBuffer();
+        if (buf != null) {
+            size -= buf.totalPendingWriteBytes();
+        }
+        if (sendBufferSize > 0 && size > sendBufferSize) {
+            size = sendBufferSize;
+        }
+        if (size > MAX_CHUNK_SIZE) {
+            return MAX_CHUNK_SIZE;
+        }
+        return size < minChunkSize ? minChunkSize : (int) size;
+    }
+
+    /**
+     * Allocates a buffer for a chunk.  A direct buffer is used only when it is pooled, because a file can then be
+     * read into it without an intermediate copy, while allocating an unpooled direct buffer per chunk is expensive.
+     */
+    static ByteBuf newChunkBuffer(ByteBufAllocator alloc, int chunkSize) {
+        if (alloc.isDirectBufferPooled()) {
+            return alloc.directBuffer(chunkSize);
+        }
+        return alloc.heapBuffer(chunkSize);
+    }
+
+    /**
+     * Reads exactly {@code length} bytes from the current position of the specified file into the buffer.
+     */
+    static void readFully(FileChannel in, ByteBuf buffer, int length) throws IOException {
+        int readBytes = 0;
+        while (readBytes < length) {
+            int localReadBytes = buffer.writeBytes(in, length - readBytes);
+            if (localReadBytes < 0) {
+                throw new EOFException();
+            }
+            readBytes += localReadBytes;
+        }
+    }
+
+    private ChunkedInputUtil() { }
+}
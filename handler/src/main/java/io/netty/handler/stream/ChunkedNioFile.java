@@ -31,6 +31,10 @@ import java.nio.channels.FileChannel;
  * If your operating system supports
  * <a href="http://en.wikipedia.org/wiki/Zero-copy">zero-copy file transfer</a>
  * such as {@code sendfile()}, you might want to use {@link FileRegion} instead.
+ * <p>
+ * Unless a chunk size is specified, the size of a chunk adapts to the channel: it grows up to what can be written
+ * before the channel becomes unwritable and what the socket send buffer accepts at once.  A chunk is read into
+ * a pooled direct buffer if the allocator of the channel pools direct buffers.
  */
 public class ChunkedNioFile implements ChunkedInput<ByteBuf> {
 
@@ -38,6 +42,8 @@ public class ChunkedNioFile implements ChunkedInput<ByteBuf> {
     private final long startOffset;
     private final long endOffset;
     private final int chunkSize;
+    private final boolean adaptive;
+    private int sendBufferSize = -1;
     private long offset;
 
     /**
@@ -61,7 +67,7 @@ public class ChunkedNioFile implements ChunkedInput<ByteBuf> {
      * Creates a new instance that fetches data from the specified file.
      */
     public ChunkedNioFile(FileChannel in) throws IOException {
-        this(in, ChunkedStream.DEFAULT_CHUNK_SIZE);
+        this(in, 0, in.size(), ChunkedStream.DEFAULT_CHUNK_SIZE, true);
     }
 
     /**
@@ -82,8 +88,12 @@ public class ChunkedNioFile implements ChunkedInput<ByteBuf> {
      * @param chunkSize the number of bytes to fetch on each
      *                  {@link #readChunk(ChannelHandlerContext)} call
      */
-    public ChunkedNioFile(FileChannel in, long offset, long length, int chunkSize)
-            throws IOException {
+    public ChunkedNioFile(FileChannel in, long offset, long length, int chunkSize) throws IOException {
+        this(in, offset, length, chunkSize, false);
+    }
+
+    private ChunkedNioFile(FileChannel in, long offset, long length, int chunkSize,
+            boolean adaptive) throws IOException {
         if (in == null) {
             throw new NullPointerException("in");
         }
@@ -106,6 +116,7 @@ public class ChunkedNioFile implements ChunkedInput<ByteBuf> {
         }
         this.in = in;
         this.chunkSize = chunkSize;
+        this.adaptive = adaptive;
         this.offset = startOffset = offset;
         endOffset = offset + length;
     }
@@ -148,8 +159,8 @@ public class ChunkedNioFile implements ChunkedInput<ByteBuf> {
             return null;
         }
 
-        int chunkSize = (int) Math.min(this.chunkSize, endOffset - offset);
-        ByteBuf buffer = ctx.alloc().buffer(chunkSize);
+        int chunkSize = (int) Math.min(nextChunkSize(ctx), endOffset - offset);
+        ByteBuf buffer = ChunkedInputUtil.newChunkBuffer(ctx.alloc(), chunkSize);
         boolean release = true;
         try {
             int readBytes = 0;
@@ -172,4 +183,14 @@ public class ChunkedNioFile implements ChunkedInput<ByteBuf> {
             }
         }
     }
+
+    private int nextChunkSize(ChannelHandlerContext ctx) {
+        if (!adaptive) {
+            return chunkSize;
+        }
+        if (sendBufferSize < 0) {
+            sendBufferSize = ChunkedInputUtil.sendBufferSize(ctx);
+        }
+        return ChunkedInputUtil.adaptiveChunkSize(ctx, chunkSize, sendBufferSize);
+    }
 }
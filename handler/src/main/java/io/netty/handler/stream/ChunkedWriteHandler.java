@@ -202,7 +202,12 @@ public class ChunkedWriteHandler extends ChannelHandlerAdapter {
             discard(null);
             return;
         }
-        boolean needsFlush;
+        // Chunks are written in a batch which is flushed at once, unless the batch grows beyond the high water mark.
+        // The outbound buffer is not always filled until a flush, for example when SslHandler is in the pipeline, so
+        // the writability of the channel alone does not bound the batch.
+        final int maxBatchBytes = channel.config().getWriteBufferHighWaterMark();
+        long batchBytes = 0;
+        boolean needsFlush = false;
         while (channel.isWritable()) {
             if (currentWrite == null) {
                 currentWrite = queue.poll();
@@ -256,6 +261,7 @@ public class ChunkedWriteHandler extends ChannelHandlerAdapter {
                 }
 
                 final int amount = amount(message);
+                batchBytes += amount;
                 ChannelFuture f = ctx.write(message);
                 if (endOfInput) {
                     this.currentWrite = null;
@@ -302,18 +308,25 @@ public class ChunkedWriteHandler extends ChannelHandlerAdapter {
                     });
                 }
             } else {
+                batchBytes += amount(pendingMessage);
                 ctx.write(pendingMessage, currentWrite.promise);
                 this.currentWrite = null;
             }
 
-            if (needsFlush) {
+            if (batchBytes >= maxBatchBytes) {
                 ctx.flush();
+                needsFlush = false;
+                batchBytes = 0;
             }
             if (!channel.isActive()) {
                 discard(new ClosedChannelException());
                 return;
             }
         }
+
+        if (needsFlush) {
+            ctx.flush();
+        }
     }
 
     static void closeInput(ChunkedInput<?> chunks) {
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the idleness of all the channels of an {@link EventExecutor} in coarse ticks, so that a handler needs
+ * neither a scheduled task of its own nor a system call to get the current time.  There is only one scheduled task
+ * per executor, which is not scheduled at all while no channel is watched, and the time it caches on every tick is
+ * used by the handlers to record their activity.  As a result, an idle event may be late by up to one interval,
+ * which is configured with {@code -Dio.netty.timeout.scanIntervalMillis} (1000 by default).
+ * <p>
+ * All the methods except {@link #get(EventExecutor)} must be called from the executor thread.
+ */
+final class IdleChannelScanner implements Runnable {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IdleChannelScanner.class);
+
+    static final long DEFAULT_INTERVAL_MILLIS;
+    private static final ConcurrentMap<EventExecutor, IdleChannelScanner> scanners =
+            PlatformDependent.newConcurrentHashMap();
+
+    static {
+        long interval = SystemPropertyUtil.getLong("io.netty.timeout.scanIntervalMillis", 1000);
+        if (interval <= 0) {
+            interval = 1000;
+        }
+        DEFAULT_INTERVAL_MILLIS = interval;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.timeout.scanIntervalMillis: {}", interval);
+        }
+    }
+
+    /**
+     * Returns the scanner of the specified executor, which is forgotten once the executor has terminated.
+     */
+    static IdleChannelScanner get(final EventExecutor executor) {
+        IdleChannelScanner scanner = scanners.get(executor);
+        if (scanner != null) {
+            return scanner;
+        }
+
+        Future<?> terminationFuture;
+        try {
+            terminationFuture = executor.terminationFuture();
+        } catch (UnsupportedOperationException e) {
+            // An executor which never terminates, such as EmbeddedEventLoop, would never leave the map.
+            return new IdleChannelScanner(executor, DEFAULT_INTERVAL_MILLIS);
+        }
+
+        final IdleChannelScanner newScanner = new IdleChannelScanner(executor, DEFAULT_INTERVAL_MILLIS);
+        IdleChannelScanner old = scanners.putIfAbsent(executor, newScanner);
+        if (old != null) {
+            return old;
+        }
+        terminationFuture.addListener(new FutureListener<Object>() {
+            @Override
+            public void operationComplete(Future<Object> future) {
+                scanners.remove(executor, newScanner);
+            }
+        });
+        return newScanner;
+    }
+
+    /**
+     * A channel watched by an {@link IdleChannelScanner}.
+     */
+    abstract static class Entry {
+        private int index = -1;
+
+        /**
+         * Is called on every tick with the cached time in milliseconds.
+         */
+        abstract void scan(long now);
+    }
+
+    private final EventExecutor executor;
+    private final long intervalMillis;
+
+    private Entry[] entries = new Entry[16];
+    private int size;
+    private long now = currentTime();
+    private boolean scheduled;
+
+    IdleChannelScanner(EventExecutor executor, long intervalMillis) {
+        this.executor = executor;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Returns the time of the last tick in milliseconds.  It is not related to the wall-clock time, so it must only
+     * be compared with another value returned by this method.
+     */
+    long now() {
+        return now;
+    }
+
+    /**
+     * Returns the number of the watched channels.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Starts watching the specified entry.
+     */
+    void add(Entry entry) {
+        if (entry.index >= 0) {
+            return;
+        }
+        if (size == entries.length) {
+            Entry[] newEntries = new Entry[size << 1];
+            System.arraycopy(entries, 0, newEntries, 0, size);
+            entries = newEntries;
+        }
+        entry.index = size;
+        entries[size ++] = entry;
+
+        if (!scheduled) {
+            // The clock was not updated while there was nothing to watch.
+            now = currentTime();
+            schedule();
+        }
+    }
+
+    /**
+     * Stops watching the specified entry.
+     */
+    void remove(Entry entry) {
+        int index = entry.index;
+        if (index < 0) {
+            return;
+        }
+        entry.index = -1;
+        Entry last = entries[-- size];
+        entries[size] = null;
+        if (last != entry) {
+            last.index = index;
+            entries[index] = last;
+        }
+    }
+
+    @Override
+    public void run() {
+        scheduled = false;
+        scan(currentTime());
+        if (size > 0) {
+            schedule();
+        }
+    }
+
+    void scan(long now) {
+        this.now = now;
+        for (int i = 0; i < size;) {
+            Entry entry = entries[i];
+            try {
+                entry.scan(now);
+            } catch (Throwable t) {
+                logger.warn("An exception was thrown while checking the idleness of a channel.", t);
+            }
+            // The entry may have removed itself, in which case another one was moved to its slot.
+            if (entries[i] == entry) {
+                i ++;
+            }
+        }
+    }
+
+    private void schedule() {
+        if (executor.isShuttingDown()) {
+            scanners.remove(executor, this);
+            return;
+        }
+        try {
+            executor.schedule(this, intervalMillis, TimeUnit.MILLISECONDS);
+            scheduled = true;
+        } catch (RejectedExecutionException e) {
+            scanners.remove(executor, this);
+        }
+    }
+
+    private static long currentTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
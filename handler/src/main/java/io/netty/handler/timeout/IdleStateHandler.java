@@ -91,6 +91,14 @@ import java.util.concurrent.TimeUnit;
  * ...
  * </pre>
  *
+ * <h3>Coarse idle detection</h3>
+ * By default, every handler keeps a scheduled task per enabled idle state and gets the current time whenever
+ * a message is read or written.  When a large number of mostly idle connections is handled, create the handler with
+ * {@code coarse} set to {@code true} instead.  The idleness of all the channels of the same event loop is then
+ * checked by a single task in coarse ticks, and the last read time is recorded only once per read loop from a clock
+ * cached by that task.  An event may be triggered up to one tick late, where the tick is configured with
+ * {@code -Dio.netty.timeout.scanIntervalMillis} (1000 by default).
+ *
  * @see ReadTimeoutHandler
  * @see WriteTimeoutHandler
  */
@@ -113,6 +121,14 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
 
     private volatile int state; // 0 - none, 1 - initialized, 2 - destroyed
 
+    private final boolean coarse;
+    private final ChannelFutureListener writeListener;
+    private IdleChannelScanner scanner;
+    private IdleEntry entry;
+    private long lastReaderIdleTime;
+    private long lastWriterIdleTime;
+    private long lastAllIdleTime;
+
     /**
      * Creates a new instance firing {@link IdleStateEvent}s.
      *
@@ -160,6 +176,34 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
     public IdleStateHandler(
             long readerIdleTime, long writerIdleTime, long allIdleTime,
             TimeUnit unit) {
+        this(readerIdleTime, writerIdleTime, allIdleTime, unit, false);
+    }
+
+    /**
+     * Creates a new instance firing {@link IdleStateEvent}s.
+     *
+     * @param readerIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#READER_IDLE}
+     *        will be triggered when no read was performed for the specified
+     *        period of time.  Specify {@code 0} to disable.
+     * @param writerIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#WRITER_IDLE}
+     *        will be triggered when no write was performed for the specified
+     *        period of time.  Specify {@code 0} to disable.
+     * @param allIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#ALL_IDLE}
+     *        will be triggered when neither read nor write was performed for
+     *        the specified period of time.  Specify {@code 0} to disable.
+     * @param unit
+     *        the {@link TimeUnit} of {@code readerIdleTime},
+     *        {@code writeIdleTime}, and {@code allIdleTime}
+     * @param coarse
+     *        {@code true} if the idleness should be checked in coarse ticks shared
+     *        by all the channels of the same event loop
+     */
+    public IdleStateHandler(
+            long readerIdleTime, long writerIdleTime, long allIdleTime,
+            TimeUnit unit, boolean coarse) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
@@ -179,6 +223,23 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
         } else {
             allIdleTimeMillis = Math.max(unit.toMillis(allIdleTime), 1);
         }
+
+        this.coarse = coarse;
+        if (coarse) {
+            // Shared by all writes so that nothing is allocated per write.
+            writeListener = new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    IdleChannelScanner scanner = IdleStateHandler.this.scanner;
+                    if (scanner != null) {
+                        lastWriteTime = scanner.now();
+                    }
+                    firstWriterIdleEvent = firstAllIdleEvent = true;
+                }
+            };
+        } else {
+            writeListener = null;
+        }
     }
 
     /**
@@ -205,6 +266,14 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
         return allIdleTimeMillis;
     }
 
+    /**
+     * Returns {@code true} if the idleness is checked in coarse ticks shared by all the channels of the same
+     * event loop.
+     */
+    public boolean isCoarse() {
+        return coarse;
+    }
+
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         if (ctx.channel().isActive() && ctx.channel().isRegistered()) {
@@ -248,13 +317,31 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        lastReadTime = System.currentTimeMillis();
-        firstReaderIdleEvent = firstAllIdleEvent = true;
+        if (!coarse) {
+            lastReadTime = System.currentTimeMillis();
+            firstReaderIdleEvent = firstAllIdleEvent = true;
+        }
         ctx.fireChannelRead(msg);
     }
 
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        // In coarse mode, a read loop is recorded as a whole with the cached clock.
+        IdleChannelScanner scanner = this.scanner;
+        if (scanner != null) {
+            lastReadTime = scanner.now();
+            firstReaderIdleEvent = firstAllIdleEvent = true;
+        }
+        ctx.fireChannelReadComplete();
+    }
+
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (coarse) {
+            promise.addListener(writeListener);
+            ctx.write(msg, promise);
+            return;
+        }
         promise.addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
@@ -278,6 +365,18 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
 
         EventExecutor loop = ctx.executor();
 
+        if (coarse) {
+            if (readerIdleTimeMillis > 0 || writerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+                IdleChannelScanner scanner = IdleChannelScanner.get(loop);
+                entry = new IdleEntry(ctx);
+                scanner.add(entry);
+                lastReadTime = lastWriteTime = scanner.now();
+                lastReaderIdleTime = lastWriterIdleTime = lastAllIdleTime = lastReadTime;
+                this.scanner = scanner;
+            }
+            return;
+        }
+
         lastReadTime = lastWriteTime = System.currentTimeMillis();
         if (readerIdleTimeMillis > 0) {
             readerIdleTimeout = loop.schedule(
@@ -299,6 +398,12 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
     private void destroy() {
         state = 2;
 
+        if (entry != null) {
+            scanner.remove(entry);
+            entry = null;
+            scanner = null;
+        }
+
         if (readerIdleTimeout != null) {
             readerIdleTimeout.cancel(false);
             readerIdleTimeout = null;
@@ -321,6 +426,68 @@ public class IdleStateHandler extends ChannelHandlerAdapter {
         ctx.fireUserEventTriggered(evt);
     }
 
+    private void fireIdle(ChannelHandlerContext ctx, IdleStateEvent event) {
+        try {
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
+    private final class IdleEntry extends IdleChannelScanner.Entry {
+
+        private final ChannelHandlerContext ctx;
+
+        IdleEntry(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        void scan(long now) {
+            if (!ctx.channel().isOpen()) {
+                return;
+            }
+
+            // An event is triggered again only after another full period without activity, like a rescheduled task.
+            if (readerIdleTimeMillis > 0 &&
+                now - Math.max(lastReadTime, lastReaderIdleTime) >= readerIdleTimeMillis) {
+                lastReaderIdleTime = now;
+                IdleStateEvent event;
+                if (firstReaderIdleEvent) {
+                    firstReaderIdleEvent = false;
+                    event = IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT;
+                } else {
+                    event = IdleStateEvent.READER_IDLE_STATE_EVENT;
+                }
+                fireIdle(ctx, event);
+            }
+            if (writerIdleTimeMillis > 0 &&
+                now - Math.max(lastWriteTime, lastWriterIdleTime) >= writerIdleTimeMillis) {
+                lastWriterIdleTime = now;
+                IdleStateEvent event;
+                if (firstWriterIdleEvent) {
+                    firstWriterIdleEvent = false;
+                    event = IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT;
+                } else {
+                    event = IdleStateEvent.WRITER_IDLE_STATE_EVENT;
+                }
+                fireIdle(ctx, event);
+            }
+            if (allIdleTimeMillis > 0 &&
+                now - Math.max(Math.max(lastReadTime, lastWriteTime), lastAllIdleTime) >= allIdleTimeMillis) {
+                lastAllIdleTime = now;
+                IdleStateEvent event;
+                if (firstAllIdleEvent) {
+                    firstAllIdleEvent = false;
+                    event = IdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT;
+                } else {
+                    event = IdleStateEvent.ALL_IDLE_STATE_EVENT;
+                }
+                fireIdle(ctx, event);
+            }
+        }
+    }
+
     private final class ReaderIdleTimeoutTask implements Runnable {
 
         private final ChannelHandlerContext ctx;
@@ -57,6 +57,10 @@ import java.util.concurrent.TimeUnit;
  * bootstrap.childHandler(new MyChannelInitializer());
  * ...
  * </pre>
+ *
+ * Like {@link IdleStateHandler}, this handler can check the timeout in coarse ticks shared by all the channels of
+ * the same event loop instead of keeping a scheduled task per channel.
+ *
  * @see WriteTimeoutHandler
  * @see IdleStateHandler
  */
@@ -71,6 +75,10 @@ public class ReadTimeoutHandler extends ChannelHandlerAdapter {
 
     private boolean closed;
 
+    private final boolean coarse;
+    private IdleChannelScanner scanner;
+    private ReadTimeoutEntry entry;
+
     /**
      * Creates a new instance.
      *
@@ -90,6 +98,21 @@ public class ReadTimeoutHandler extends ChannelHandlerAdapter {
      *        the {@link TimeUnit} of {@code timeout}
      */
     public ReadTimeoutHandler(long timeout, TimeUnit unit) {
+        this(timeout, unit, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param timeout
+     *        read timeout
+     * @param unit
+     *        the {@link TimeUnit} of {@code timeout}
+     * @param coarse
+     *        {@code true} if the timeout should be checked in coarse ticks shared
+     *        by all the channels of the same event loop
+     */
+    public ReadTimeoutHandler(long timeout, TimeUnit unit, boolean coarse) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
@@ -99,6 +122,7 @@ public class ReadTimeoutHandler extends ChannelHandlerAdapter {
         } else {
             timeoutMillis = Math.max(unit.toMillis(timeout), 1);
         }
+        this.coarse = coarse;
     }
 
     @Override
@@ -144,10 +168,22 @@ public class ReadTimeoutHandler extends ChannelHandlerAdapter {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        lastReadTime = System.currentTimeMillis();
+        if (!coarse) {
+            lastReadTime = System.currentTimeMillis();
+        }
         ctx.fireChannelRead(msg);
     }
 
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        // In coarse mode, a read loop is recorded as a whole with the cached clock.
+        IdleChannelScanner scanner = this.scanner;
+        if (scanner != null) {
+            lastReadTime = scanner.now();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
     private void initialize(ChannelHandlerContext ctx) {
         // Avoid the case where destroy() is called before scheduling timeouts.
         // See: https://github.com/netty/netty/issues/143
@@ -159,6 +195,17 @@ public class ReadTimeoutHandler extends ChannelHandlerAdapter {
 
         state = 1;
 
+        if (coarse) {
+            if (timeoutMillis > 0) {
+                IdleChannelScanner scanner = IdleChannelScanner.get(ctx.executor());
+                entry = new ReadTimeoutEntry(ctx);
+                scanner.add(entry);
+                lastReadTime = scanner.now();
+                this.scanner = scanner;
+            }
+            return;
+        }
+
         lastReadTime = System.currentTimeMillis();
         if (timeoutMillis > 0) {
             timeout = ctx.executor().schedule(
@@ -170,6 +217,12 @@ public class ReadTimeoutHandler extends ChannelHandlerAdapter {
     private void destroy() {
         state = 2;
 
+        if (entry != null) {
+            scanner.remove(entry);
+            entry = null;
+            scanner = null;
+        }
+
         if (timeout != null) {
             timeout.cancel(false);
             timeout = null;
@@ -187,6 +240,30 @@ public class ReadTimeoutHandler extends ChannelHandlerAdapter {
         }
     }
 
+    private final class ReadTimeoutEntry extends IdleChannelScanner.Entry {
+
+        private final ChannelHandlerContext ctx;
+
+        ReadTimeoutEntry(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        void scan(long now) {
+            if (!ctx.channel().isOpen() || now - lastReadTime < timeoutMillis) {
+                return;
+            }
+
+            // Read timed out - start a new period and notify the callback.
+            lastReadTime = now;
+            try {
+                readTimedOut(ctx);
+            } catch (Throwable t) {
+                ctx.fireExceptionCaught(t);
+            }
+        }
+    }
+
     private final class ReadTimeoutTask implements Runnable {
 
         private final ChannelHandlerContext ctx;
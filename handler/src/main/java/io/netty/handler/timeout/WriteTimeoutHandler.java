@@ -24,6 +24,8 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPromise;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -60,6 +62,11 @@ import java.util.concurrent.TimeUnit;
  * bootstrap.childHandler(new MyChannelInitializer());
  * ...
  * </pre>
+ *
+ * By default, a task is scheduled for every write.  In coarse mode, the pending writes are checked in coarse ticks
+ * shared by all the channels of the same event loop instead, and the oldest pending write is failed once no write
+ * was completed within the timeout.  Because writes complete in order, this is enough for the whole channel.
+ *
  * @see ReadTimeoutHandler
  * @see IdleStateHandler
  */
@@ -69,6 +76,14 @@ public class WriteTimeoutHandler extends ChannelHandlerAdapter {
 
     private boolean closed;
 
+    private final boolean coarse;
+    private final Queue<ChannelPromise> pendingWrites;
+    private final ChannelFutureListener writeListener;
+    private IdleChannelScanner scanner;
+    private WriteTimeoutEntry entry;
+    private long lastWriteTime;
+    private boolean destroyed;
+
     /**
      * Creates a new instance.
      *
@@ -88,6 +103,21 @@ public class WriteTimeoutHandler extends ChannelHandlerAdapter {
      *        the {@link TimeUnit} of {@code timeout}
      */
     public WriteTimeoutHandler(long timeout, TimeUnit unit) {
+        this(timeout, unit, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param timeout
+     *        write timeout
+     * @param unit
+     *        the {@link TimeUnit} of {@code timeout}
+     * @param coarse
+     *        {@code true} if the timeout should be checked in coarse ticks shared
+     *        by all the channels of the same event loop
+     */
+    public WriteTimeoutHandler(long timeout, TimeUnit unit, boolean coarse) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
@@ -97,14 +127,83 @@ public class WriteTimeoutHandler extends ChannelHandlerAdapter {
         } else {
             timeoutMillis = Math.max(unit.toMillis(timeout), 1);
         }
+
+        this.coarse = coarse;
+        if (coarse) {
+            pendingWrites = new ArrayDeque<ChannelPromise>();
+            // Shared by all writes so that nothing is allocated per write.
+            writeListener = new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    writeComplete();
+                }
+            };
+        } else {
+            pendingWrites = null;
+            writeListener = null;
+        }
     }
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-        scheduleTimeout(ctx, promise);
+        if (coarse) {
+            addPendingWrite(ctx, promise);
+        } else {
+            scheduleTimeout(ctx, promise);
+        }
         ctx.write(msg, promise);
     }
 
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        destroy();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        destroy();
+        super.channelInactive(ctx);
+    }
+
+    private void addPendingWrite(ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (timeoutMillis <= 0 || destroyed) {
+            return;
+        }
+        if (entry == null) {
+            scanner = IdleChannelScanner.get(ctx.executor());
+            entry = new WriteTimeoutEntry(ctx);
+            scanner.add(entry);
+        }
+        if (pendingWrites.isEmpty()) {
+            lastWriteTime = scanner.now();
+        }
+        pendingWrites.add(promise);
+        promise.addListener(writeListener);
+    }
+
+    private void writeComplete() {
+        // Writes complete in order, so the completed one is usually at the head.
+        for (;;) {
+            ChannelPromise promise = pendingWrites.peek();
+            if (promise == null || !promise.isDone()) {
+                break;
+            }
+            pendingWrites.remove();
+        }
+        if (scanner != null) {
+            lastWriteTime = scanner.now();
+        }
+    }
+
+    private void destroy() {
+        destroyed = true;
+        if (entry != null) {
+            scanner.remove(entry);
+            entry = null;
+            scanner = null;
+        }
+    }
+
     private void scheduleTimeout(final ChannelHandlerContext ctx, final ChannelPromise future) {
         if (timeoutMillis > 0) {
             // Schedule a timeout.
@@ -142,4 +241,31 @@ public class WriteTimeoutHandler extends ChannelHandlerAdapter {
             closed = true;
         }
     }
+
+    private final class WriteTimeoutEntry extends IdleChannelScanner.Entry {
+
+        private final ChannelHandlerContext ctx;
+
+        WriteTimeoutEntry(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        void scan(long now) {
+            ChannelPromise promise = pendingWrites.peek();
+            if (promise == null || now - lastWriteTime < timeoutMillis) {
+                return;
+            }
+
+            lastWriteTime = now;
+            if (promise.tryFailure(WriteTimeoutException.INSTANCE)) {
+                // If succeeded to mark as failure, notify the pipeline, too.
+                try {
+                    writeTimedOut(ctx);
+                } catch (Throwable t) {
+                    ctx.fireExceptionCaught(t);
+                }
+            }
+        }
+    }
 }
@@ -23,6 +23,8 @@ import io.netty.channel.ChannelPromise;
 import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -41,6 +43,10 @@ import java.util.concurrent.TimeUnit;
  * <li><tt>getTrafficCounter</tt> allows you to have access to the TrafficCounter and so to stop
  * or start the monitoring, to change the checkInterval directly, or to have access to its values.</li>
  * </ul>
+ *
+ * The limits are enforced with a {@link TokenBucket} for each direction: a message which exceeds the current
+ * allowance is delayed until the bucket has refilled.  The following messages of the channel wait behind the delayed
+ * ones, so that they are not reordered.
  */
 public abstract class AbstractTrafficShapingHandler extends ChannelHandlerAdapter {
     /**
@@ -49,9 +55,9 @@ public abstract class AbstractTrafficShapingHandler extends ChannelHandlerAdapte
     public static final long DEFAULT_CHECK_INTERVAL = 1000;
 
     /**
-     * Default minimal time to wait
+     * Default minimal time to wait, i.e. the burst window of the token buckets
      */
-    private static final long MINIMAL_WAIT = 10;
+    static final long MINIMAL_WAIT = 10;
 
     /**
      * Traffic Counter
@@ -73,10 +79,22 @@ public abstract class AbstractTrafficShapingHandler extends ChannelHandlerAdapte
      */
     protected long checkInterval = DEFAULT_CHECK_INTERVAL; // default 1 s
 
+    /**
+     * Token bucket which enforces the write limit
+     */
+    final TokenBucket writeBucket;
+
+    /**
+     * Token bucket which enforces the read limit
+     */
+    final TokenBucket readBucket;
+
     private static final AttributeKey<Boolean> READ_SUSPENDED =
             AttributeKey.valueOf(AbstractTrafficShapingHandler.class, "READ_SUSPENDED");
     private static final AttributeKey<Runnable> REOPEN_TASK =
             AttributeKey.valueOf(AbstractTrafficShapingHandler.class, "REOPEN_TASK");
+    private static final AttributeKey<DelayedWrites> DELAYED_WRITES =
+            AttributeKey.valueOf(AbstractTrafficShapingHandler.class, "DELAYED_WRITES");
 
     /**
      *
@@ -100,6 +118,8 @@ public abstract class AbstractTrafficShapingHandler extends ChannelHandlerAdapte
         this.writeLimit = writeLimit;
         this.readLimit = readLimit;
         this.checkInterval = checkInterval;
+        writeBucket = new TokenBucket(writeLimit, MINIMAL_WAIT);
+        readBucket = new TokenBucket(readLimit, MINIMAL_WAIT);
     }
 
     /**
@@ -154,6 +174,8 @@ public abstract class AbstractTrafficShapingHandler extends ChannelHandlerAdapte
     public void configure(long newWriteLimit, long newReadLimit) {
         writeLimit = newWriteLimit;
         readLimit = newReadLimit;
+        writeBucket.setRate(newWriteLimit);
+        readBucket.setRate(newReadLimit);
         if (trafficCounter != null) {
             trafficCounter.resetAccounting(System.currentTimeMillis() + 1);
         }
@@ -171,6 +193,20 @@ public abstract class AbstractTrafficShapingHandler extends ChannelHandlerAdapte
         }
     }
 
+    /**
+     * @return the write limit in bytes/s, 0 if unlimited
+     */
+    public long writeLimit() {
+        return writeLimit;
+    }
+
+    /**
+     * @return the read limit in bytes/s, 0 if unlimited
+     */
+    public long readLimit() {
+        return readLimit;
+    }
+
     /**
      * Called each time the accounting is computed from the TrafficCounters.
      * This method could be used for instance to implement almost real time accounting.
@@ -200,63 +236,51 @@ public abstract class AbstractTrafficShapingHandler extends ChannelHandlerAdapte
     }
 
     /**
-     * @return the time that should be necessary to wait to respect limit. Can be negative time
+     * The delayed writes of a channel in the order they were requested.  Every scheduled task writes the oldest one,
+     * so that a write whose task has not run yet, although its time has come, is not overtaken by a later write.
      */
-    private static long getTimeToWait(long limit, long bytes, long lastTime, long curtime) {
-        long interval = curtime - lastTime;
-        if (interval <= 0) {
-            // Time is too short, so just lets continue
-            return 0;
+    private static final class DelayedWrites implements Runnable {
+        final ChannelHandlerContext ctx;
+        final Queue<Object> messages = new ArrayDeque<Object>();
+        final Queue<ChannelPromise> promises = new ArrayDeque<ChannelPromise>();
+
+        DelayedWrites(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        void add(Object msg, ChannelPromise promise, long wait) {
+            messages.add(msg);
+            promises.add(promise);
+            ctx.executor().schedule(this, wait, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            ctx.write(messages.poll(), promises.poll());
         }
-        return (bytes * 1000 / limit - interval) / 10 * 10;
     }
 
     @Override
     public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
         long size = calculateSize(msg);
-        long curtime = System.currentTimeMillis();
 
         if (trafficCounter != null) {
             trafficCounter.bytesRecvFlowControl(size);
-            if (readLimit == 0) {
-                // no action
-                ctx.fireChannelRead(msg);
-
-                return;
-            }
 
-            // compute the number of ms to wait before reopening the channel
-            long wait = getTimeToWait(readLimit,
-                    trafficCounter.currentReadBytes(),
-                    trafficCounter.lastTime(), curtime);
-            if (wait >= MINIMAL_WAIT) { // At least 10ms seems a minimal
-                // time in order to
-                // try to limit the traffic
-                if (!isSuspended(ctx)) {
-                    ctx.attr(READ_SUSPENDED).set(true);
-
-                    // Create a Runnable to reactive the read if needed. If one was create before it will just be
-                    // reused to limit object creation
-                    Attribute<Runnable> attr  = ctx.attr(REOPEN_TASK);
-                    Runnable reopenTask = attr.get();
-                    if (reopenTask == null) {
-                        reopenTask = new ReopenReadTimerTask(ctx);
-                        attr.set(reopenTask);
-                    }
-                    ctx.executor().schedule(reopenTask, wait,
-                            TimeUnit.MILLISECONDS);
-                } else {
-                    // Create a Runnable to update the next handler in the chain. If one was create before it will
-                    // just be reused to limit object creation
-                    Runnable bufferUpdateTask = new Runnable() {
-                        @Override
-                        public void run() {
-                            ctx.fireChannelRead(msg);
-                        }
-                    };
-                    ctx.executor().schedule(bufferUpdateTask, wait, TimeUnit.MILLISECONDS);
-                    return;
+            // compute the number of ns to wait before reopening the channel
+            long wait = readBucket.acquire(size);
+            if (wait > 0 && !isSuspended(ctx)) {
+                ctx.attr(READ_SUSPENDED).set(true);
+
+                // Create a Runnable to reactive the read if needed. If one was create before it will just be
+                // reused to limit object creation
+                Attribute<Runnable> attr  = ctx.attr(REOPEN_TASK);
+                Runnable reopenTask = attr.get();
+                if (reopenTask == null) {
+                    reopenTask = new ReopenReadTimerTask(ctx);
+                    attr.set(reopenTask);
                 }
+                ctx.executor().schedule(reopenTask, wait, TimeUnit.NANOSECONDS);
             }
         }
         ctx.fireChannelRead(msg);
@@ -280,29 +304,25 @@ public abstract class AbstractTrafficShapingHandler extends ChannelHandlerAdapte
     @Override
     public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
             throws Exception {
-        long curtime = System.currentTimeMillis();
         long size = calculateSize(msg);
 
+        long wait = 0;
         if (size > -1 && trafficCounter != null) {
             trafficCounter.bytesWriteFlowControl(size);
-            if (writeLimit == 0) {
-                ctx.write(msg, promise);
-                return;
-            }
-            // compute the number of ms to wait before continue with the
+            // compute the number of ns to wait before continue with the
             // channel
-            long wait = getTimeToWait(writeLimit,
-                    trafficCounter.currentWrittenBytes(),
-                    trafficCounter.lastTime(), curtime);
-            if (wait >= MINIMAL_WAIT) {
-                ctx.executor().schedule(new Runnable() {
-                    @Override
-                    public void run() {
-                        ctx.write(msg, promise);
-                    }
-                }, wait, TimeUnit.MILLISECONDS);
-                return;
+            wait = writeBucket.acquire(size);
+        }
+
+        Attribute<DelayedWrites> attr = ctx.attr(DELAYED_WRITES);
+        DelayedWrites delayedWrites = attr.get();
+        if (wait > 0 || delayedWrites != null && !delayedWrites.messages.isEmpty()) {
+            if (delayedWrites == null) {
+                delayedWrites = new DelayedWrites(ctx);
+                attr.set(delayedWrites);
             }
+            delayedWrites.add(msg, promise, wait);
+            return;
         }
         ctx.write(msg, promise);
     }
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.traffic;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.chmv8.LongAdder;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This implementation of the {@link AbstractTrafficShapingHandler} limits both the global bandwidth of all the
+ * channels and the bandwidth of each channel, and shares the global bandwidth fairly between the channels.<br><br>
+ *
+ * Every channel gets an equal share of the global limit, capped by the channel limit, so that a busy channel cannot
+ * starve the others.  The share is computed from the number of channels which had some traffic in the current or
+ * the last check interval, so that the bandwidth left by the idle channels goes to the busy ones.  The channels are
+ * counted as they become active, and each channel applies the current share when it reads or writes, so adding or
+ * removing a channel costs the same whatever the number of channels.  The global limit is enforced in addition to
+ * the shares, which bounds the traffic while the shares adapt.<br><br>
+ *
+ * The writes which exceed the allowance of a channel are queued in that channel, in order, until its share
+ * permits them.  The number of queued bytes is available per channel with {@link #queuedBytes(Channel)} and in total
+ * with {@link #queuedBytes()}, for monitoring.  The reads which exceed the allowance suspend the reading of the
+ * channel.<br><br>
+ *
+ * Like {@link GlobalTrafficShapingHandler}, one instance must be shared by all the channels, and {@link #release()}
+ * must be called once it is not needed anymore.  A subclass which overrides {@link #doAccounting(TrafficCounter)}
+ * must call the super method, which starts a new interval for the shares.
+ */
+@Sharable
+public class GlobalChannelTrafficShapingHandler extends AbstractTrafficShapingHandler {
+
+    private final ConcurrentMap<Channel, PerChannel> channels = PlatformDependent.newConcurrentHashMap();
+    private final LongAdder queuedBytes = new LongAdder();
+    private volatile Interval lastInterval = new Interval();
+    private volatile Interval currentInterval = new Interval();
+    private volatile long writeChannelLimit;
+    private volatile long readChannelLimit;
+
+    /**
+     * Create a new instance
+     *
+     * @param executor
+     *          the {@link ScheduledExecutorService} to use for the {@link TrafficCounter}
+     * @param writeGlobalLimit
+     *          0 or a limit in bytes/s shared by all channels
+     * @param readGlobalLimit
+     *          0 or a limit in bytes/s shared by all channels
+     * @param writeChannelLimit
+     *          0 or a limit in bytes/s for each channel
+     * @param readChannelLimit
+     *          0 or a limit in bytes/s for each channel
+     * @param checkInterval
+     *          The delay between two computations of performances and shares, or 0 if the shares are never
+     *            renewed, i.e. all the channels share the global limits until they are removed
+     */
+    public GlobalChannelTrafficShapingHandler(ScheduledExecutorService executor,
+            long writeGlobalLimit, long readGlobalLimit,
+            long writeChannelLimit, long readChannelLimit, long checkInterval) {
+        super(writeGlobalLimit, readGlobalLimit, checkInterval);
+        this.writeChannelLimit = writeChannelLimit;
+        this.readChannelLimit = readChannelLimit;
+        createGlobalTrafficCounter(executor);
+    }
+
+    /**
+     * Create a new instance using the default check interval
+     *
+     * @param executor
+     *          the {@link ScheduledExecutorService} to use for the {@link TrafficCounter}
+     * @param writeGlobalLimit
+     *          0 or a limit in bytes/s shared by all channels
+     * @param readGlobalLimit
+     *          0 or a limit in bytes/s shared by all channels
+     * @param writeChannelLimit
+     *          0 or a limit in bytes/s for each channel
+     * @param readChannelLimit
+     *          0 or a limit in bytes/s for each channel
+     */
+    public GlobalChannelTrafficShapingHandler(ScheduledExecutorService executor,
+            long writeGlobalLimit, long readGlobalLimit, long writeChannelLimit, long readChannelLimit) {
+        this(executor, writeGlobalLimit, readGlobalLimit, writeChannelLimit, readChannelLimit,
+                DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Create the global TrafficCounter
+     */
+    void createGlobalTrafficCounter(ScheduledExecutorService executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        TrafficCounter tc = new TrafficCounter(this, executor, "GlobalChannelTC", checkInterval);
+        setTrafficCounter(tc);
+        tc.start();
+    }
+
+    /**
+     * Change the limits of each channel.
+     *
+     * @param newWriteChannelLimit The new write limit of each channel (in bytes/s)
+     * @param newReadChannelLimit The new read limit of each channel (in bytes/s)
+     */
+    public void configureChannel(long newWriteChannelLimit, long newReadChannelLimit) {
+        writeChannelLimit = newWriteChannelLimit;
+        readChannelLimit = newReadChannelLimit;
+    }
+
+    /**
+     * @return the write limit of each channel in bytes/s, 0 if unlimited
+     */
+    public long writeChannelLimit() {
+        return writeChannelLimit;
+    }
+
+    /**
+     * @return the read limit of each channel in bytes/s, 0 if unlimited
+     */
+    public long readChannelLimit() {
+        return readChannelLimit;
+    }
+
+    /**
+     * @return the current write limit of the specified channel in bytes/s, i.e. its share of the global limit,
+     *         0 if unlimited or if the channel does not use this handler
+     */
+    public long currentWriteLimit(Channel channel) {
+        return channels.containsKey(channel) ? writeShare() : 0;
+    }
+
+    /**
+     * @return the current read limit of the specified channel in bytes/s, i.e. its share of the global limit,
+     *         0 if unlimited or if the channel does not use this handler
+     */
+    public long currentReadLimit(Channel channel) {
+        return channels.containsKey(channel) ? readShare() : 0;
+    }
+
+    /**
+     * @return the number of bytes queued in the specified channel until its limit permits writing them
+     */
+    public long queuedBytes(Channel channel) {
+        PerChannel perChannel = channels.get(channel);
+        return perChannel == null ? 0 : perChannel.queuedBytes;
+    }
+
+    /**
+     * @return the number of bytes queued in all the channels
+     */
+    public long queuedBytes() {
+        return queuedBytes.sum();
+    }
+
+    @Override
+    protected void doAccounting(TrafficCounter counter) {
+        lastInterval = currentInterval;
+        currentInterval = new Interval();
+    }
+
+    /**
+     * Returns the number of the channels which had some traffic in the current or the last check interval.
+     */
+    private int activeChannels() {
+        return Math.max(lastInterval.activeChannels.get(), currentInterval.activeChannels.get());
+    }
+
+    private long writeShare() {
+        return share(writeLimit(), writeChannelLimit, activeChannels());
+    }
+
+    private long readShare() {
+        return share(readLimit(), readChannelLimit, activeChannels());
+    }
+
+    private static long share(long globalLimit, long channelLimit, int channels) {
+        if (globalLimit == 0) {
+            return channelLimit;
+        }
+        long share = Math.max(1, globalLimit / Math.max(1, channels));
+        return channelLimit == 0 ? share : Math.min(share, channelLimit);
+    }
+
+    private static void updateRate(TokenBucket bucket, long rate) {
+        if (bucket.rate() != rate) {
+            bucket.setRate(rate);
+        }
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        PerChannel perChannel = new PerChannel(ctx);
+        // The new channel counts as active until the end of the next check interval.
+        perChannel.markActive();
+        channels.put(ctx.channel(), perChannel);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        PerChannel perChannel = channels.remove(ctx.channel());
+        if (perChannel != null) {
+            perChannel.removed = true;
+            // Let the queued writes through, or fail them if the channel is closed.
+            if (perChannel.writeQueued(Long.MAX_VALUE)) {
+                ctx.flush();
+            }
+            perChannel.markInactive();
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        long size = calculateSize(msg);
+        PerChannel perChannel = channels.get(ctx.channel());
+        if (size > 0 && perChannel != null) {
+            trafficCounter.bytesRecvFlowControl(size);
+            perChannel.markActive();
+            updateRate(perChannel.readBucket, readShare());
+            long now = System.nanoTime();
+            long wait = Math.max(perChannel.readBucket.acquire(size, now), readBucket.acquire(size, now));
+            if (wait > 0 && !perChannel.readSuspended) {
+                perChannel.readSuspended = true;
+                ctx.executor().schedule(perChannel.reopenReadTask, wait, TimeUnit.NANOSECONDS);
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) {
+        PerChannel perChannel = channels.get(ctx.channel());
+        if (perChannel == null || !perChannel.readSuspended) {
+            ctx.read();
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        PerChannel perChannel = channels.get(ctx.channel());
+        if (perChannel == null) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        long size = calculateSize(msg);
+        long now = System.nanoTime();
+        long wait = 0;
+        if (size > 0) {
+            trafficCounter.bytesWriteFlowControl(size);
+            perChannel.markActive();
+            updateRate(perChannel.writeBucket, writeShare());
+            wait = Math.max(perChannel.writeBucket.acquire(size, now), writeBucket.acquire(size, now));
+        }
+        if (wait == 0 && perChannel.queue.isEmpty()) {
+            ctx.write(msg, promise);
+            return;
+        }
+        perChannel.enqueue(new ToSend(now + wait, msg, Math.max(0, size), promise), now);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        PerChannel perChannel = channels.get(ctx.channel());
+        if (perChannel != null) {
+            ToSend last = perChannel.queue.peekLast();
+            if (last != null) {
+                // Flush the queued writes once they are written.
+                last.flush = true;
+            }
+        }
+        ctx.flush();
+    }
+
+    /**
+     * Release all internal resources of this instance
+     */
+    public final void release() {
+        if (trafficCounter != null) {
+            trafficCounter.stop();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " Channel Write Limit: " + writeChannelLimit +
+                " Channel Read Limit: " + readChannelLimit + " Queued: " + queuedBytes();
+    }
+
+    /**
+     * A check interval, which counts the channels which had some traffic in it.
+     */
+    private static final class Interval {
+        final AtomicInteger activeChannels = new AtomicInteger();
+    }
+
+    private static final class ToSend {
+        final long sendTime;
+        final Object msg;
+        final long size;
+        final ChannelPromise promise;
+        boolean flush;
+
+        ToSend(long sendTime, Object msg, long size, ChannelPromise promise) {
+            this.sendTime = sendTime;
+            this.msg = msg;
+            this.size = size;
+            this.promise = promise;
+        }
+    }
+
+    /**
+     * The state of a channel.  Everything but the buckets and the queued bytes is only accessed by the event loop of
+     * the channel.
+     */
+    private final class PerChannel implements Runnable {
+        final ChannelHandlerContext ctx;
+        final TokenBucket writeBucket = new TokenBucket(0, MINIMAL_WAIT);
+        final TokenBucket readBucket = new TokenBucket(0, MINIMAL_WAIT);
+        final ArrayDeque<ToSend> queue = new ArrayDeque<ToSend>();
+        volatile long queuedBytes;
+        // The last interval in which the channel was counted as active.
+        Interval activeInterval;
+        boolean readSuspended;
+        boolean writeScheduled;
+        boolean removed;
+
+        final Runnable reopenReadTask = new Runnable() {
+            @Override
+            public void run() {
+                readSuspended = false;
+                ctx.read();
+            }
+        };
+
+        PerChannel(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        void markActive() {
+            Interval interval = currentInterval;
+            if (activeInterval != interval) {
+                activeInterval = interval;
+                interval.activeChannels.incrementAndGet();
+            }
+        }
+
+        void markInactive() {
+            if (activeInterval != null) {
+                activeInterval.activeChannels.decrementAndGet();
+                activeInterval = null;
+            }
+        }
+
+        void enqueue(ToSend toSend, long now) {
+            ToSend last = queue.peekLast();
+            if (last != null && last.sendTime > toSend.sendTime) {
+                // Never overtake a queued write.
+                toSend = new ToSend(last.sendTime, toSend.msg, toSend.size, toSend.promise);
+            }
+            queue.add(toSend);
+            queuedBytes += toSend.size;
+            GlobalChannelTrafficShapingHandler.this.queuedBytes.add(toSend.size);
+            schedule(now);
+        }
+
+        private void schedule(long now) {
+            ToSend head = queue.peek();
+            if (head != null && !writeScheduled) {
+                writeScheduled = true;
+                ctx.executor().schedule(this, head.sendTime - now, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void run() {
+            writeScheduled = false;
+            if (removed) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (writeQueued(now)) {
+                ctx.flush();
+            }
+            schedule(now);
+        }
+
+        /**
+         * Writes the queued messages whose time has come.
+         *
+         * @return {@code true} if a flush was requested after one of the written messages
+         */
+        boolean writeQueued(long now) {
+            boolean flush = false;
+            for (;;) {
+                ToSend toSend = queue.peek();
+                if (toSend == null || toSend.sendTime > now) {
+                    break;
+                }
+                queue.poll();
+                queuedBytes -= toSend.size;
+                GlobalChannelTrafficShapingHandler.this.queuedBytes.add(-toSend.size);
+                ctx.write(toSend.msg, toSend.promise);
+                flush |= toSend.flush;
+            }
+            return flush;
+        }
+    }
+}
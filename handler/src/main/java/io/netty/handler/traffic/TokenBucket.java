@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.traffic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket which limits a rate of bytes per second, shared by any number of threads.
+ * <p>
+ * The bucket is implemented as a virtual clock: it only remembers the time at which all the bytes acquired so far
+ * have been paid for, and {@link #acquire(long)} moves that time forward with a single compare-and-set.  The bytes
+ * acquired within the burst window of an idle bucket pass immediately, i.e. the capacity of the bucket is
+ * {@code rate * burstMillis / 1000} bytes, and the other ones are delayed until the bucket has refilled.  The
+ * delays of successive acquisitions never decrease while the bucket is in deficit, so the bytes scheduled with
+ * them are sent in order.
+ */
+public final class TokenBucket {
+
+    private static final long SECOND_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong paidUntil = new AtomicLong(System.nanoTime());
+    private volatile long rate;
+    private volatile long burstNanos;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rate        the limit in bytes per second, {@code 0} for no limit
+     * @param burstMillis the burst window in milliseconds, which determines the capacity of the bucket
+     */
+    public TokenBucket(long rate, long burstMillis) {
+        configure(rate, burstMillis);
+    }
+
+    /**
+     * Changes the limit and the burst window of this bucket.  The bytes acquired before keep their delays.
+     */
+    public void configure(long rate, long burstMillis) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("rate: " + rate + " (expected: >= 0)");
+        }
+        if (burstMillis < 0) {
+            throw new IllegalArgumentException("burstMillis: " + burstMillis + " (expected: >= 0)");
+        }
+        burstNanos = TimeUnit.MILLISECONDS.toNanos(burstMillis);
+        this.rate = rate;
+    }
+
+    /**
+     * Changes the limit of this bucket.
+     */
+    public void setRate(long rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("rate: " + rate + " (expected: >= 0)");
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * Returns the limit in bytes per second, {@code 0} for no limit.
+     */
+    public long rate() {
+        return rate;
+    }
+
+    /**
+     * Acquires the specified number of bytes.
+     *
+     * @return the number of nanoseconds to wait before sending or receiving the bytes, {@code 0} if they can pass
+     *         immediately
+     */
+    public long acquire(long bytes) {
+        return acquire(bytes, System.nanoTime());
+    }
+
+    long acquire(long bytes, long now) {
+        long rate = this.rate;
+        if (rate == 0 || bytes <= 0) {
+            return 0;
+        }
+        long cost = cost(bytes, rate);
+        for (;;) {
+            long paidUntil = this.paidUntil.get();
+            // An idle bucket does not accumulate more than its capacity.
+            long newPaidUntil = Math.max(paidUntil, now) + cost;
+            if (this.paidUntil.compareAndSet(paidUntil, newPaidUntil)) {
+                return Math.max(0, newPaidUntil - now - burstNanos);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nanoseconds the specified bytes take at the specified rate.
+     */
+    private static long cost(long bytes, long rate) {
+        if (bytes < Long.MAX_VALUE / SECOND_IN_NANOS) {
+            return bytes * SECOND_IN_NANOS / rate;
+        }
+        return bytes / rate * SECOND_IN_NANOS;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket(rate: " + rate + " B/s, burst: " + TimeUnit.NANOSECONDS.toMillis(burstNanos) + " ms)";
+    }
+}
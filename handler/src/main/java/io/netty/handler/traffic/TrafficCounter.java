@@ -15,6 +15,8 @@
  */
 package io.netty.handler.traffic;
 
+import io.netty.util.internal.chmv8.LongAdder;
+
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -31,42 +33,56 @@ import java.util.concurrent.atomic.AtomicLong;
  * back to its parent {@link AbstractTrafficShapingHandler#doAccounting} method.  If the checkInterval
  * is set to 0, no accounting will be done and statistics will only be computed at each receive or
  * write operation.</p>
+ *
+ * <p>The bytes are counted with striped counters, so that the event loops sharing a counter, such as the one of a
+ * {@link GlobalTrafficShapingHandler}, do not contend with each other.  The statistics of an interval are derived
+ * from the difference between the totals at its start and its end.</p>
  */
 public class TrafficCounter {
     /**
-     * Current written bytes
+     * Total written bytes, never reset
+     */
+    private final LongAdder writtenBytes = new LongAdder();
+
+    /**
+     * Total read bytes, never reset
      */
-    private final AtomicLong currentWrittenBytes = new AtomicLong();
+    private final LongAdder readBytes = new LongAdder();
 
     /**
-     * Current read bytes
+     * Total written bytes at the last check
      */
-    private final AtomicLong currentReadBytes = new AtomicLong();
+    private volatile long writtenBytesAtLastTime;
 
     /**
-     * Long life written bytes
+     * Total read bytes at the last check
      */
-    private final AtomicLong cumulativeWrittenBytes = new AtomicLong();
+    private volatile long readBytesAtLastTime;
 
     /**
-     * Long life read bytes
+     * Total written bytes when the cumulative counters were reset
      */
-    private final AtomicLong cumulativeReadBytes = new AtomicLong();
+    private volatile long writtenBytesAtCumulativeTime;
+
+    /**
+     * Total read bytes when the cumulative counters were reset
+     */
+    private volatile long readBytesAtCumulativeTime;
 
     /**
      * Last Time where cumulative bytes where reset to zero
      */
-    private long lastCumulativeTime;
+    private volatile long lastCumulativeTime;
 
     /**
      * Last writing bandwidth
      */
-    private long lastWriteThroughput;
+    private volatile long lastWriteThroughput;
 
     /**
      * Last reading bandwidth
      */
-    private long lastReadThroughput;
+    private volatile long lastReadThroughput;
 
     /**
      * Last Time Check taken
@@ -76,12 +92,12 @@ public class TrafficCounter {
     /**
      * Last written bytes number during last check interval
      */
-    private long lastWrittenBytes;
+    private volatile long lastWrittenBytes;
 
     /**
      * Last read bytes number during last check interval
      */
-    private long lastReadBytes;
+    private volatile long lastReadBytes;
 
     /**
      * Delay between two captures
@@ -164,17 +180,14 @@ public class TrafficCounter {
      * Start the monitoring process
      */
     public void start() {
-        synchronized (lastTime) {
-            if (monitorActive.get()) {
-                return;
-            }
-            lastTime.set(System.currentTimeMillis());
-            if (checkInterval.get() > 0) {
-                monitorActive.set(true);
-                monitor = new TrafficMonitoringTask(trafficShapingHandler, this);
-                scheduledFuture =
-                    executor.schedule(monitor, checkInterval.get(), TimeUnit.MILLISECONDS);
-            }
+        if (monitorActive.get()) {
+            return;
+        }
+        lastTime.set(System.currentTimeMillis());
+        if (checkInterval.get() > 0 && monitorActive.compareAndSet(false, true)) {
+            monitor = new TrafficMonitoringTask(trafficShapingHandler, this);
+            scheduledFuture =
+                executor.schedule(monitor, checkInterval.get(), TimeUnit.MILLISECONDS);
         }
     }
 
@@ -182,40 +195,39 @@ public class TrafficCounter {
      * Stop the monitoring process
      */
     public void stop() {
-        synchronized (lastTime) {
-            if (!monitorActive.get()) {
-                return;
-            }
-            monitorActive.set(false);
-            resetAccounting(System.currentTimeMillis());
-            if (trafficShapingHandler != null) {
-                trafficShapingHandler.doAccounting(this);
-            }
-            if (scheduledFuture != null) {
-                scheduledFuture.cancel(true);
-            }
+        if (!monitorActive.compareAndSet(true, false)) {
+            return;
+        }
+        resetAccounting(System.currentTimeMillis());
+        if (trafficShapingHandler != null) {
+            trafficShapingHandler.doAccounting(this);
+        }
+        if (scheduledFuture != null) {
+            scheduledFuture.cancel(true);
         }
     }
 
     /**
-     * Reset the accounting on Read and Write
+     * Reset the accounting on Read and Write.  This is only called at the end of each check interval and when the
+     * limits are changed, so the read and write paths never wait for it.
      *
      * @param newLastTime the millisecond unix timestamp that we should be considered up-to-date for
      */
-    void resetAccounting(long newLastTime) {
-        synchronized (lastTime) {
-            long interval = newLastTime - lastTime.getAndSet(newLastTime);
-            if (interval == 0) {
-                // nothing to do
-                return;
-            }
-            lastReadBytes = currentReadBytes.getAndSet(0);
-            lastWrittenBytes = currentWrittenBytes.getAndSet(0);
-            lastReadThroughput = lastReadBytes / interval * 1000;
-            // nb byte / checkInterval in ms * 1000 (1s)
-            lastWriteThroughput = lastWrittenBytes / interval * 1000;
-            // nb byte / checkInterval in ms * 1000 (1s)
+    synchronized void resetAccounting(long newLastTime) {
+        long interval = newLastTime - lastTime.getAndSet(newLastTime);
+        if (interval == 0) {
+            // nothing to do
+            return;
         }
+        long read = readBytes.sum();
+        long written = writtenBytes.sum();
+        lastReadBytes = read - readBytesAtLastTime;
+        lastWrittenBytes = written - writtenBytesAtLastTime;
+        readBytesAtLastTime = read;
+        writtenBytesAtLastTime = written;
+        // nb byte / checkInterval in ms * 1000 (1s)
+        lastReadThroughput = lastReadBytes * 1000 / interval;
+        lastWriteThroughput = lastWrittenBytes * 1000 / interval;
     }
 
     /**
@@ -262,8 +274,7 @@ public class TrafficCounter {
      *            the size in bytes to read
      */
     void bytesRecvFlowControl(long recv) {
-        currentReadBytes.addAndGet(recv);
-        cumulativeReadBytes.addAndGet(recv);
+        readBytes.add(recv);
     }
 
     /**
@@ -273,8 +284,7 @@ public class TrafficCounter {
      *            the size in bytes to write
      */
     void bytesWriteFlowControl(long write) {
-        currentWrittenBytes.addAndGet(write);
-        cumulativeWrittenBytes.addAndGet(write);
+        writtenBytes.add(write);
     }
 
     /**
@@ -323,7 +333,7 @@ public class TrafficCounter {
     * @return the current number of bytes read since the last checkInterval
     */
     public long currentReadBytes() {
-        return currentReadBytes.get();
+        return readBytes.sum() - readBytesAtLastTime;
     }
 
     /**
@@ -331,7 +341,7 @@ public class TrafficCounter {
      * @return the current number of bytes written since the last check Interval
      */
     public long currentWrittenBytes() {
-        return currentWrittenBytes.get();
+        return writtenBytes.sum() - writtenBytesAtLastTime;
     }
 
     /**
@@ -345,14 +355,14 @@ public class TrafficCounter {
      * @return the cumulativeWrittenBytes
      */
     public long cumulativeWrittenBytes() {
-        return cumulativeWrittenBytes.get();
+        return writtenBytes.sum() - writtenBytesAtCumulativeTime;
     }
 
     /**
      * @return the cumulativeReadBytes
      */
     public long cumulativeReadBytes() {
-        return cumulativeReadBytes.get();
+        return readBytes.sum() - readBytesAtCumulativeTime;
     }
 
     /**
@@ -368,8 +378,8 @@ public class TrafficCounter {
      */
     public void resetCumulativeTime() {
         lastCumulativeTime = System.currentTimeMillis();
-        cumulativeReadBytes.set(0);
-        cumulativeWrittenBytes.set(0);
+        readBytesAtCumulativeTime = readBytes.sum();
+        writtenBytesAtCumulativeTime = writtenBytes.sum();
     }
 
     /**
@@ -387,7 +397,7 @@ public class TrafficCounter {
         return "Monitor " + name + " Current Speed Read: " +
                 (lastReadThroughput >> 10) + " KB/s, Write: " +
                 (lastWriteThroughput >> 10) + " KB/s Current Read: " +
-                (currentReadBytes.get() >> 10) + " KB Current Write: " +
-                (currentWrittenBytes.get() >> 10) + " KB";
+                (currentReadBytes() >> 10) + " KB Current Write: " +
+                (currentWrittenBytes() >> 10) + " KB";
     }
 }
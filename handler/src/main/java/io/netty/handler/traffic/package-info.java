@@ -31,7 +31,11 @@
  * the kernel of traffic shaping. It could be extended to fit your needs. Two classes are proposed as default
  * implementations: see {@link io.netty.handler.traffic.ChannelTrafficShapingHandler} and
  * {@link io.netty.handler.traffic.GlobalTrafficShapingHandler} respectively for per-channel traffic shaping and
- * global traffic shaping.</li>
+ * global traffic shaping.  {@link io.netty.handler.traffic.GlobalChannelTrafficShapingHandler} combines both and
+ * shares the global bandwidth fairly between the channels.</li>
+ *
+ * <li> <tt>{@link io.netty.handler.traffic.TokenBucket}</tt>: the limiter used by the handlers, which can be shared
+ * by many threads at the cost of a single compare-and-set per message.</li>
  * </ul></p>
  *
  * <p>Both inbound and outbound traffic can be shaped independently.  This is done by either passing in
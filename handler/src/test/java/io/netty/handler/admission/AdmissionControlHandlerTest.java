@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.admission;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControlHandlerTest {
+
+    @Test
+    public void testThresholdsOfIdleExecutor() {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            LoadThresholds thresholds = new LoadThresholds(0, TimeUnit.MILLISECONDS, 1);
+            assertFalse(thresholds.isExceeded(group.next()));
+            assertFalse(thresholds.isExceeded(group.children()));
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoThresholds() {
+        new LoadThresholds(0, TimeUnit.MILLISECONDS, 0);
+    }
+
+    @Test(timeout = 10000)
+    public void testPauseAndResumeAccepting() throws Exception {
+        DefaultEventLoopGroup bossGroup = new DefaultEventLoopGroup(1);
+        DefaultEventLoopGroup childGroup = new DefaultEventLoopGroup(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Channel server = null;
+        Channel client = null;
+        try {
+            LoadThresholds thresholds = new LoadThresholds(50, TimeUnit.MILLISECONDS, 0);
+            AdmissionControlHandler handler = new AdmissionControlHandler(
+                    childGroup, thresholds, OverloadPolicy.PAUSE_READ, 10, TimeUnit.MILLISECONDS);
+            LocalAddress addr = new LocalAddress(getClass().getName());
+            server = new ServerBootstrap()
+                    .group(bossGroup, childGroup)
+                    .channel(LocalServerChannel.class)
+                    .handler(handler)
+                    .childHandler(new ChannelHandlerAdapter())
+                    .bind(addr).sync().channel();
+
+            // Start monitoring the child event loop, and let it lag behind.
+            EventLoop child = childGroup.next();
+            assertFalse(thresholds.isExceeded(child));
+            block(child, release);
+            while (!thresholds.isExceeded(child)) {
+                Thread.sleep(10);
+            }
+
+            // The connection can not complete until the child event loop is released.
+            ChannelFuture connectFuture = new Bootstrap()
+                    .group(bossGroup)
+                    .channel(LocalChannel.class)
+                    .handler(new ChannelHandlerAdapter())
+                    .connect(addr);
+            client = connectFuture.channel();
+
+            while (!handler.isPaused()) {
+                Thread.sleep(10);
+            }
+            assertFalse(server.config().isAutoRead());
+            assertEquals(1, handler.pauses());
+
+            release.countDown();
+            connectFuture.sync();
+            while (handler.isPaused()) {
+                Thread.sleep(10);
+            }
+            assertTrue(server.config().isAutoRead());
+            assertEquals(0, handler.rejectedConnections());
+        } finally {
+            release.countDown();
+            if (client != null) {
+                client.close().sync();
+            }
+            if (server != null) {
+                server.close().sync();
+            }
+            bossGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+            childGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void block(EventLoop loop, final CountDownLatch release) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignore) {
+                    // Ignore
+                }
+            }
+        });
+        started.await();
+    }
+}
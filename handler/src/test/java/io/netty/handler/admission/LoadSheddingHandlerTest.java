@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.admission;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LoadSheddingHandlerTest {
+
+    private DefaultEventLoopGroup group;
+    private DefaultEventLoopGroup childGroup;
+    private EventLoop child;
+    private LoadThresholds thresholds;
+
+    @Before
+    public void setUp() {
+        group = new DefaultEventLoopGroup(1);
+        childGroup = new DefaultEventLoopGroup(1);
+        child = childGroup.next();
+        thresholds = new LoadThresholds(50, TimeUnit.MILLISECONDS, 0);
+        // Start monitoring the child event loop.
+        assertFalse(thresholds.isExceeded(child));
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        childGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseWhenOverloaded() throws Exception {
+        LoadSheddingHandler handler = new LoadSheddingHandler(thresholds, OverloadPolicy.CLOSE);
+        BlockingQueue<Channel> accepted = new LinkedBlockingQueue<Channel>();
+        Channel server = bind(handler, accepted);
+        Channel client = connect();
+        try {
+            Channel ch = accepted.take();
+            write(client, ch);
+            assertTrue(ch.isOpen());
+
+            lag();
+            write(client, ch);
+            ch.closeFuture().sync();
+            client.closeFuture().sync();
+        } finally {
+            client.close().sync();
+            server.close().sync();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPauseReadWhenOverloaded() throws Exception {
+        LoadSheddingHandler handler = new LoadSheddingHandler(
+                thresholds, OverloadPolicy.PAUSE_READ, 10, TimeUnit.MILLISECONDS);
+        BlockingQueue<Channel> accepted = new LinkedBlockingQueue<Channel>();
+        Channel server = bind(handler, accepted);
+        Channel client = connect();
+        try {
+            Channel ch = accepted.take();
+            write(client, ch);
+            assertTrue(ch.config().isAutoRead());
+
+            lag();
+            write(client, ch);
+            assertFalse(ch.config().isAutoRead());
+            assertTrue(ch.isOpen());
+
+            // Reading is resumed once the lag has decayed.
+            while (!ch.config().isAutoRead()) {
+                Thread.sleep(10);
+            }
+            assertFalse(thresholds.isExceeded(child));
+        } finally {
+            client.close().sync();
+            server.close().sync();
+        }
+    }
+
+    private Channel bind(final LoadSheddingHandler handler, final BlockingQueue<Channel> accepted)
+            throws InterruptedException {
+        return new ServerBootstrap()
+                .group(group, childGroup)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(handler);
+                        accepted.add(ch);
+                    }
+                })
+                .bind(new LocalAddress(getClass().getName())).sync().channel();
+    }
+
+    private Channel connect() throws InterruptedException {
+        return new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .handler(new ChannelHandlerAdapter())
+                .connect(new LocalAddress(getClass().getName())).sync().channel();
+    }
+
+    /**
+     * Writes a message to the accepted channel, and waits until the child event loop has read it.
+     */
+    private void write(Channel client, Channel ch) throws Exception {
+        client.writeAndFlush(Unpooled.wrappedBuffer(new byte[] { 42 })).sync();
+        ch.eventLoop().submit(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }).sync();
+    }
+
+    /**
+     * Blocks the child event loop until its lag exceeds the thresholds.
+     */
+    private void lag() throws Exception {
+        child.submit(new Runnable() {
+            @Override
+            public void run() {
+                while (!thresholds.isExceeded(child)) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException ignore) {
+                        // Ignore
+                    }
+                }
+            }
+        }).sync();
+    }
+}
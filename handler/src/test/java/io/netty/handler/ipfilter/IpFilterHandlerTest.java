@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ipfilter;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class IpFilterHandlerTest {
+
+    private static final IpFilterRules RULES = new IpFilterRules()
+            .add("10.0.0.0/8", IpFilterRuleType.REJECT)
+            .add("10.1.0.0/16", IpFilterRuleType.ACCEPT);
+
+    @Test
+    public void testAccept() {
+        IpFilterHandler handler = new IpFilterHandler(RULES);
+        EmbeddedChannel ch = newChannel("10.1.0.1", handler);
+        assertTrue(ch.isOpen());
+        assertNull(ch.pipeline().get(IpFilterHandler.class));
+        assertEquals(0, handler.rejectedConnections());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testReject() {
+        final AtomicBoolean rejected = new AtomicBoolean();
+        IpFilterHandler handler = new IpFilterHandler(RULES) {
+            @Override
+            protected void channelRejected(ChannelHandlerContext ctx, InetSocketAddress remoteAddress) {
+                assertEquals("10.2.0.1", remoteAddress.getAddress().getHostAddress());
+                rejected.set(true);
+            }
+        };
+        EmbeddedChannel ch = newChannel("10.2.0.1", handler);
+        assertFalse(ch.isOpen());
+        assertTrue(rejected.get());
+        assertEquals(1, handler.rejectedConnections());
+    }
+
+    @Test
+    public void testDefaultReject() {
+        IpFilterHandler handler = new IpFilterHandler(RULES, IpFilterRuleType.REJECT);
+        assertFalse(newChannel("192.168.0.1", handler).isOpen());
+        assertTrue(newChannel("10.1.0.1", handler).isOpen());
+    }
+
+    @Test
+    public void testRejectBeforeLaterHandlersAreAdded() {
+        final IpFilterHandler handler = new IpFilterHandler(RULES);
+        final AtomicBoolean activeWhenAdded = new AtomicBoolean(true);
+        EmbeddedChannel ch = newChannel("10.2.0.1", new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(handler);
+                ch.pipeline().addLast(new ChannelHandlerAdapter() {
+                    @Override
+                    public void handlerAdded(ChannelHandlerContext ctx) {
+                        // A handler such as SslHandler would start a handshake here.
+                        activeWhenAdded.set(ctx.channel().isActive());
+                    }
+                });
+            }
+        });
+        assertFalse(ch.isOpen());
+        assertFalse(activeWhenAdded.get());
+        assertEquals(1, handler.rejectedConnections());
+    }
+
+    @Test
+    public void testConnectionLimit() throws Exception {
+        IpConnectionLimiter limiter = new IpConnectionLimiter(2);
+        IpFilterHandler handler = new IpFilterHandler(RULES, IpFilterRuleType.ACCEPT, limiter);
+        InetAddress address = InetAddress.getByName("192.168.0.1");
+
+        EmbeddedChannel ch1 = newChannel("192.168.0.1", handler);
+        EmbeddedChannel ch2 = newChannel("192.168.0.1", handler);
+        EmbeddedChannel ch3 = newChannel("192.168.0.1", handler);
+        EmbeddedChannel other = newChannel("192.168.0.2", handler);
+        assertTrue(ch1.isOpen());
+        assertTrue(ch2.isOpen());
+        assertFalse(ch3.isOpen());
+        assertTrue(other.isOpen());
+        assertEquals(2, limiter.connections(address));
+        assertEquals(2, limiter.addresses());
+        assertEquals(1, handler.rejectedConnections());
+
+        ch1.close();
+        assertEquals(1, limiter.connections(address));
+        assertTrue(newChannel("192.168.0.1", handler).isOpen());
+        assertEquals(2, limiter.connections(address));
+    }
+
+    @Test
+    public void testLimiterRelease() throws Exception {
+        IpConnectionLimiter limiter = new IpConnectionLimiter(1);
+        InetAddress address = InetAddress.getByName("::1");
+        assertTrue(limiter.tryAcquire(address));
+        assertFalse(limiter.tryAcquire(address));
+        limiter.release(address);
+        assertEquals(0, limiter.connections(address));
+        assertEquals(0, limiter.addresses());
+        assertTrue(limiter.tryAcquire(address));
+    }
+
+    private static EmbeddedChannel newChannel(String remoteAddress, ChannelHandler handler) {
+        final SocketAddress address = new InetSocketAddress(remoteAddress, 12345);
+        return new EmbeddedChannel(handler) {
+            @Override
+            protected SocketAddress remoteAddress0() {
+                return address;
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ipfilter;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.*;
+
+public class IpFilterRulesTest {
+
+    @Test
+    public void testLongestPrefixWins() throws Exception {
+        IpFilterRules rules = new IpFilterRules()
+                .add("10.0.0.0/8", IpFilterRuleType.REJECT)
+                .add("10.1.0.0/16", IpFilterRuleType.ACCEPT)
+                .add("10.1.2.3", IpFilterRuleType.REJECT);
+        assertEquals(3, rules.size());
+        assertEquals(IpFilterRuleType.REJECT, rules.match(InetAddress.getByName("10.200.0.1")));
+        assertEquals(IpFilterRuleType.ACCEPT, rules.match(InetAddress.getByName("10.1.200.1")));
+        assertEquals(IpFilterRuleType.REJECT, rules.match(InetAddress.getByName("10.1.2.3")));
+        assertEquals(IpFilterRuleType.ACCEPT, rules.match(InetAddress.getByName("10.1.2.4")));
+        assertNull(rules.match(InetAddress.getByName("11.0.0.1")));
+    }
+
+    @Test
+    public void testIpV6() throws Exception {
+        IpFilterRules rules = new IpFilterRules()
+                .add("2001:db8::/32", IpFilterRuleType.REJECT)
+                .add("2001:db8:1::/48", IpFilterRuleType.ACCEPT);
+        assertEquals(IpFilterRuleType.REJECT, rules.match(InetAddress.getByName("2001:db8:2::1")));
+        assertEquals(IpFilterRuleType.ACCEPT, rules.match(InetAddress.getByName("2001:db8:1::1")));
+        assertNull(rules.match(InetAddress.getByName("2001:db9::1")));
+        // IPv4 and IPv6 ranges never match each other.
+        assertNull(rules.match(InetAddress.getByName("32.1.13.184")));
+    }
+
+    @Test
+    public void testIpV4MappedRange() throws Exception {
+        IpFilterRules rules = new IpFilterRules().add("::ffff:192.168.0.0/112", IpFilterRuleType.REJECT);
+        assertEquals(IpFilterRuleType.REJECT, rules.match(InetAddress.getByName("192.168.3.4")));
+        assertNull(rules.match(InetAddress.getByName("192.169.3.4")));
+    }
+
+    @Test
+    public void testMatchAll() throws Exception {
+        IpFilterRules rules = new IpFilterRules().add("0.0.0.0/0", IpFilterRuleType.REJECT);
+        assertEquals(IpFilterRuleType.REJECT, rules.match(InetAddress.getByName("1.2.3.4")));
+        assertNull(rules.match(InetAddress.getByName("::1")));
+    }
+
+    @Test
+    public void testReplaceRule() throws Exception {
+        IpFilterRules rules = new IpFilterRules()
+                .add("192.168.0.0/16", IpFilterRuleType.REJECT)
+                .add(InetAddress.getByName("192.168.1.1"), 16, IpFilterRuleType.ACCEPT);
+        assertEquals(1, rules.size());
+        assertEquals(IpFilterRuleType.ACCEPT, rules.match(InetAddress.getByName("192.168.0.1")));
+    }
+
+    @Test
+    public void testManyRules() throws Exception {
+        IpFilterRules rules = new IpFilterRules();
+        for (int i = 0; i < 256; i ++) {
+            rules.add("172.16." + i + ".0/24", i % 2 == 0 ? IpFilterRuleType.ACCEPT : IpFilterRuleType.REJECT);
+        }
+        assertEquals(256, rules.size());
+        for (int i = 0; i < 256; i ++) {
+            assertEquals(i % 2 == 0 ? IpFilterRuleType.ACCEPT : IpFilterRuleType.REJECT,
+                    rules.match(InetAddress.getByName("172.16." + i + ".42")));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrefixLength() {
+        new IpFilterRules().add("10.0.0.0/33", IpFilterRuleType.REJECT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAddress() {
+        new IpFilterRules().add("10.0.0/8", IpFilterRuleType.REJECT);
+    }
+}
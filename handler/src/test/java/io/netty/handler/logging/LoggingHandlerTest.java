@@ -18,6 +18,7 @@ package io.netty.handler.logging;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.read.ListAppender;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
 import io.netty.buffer.DefaultByteBufHolder;
@@ -35,12 +36,16 @@ import org.junit.Test;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
 
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.CoreMatchers.endsWith;
 import static org.junit.Assert.*;
 
 /**
@@ -265,6 +270,111 @@ public class LoggingHandlerTest {
         assertThat(channel.readInbound(), is(nullValue()));
     }
 
+    @Test
+    public void shouldLogEveryNthEvent() {
+        ListAppender<ILoggingEvent> events = newListAppender();
+        try {
+            LoggingHandler handler = new LoggingHandler();
+            handler.setSampleInterval(2);
+            // REGISTERED is logged and ACTIVE is skipped.
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            for (int i = 0; i < 4; i ++) {
+                channel.writeInbound(String.valueOf(i));
+            }
+            assertEquals(3, events.list.size());
+            assertThat(events.list.get(1).getMessage(), endsWith("RECEIVED: 0"));
+            assertThat(events.list.get(2).getMessage(), endsWith("RECEIVED: 2"));
+        } finally {
+            root.detachAppender(events);
+        }
+    }
+
+    @Test
+    public void shouldLimitEventsPerSecond() {
+        ListAppender<ILoggingEvent> events = newListAppender();
+        try {
+            LoggingHandler handler = new LoggingHandler();
+            handler.setMaxEventsPerSecond(3);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            for (int i = 0; i < 10; i ++) {
+                channel.writeInbound(String.valueOf(i));
+            }
+            assertEquals(3, events.list.size());
+        } finally {
+            root.detachAppender(events);
+        }
+    }
+
+    @Test
+    public void shouldTruncateHexDump() {
+        ListAppender<ILoggingEvent> events = newListAppender();
+        try {
+            LoggingHandler handler = new LoggingHandler();
+            handler.setMaxHexDumpBytes(16);
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            ByteBuf msg = Unpooled.wrappedBuffer(new byte[40]);
+            channel.writeInbound(msg);
+            assertSame(msg, channel.readInbound());
+            msg.release();
+
+            String[] lines = events.list.get(events.list.size() - 1).getMessage().split("(?s)[\\r\\n]+");
+            assertThat(lines[0], endsWith("RECEIVED: 40B"));
+            // Header, a single row and footer.
+            assertEquals(1 + 3 + 1 + 1 + 1, lines.length);
+            assertEquals("... 24B more", lines[lines.length - 1]);
+        } finally {
+            root.detachAppender(events);
+        }
+    }
+
+    @Test
+    public void shouldFormatInExecutor() throws Exception {
+        ListAppender<ILoggingEvent> events = newListAppender();
+        try {
+            final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+            LoggingHandler handler = new LoggingHandler();
+            handler.setExecutor(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    tasks.add(command);
+                }
+            });
+            EmbeddedChannel channel = new EmbeddedChannel(handler);
+            ByteBuf msg = Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8);
+            channel.writeInbound(msg);
+            assertSame(msg, channel.readInbound());
+            // Consume and release the message before it is formatted.
+            msg.skipBytes(msg.readableBytes());
+            msg.release();
+            assertEquals(1, msg.refCnt());
+            assertTrue(events.list.isEmpty());
+
+            for (;;) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                task.run();
+            }
+            assertEquals(0, msg.refCnt());
+
+            assertEquals(3, events.list.size());
+            assertThat(events.list.get(0).getMessage(), endsWith("REGISTERED"));
+            String message = events.list.get(2).getMessage();
+            assertThat(message, containsString("RECEIVED: 5B"));
+            assertThat(message, containsString("|hello           |"));
+        } finally {
+            root.detachAppender(events);
+        }
+    }
+
+    private static ListAppender<ILoggingEvent> newListAppender() {
+        ListAppender<ILoggingEvent> appender = new ListAppender<ILoggingEvent>();
+        appender.start();
+        root.addAppender(appender);
+        return appender;
+    }
+
     /**
      * Static helper method for matching Logback messages.
      *
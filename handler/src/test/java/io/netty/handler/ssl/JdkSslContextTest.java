@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.xml.bind.DatatypeConverter;
+import java.io.InputStream;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JdkSslContextTest {
+
+    private static KeyManagerFactory keyManagerFactory;
+    private static TrustManagerFactory trustManagerFactory;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        Certificate cert;
+        InputStream in = JdkSslContextTest.class.getResourceAsStream("test.crt");
+        try {
+            cert = CertificateFactory.getInstance("X.509").generateCertificate(in);
+        } finally {
+            in.close();
+        }
+        PrivateKey key = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(readPem("test.key")));
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("key", key, new char[0], new Certificate[] { cert });
+        keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, new char[0]);
+
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("cert", cert);
+        trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trustStore);
+    }
+
+    private static byte[] readPem(String name) throws Exception {
+        InputStream in = JdkSslContextTest.class.getResourceAsStream(name);
+        StringBuilder buf = new StringBuilder();
+        try {
+            int b;
+            while ((b = in.read()) >= 0) {
+                buf.append((char) b);
+            }
+        } finally {
+            in.close();
+        }
+        String pem = buf.toString().replaceAll("-----[A-Z ]+-----", "");
+        return DatatypeConverter.parseBase64Binary(pem.replaceAll("\\s", ""));
+    }
+
+    @Test
+    public void testClientResumesSessionOfSamePeer() throws Exception {
+        SSLContext serverSslContext = SSLContext.getInstance("TLSv1.2");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        SSLContext clientSslContext = SSLContext.getInstance("TLSv1.2");
+        clientSslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+
+        SslContext server = new JdkSslContext(serverSslContext, true, 16, 60);
+        SslContext client = new JdkSslContext(clientSslContext, false, 16, 60);
+        assertTrue(server.isServer());
+        assertTrue(client.isClient());
+        assertEquals(16, client.sessionCacheSize());
+        assertEquals(60, client.sessionTimeout());
+
+        byte[] id = connect(client.newHandler(UnpooledByteBufAllocator.DEFAULT, "localhost", 8443), server);
+        assertArrayEquals(id, connect(client.newHandler(UnpooledByteBufAllocator.DEFAULT, "localhost", 8443), server));
+
+        // Another peer does not get the session.
+        assertFalse(Arrays.equals(
+                id, connect(client.newHandler(UnpooledByteBufAllocator.DEFAULT, "localhost", 8444), server)));
+
+        // The engines of the JDK do not tell whether a session was resumed.
+        assertFalse(client instanceof SslSessionResumption);
+    }
+
+    @Test
+    public void testSessionTicketKeyRotator() {
+        final List<SslSessionTicketKey[]> updates = new ArrayList<SslSessionTicketKey[]>();
+        SslSessionResumption context = new SslSessionResumption() {
+            @Override
+            public long sessionHits() {
+                return 0;
+            }
+
+            @Override
+            public long sessionMisses() {
+                return 0;
+            }
+
+            @Override
+            public void setSessionTicketKeys(SslSessionTicketKey... keys) {
+                updates.add(keys);
+            }
+        };
+
+        SslSessionTicketKeyRotator rotator = new SslSessionTicketKeyRotator(2, context);
+        for (int i = 0; i < 3; i ++) {
+            rotator.run();
+        }
+        assertEquals(3, updates.size());
+        assertEquals(1, updates.get(0).length);
+        assertEquals(2, updates.get(1).length);
+        assertEquals(2, updates.get(2).length);
+        // The current key becomes the secondary key on the next rotation, and the oldest key is dropped.
+        assertSame(updates.get(0)[0], updates.get(1)[1]);
+        assertSame(updates.get(1)[0], updates.get(2)[1]);
+    }
+
+    /**
+     * Returns the ID of the session established by the client.
+     */
+    private static byte[] connect(SslHandler clientHandler, SslContext server) throws Exception {
+        SslHandler serverHandler = server.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        // EmbeddedChannel does not support scheduling a timeout.
+        clientHandler.setHandshakeTimeoutMillis(0);
+        serverHandler.setHandshakeTimeoutMillis(0);
+        EmbeddedChannel clientChannel = new EmbeddedChannel(clientHandler);
+        EmbeddedChannel serverChannel = new EmbeddedChannel(serverHandler);
+        for (int i = 0; i < 10; i ++) {
+            forward(clientChannel, serverChannel);
+            forward(serverChannel, clientChannel);
+        }
+        assertTrue(clientHandler.handshakeFuture().isSuccess());
+        assertTrue(serverHandler.handshakeFuture().isSuccess());
+
+        clientChannel.writeOutbound(Unpooled.copiedBuffer("ping", CharsetUtil.US_ASCII));
+        forward(clientChannel, serverChannel);
+        ByteBuf received = (ByteBuf) serverChannel.readInbound();
+        assertEquals("ping", received.toString(CharsetUtil.US_ASCII));
+        received.release();
+
+        clientHandler.setCloseNotifyTimeoutMillis(0);
+        serverHandler.setCloseNotifyTimeoutMillis(0);
+        byte[] id = clientHandler.engine().getSession().getId();
+        clientChannel.close();
+        forward(clientChannel, serverChannel);
+        serverChannel.close();
+        return id;
+    }
+
+    private static void forward(EmbeddedChannel from, EmbeddedChannel to) {
+        for (;;) {
+            ByteBuf buf = (ByteBuf) from.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            to.writeInbound(buf);
+        }
+    }
+}
@@ -16,14 +16,32 @@
 
 package io.netty.handler.ssl;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.DecoderException;
 import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
 import javax.net.ssl.SSLProtocolException;
+import javax.net.ssl.SSLSession;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
@@ -70,4 +88,344 @@ public class SslHandlerTest {
 
         ch.finish();
     }
+
+    @Test
+    public void testCoalescesSmallWrites() throws Exception {
+        RecordingEngine engine = new RecordingEngine();
+        SslHandler handler = new SslHandler(engine);
+        handler.setHandshakeTimeoutMillis(0);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        assertTrue(handler.handshakeFuture().isSuccess());
+
+        List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+        for (int i = 0; i < 30; i ++) {
+            futures.add(ch.write(Unpooled.wrappedBuffer(new byte[] { (byte) i, (byte) i })));
+        }
+        ch.flush();
+        assertEquals(Arrays.asList(60), engine.wrapped);
+        ByteBuf record = (ByteBuf) ch.readOutbound();
+        assertEquals(60, record.readableBytes());
+        for (int i = 0; i < 30; i ++) {
+            assertEquals(i, record.getByte(i * 2));
+            assertTrue(futures.get(i).isSuccess());
+        }
+        record.release();
+        assertEquals(0, releaseOutbound(ch));
+
+        // Two writes which do not fit into a record together.
+        engine.wrapped.clear();
+        ch.write(Unpooled.wrappedBuffer(new byte[10000]));
+        ch.write(Unpooled.wrappedBuffer(new byte[10000]));
+        ch.flush();
+        assertEquals(Arrays.asList(10000, 10000), engine.wrapped);
+        assertEquals(20000, releaseOutbound(ch));
+    }
+
+    @Test
+    public void testCoalescesWritesAfterLargeWrite() throws Exception {
+        RecordingEngine engine = new RecordingEngine();
+        SslHandler handler = new SslHandler(engine);
+        handler.setHandshakeTimeoutMillis(0);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+
+        ch.write(Unpooled.wrappedBuffer(new byte[20000]));
+        ChannelFuture cancelled = ch.write(Unpooled.wrappedBuffer(new byte[] { 1, 2 }));
+        ChannelFuture future1 = ch.write(Unpooled.wrappedBuffer(new byte[] { 3, 4 }));
+        ChannelFuture future2 = ch.write(Unpooled.wrappedBuffer(new byte[] { 5, 6 }));
+        assertTrue(cancelled.cancel(false));
+        ch.flush();
+
+        // The small writes are coalesced once the large one has been wrapped.
+        assertEquals(Arrays.asList(20000, 6), engine.wrapped);
+        assertEquals(20006, releaseOutbound(ch));
+        assertTrue(cancelled.isCancelled());
+        assertTrue(future1.isSuccess());
+        assertTrue(future2.isSuccess());
+    }
+
+    @Test
+    public void testDelegatedTasksAreRunAsynchronously() throws Exception {
+        final Queue<Runnable> pool = new ArrayDeque<Runnable>();
+        SslHandshakeExecutor executor = new SslHandshakeExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pool.add(command);
+            }
+        }, 1);
+        RecordingEngine engine = new RecordingEngine(true);
+        SslHandler handler = new SslHandler(engine, executor);
+        handler.setHandshakeTimeoutMillis(0);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+
+        // The handshake is suspended until the task is done.
+        assertEquals(1, pool.size());
+        assertFalse(handler.handshakeFuture().isDone());
+        ChannelFuture future = ch.write(Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 }));
+        ch.flush();
+        assertEquals(0, releaseOutbound(ch));
+        assertTrue(engine.wrapped.isEmpty());
+
+        pool.poll().run();
+        assertEquals(1, executor.completedTasks());
+        assertFalse(handler.handshakeFuture().isDone());
+
+        // Resumed in the event loop.
+        ch.runPendingTasks();
+        assertTrue(handler.handshakeFuture().isSuccess());
+        assertTrue(future.isSuccess());
+        assertEquals(Arrays.asList(3), engine.wrapped);
+        assertEquals(3, releaseOutbound(ch));
+        assertEquals(1, executor.completedHandshakes());
+    }
+
+    @Test
+    public void testHandlerRemovedWhileTasksAreRun() throws Exception {
+        final Queue<Runnable> pool = new ArrayDeque<Runnable>();
+        RecordingEngine engine = new RecordingEngine(true);
+        SslHandler handler = new SslHandler(engine, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pool.add(command);
+            }
+        });
+        handler.setHandshakeTimeoutMillis(0);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        assertEquals(1, pool.size());
+
+        ch.pipeline().remove(handler);
+        pool.poll().run();
+        ch.runPendingTasks();
+        // The handshake is not resumed.
+        assertFalse(engine.handshakeFinished);
+        assertEquals(0, releaseOutbound(ch));
+    }
+
+    @Test
+    public void testRecordReceivedWhileTasksAreRun() throws Exception {
+        ReadCompleteCounter counter = new ReadCompleteCounter();
+        Queue<Runnable> pool = new ArrayDeque<Runnable>();
+        EmbeddedChannel ch = newDelegatingChannel(pool, counter);
+
+        // A whole record and the beginning of the next one.
+        ch.writeInbound(Unpooled.wrappedBuffer(new byte[] { 23, 3, 3, 0, 1, 42, 23, 3, 3 }));
+        assertNull(ch.readInbound());
+        assertEquals(1, counter.readCompletes);
+
+        pool.poll().run();
+        ch.runPendingTasks();
+        ByteBuf decoded = (ByteBuf) ch.readInbound();
+        assertEquals(6, decoded.readableBytes());
+        decoded.release();
+        assertNull(ch.readInbound());
+        assertEquals(2, counter.readCompletes);
+    }
+
+    @Test
+    public void testPartialRecordReceivedWhileTasksAreRun() throws Exception {
+        ReadCompleteCounter counter = new ReadCompleteCounter();
+        Queue<Runnable> pool = new ArrayDeque<Runnable>();
+        EmbeddedChannel ch = newDelegatingChannel(pool, counter);
+
+        ch.writeInbound(Unpooled.wrappedBuffer(new byte[] { 23, 3, 3 }));
+        assertEquals(1, counter.readCompletes);
+
+        // Nothing is decoded, so the handlers next to SslHandler are not told that a read is complete.
+        pool.poll().run();
+        ch.runPendingTasks();
+        assertNull(ch.readInbound());
+        assertEquals(1, counter.readCompletes);
+    }
+
+    private static EmbeddedChannel newDelegatingChannel(final Queue<Runnable> pool, ReadCompleteCounter counter) {
+        SslHandler handler = new SslHandler(new RecordingEngine(true), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pool.add(command);
+            }
+        });
+        handler.setHandshakeTimeoutMillis(0);
+        EmbeddedChannel ch = new EmbeddedChannel(handler, counter);
+        assertEquals(1, pool.size());
+        return ch;
+    }
+
+    private static int releaseOutbound(EmbeddedChannel ch) {
+        int readableBytes = 0;
+        for (;;) {
+            ByteBuf buf = (ByteBuf) ch.readOutbound();
+            if (buf == null) {
+                return readableBytes;
+            }
+            readableBytes += buf.readableBytes();
+            buf.release();
+        }
+    }
+
+    private static final class ReadCompleteCounter extends ChannelHandlerAdapter {
+
+        int readCompletes;
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            readCompletes ++;
+        }
+    }
+
+    /**
+     * A client-side {@link SSLEngine} which finishes the handshake immediately, optionally after running a delegated
+     * task, and neither encrypts nor decrypts anything.
+     */
+    private static final class RecordingEngine extends SSLEngine {
+
+        final List<Integer> wrapped = new ArrayList<Integer>();
+        private final boolean delegateTask;
+        private boolean taskDelegated;
+        private volatile boolean taskDone;
+        private boolean handshakeFinished;
+
+        RecordingEngine() {
+            this(false);
+        }
+
+        RecordingEngine(boolean delegateTask) {
+            this.delegateTask = delegateTask;
+        }
+
+        @Override
+        public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) {
+            if (delegateTask && !taskDone) {
+                return new SSLEngineResult(Status.OK, HandshakeStatus.NEED_TASK, 0, 0);
+            }
+            if (!handshakeFinished) {
+                handshakeFinished = true;
+                return new SSLEngineResult(Status.OK, HandshakeStatus.FINISHED, 0, 0);
+            }
+            int produced = 0;
+            for (int i = offset; i < offset + length; i ++) {
+                produced += srcs[i].remaining();
+                dst.put(srcs[i]);
+            }
+            if (produced > 0) {
+                wrapped.add(produced);
+            }
+            return new SSLEngineResult(Status.OK, HandshakeStatus.NOT_HANDSHAKING, produced, produced);
+        }
+
+        @Override
+        public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) {
+            int consumed = src.remaining();
+            dsts[offset].put(src);
+            return new SSLEngineResult(Status.OK, HandshakeStatus.NOT_HANDSHAKING, consumed, consumed);
+        }
+
+        @Override
+        public Runnable getDelegatedTask() {
+            if (!delegateTask || taskDelegated) {
+                return null;
+            }
+            taskDelegated = true;
+            return new Runnable() {
+                @Override
+                public void run() {
+                    taskDone = true;
+                }
+            };
+        }
+
+        @Override
+        public void closeInbound() { }
+
+        @Override
+        public boolean isInboundDone() {
+            return false;
+        }
+
+        @Override
+        public void closeOutbound() { }
+
+        @Override
+        public boolean isOutboundDone() {
+            return false;
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getEnabledCipherSuites() {
+            return new String[0];
+        }
+
+        @Override
+        public void setEnabledCipherSuites(String[] suites) { }
+
+        @Override
+        public String[] getSupportedProtocols() {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getEnabledProtocols() {
+            return new String[0];
+        }
+
+        @Override
+        public void setEnabledProtocols(String[] protocols) { }
+
+        @Override
+        public SSLSession getSession() {
+            return (SSLSession) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[] { SSLSession.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if (method.getName().endsWith("BufferSize")) {
+                                return 32 * 1024;
+                            }
+                            return null;
+                        }
+                    });
+        }
+
+        @Override
+        public void beginHandshake() { }
+
+        @Override
+        public HandshakeStatus getHandshakeStatus() {
+            return HandshakeStatus.NOT_HANDSHAKING;
+        }
+
+        @Override
+        public void setUseClientMode(boolean mode) { }
+
+        @Override
+        public boolean getUseClientMode() {
+            return true;
+        }
+
+        @Override
+        public void setNeedClientAuth(boolean need) { }
+
+        @Override
+        public boolean getNeedClientAuth() {
+            return false;
+        }
+
+        @Override
+        public void setWantClientAuth(boolean want) { }
+
+        @Override
+        public boolean getWantClientAuth() {
+            return false;
+        }
+
+        @Override
+        public void setEnableSessionCreation(boolean flag) { }
+
+        @Override
+        public boolean getEnableSessionCreation() {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SslHandshakeExecutorTest {
+
+    @Test
+    public void testConcurrencyLimit() {
+        final Queue<Runnable> pool = new ArrayDeque<Runnable>();
+        SslHandshakeExecutor executor = new SslHandshakeExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pool.add(command);
+            }
+        }, 2);
+
+        final AtomicInteger done = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                done.incrementAndGet();
+            }
+        };
+        for (int i = 0; i < 5; i ++) {
+            executor.execute(task);
+        }
+        assertEquals(2, pool.size());
+        assertEquals(3, executor.queuedTasks());
+
+        // A completed task lets the next one run.
+        pool.poll().run();
+        assertEquals(2, pool.size());
+        assertEquals(2, executor.queuedTasks());
+        assertEquals(1, executor.completedTasks());
+
+        while (!pool.isEmpty()) {
+            pool.poll().run();
+        }
+        assertEquals(5, done.get());
+        assertEquals(5, executor.completedTasks());
+        assertEquals(0, executor.queuedTasks());
+        assertEquals(0, executor.activeTasks());
+    }
+
+    @Test
+    public void testLimitIsPerThread() throws Exception {
+        final Queue<Runnable> pool = new ArrayDeque<Runnable>();
+        final SslHandshakeExecutor executor = new SslHandshakeExecutor(new Executor() {
+            @Override
+            public synchronized void execute(Runnable command) {
+                pool.add(command);
+            }
+        }, 1);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() { }
+        };
+
+        executor.execute(task);
+        executor.execute(task);
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                executor.execute(task);
+            }
+        };
+        t.start();
+        t.join();
+
+        synchronized (executor) {
+            assertEquals(2, pool.size());
+        }
+        assertEquals(1, executor.queuedTasks());
+    }
+}
@@ -16,9 +16,11 @@
 package io.netty.handler.stream;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.CharsetUtil;
@@ -30,6 +32,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.netty.util.ReferenceCountUtil.*;
 import static org.junit.Assert.*;
@@ -182,6 +185,82 @@ public class ChunkedWriteHandlerTest {
         assertNull(ch.readOutbound());
     }
 
+    @Test
+    public void testAdaptiveChunkSize() throws IOException {
+        // Nothing is pending, so the whole file fits below the high water mark.
+        EmbeddedChannel ch = new EmbeddedChannel(new ChunkedWriteHandler());
+        ch.writeOutbound(new ChunkedFile(TMP));
+        assertTrue(ch.finish());
+        ByteBuf buffer = ch.readOutbound();
+        assertEquals(BYTES.length, buffer.readableBytes());
+        buffer.release();
+        assertNull(ch.readOutbound());
+
+        // An explicit chunk size is honored.
+        ch = new EmbeddedChannel(new ChunkedWriteHandler());
+        ch.writeOutbound(new ChunkedNioFile(TMP, 8192));
+        assertTrue(ch.finish());
+        int chunks = 0;
+        for (;;) {
+            buffer = ch.readOutbound();
+            if (buffer == null) {
+                break;
+            }
+            assertEquals(8192, buffer.readableBytes());
+            buffer.release();
+            chunks ++;
+        }
+        assertEquals(BYTES.length / 8192, chunks);
+    }
+
+    @Test
+    public void testChunkedFileReadsIntoPooledDirectBuffer() throws IOException {
+        EmbeddedChannel ch = new EmbeddedChannel(new ChunkedWriteHandler());
+        ch.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+        ch.writeOutbound(new ChunkedFile(TMP));
+        assertTrue(ch.finish());
+        ByteBuf buffer = ch.readOutbound();
+        assertEquals(PooledByteBufAllocator.DEFAULT.isDirectBufferPooled(), buffer.isDirect());
+        for (int i = 0; i < BYTES.length; i ++) {
+            assertEquals(BYTES[i], buffer.getByte(i));
+        }
+        buffer.release();
+    }
+
+    @Test
+    public void testChunksAreFlushedInBatch() {
+        final AtomicInteger flushes = new AtomicInteger();
+        EmbeddedChannel ch = new EmbeddedChannel(new ChannelHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushes.incrementAndGet();
+                ctx.flush();
+            }
+        }, new ChunkedWriteHandler());
+
+        ch.writeAndFlush(new ChunkedStream(new ByteArrayInputStream(BYTES, 0, 16 * 1024), 1024));
+        assertEquals(1, flushes.get());
+
+        // A batch is flushed once it reaches the high water mark.
+        flushes.set(0);
+        ch.config().setWriteBufferLowWaterMark(2048);
+        ch.config().setWriteBufferHighWaterMark(4096);
+        ch.writeAndFlush(new ChunkedStream(new ByteArrayInputStream(BYTES, 0, 16 * 1024), 1024));
+        assertEquals(4, flushes.get());
+
+        assertTrue(ch.finish());
+        int read = 0;
+        for (;;) {
+            ByteBuf buffer = ch.readOutbound();
+            if (buffer == null) {
+                break;
+            }
+            read += buffer.readableBytes();
+            buffer.release();
+        }
+        assertEquals(32 * 1024, read);
+    }
+
     private static void check(ChunkedInput<?>... inputs) {
         EmbeddedChannel ch = new EmbeddedChannel(new ChunkedWriteHandler());
 
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IdleChannelScannerTest {
+
+    private static final EventExecutor executor = new DefaultEventExecutor();
+
+    @AfterClass
+    public static void destroy() {
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRemoveWhileScanning() throws Exception {
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                final IdleChannelScanner scanner = new IdleChannelScanner(executor, 60000);
+                final int[] scans = new int[3];
+                IdleChannelScanner.Entry[] entries = new IdleChannelScanner.Entry[3];
+                for (int i = 0; i < entries.length; i ++) {
+                    final int id = i;
+                    entries[i] = new IdleChannelScanner.Entry() {
+                        @Override
+                        void scan(long now) {
+                            scans[id] ++;
+                            if (id == 0) {
+                                // The last entry is moved to the slot of the removed one.
+                                scanner.remove(this);
+                            }
+                        }
+                    };
+                    scanner.add(entries[i]);
+                }
+                assertEquals(3, scanner.size());
+
+                scanner.scan(42);
+                assertEquals(42, scanner.now());
+                assertEquals(2, scanner.size());
+                assertArrayEquals(new int[] { 1, 1, 1 }, scans);
+
+                scanner.scan(43);
+                assertArrayEquals(new int[] { 1, 2, 2 }, scans);
+
+                scanner.remove(entries[0]);
+                scanner.remove(entries[1]);
+                scanner.remove(entries[2]);
+                assertEquals(0, scanner.size());
+                return null;
+            }
+        }).sync();
+    }
+
+    @Test
+    public void testScannerForgottenOnTermination() throws Exception {
+        EventExecutor executor = new DefaultEventExecutor();
+        IdleChannelScanner scanner = IdleChannelScanner.get(executor);
+        assertSame(scanner, IdleChannelScanner.get(executor));
+
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        // The termination listeners are notified asynchronously.
+        for (int i = 0; i < 100 && IdleChannelScanner.get(executor) == scanner; i ++) {
+            Thread.sleep(10);
+        }
+        assertNotSame(scanner, IdleChannelScanner.get(executor));
+    }
+
+    @Test
+    public void testTicks() throws Exception {
+        final IdleChannelScanner scanner = new IdleChannelScanner(executor, 10);
+        final CountDownLatch latch = new CountDownLatch(3);
+        final IdleChannelScanner.Entry entry = new IdleChannelScanner.Entry() {
+            private long lastNow = Long.MIN_VALUE;
+
+            @Override
+            void scan(long now) {
+                assertTrue(now >= lastNow);
+                lastNow = now;
+                latch.countDown();
+                if (latch.getCount() == 0) {
+                    scanner.remove(this);
+                }
+            }
+        };
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                scanner.add(entry);
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, (int) executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return scanner.size();
+            }
+        }).get());
+    }
+}
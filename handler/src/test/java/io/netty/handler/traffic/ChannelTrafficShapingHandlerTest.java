@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.traffic;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.local.LocalChannel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ChannelTrafficShapingHandlerTest {
+
+    @Test(timeout = 10000)
+    public void testDueWriteIsNotOvertaken() throws Exception {
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(2);
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            final Channel ch = new Bootstrap()
+                    .group(group)
+                    .channel(LocalChannel.class)
+                    .handler(new ChannelHandlerAdapter() {
+                        @Override
+                        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                            written.add(((ByteBuf) msg).readableBytes());
+                            ((ByteBuf) msg).release();
+                            promise.setSuccess();
+                            latch.countDown();
+                        }
+                    })
+                    .register().sync().channel();
+            // 1000 B/s, so that the 10 bytes of the burst window pass immediately.
+            ch.pipeline().addLast(new ChannelTrafficShapingHandler(1000, 0));
+
+            ch.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Delayed by 40 ms.
+                    ch.write(Unpooled.wrappedBuffer(new byte[50]));
+                    try {
+                        // Let the delay of the first write elapse before its task can run.
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    // Not delayed by the bucket, which has refilled.
+                    ch.writeAndFlush(Unpooled.wrappedBuffer(new byte[1]));
+                }
+            });
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(50, 1), written);
+            ch.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+}
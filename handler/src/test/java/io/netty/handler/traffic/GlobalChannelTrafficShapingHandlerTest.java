@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.traffic;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GlobalChannelTrafficShapingHandlerTest {
+
+    @Test
+    public void testFairShares() {
+        // No check interval, so that the shares are only updated explicitly.
+        GlobalChannelTrafficShapingHandler handler =
+                new GlobalChannelTrafficShapingHandler(GlobalEventExecutor.INSTANCE, 1000, 0, 800, 0, 0);
+        try {
+            EmbeddedChannel ch1 = new EmbeddedChannel(handler);
+            assertEquals(800, handler.currentWriteLimit(ch1));
+            assertEquals(0, handler.currentReadLimit(ch1));
+
+            EmbeddedChannel ch2 = new EmbeddedChannel(handler);
+            EmbeddedChannel ch3 = new EmbeddedChannel(handler);
+            assertEquals(333, handler.currentWriteLimit(ch1));
+            assertEquals(333, handler.currentWriteLimit(ch2));
+            assertEquals(333, handler.currentWriteLimit(ch3));
+
+            ch3.pipeline().remove(handler);
+            assertEquals(0, handler.currentWriteLimit(ch3));
+            assertEquals(500, handler.currentWriteLimit(ch1));
+
+            // Only the active channels share the global limit.
+            handler.doAccounting(handler.trafficCounter());
+            assertTrue(ch1.writeOutbound(Unpooled.wrappedBuffer(new byte[1])));
+            handler.doAccounting(handler.trafficCounter());
+            assertEquals(800, handler.currentWriteLimit(ch1));
+            assertEquals(800, handler.currentWriteLimit(ch2));
+            assertEquals(0, handler.queuedBytes(ch1));
+            assertEquals(0, handler.queuedBytes());
+
+            ByteBuf written = (ByteBuf) ch1.readOutbound();
+            assertEquals(1, written.readableBytes());
+            written.release();
+            assertEquals(1, handler.trafficCounter().cumulativeWrittenBytes());
+
+            handler.configureChannel(100, 50);
+            assertEquals(100, handler.currentWriteLimit(ch1));
+            assertEquals(50, handler.currentReadLimit(ch2));
+
+            assertFalse(ch1.finish());
+            assertFalse(ch2.finish());
+            assertFalse(ch3.finish());
+        } finally {
+            handler.release();
+        }
+    }
+}
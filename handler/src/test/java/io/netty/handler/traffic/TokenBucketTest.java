@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.traffic;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testUnlimited() {
+        TokenBucket bucket = new TokenBucket(0, 10);
+        assertEquals(0, bucket.acquire(Long.MAX_VALUE / 2, 0));
+        assertEquals(0, bucket.acquire(Long.MAX_VALUE / 2, 0));
+    }
+
+    @Test
+    public void testDelay() {
+        TokenBucket bucket = new TokenBucket(1000, 10);
+        long now = System.nanoTime();
+        // The burst window lets 10 bytes through.
+        assertEquals(0, bucket.acquire(10, now));
+        assertEquals(10 * MS, bucket.acquire(10, now));
+        assertEquals(1010 * MS, bucket.acquire(1000, now));
+        // The delays are paid as time passes.
+        assertEquals(10 * MS, bucket.acquire(10, now + 1010 * MS));
+    }
+
+    @Test
+    public void testIdleBucketDoesNotAccumulate() {
+        TokenBucket bucket = new TokenBucket(1000, 10);
+        long now = System.nanoTime();
+        now += TimeUnit.SECONDS.toNanos(10);
+        assertEquals(0, bucket.acquire(10, now));
+        assertEquals(10 * MS, bucket.acquire(10, now));
+    }
+
+    @Test
+    public void testSetRate() {
+        TokenBucket bucket = new TokenBucket(1000, 0);
+        long now = System.nanoTime();
+        assertEquals(1000 * MS, bucket.acquire(1000, now));
+        bucket.setRate(2000);
+        assertEquals(1500 * MS, bucket.acquire(1000, now));
+        assertEquals(2000, bucket.rate());
+    }
+}
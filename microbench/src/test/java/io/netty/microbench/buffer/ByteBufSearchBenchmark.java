@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import com.google.caliper.Param;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufProcessor;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.DefaultBenchmark;
+
+/**
+ * Compares the word-at-a-time search of {@link ByteBuf#indexOf(int, int, byte)} and
+ * {@link ByteBuf#forEachByte(ByteBufProcessor)} with a byte-at-a-time loop, which is how a delimiter-based decoder
+ * looked for the end of a frame before.
+ */
+public class ByteBufSearchBenchmark extends DefaultBenchmark {
+
+    private static final ByteBufProcessor FIND_LF_SLOW = new ByteBufProcessor() {
+        @Override
+        public boolean process(byte value) throws Exception {
+            return value != '\n';
+        }
+    };
+
+    @Param({ "16", "256", "8192" })
+    private int size;
+
+    @Param
+    private BufferType bufferType;
+
+    private ByteBuf buffer;
+
+    @Override
+    protected void setUp() throws Exception {
+        // A line which ends with CRLF after 'size' bytes of text.
+        ByteBuf content = Unpooled.buffer(size + 2);
+        for (int i = 0; i < size; i ++) {
+            content.writeByte('a' + i % 26);
+        }
+        content.writeByte('\r').writeByte('\n');
+        buffer = bufferType.newBuffer(content);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        buffer.release();
+    }
+
+    public int timeIndexOf(int reps) {
+        final ByteBuf buffer = this.buffer;
+        final int end = buffer.writerIndex();
+        int sum = 0;
+        for (int i = 0; i < reps; i ++) {
+            sum += buffer.indexOf(0, end, (byte) '\n');
+        }
+        return sum;
+    }
+
+    public int timeIndexOfAny(int reps) {
+        final ByteBuf buffer = this.buffer;
+        final int end = buffer.writerIndex();
+        int sum = 0;
+        for (int i = 0; i < reps; i ++) {
+            sum += ByteBufUtil.indexOfAny(buffer, 0, end, (byte) '\0', (byte) '\r', (byte) '\n');
+        }
+        return sum;
+    }
+
+    public int timeForEachByteFindCrlf(int reps) {
+        final ByteBuf buffer = this.buffer;
+        int sum = 0;
+        for (int i = 0; i < reps; i ++) {
+            sum += buffer.forEachByte(ByteBufProcessor.FIND_CRLF);
+        }
+        return sum;
+    }
+
+    public int timeForEachByteCustomProcessor(int reps) {
+        final ByteBuf buffer = this.buffer;
+        int sum = 0;
+        for (int i = 0; i < reps; i ++) {
+            sum += buffer.forEachByte(FIND_LF_SLOW);
+        }
+        return sum;
+    }
+
+    public int timeGetByteLoop(int reps) {
+        final ByteBuf buffer = this.buffer;
+        final int end = buffer.writerIndex();
+        int sum = 0;
+        for (int i = 0; i < reps; i ++) {
+            for (int j = 0; j < end; j ++) {
+                if (buffer.getByte(j) == '\n') {
+                    sum += j;
+                    break;
+                }
+            }
+        }
+        return sum;
+    }
+
+    public enum BufferType {
+        HEAP {
+            @Override
+            ByteBuf newBuffer(ByteBuf content) {
+                return content;
+            }
+        },
+        DIRECT {
+            @Override
+            ByteBuf newBuffer(ByteBuf content) {
+                ByteBuf buf = Unpooled.directBuffer(content.readableBytes()).writeBytes(content);
+                content.release();
+                return buf;
+            }
+        },
+        POOLED_DIRECT {
+            @Override
+            ByteBuf newBuffer(ByteBuf content) {
+                ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(content.readableBytes()).writeBytes(content);
+                content.release();
+                return buf;
+            }
+        },
+        COMPOSITE {
+            @Override
+            ByteBuf newBuffer(ByteBuf content) {
+                int half = content.readableBytes() / 2;
+                return Unpooled.wrappedBuffer(content.readSlice(half).retain(), content);
+            }
+        };
+
+        abstract ByteBuf newBuffer(ByteBuf content);
+    }
+}
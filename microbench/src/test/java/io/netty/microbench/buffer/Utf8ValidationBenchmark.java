@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import com.google.caliper.Param;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.DefaultBenchmark;
+import io.netty.util.CharsetUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+
+/**
+ * Compares the validation of UTF-8 text by {@link ByteBufUtil#isUtf8(ByteBuf)} with a {@link CharsetDecoder}, and
+ * measures {@link ByteBuf#toString(java.nio.charset.Charset)}, which {@code StringDecoder} uses.
+ */
+public class Utf8ValidationBenchmark extends DefaultBenchmark {
+
+    @Param({ "64", "2048", "65536" })
+    private int size;
+
+    @Param
+    private Payload payload;
+
+    @Param({ "true", "false" })
+    private boolean direct;
+
+    private ByteBuf buffer;
+    private CharsetDecoder decoder;
+    private CharBuffer chars;
+
+    @Override
+    protected void setUp() throws Exception {
+        StringBuilder text = new StringBuilder(size);
+        while (text.length() < size) {
+            text.append(payload.sample);
+        }
+        byte[] bytes = text.toString().getBytes(CharsetUtil.UTF_8);
+        buffer = direct ? Unpooled.directBuffer(bytes.length) : Unpooled.buffer(bytes.length);
+        buffer.writeBytes(bytes);
+
+        decoder = CharsetUtil.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        chars = CharBuffer.allocate(bytes.length);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        buffer.release();
+    }
+
+    public int timeIsUtf8(int reps) {
+        final ByteBuf buffer = this.buffer;
+        int valid = 0;
+        for (int i = 0; i < reps; i ++) {
+            if (ByteBufUtil.isUtf8(buffer)) {
+                valid ++;
+            }
+        }
+        return valid;
+    }
+
+    public int timeCharsetDecoder(int reps) {
+        final ByteBuf buffer = this.buffer;
+        final CharsetDecoder decoder = this.decoder;
+        final CharBuffer chars = this.chars;
+        int valid = 0;
+        for (int i = 0; i < reps; i ++) {
+            ByteBuffer in = buffer.nioBuffer();
+            chars.clear();
+            CoderResult result = decoder.reset().decode(in, chars, true);
+            if (!result.isError()) {
+                valid ++;
+            }
+        }
+        return valid;
+    }
+
+    public int timeToString(int reps) {
+        final ByteBuf buffer = this.buffer;
+        int length = 0;
+        for (int i = 0; i < reps; i ++) {
+            length += buffer.toString(CharsetUtil.UTF_8).length();
+        }
+        return length;
+    }
+
+    public enum Payload {
+        ASCII("{\"symbol\":\"NTTY\",\"bid\":101.25,\"ask\":101.27,\"size\":300}"),
+        MIXED("{\"name\":\"Café Müller\",\"city\":\"Zürich\",\"note\":\"中文\"}"),
+        CJK("網絡應用程式框架です。한국어");
+
+        final String sample;
+
+        Payload(String sample) {
+            this.sample = sample;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.compression;
+
+import com.google.caliper.Param;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.JdkZlibEncoder;
+import io.netty.handler.codec.compression.Lz4FrameDecoder;
+import io.netty.handler.codec.compression.Lz4FrameEncoder;
+import io.netty.handler.codec.compression.SnappyFramedDecoder;
+import io.netty.handler.codec.compression.SnappyFramedEncoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.microbench.util.DefaultBenchmark;
+import io.netty.util.CharsetUtil;
+
+import java.util.Random;
+
+/**
+ * Compares the throughput of the LZ4, Snappy and zlib codecs on a corpus of JSON documents and log lines, which
+ * resembles replicated application data.
+ */
+public class CompressionBenchmark extends DefaultBenchmark {
+
+    @Param({ "4096", "65536" })
+    private int size;
+
+    @Param
+    private Codec codec;
+
+    @Param({ "true", "false" })
+    private boolean direct;
+
+    private ByteBuf corpus;
+    private ByteBuf compressed;
+    private EmbeddedChannel encoderChannel;
+
+    @Override
+    protected void setUp() throws Exception {
+        byte[] bytes = corpus(size);
+        corpus = direct ? Unpooled.directBuffer(bytes.length) : Unpooled.buffer(bytes.length);
+        corpus.writeBytes(bytes);
+
+        // Compress once with a fresh encoder so that the decoder gets a complete stream.
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder());
+        channel.writeOutbound(corpus.duplicate().retain());
+        channel.finish();
+        compressed = direct ? Unpooled.directBuffer() : Unpooled.buffer();
+        drainOutbound(channel, compressed);
+
+        encoderChannel = new EmbeddedChannel(codec.newEncoder());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        encoderChannel.finish();
+        drainOutbound(encoderChannel, null);
+        corpus.release();
+        compressed.release();
+    }
+
+    /**
+     * Compresses the corpus as a part of a long-lived stream, as a replication connection would.
+     */
+    public int timeCompress(int reps) {
+        final EmbeddedChannel channel = encoderChannel;
+        final ByteBuf corpus = this.corpus;
+        int length = 0;
+        for (int i = 0; i < reps; i ++) {
+            channel.writeOutbound(corpus.duplicate().retain());
+            length += drainOutbound(channel, null);
+        }
+        return length;
+    }
+
+    public int timeDecompress(int reps) {
+        final ByteBuf compressed = this.compressed;
+        int length = 0;
+        for (int i = 0; i < reps; i ++) {
+            EmbeddedChannel channel = new EmbeddedChannel(codec.newDecoder());
+            channel.writeInbound(compressed.duplicate().retain());
+            for (;;) {
+                ByteBuf buf = channel.readInbound();
+                if (buf == null) {
+                    break;
+                }
+                length += buf.readableBytes();
+                buf.release();
+            }
+            channel.finish();
+        }
+        return length;
+    }
+
+    private static int drainOutbound(EmbeddedChannel channel, ByteBuf dst) {
+        int length = 0;
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                return length;
+            }
+            length += buf.readableBytes();
+            if (dst != null) {
+                dst.writeBytes(buf);
+            }
+            buf.release();
+        }
+    }
+
+    /**
+     * Returns a corpus of JSON documents and log lines of the given size.
+     */
+    static byte[] corpus(int size) {
+        final String[] levels = { "INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR" };
+        final String[] paths = { "/api/v1/orders", "/api/v1/users", "/api/v1/inventory", "/healthz" };
+        final Random random = new Random(0);
+        StringBuilder buf = new StringBuilder(size + 256);
+        while (buf.length() < size) {
+            int id = random.nextInt(1000000);
+            if (random.nextBoolean()) {
+                buf.append("{\"id\":").append(id)
+                   .append(",\"user\":\"user").append(random.nextInt(5000))
+                   .append("\",\"status\":\"").append(random.nextInt(10) == 0 ? "FAILED" : "OK")
+                   .append("\",\"amount\":").append(random.nextInt(100000) / 100.0)
+                   .append(",\"tags\":[\"replicated\",\"dc-").append(random.nextInt(4)).append("\"]}\n");
+            } else {
+                buf.append("2014-06-").append(10 + random.nextInt(20)).append(' ')
+                   .append(random.nextInt(24)).append(':').append(random.nextInt(60)).append(':')
+                   .append(random.nextInt(60)).append('.').append(random.nextInt(1000)).append(' ')
+                   .append(levels[random.nextInt(levels.length)])
+                   .append(" [nioEventLoopGroup-2-").append(random.nextInt(16)).append("] ")
+                   .append("GET ").append(paths[random.nextInt(paths.length)]).append('/').append(id)
+                   .append(" completed in ").append(random.nextInt(500)).append(" ms\n");
+            }
+        }
+        buf.setLength(size);
+        return buf.toString().getBytes(CharsetUtil.US_ASCII);
+    }
+
+    public enum Codec {
+        LZ4 {
+            @Override
+            ChannelHandler newEncoder() {
+                return new Lz4FrameEncoder();
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new Lz4FrameDecoder();
+            }
+        },
+        LZ4_HC {
+            @Override
+            ChannelHandler newEncoder() {
+                return new Lz4FrameEncoder(true);
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new Lz4FrameDecoder();
+            }
+        },
+        SNAPPY {
+            @Override
+            ChannelHandler newEncoder() {
+                return new SnappyFramedEncoder();
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new SnappyFramedDecoder();
+            }
+        },
+        ZLIB {
+            @Override
+            ChannelHandler newEncoder() {
+                return new JdkZlibEncoder(ZlibWrapper.ZLIB, 6);
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new JdkZlibDecoder(ZlibWrapper.ZLIB);
+            }
+        };
+
+        abstract ChannelHandler newEncoder();
+        abstract ChannelHandler newDecoder();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.compression;
+
+import com.google.caliper.Param;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.Snappy;
+import io.netty.microbench.util.DefaultBenchmark;
+
+/**
+ * Measures {@link Snappy#encode(ByteBuf, ByteBuf, int)} and {@link Snappy#decode(ByteBuf, ByteBuf)} on the corpus
+ * of {@link CompressionBenchmark}, with heap and direct buffers.
+ */
+public class SnappyBenchmark extends DefaultBenchmark {
+
+    @Param({ "256", "4096", "32767" })
+    private int size;
+
+    @Param({ "true", "false" })
+    private boolean direct;
+
+    private final Snappy snappy = new Snappy();
+    private ByteBuf uncompressed;
+    private ByteBuf compressed;
+    private ByteBuf out;
+
+    @Override
+    protected void setUp() throws Exception {
+        byte[] bytes = CompressionBenchmark.corpus(size);
+        uncompressed = direct ? Unpooled.directBuffer(bytes.length) : Unpooled.buffer(bytes.length);
+        uncompressed.writeBytes(bytes);
+
+        compressed = direct ? Unpooled.directBuffer() : Unpooled.buffer();
+        snappy.encode(uncompressed.duplicate(), compressed, size);
+        out = direct ? Unpooled.directBuffer(size * 2) : Unpooled.buffer(size * 2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        uncompressed.release();
+        compressed.release();
+        out.release();
+    }
+
+    public int timeEncode(int reps) {
+        final Snappy snappy = this.snappy;
+        final ByteBuf out = this.out;
+        int length = 0;
+        for (int i = 0; i < reps; i ++) {
+            out.clear();
+            snappy.encode(uncompressed.duplicate(), out, size);
+            length += out.readableBytes();
+        }
+        return length;
+    }
+
+    public int timeDecode(int reps) {
+        final Snappy snappy = this.snappy;
+        final ByteBuf out = this.out;
+        int length = 0;
+        for (int i = 0; i < reps; i ++) {
+            out.clear();
+            snappy.decode(compressed.duplicate(), out);
+            snappy.reset();
+            length += out.readableBytes();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.handler.ssl;
+
+import com.google.caliper.Param;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.microbench.util.DefaultBenchmark;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.security.Security;
+
+/**
+ * Measures how fast {@link SslHandler} encrypts many small writes, either flushed at once so that they are
+ * coalesced into one record, or flushed one by one so that each write becomes a record.
+ */
+public class SslHandlerWriteBenchmark extends DefaultBenchmark {
+
+    // An anonymous cipher suite, so that no key material is needed.
+    private static final String CIPHER_SUITE = "TLS_ECDH_anon_WITH_AES_128_CBC_SHA";
+
+    static {
+        // Anonymous cipher suites are disabled by default.
+        Security.setProperty("jdk.tls.disabledAlgorithms", "");
+    }
+
+    public enum Flush {
+        ONCE,
+        EACH_WRITE
+    }
+
+    @Param({ "1", "10", "30" })
+    private int writes;
+
+    @Param({ "32", "256" })
+    private int size;
+
+    @Param
+    private Flush flush;
+
+    private EmbeddedChannel client;
+    private EmbeddedChannel server;
+    private ByteBuf message;
+
+    @Override
+    protected void setUp() throws Exception {
+        SSLContext context = SSLContext.getInstance("TLSv1.2");
+        context.init(null, null, null);
+        client = newChannel(context, true);
+        server = newChannel(context, false);
+        for (int i = 0; i < 10; i ++) {
+            forward(client, server);
+            forward(server, client);
+        }
+        if (!client.pipeline().get(SslHandler.class).handshakeFuture().isSuccess()) {
+            throw new IllegalStateException("handshake failed");
+        }
+        message = Unpooled.unreleasableBuffer(Unpooled.directBuffer(size).writeZero(size));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.finish();
+        server.finish();
+    }
+
+    private static EmbeddedChannel newChannel(SSLContext context, boolean client) {
+        SSLEngine engine = context.createSSLEngine();
+        engine.setUseClientMode(client);
+        engine.setEnabledCipherSuites(new String[] { CIPHER_SUITE });
+        SslHandler handler = new SslHandler(engine);
+        // EmbeddedChannel does not support scheduling the timeouts.
+        handler.setHandshakeTimeoutMillis(0);
+        handler.setCloseNotifyTimeoutMillis(0);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+        ch.config().setOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        return ch;
+    }
+
+    private static void forward(EmbeddedChannel from, EmbeddedChannel to) {
+        for (;;) {
+            ByteBuf buf = (ByteBuf) from.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            to.writeInbound(buf);
+        }
+    }
+
+    public int timeWrite(int reps) {
+        final EmbeddedChannel client = this.client;
+        final boolean flushEachWrite = flush == Flush.EACH_WRITE;
+        int produced = 0;
+        for (int i = 0; i < reps; i ++) {
+            for (int j = 0; j < writes; j ++) {
+                client.write(message.duplicate());
+                if (flushEachWrite) {
+                    client.flush();
+                }
+            }
+            if (!flushEachWrite) {
+                client.flush();
+            }
+
+            for (;;) {
+                ByteBuf buf = (ByteBuf) client.readOutbound();
+                if (buf == null) {
+                    break;
+                }
+                produced += buf.readableBytes();
+                buf.release();
+            }
+        }
+        return produced;
+    }
+}
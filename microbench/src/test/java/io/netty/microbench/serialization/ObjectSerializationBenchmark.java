@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.serialization;
+
+import com.google.caliper.Param;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.serialization.ClassResolvers;
+import io.netty.handler.codec.serialization.ObjectDecoder;
+import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.handler.codec.serialization.ObjectSerializer;
+import io.netty.handler.codec.serialization.ObjectSerializerDecoder;
+import io.netty.handler.codec.serialization.ObjectSerializerEncoder;
+import io.netty.handler.codec.serialization.ObjectSerializerRegistry;
+import io.netty.microbench.util.DefaultBenchmark;
+import io.netty.util.CharsetUtil;
+
+import java.io.Serializable;
+
+/**
+ * Compares {@link ObjectEncoder} and {@link ObjectDecoder}, which use Java serialization, with
+ * {@link ObjectSerializerEncoder} and {@link ObjectSerializerDecoder} on a small market data message.
+ */
+public class ObjectSerializationBenchmark extends DefaultBenchmark {
+
+    private static final ObjectSerializerRegistry REGISTRY = new ObjectSerializerRegistry()
+            .register(1, Quote.class, new QuoteSerializer());
+
+    @Param
+    private Codec codec;
+
+    private Quote quote;
+    private EmbeddedChannel encoderChannel;
+    private EmbeddedChannel decoderChannel;
+    private ByteBuf encoded;
+
+    @Override
+    protected void setUp() throws Exception {
+        quote = new Quote("NTTY", 10125, 10127, 300);
+        encoderChannel = newChannel(codec.newEncoder());
+        decoderChannel = newChannel(codec.newDecoder());
+
+        encoderChannel.writeOutbound(quote);
+        encoded = (ByteBuf) encoderChannel.readOutbound();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        encoderChannel.finish();
+        decoderChannel.finish();
+        encoded.release();
+    }
+
+    public int timeEncode(int reps) {
+        final EmbeddedChannel channel = encoderChannel;
+        final Quote quote = this.quote;
+        int size = 0;
+        for (int i = 0; i < reps; i ++) {
+            channel.writeOutbound(quote);
+            ByteBuf buf = (ByteBuf) channel.readOutbound();
+            size += buf.readableBytes();
+            buf.release();
+        }
+        return size;
+    }
+
+    public int timeDecode(int reps) {
+        final EmbeddedChannel channel = decoderChannel;
+        final ByteBuf encoded = this.encoded;
+        int sum = 0;
+        for (int i = 0; i < reps; i ++) {
+            channel.writeInbound(encoded.duplicate().retain());
+            sum += ((Quote) channel.readInbound()).size;
+        }
+        return sum;
+    }
+
+    private static EmbeddedChannel newChannel(ChannelHandler handler) {
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channel.config().setOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        return channel;
+    }
+
+    public enum Codec {
+        JAVA_SERIALIZATION {
+            @Override
+            ChannelHandler newEncoder() {
+                return new ObjectEncoder();
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new ObjectDecoder(ClassResolvers.softCachingConcurrentResolver(null));
+            }
+        },
+        OBJECT_SERIALIZER {
+            @Override
+            ChannelHandler newEncoder() {
+                return new ObjectSerializerEncoder(REGISTRY);
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new ObjectSerializerDecoder(REGISTRY);
+            }
+        };
+
+        abstract ChannelHandler newEncoder();
+        abstract ChannelHandler newDecoder();
+    }
+
+    static final class Quote implements Serializable {
+        private static final long serialVersionUID = -3285429418702466314L;
+
+        final String symbol;
+        final long bid;
+        final long ask;
+        final int size;
+
+        Quote(String symbol, long bid, long ask, int size) {
+            this.symbol = symbol;
+            this.bid = bid;
+            this.ask = ask;
+            this.size = size;
+        }
+    }
+
+    static final class QuoteSerializer implements ObjectSerializer<Quote> {
+        @Override
+        public void writeObject(ByteBuf out, Quote quote) {
+            byte[] symbol = quote.symbol.getBytes(CharsetUtil.US_ASCII);
+            out.writeByte(symbol.length);
+            out.writeBytes(symbol);
+            out.writeLong(quote.bid);
+            out.writeLong(quote.ask);
+            out.writeInt(quote.size);
+        }
+
+        @Override
+        public Quote readObject(ByteBuf in) {
+            int symbolLength = in.readUnsignedByte();
+            String symbol = in.toString(in.readerIndex(), symbolLength, CharsetUtil.US_ASCII);
+            in.skipBytes(symbolLength);
+            return new Quote(symbol, in.readLong(), in.readLong(), in.readInt());
+        }
+    }
+}
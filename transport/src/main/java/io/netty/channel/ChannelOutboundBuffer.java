@@ -474,6 +474,14 @@ public final class ChannelOutboundBuffer {
         return writable != 0;
     }
 
+    /**
+     * Returns the number of bytes written to this buffer which were not written to the transport yet.  The channel
+     * becomes unwritable once it exceeds {@link ChannelConfig#getWriteBufferHighWaterMark()}.
+     */
+    public long totalPendingWriteBytes() {
+        return totalPendingSize;
+    }
+
     public int size() {
         return unflushed - flushed & buffer.length - 1;
     }
@@ -21,6 +21,7 @@ package io.netty.channel;
 public final class ChannelPromiseNotifier implements ChannelFutureListener {
 
     private final ChannelPromise[] promises;
+    private final boolean lenient;
 
     /**
      * Create a new instance
@@ -28,6 +29,18 @@ public final class ChannelPromiseNotifier implements ChannelFutureListener {
      * @param promises  the {@link ChannelPromise}s to notify once this {@link ChannelFutureListener} is notified.
      */
     public ChannelPromiseNotifier(ChannelPromise... promises) {
+        this(false, promises);
+    }
+
+    /**
+     * Create a new instance
+     *
+     * @param lenient   {@code true} to skip a {@link ChannelPromise} which was cancelled or completed already, as
+     *                  the promises of the messages merged into one write may be, instead of failing with an
+     *                  {@link IllegalStateException} before the remaining promises are notified.
+     * @param promises  the {@link ChannelPromise}s to notify once this {@link ChannelFutureListener} is notified.
+     */
+    public ChannelPromiseNotifier(boolean lenient, ChannelPromise... promises) {
         if (promises == null) {
             throw new NullPointerException("promises");
         }
@@ -37,20 +50,29 @@ public final class ChannelPromiseNotifier implements ChannelFutureListener {
             }
         }
         this.promises = promises.clone();
+        this.lenient = lenient;
     }
 
     @Override
     public void operationComplete(ChannelFuture cf) throws Exception {
         if (cf.isSuccess()) {
             for (ChannelPromise p: promises) {
-                p.setSuccess();
+                if (lenient) {
+                    p.trySuccess();
+                } else {
+                    p.setSuccess();
+                }
             }
             return;
         }
 
         Throwable cause = cf.cause();
         for (ChannelPromise p: promises) {
-            p.setFailure(cause);
+            if (lenient) {
+                p.tryFailure(cause);
+            } else {
+                p.setFailure(cause);
+            }
         }
     }
 }
@@ -17,6 +17,7 @@ package io.netty.channel;
 
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorLagMonitor;
 import io.netty.util.concurrent.MultithreadEventExecutorGroup;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
@@ -24,6 +25,8 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Abstract base class for {@link EventExecutorGroup} implementations that handles their tasks with multiple threads at
@@ -44,11 +47,15 @@ public abstract class MultithreadEventLoopGroup extends MultithreadEventExecutor
         }
     }
 
+    private final EventLoop[] loops;
+    private final AtomicInteger loopIndex = new AtomicInteger();
+
     /**
      * @see {@link MultithreadEventExecutorGroup#MultithreadEventExecutorGroup(int, Executor, Object...)}
      */
     protected MultithreadEventLoopGroup(int nThreads, Executor executor, Object... args) {
         super(nThreads == 0 ? DEFAULT_EVENT_LOOP_THREADS : nThreads, executor, args);
+        loops = children().toArray(new EventLoop[executorCount()]);
     }
 
     /**
@@ -56,6 +63,7 @@ public abstract class MultithreadEventLoopGroup extends MultithreadEventExecutor
      */
     protected MultithreadEventLoopGroup(int nThreads, ThreadFactory threadFactory, Object... args) {
         super(nThreads == 0 ? DEFAULT_EVENT_LOOP_THREADS : nThreads, threadFactory, args);
+        loops = children().toArray(new EventLoop[executorCount()]);
     }
 
     @Override
@@ -63,9 +71,31 @@ public abstract class MultithreadEventLoopGroup extends MultithreadEventExecutor
         return new DefaultThreadFactory(getClass(), Thread.MAX_PRIORITY);
     }
 
+    /**
+     * Returns the less loaded one of the next two {@link EventLoop}s in round-robin order, so that a new
+     * {@link Channel} is not registered to a saturated {@link EventLoop}.  An {@link EventLoop} is less loaded if its
+     * scheduling lag, as measured by {@link EventExecutorLagMonitor}, is lower.  If both are equally loaded or not
+     * monitored, the first one is chosen, which is the plain round-robin order.  The pending tasks are not counted
+     * because counting the task queue of an {@link EventLoop} may be as expensive as traversing it.
+     */
     @Override
     public EventLoop next() {
-        return (EventLoop) super.next();
+        EventLoop[] loops = this.loops;
+        if (loops.length == 1) {
+            return loops[0];
+        }
+
+        int index = loopIndex.getAndIncrement() & Integer.MAX_VALUE;
+        EventLoop first = loops[index % loops.length];
+        EventLoop second = loops[(index + 1) % loops.length];
+        return isLessLoaded(second, first) ? second : first;
+    }
+
+    private static boolean isLessLoaded(EventLoop a, EventLoop b) {
+        // Compare the lag in milliseconds so that the noise of the measurement is ignored.
+        long lagA = TimeUnit.NANOSECONDS.toMillis(EventExecutorLagMonitor.currentLagNanos(a));
+        long lagB = TimeUnit.NANOSECONDS.toMillis(EventExecutorLagMonitor.currentLagNanos(b));
+        return lagA < lagB;
     }
 
     @Override
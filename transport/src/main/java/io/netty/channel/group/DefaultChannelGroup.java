@@ -21,6 +21,8 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelId;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
 import io.netty.channel.ServerChannel;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.EventExecutor;
@@ -30,10 +32,13 @@ import io.netty.util.internal.StringUtil;
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -208,22 +213,7 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
 
     @Override
     public ChannelGroupFuture write(Object message, ChannelMatcher matcher) {
-        if (message == null) {
-            throw new NullPointerException("message");
-        }
-        if (matcher == null) {
-            throw new NullPointerException("matcher");
-        }
-
-        Map<Channel, ChannelFuture> futures = new LinkedHashMap<Channel, ChannelFuture>(size());
-        for (Channel c: nonServerChannels.values()) {
-            if (matcher.matches(c)) {
-                futures.put(c, c.write(safeDuplicate(message)));
-            }
-        }
-
-        ReferenceCountUtil.release(message);
-        return new DefaultChannelGroupFuture(this, futures, executor);
+        return write(message, matcher, false);
     }
 
     @Override
@@ -284,33 +274,124 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
 
     @Override
     public ChannelGroup flush(ChannelMatcher matcher) {
+        Map<EventLoop, GroupWrite> writes = new IdentityHashMap<EventLoop, GroupWrite>();
         for (Channel c: nonServerChannels.values()) {
             if (matcher.matches(c)) {
-                c.flush();
+                groupWrite(writes, c, true).add(c, null, null);
             }
         }
+        submit(writes);
         return this;
     }
 
     @Override
     public ChannelGroupFuture writeAndFlush(Object message, ChannelMatcher matcher) {
+        return write(message, matcher, true);
+    }
+
+    /**
+     * Writes the specified message to all the matching channels.  The writes are grouped by {@link EventLoop} so
+     * that each event loop runs a single task per call, rather than one task per channel.  Each channel gets its
+     * own duplicate of the message, which shares the content of the message but not its indexes, so that the
+     * message is encoded only once if it is, for example, an encoded Web Socket frame.
+     */
+    private ChannelGroupFuture write(Object message, ChannelMatcher matcher, boolean flush) {
         if (message == null) {
             throw new NullPointerException("message");
         }
+        if (matcher == null) {
+            throw new NullPointerException("matcher");
+        }
 
         Map<Channel, ChannelFuture> futures = new LinkedHashMap<Channel, ChannelFuture>(size());
-
+        Map<EventLoop, GroupWrite> writes = new IdentityHashMap<EventLoop, GroupWrite>();
         for (Channel c: nonServerChannels.values()) {
             if (matcher.matches(c)) {
-                futures.put(c, c.writeAndFlush(safeDuplicate(message)));
+                ChannelPromise promise = c.newPromise();
+                groupWrite(writes, c, flush).add(c, safeDuplicate(message), promise);
+                futures.put(c, promise);
             }
         }
 
-        ReferenceCountUtil.release(message);
+        submit(writes);
 
+        ReferenceCountUtil.release(message);
         return new DefaultChannelGroupFuture(this, futures, executor);
     }
 
+    private static GroupWrite groupWrite(Map<EventLoop, GroupWrite> writes, Channel c, boolean flush) {
+        EventLoop loop = c.eventLoop();
+        GroupWrite write = writes.get(loop);
+        if (write == null) {
+            write = new GroupWrite(flush);
+            writes.put(loop, write);
+        }
+        return write;
+    }
+
+    private static void submit(Map<EventLoop, GroupWrite> writes) {
+        for (Map.Entry<EventLoop, GroupWrite> e: writes.entrySet()) {
+            EventLoop loop = e.getKey();
+            GroupWrite write = e.getValue();
+            if (loop.inEventLoop()) {
+                write.run();
+            } else {
+                try {
+                    loop.execute(write);
+                } catch (RejectedExecutionException cause) {
+                    write.fail(cause);
+                }
+            }
+        }
+    }
+
+    /**
+     * The writes (or flushes if there is no message) of a group call to the channels of the same
+     * {@link EventLoop}.
+     */
+    private static final class GroupWrite implements Runnable {
+
+        private final List<Channel> channels = new ArrayList<Channel>();
+        private final List<Object> messages = new ArrayList<Object>();
+        private final List<ChannelPromise> promises = new ArrayList<ChannelPromise>();
+        private final boolean flush;
+
+        GroupWrite(boolean flush) {
+            this.flush = flush;
+        }
+
+        void add(Channel channel, Object message, ChannelPromise promise) {
+            channels.add(channel);
+            messages.add(message);
+            promises.add(promise);
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < channels.size(); i ++) {
+                Channel c = channels.get(i);
+                Object message = messages.get(i);
+                if (message == null) {
+                    c.flush();
+                } else if (flush) {
+                    c.writeAndFlush(message, promises.get(i));
+                } else {
+                    c.write(message, promises.get(i));
+                }
+            }
+        }
+
+        void fail(Throwable cause) {
+            for (int i = 0; i < channels.size(); i ++) {
+                Object message = messages.get(i);
+                if (message != null) {
+                    ReferenceCountUtil.release(message);
+                    promises.get(i).setFailure(cause);
+                }
+            }
+        }
+    }
+
     @Override
     public int hashCode() {
         return System.identityHashCode(this);
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutorLagMonitor;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MultithreadEventLoopGroupTest {
+
+    @Test
+    public void testRoundRobinWhenEquallyLoaded() {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(3);
+        try {
+            EventLoop first = group.next();
+            EventLoop second = group.next();
+            EventLoop third = group.next();
+            assertNotSame(first, second);
+            assertNotSame(second, third);
+            assertNotSame(first, third);
+            assertSame(first, group.next());
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testLessLoadedLoopIsChosen() throws Exception {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(2);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            EventLoop busy = group.next();
+            EventLoop idle = group.next();
+            EventExecutorLagMonitor.get(busy);
+            EventExecutorLagMonitor.get(idle);
+            final CountDownLatch started = new CountDownLatch(1);
+            busy.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        latch.await();
+                    } catch (InterruptedException ignore) {
+                        // Ignore
+                    }
+                }
+            });
+            started.await();
+            // Wait until the probe of the lag monitor is overdue.
+            while (EventExecutorLagMonitor.currentLagNanos(busy) < TimeUnit.MILLISECONDS.toNanos(50)) {
+                Thread.sleep(10);
+            }
+
+            for (int i = 0; i < 10; i ++) {
+                assertSame(idle, group.next());
+            }
+        } finally {
+            latch.countDown();
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+}
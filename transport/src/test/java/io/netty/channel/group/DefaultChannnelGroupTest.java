@@ -16,15 +16,20 @@
 package io.netty.channel.group;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import org.junit.Test;
 
+import static org.junit.Assert.*;
+
 public class DefaultChannnelGroupTest {
 
     // Test for #1183
@@ -57,4 +62,32 @@ public class DefaultChannnelGroupTest {
         bossGroup.terminationFuture().sync();
         workerGroup.terminationFuture().sync();
     }
+
+    @Test
+    public void testWriteAndFlushDuplicates() throws Exception {
+        ChannelGroup group = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+        EmbeddedChannel ch1 = new EmbeddedChannel(new ChannelHandlerAdapter());
+        EmbeddedChannel ch2 = new EmbeddedChannel(new ChannelHandlerAdapter());
+        group.add(ch1);
+        group.add(ch2);
+
+        ByteBuf message = Unpooled.copyLong(42);
+        ChannelGroupFuture future = group.writeAndFlush(message);
+        assertTrue(future.isDone());
+        assertTrue(future.isSuccess());
+
+        ByteBuf written1 = ch1.readOutbound();
+        ByteBuf written2 = ch2.readOutbound();
+        assertNotSame(written1, written2);
+        assertEquals(42, written1.readLong());
+        // The reader index of a duplicate is not affected by the other.
+        assertEquals(42, written2.readLong());
+        assertEquals(2, message.refCnt());
+
+        written1.release();
+        written2.release();
+        assertEquals(0, message.refCnt());
+        assertFalse(ch1.finish());
+        assertFalse(ch2.finish());
+    }
 }